@@ -223,7 +223,12 @@ public class Features {
                     try {
                         node = ( (Reference<?>) node ).getReferencedObject();
                     } catch ( ReferenceResolvingException e ) {
-                        LOG.warn( "Unable to resolve external reference '" + ref.getURI() + ". Ignoring." );
+                        if ( ref.isLocal() ) {
+                            // may refer to an object that has been processed (e.g. stored) before
+                            LOG.debug( "Unable to resolve local reference '" + ref.getURI() + ". Ignoring." );
+                        } else {
+                            LOG.warn( "Unable to resolve external reference '" + ref.getURI() + ". Ignoring." );
+                        }
                         return;
                     }
                 }
@@ -0,0 +1,253 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link FeatureInputStream} that opens a sequence of {@link FeatureInputStream}s concurrently and returns their
+ * features in the same order as a {@link CombinedFeatureInputStream} would.
+ * <p>
+ * Each source stream is opened and consumed by a task of the given executor. The features are handed over to the
+ * consumer using a bounded queue per source, so a task blocks when the consumer falls behind (and at most
+ * <code>queueSize</code> features per source are held in memory). The executor must execute the tasks in the order
+ * of submission (e.g. a fixed thread pool) and must not be used for tasks that wait for this stream, otherwise the
+ * consumer may wait for a source that never gets a thread.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class ParallelFeatureInputStream implements FeatureInputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ParallelFeatureInputStream.class );
+
+    // marks the end of a source
+    private static final Object END = new Object();
+
+    // interval for checking whether the stream has been closed while waiting for queue space
+    private static final long CLOSE_POLL_MILLIS = 100;
+
+    private final List<Source> sources;
+
+    private final List<Future<?>> futures;
+
+    private volatile boolean closed;
+
+    private int current;
+
+    private Feature next;
+
+    /**
+     * Creates a new {@link ParallelFeatureInputStream} and immediately starts opening the source streams.
+     * 
+     * @param sources
+     *            opens the source streams (in the order of the returned features), must not be <code>null</code>
+     * @param executor
+     *            used for opening and consuming the sources, must not be <code>null</code>
+     * @param queueSize
+     *            maximum number of features that are buffered per source, must be greater than zero
+     */
+    public ParallelFeatureInputStream( List<Callable<FeatureInputStream>> sources, ExecutorService executor,
+                                       int queueSize ) {
+        this.sources = new ArrayList<Source>( sources.size() );
+        this.futures = new ArrayList<Future<?>>( sources.size() );
+        try {
+            for ( Callable<FeatureInputStream> opener : sources ) {
+                Source source = new Source( opener, queueSize );
+                this.sources.add( source );
+                futures.add( executor.submit( source ) );
+            }
+        } catch ( RuntimeException e ) {
+            // e.g. executor has been shut down
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops all tasks, sources that are still open are closed by their tasks.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for ( Future<?> future : futures ) {
+            // tasks that haven't been started yet won't open their source
+            future.cancel( false );
+        }
+    }
+
+    @Override
+    public FeatureCollection toCollection() {
+        return Features.toCollection( this );
+    }
+
+    @Override
+    public Iterator<Feature> iterator() {
+        return new Iterator<Feature>() {
+
+            @Override
+            public boolean hasNext() {
+                if ( next == null ) {
+                    next = take();
+                }
+                return next != null;
+            }
+
+            @Override
+            public Feature next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                Feature feature = next;
+                next = null;
+                return feature;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int count() {
+        int i = 0;
+        for ( @SuppressWarnings("unused")
+        Feature f : this ) {
+            i++;
+        }
+        close();
+        return i;
+    }
+
+    private Feature take() {
+        while ( current < sources.size() && !closed ) {
+            Source source = sources.get( current );
+            Object o;
+            try {
+                o = source.queue.poll( CLOSE_POLL_MILLIS, TimeUnit.MILLISECONDS );
+            } catch ( InterruptedException e ) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( e.getMessage(), e );
+            }
+            if ( o == null ) {
+                continue;
+            }
+            if ( o != END ) {
+                return (Feature) o;
+            }
+            current++;
+            if ( source.error != null ) {
+                close();
+                throw new RuntimeException( source.error.getMessage(), source.error );
+            }
+        }
+        return null;
+    }
+
+    private class Source implements Runnable {
+
+        private final Callable<FeatureInputStream> opener;
+
+        private final BlockingQueue<Object> queue;
+
+        private volatile Throwable error;
+
+        Source( Callable<FeatureInputStream> opener, int queueSize ) {
+            this.opener = opener;
+            this.queue = new ArrayBlockingQueue<Object>( queueSize );
+        }
+
+        @Override
+        public void run() {
+            FeatureInputStream fis = null;
+            try {
+                if ( closed ) {
+                    return;
+                }
+                fis = opener.call();
+                for ( Feature f : fis ) {
+                    if ( !put( f ) ) {
+                        LOG.debug( "Stream closed, stopping source." );
+                        break;
+                    }
+                }
+            } catch ( Throwable t ) {
+                LOG.debug( t.getMessage(), t );
+                error = t;
+            } finally {
+                if ( fis != null ) {
+                    fis.close();
+                }
+                try {
+                    put( END );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private boolean put( Object o )
+                                throws InterruptedException {
+            while ( !closed ) {
+                if ( queue.offer( o, CLOSE_POLL_MILLIS, TimeUnit.MILLISECONDS ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -64,8 +64,8 @@ public class Contains extends SpatialOperator {
         for ( TypedObjectNode paramValue : propName.evaluate( obj, xpathEvaluator ) ) {
             Geometry geom = checkGeometryOrNull( paramValue );
             if ( geom != null ) {
-                Geometry transformedLiteral = getCompatibleGeometry( geom, geometry );
-                return geom.contains( transformedLiteral );
+                // geom contains the literal iff the literal is within geom
+                return getPreparedGeometry( geom, geometry ).isWithin( geom );
             }
         }
         return false;
@@ -80,8 +80,7 @@ public class Intersects extends SpatialOperator {
             for ( TypedObjectNode paramValue : param1.evaluate( obj, xpathEvaluator ) ) {
                 Geometry param1Value = checkGeometryOrNull( paramValue );
                 if ( param1Value != null ) {
-                    Geometry transformedGeom = getCompatibleGeometry( param1Value, geometry );
-                    return transformedGeom.intersects( param1Value );
+                    return getPreparedGeometry( param1Value, geometry ).intersects( param1Value );
                 }
             }
         } else if ( obj instanceof Feature ) {
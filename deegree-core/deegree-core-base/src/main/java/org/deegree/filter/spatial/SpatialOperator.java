@@ -35,8 +35,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.filter.spatial;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.genericxml.GenericXMLElement;
@@ -49,6 +49,7 @@ import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.i18n.Messages;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.standard.PreparedGeometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,7 +65,9 @@ public abstract class SpatialOperator implements Operator {
 
     private static final Logger LOG = LoggerFactory.getLogger( SpatialOperator.class );
 
-    private final Map<String, Geometry> srsNameToTransformedGeometry = new HashMap<String, Geometry>();
+    private final ConcurrentMap<String, Geometry> srsNameToTransformedGeometry = new ConcurrentHashMap<String, Geometry>();
+
+    private final ConcurrentMap<String, PreparedGeometry> srsNameToPreparedGeometry = new ConcurrentHashMap<String, PreparedGeometry>();
 
     protected final Expression propName;
 
@@ -210,5 +213,36 @@ public abstract class SpatialOperator implements Operator {
         return transformedLiteral;
     }
 
+    /**
+     * Returns a prepared version of the given geometry literal that has the same srs as the given geometry parameter.
+     * <p>
+     * The prepared literal is created once per srs and reused for all evaluations, which speeds up evaluating the
+     * operator on many objects considerably (especially for complex literals).
+     * </p>
+     * 
+     * @param param
+     *            geometry parameter, must not be <code>null</code>
+     * @param literal
+     *            geometry literal, must not be <code>null</code>
+     * @return prepared literal geometry with the same srs as the parameter geometry
+     * @throws FilterEvaluationException
+     *             if the transformation failed
+     */
+    protected PreparedGeometry getPreparedGeometry( Geometry param, Geometry literal )
+                            throws FilterEvaluationException {
+        Geometry compatibleLiteral = getCompatibleGeometry( param, literal );
+        String key = compatibleLiteral == literal ? "" : param.getCoordinateSystem().getAlias();
+        PreparedGeometry prepared = srsNameToPreparedGeometry.get( key );
+        if ( prepared == null || prepared.getGeometry() != compatibleLiteral ) {
+            try {
+                prepared = new PreparedGeometry( compatibleLiteral );
+            } catch ( RuntimeException e ) {
+                throw new FilterEvaluationException( e.getMessage() );
+            }
+            srsNameToPreparedGeometry.put( key, prepared );
+        }
+        return prepared;
+    }
+
     public abstract Object[] getParams();
 }
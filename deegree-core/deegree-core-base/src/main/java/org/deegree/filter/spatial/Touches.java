@@ -64,8 +64,7 @@ public class Touches extends SpatialOperator {
         for ( TypedObjectNode paramValue : propName.evaluate( obj, xpathEvaluator ) ) {
             Geometry geom = checkGeometryOrNull( paramValue );
             if ( geom != null ) {
-                Geometry transformedLiteral = getCompatibleGeometry( geom, geometry );
-                return geom.touches( transformedLiteral );
+                return getPreparedGeometry( geom, geometry ).touches( geom );
             }
         }
         return false;
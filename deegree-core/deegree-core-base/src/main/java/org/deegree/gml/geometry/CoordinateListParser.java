@@ -0,0 +1,463 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.geometry;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.COMMENT;
+import static javax.xml.stream.XMLStreamConstants.END_DOCUMENT;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.ENTITY_REFERENCE;
+import static javax.xml.stream.XMLStreamConstants.PROCESSING_INSTRUCTION;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Point;
+
+/**
+ * Parses lists of coordinate values (e.g. <code>gml:posList</code>, <code>gml:pos</code> or
+ * <code>gml:coordinates</code>) directly from the character events of an <code>XMLStreamReader</code>.
+ * <p>
+ * In contrast to {@link XMLStreamReaderWrapper#getElementText()} and a subsequent tokenizing step, no intermediate
+ * strings are created: the values are decoded from the character buffer of the stream reader and collected in a
+ * primitive <code>double</code> array. Instances keep their buffers between invocations and are not thread-safe.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class CoordinateListParser {
+
+    // values that can be multiplied/divided exactly (fast path of Clinger's algorithm)
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                                                   1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    // mantissas with more significant digits may not be exactly representable as double
+    private static final int MAX_FAST_DIGITS = 15;
+
+    private static final int MAX_FAST_EXPONENT_DIGITS = 4;
+
+    private static final int VALUE_CHAR = 0;
+
+    private static final int VALUE_SEPARATOR = 1;
+
+    private static final int TUPLE_SEPARATOR = 2;
+
+    private XMLStreamReaderWrapper xmlStream;
+
+    private double[] values = new double[64];
+
+    private int numValues;
+
+    private char[] token = new char[32];
+
+    private int tokenLength;
+
+    private int[] tupleEnds = new int[16];
+
+    private int numTuples;
+
+    private int tupleDimension;
+
+    private boolean coordinates;
+
+    private String coordinateSeparator;
+
+    private String tupleSeparator;
+
+    private boolean whitespaceSeparatesTuples;
+
+    /**
+     * Parses the text content of the current element as a whitespace-separated list of doubles.
+     * <p>
+     * After successful return, the stream points at the corresponding <code>END_ELEMENT</code> event.
+     * </p>
+     * 
+     * @param xmlStream
+     *            must point at a <code>START_ELEMENT</code> event, must not be <code>null</code>
+     * @return parsed values, never <code>null</code>
+     * @throws XMLParsingException
+     *             if a value cannot be parsed as a double
+     * @throws XMLStreamException
+     */
+    double[] parseDoubles( XMLStreamReaderWrapper xmlStream )
+                            throws XMLParsingException, XMLStreamException {
+        coordinates = false;
+        return parse( xmlStream );
+    }
+
+    /**
+     * Parses the text content of the current element as a list of tuples (the <code>gml:coordinates</code> encoding).
+     * <p>
+     * Besides the characters of the tuple separator, line breaks always separate tuples. If the tuple separator
+     * consists of whitespace only, any whitespace separates tuples. Empty tuples and values are skipped. After
+     * successful return, the stream points at the corresponding <code>END_ELEMENT</code> event and the tuple
+     * structure is available via {@link #getTupleDimension()} and {@link #createPointList(GeometryFactory, ICRS,
+     * double[])}.
+     * </p>
+     * 
+     * @param xmlStream
+     *            must point at a <code>START_ELEMENT</code> event, must not be <code>null</code>
+     * @param coordinateSeparator
+     *            characters that separate the values of a tuple, must not be <code>null</code>
+     * @param tupleSeparator
+     *            characters that separate tuples, must not be <code>null</code>
+     * @return parsed values of all tuples (in document order), never <code>null</code>
+     * @throws XMLParsingException
+     *             if a value cannot be parsed as a double
+     * @throws XMLStreamException
+     */
+    double[] parseCoordinates( XMLStreamReaderWrapper xmlStream, String coordinateSeparator, String tupleSeparator )
+                            throws XMLParsingException, XMLStreamException {
+        this.coordinates = true;
+        this.coordinateSeparator = coordinateSeparator;
+        this.tupleSeparator = tupleSeparator;
+        this.whitespaceSeparatesTuples = isWhitespace( tupleSeparator );
+        return parse( xmlStream );
+    }
+
+    /**
+     * Returns the common number of values of the tuples parsed by the last call to
+     * {@link #parseCoordinates(XMLStreamReaderWrapper, String, String)}.
+     * 
+     * @return number of values per tuple, or <code>-1</code> if there were no tuples or if the tuples differ in size
+     */
+    int getTupleDimension() {
+        return tupleDimension;
+    }
+
+    /**
+     * Creates a {@link Point} for every tuple parsed by the last call to
+     * {@link #parseCoordinates(XMLStreamReaderWrapper, String, String)}.
+     * 
+     * @param geomFac
+     *            factory for creating the points, must not be <code>null</code>
+     * @param crs
+     *            crs of the points, can be <code>null</code>
+     * @param values
+     *            values returned by the last call to parseCoordinates, must not be <code>null</code>
+     * @return points, never <code>null</code>
+     */
+    List<Point> createPointList( GeometryFactory geomFac, ICRS crs, double[] values ) {
+        List<Point> points = new ArrayList<Point>( numTuples );
+        int tupleStart = 0;
+        for ( int i = 0; i < numTuples; i++ ) {
+            int tupleEnd = tupleEnds[i];
+            points.add( geomFac.createPoint( null, Arrays.copyOfRange( values, tupleStart, tupleEnd ), crs ) );
+            tupleStart = tupleEnd;
+        }
+        return points;
+    }
+
+    private double[] parse( XMLStreamReaderWrapper xmlStream )
+                            throws XMLParsingException, XMLStreamException {
+        if ( xmlStream.getEventType() != START_ELEMENT ) {
+            throw new XMLStreamException( "parser must be on START_ELEMENT to read next text", xmlStream.getLocation() );
+        }
+        this.xmlStream = xmlStream;
+        numValues = 0;
+        tokenLength = 0;
+        numTuples = 0;
+        tupleDimension = -1;
+        try {
+            int eventType = xmlStream.next();
+            while ( eventType != END_ELEMENT ) {
+                if ( eventType == CHARACTERS || eventType == CDATA || eventType == SPACE ) {
+                    scan( xmlStream.getTextCharacters(), xmlStream.getTextStart(), xmlStream.getTextLength() );
+                } else if ( eventType == ENTITY_REFERENCE ) {
+                    String text = xmlStream.getText();
+                    scan( text.toCharArray(), 0, text.length() );
+                } else if ( eventType == PROCESSING_INSTRUCTION || eventType == COMMENT ) {
+                    // skipping
+                } else if ( eventType == END_DOCUMENT ) {
+                    throw new XMLStreamException( "unexpected end of document when reading element text content",
+                                                  xmlStream.getLocation() );
+                } else if ( eventType == START_ELEMENT ) {
+                    throw new XMLStreamException( "element text content may not contain START_ELEMENT",
+                                                  xmlStream.getLocation() );
+                } else {
+                    throw new XMLStreamException( "Unexpected event type " + eventType, xmlStream.getLocation() );
+                }
+                eventType = xmlStream.next();
+            }
+            if ( tokenLength > 0 ) {
+                addValue( token, 0, tokenLength );
+                tokenLength = 0;
+            }
+            if ( coordinates ) {
+                endTuple();
+            }
+            return Arrays.copyOf( values, numValues );
+        } finally {
+            this.xmlStream = null;
+        }
+    }
+
+    private void scan( char[] chars, int start, int length ) {
+        int end = start + length;
+        int valueStart = -1;
+        for ( int i = start; i < end; i++ ) {
+            char c = chars[i];
+            int charType = getCharType( c );
+            if ( charType == VALUE_CHAR ) {
+                if ( valueStart < 0 ) {
+                    valueStart = i;
+                }
+                continue;
+            }
+            if ( valueStart >= 0 ) {
+                endValue( chars, valueStart, i );
+                valueStart = -1;
+            } else if ( tokenLength > 0 ) {
+                endValue( chars, i, i );
+            }
+            if ( charType == TUPLE_SEPARATOR ) {
+                endTuple();
+            }
+        }
+        if ( valueStart >= 0 ) {
+            // value continues in the next character event
+            appendToToken( chars, valueStart, end );
+        }
+    }
+
+    private int getCharType( char c ) {
+        if ( !coordinates ) {
+            return c <= ' ' ? VALUE_SEPARATOR : VALUE_CHAR;
+        }
+        if ( c == '\n' || c == '\r' || tupleSeparator.indexOf( c ) >= 0 ) {
+            return TUPLE_SEPARATOR;
+        }
+        if ( coordinateSeparator.indexOf( c ) >= 0 ) {
+            return VALUE_SEPARATOR;
+        }
+        if ( c <= ' ' && whitespaceSeparatesTuples ) {
+            return TUPLE_SEPARATOR;
+        }
+        return VALUE_CHAR;
+    }
+
+    private void endValue( char[] chars, int start, int end ) {
+        if ( tokenLength > 0 ) {
+            appendToToken( chars, start, end );
+            addValue( token, 0, tokenLength );
+            tokenLength = 0;
+        } else {
+            addValue( chars, start, end - start );
+        }
+    }
+
+    private void appendToToken( char[] chars, int start, int end ) {
+        int length = end - start;
+        if ( tokenLength + length > token.length ) {
+            token = Arrays.copyOf( token, Math.max( token.length * 2, tokenLength + length ) );
+        }
+        System.arraycopy( chars, start, token, tokenLength, length );
+        tokenLength += length;
+    }
+
+    private void addValue( char[] chars, int offset, int length ) {
+        int start = offset;
+        int end = offset + length;
+        while ( start < end && chars[start] <= ' ' ) {
+            start++;
+        }
+        while ( end > start && chars[end - 1] <= ' ' ) {
+            end--;
+        }
+        if ( start == end ) {
+            return;
+        }
+        double value;
+        try {
+            value = parseDouble( chars, start, end - start );
+        } catch ( NumberFormatException e ) {
+            String msg = "Value '" + new String( chars, offset, length ) + "' cannot be parsed as a double.";
+            throw new XMLParsingException( xmlStream, msg );
+        }
+        if ( numValues == values.length ) {
+            values = Arrays.copyOf( values, values.length * 2 );
+        }
+        values[numValues++] = value;
+    }
+
+    private void endTuple() {
+        int tupleStart = numTuples == 0 ? 0 : tupleEnds[numTuples - 1];
+        int dim = numValues - tupleStart;
+        if ( dim == 0 ) {
+            return;
+        }
+        if ( numTuples == tupleEnds.length ) {
+            tupleEnds = Arrays.copyOf( tupleEnds, tupleEnds.length * 2 );
+        }
+        tupleEnds[numTuples] = numValues;
+        if ( numTuples == 0 ) {
+            tupleDimension = dim;
+        } else if ( dim != tupleDimension ) {
+            tupleDimension = -1;
+        }
+        numTuples++;
+    }
+
+    private static boolean isWhitespace( String s ) {
+        if ( s.length() == 0 ) {
+            return false;
+        }
+        for ( int i = 0; i < s.length(); i++ ) {
+            if ( s.charAt( i ) > ' ' ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the given characters as a double, yielding exactly the same result as {@link Double#parseDouble(String)}.
+     * <p>
+     * Plain decimal numbers with at most 15 significant digits and a moderate exponent are decoded without creating a
+     * string. All other input is delegated to {@link Double#parseDouble(String)}.
+     * </p>
+     * 
+     * @param chars
+     *            characters, must not be <code>null</code>
+     * @param offset
+     *            index of the first character
+     * @param length
+     *            number of characters, must be greater than zero
+     * @return parsed value
+     * @throws NumberFormatException
+     *             if the characters do not represent a double
+     */
+    static double parseDouble( char[] chars, int offset, int length )
+                            throws NumberFormatException {
+        int i = offset;
+        int end = offset + length;
+        boolean negative = false;
+        char c = chars[i];
+        if ( c == '-' ) {
+            negative = true;
+            i++;
+        } else if ( c == '+' ) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        while ( i < end && ( c = chars[i] ) >= '0' && c <= '9' ) {
+            seenDigit = true;
+            if ( mantissa != 0 || c != '0' ) {
+                if ( ++digits > MAX_FAST_DIGITS ) {
+                    return parseDoubleSlow( chars, offset, length );
+                }
+                mantissa = mantissa * 10 + ( c - '0' );
+            }
+            i++;
+        }
+        if ( i < end && chars[i] == '.' ) {
+            i++;
+            while ( i < end && ( c = chars[i] ) >= '0' && c <= '9' ) {
+                seenDigit = true;
+                if ( mantissa != 0 || c != '0' ) {
+                    if ( ++digits > MAX_FAST_DIGITS ) {
+                        return parseDoubleSlow( chars, offset, length );
+                    }
+                    mantissa = mantissa * 10 + ( c - '0' );
+                }
+                exponent--;
+                i++;
+            }
+        }
+        if ( !seenDigit ) {
+            return parseDoubleSlow( chars, offset, length );
+        }
+        if ( i < end && ( chars[i] == 'e' || chars[i] == 'E' ) ) {
+            i++;
+            boolean negativeExponent = false;
+            if ( i < end && chars[i] == '-' ) {
+                negativeExponent = true;
+                i++;
+            } else if ( i < end && chars[i] == '+' ) {
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            while ( i < end && ( c = chars[i] ) >= '0' && c <= '9' ) {
+                if ( i - exponentStart == MAX_FAST_EXPONENT_DIGITS ) {
+                    return parseDoubleSlow( chars, offset, length );
+                }
+                explicitExponent = explicitExponent * 10 + ( c - '0' );
+                i++;
+            }
+            if ( i == exponentStart ) {
+                return parseDoubleSlow( chars, offset, length );
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if ( i != end ) {
+            return parseDoubleSlow( chars, offset, length );
+        }
+        double value;
+        if ( mantissa == 0 ) {
+            value = 0.0;
+        } else if ( exponent == 0 ) {
+            value = mantissa;
+        } else if ( exponent > 0 && exponent < POWERS_OF_TEN.length ) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if ( exponent < 0 && -exponent < POWERS_OF_TEN.length ) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return parseDoubleSlow( chars, offset, length );
+        }
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow( char[] chars, int offset, int length ) {
+        return Double.parseDouble( new String( chars, offset, length ) );
+    }
+}
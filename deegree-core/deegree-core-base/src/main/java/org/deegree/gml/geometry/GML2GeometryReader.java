@@ -37,12 +37,10 @@ package org.deegree.gml.geometry;
 import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
 import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.StringTokenizer;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamConstants;
@@ -154,6 +152,8 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
 
     private GeometryFactory geomFac;
 
+    private final CoordinateListParser coordinateParser = new CoordinateListParser();
+
     /**
      * Creates a new {@link GML2GeometryReader} for the given {@link GMLStreamReader}.
      * 
@@ -653,24 +653,25 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
         ICRS crs = determineActiveCRS( xmlStream, defaultCRS );
         xmlStream.nextTag();
 
-        List<Point> points = null;
+        Points points = null;
         if ( xmlStream.getEventType() == XMLStreamConstants.START_ELEMENT ) {
             String name = xmlStream.getLocalName();
             if ( "coordinates".equals( name ) ) {
-                points = parseCoordinates( xmlStream, crs );
+                points = parsePackedCoordinates( xmlStream, crs );
                 xmlStream.nextTag();
             } else {
-                points = new LinkedList<Point>();
+                List<Point> pointList = new LinkedList<Point>();
                 do {
                     if ( "coord".equals( name ) ) {
                         double[] coords = parseCoordType( xmlStream );
                         // anonymous point (no registering necessary)
-                        points.add( geomFac.createPoint( null, coords, crs ) );
+                        pointList.add( geomFac.createPoint( null, coords, crs ) );
                     } else {
                         String msg = "Error in 'gml:LineString' element.";
                         throw new XMLParsingException( xmlStream, msg );
                     }
                 } while ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT );
+                points = geomFac.createPoints( pointList );
             }
         }
 
@@ -678,7 +679,7 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
             String msg = "Error in 'gml:LineString' element. Must consist of two points at least.";
             throw new XMLParsingException( xmlStream, msg );
         }
-        LineString lineString = geomFac.createLineString( gid, crs, geomFac.createPoints( points ) );
+        LineString lineString = geomFac.createLineString( gid, crs, points );
         idContext.addObject( lineString );
         return lineString;
     }
@@ -785,8 +786,9 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
         if ( xmlStream.getEventType() == XMLStreamConstants.START_ELEMENT ) {
             String name = xmlStream.getLocalName();
             if ( "coordinates".equals( name ) ) {
-                controlPoints = parseCoordinates( xmlStream, crs );
+                Points points = parsePackedCoordinates( xmlStream, crs );
                 xmlStream.nextTag();
+                return points;
             } else {
                 controlPoints = new LinkedList<Point>();
                 do {
@@ -905,6 +907,22 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
 
     private List<Point> parseCoordinates( XMLStreamReaderWrapper xmlStream, ICRS crs )
                             throws XMLStreamException {
+        double[] coords = parseCoordinatesValues( xmlStream );
+        return coordinateParser.createPointList( geomFac, crs, coords );
+    }
+
+    private Points parsePackedCoordinates( XMLStreamReaderWrapper xmlStream, ICRS crs )
+                            throws XMLStreamException {
+        double[] coords = parseCoordinatesValues( xmlStream );
+        int coordDim = coordinateParser.getTupleDimension();
+        if ( coordDim > 0 ) {
+            return geomFac.createPoints( crs, coords, coordDim );
+        }
+        return geomFac.createPoints( coordinateParser.createPointList( geomFac, crs, coords ) );
+    }
+
+    private double[] parseCoordinatesValues( XMLStreamReaderWrapper xmlStream )
+                            throws XMLStreamException {
 
         String decimalSeparator = xmlStream.getAttributeValueWDefault( "decimal", "." );
         if ( !".".equals( decimalSeparator ) ) {
@@ -914,37 +932,7 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
 
         String coordinateSeparator = xmlStream.getAttributeValueWDefault( "cs", "," );
         String tupleSeparator = xmlStream.getAttributeValueWDefault( "ts", " " );
-
-        String text = xmlStream.getElementText();
-
-        List<String> tuples = new LinkedList<String>();
-        StringTokenizer tupleTokenizer = new StringTokenizer( text, tupleSeparator + "\n" );
-        while ( tupleTokenizer.hasMoreTokens() ) {
-            String newToken = tupleTokenizer.nextToken();
-            if ( newToken != null && newToken.trim().length() > 0 ) {
-                tuples.add( newToken );
-            }
-        }
-
-        List<Point> points = new ArrayList<Point>( tuples.size() );
-        for ( int i = 0; i < tuples.size(); i++ ) {
-            StringTokenizer coordinateTokenizer = new StringTokenizer( tuples.get( i ), coordinateSeparator );
-            List<String> tokens = new ArrayList<String>();
-            while ( coordinateTokenizer.hasMoreTokens() ) {
-                tokens.add( coordinateTokenizer.nextToken() );
-            }
-            double[] tuple = new double[tokens.size()];
-            for ( int j = 0; j < tuple.length; j++ ) {
-                try {
-                    tuple[j] = Double.parseDouble( tokens.get( j ) );
-                } catch ( NumberFormatException e ) {
-                    String msg = "Value '" + tokens.get( j ) + "' cannot be parsed as a double.";
-                    throw new XMLParsingException( xmlStream, msg );
-                }
-            }
-            points.add( geomFac.createPoint( null, tuple, crs ) );
-        }
-        return points;
+        return coordinateParser.parseCoordinates( xmlStream, coordinateSeparator, tupleSeparator );
     }
 
     private ICRS determineActiveCRS( XMLStreamReaderWrapper xmlStream, ICRS defaultCRS ) {
@@ -37,9 +37,7 @@ package org.deegree.gml.geometry;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.StringTokenizer;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamConstants;
@@ -54,6 +52,7 @@ import org.deegree.cs.coordinatesystems.CRS;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
 import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.points.Points;
 import org.deegree.geometry.primitive.Point;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.commons.AbstractGMLObjectReader;
@@ -82,6 +81,8 @@ class GML3GeometryBaseReader extends AbstractGMLObjectReader {
 
     private final int defaultCoordDim;
 
+    private final CoordinateListParser coordinateParser = new CoordinateListParser();
+
     protected GML3GeometryBaseReader( GMLStreamReader gmlStream ) {
         super( gmlStream );
         this.geomFac = gmlStream.getGeometryFactory();
@@ -95,29 +96,38 @@ class GML3GeometryBaseReader extends AbstractGMLObjectReader {
                             throws XMLParsingException, XMLStreamException {
 
         ICRS crs = determineActiveCRS( xmlStream, defaultCRS );
-
-        String s = xmlStream.getElementText();
-        // don't use String.split(regex) here (speed)
-        StringTokenizer st = new StringTokenizer( s );
-        List<String> tokens = new ArrayList<String>();
-        while ( st.hasMoreTokens() ) {
-            tokens.add( st.nextToken() );
-        }
-        double[] doubles = new double[tokens.size()];
-        for ( int i = 0; i < doubles.length; i++ ) {
-            try {
-                doubles[i] = Double.parseDouble( tokens.get( i ) );
-            } catch ( NumberFormatException e ) {
-                String msg = "Value '" + tokens.get( i ) + "' cannot be parsed as a double.";
-                throw new XMLParsingException( xmlStream, msg );
-            }
-        }
+        double[] doubles = coordinateParser.parseDoubles( xmlStream );
         return geomFac.createPoint( null, doubles, crs );
     }
 
     protected List<Point> parsePosList( XMLStreamReaderWrapper xmlStream, ICRS crs )
                             throws XMLParsingException, XMLStreamException {
 
+        int coordDim = determinePosListDimension( xmlStream, crs );
+        double[] coords = parsePosListCoordinates( xmlStream, coordDim );
+
+        List<Point> points = new ArrayList<Point>( coords.length / coordDim );
+        for ( int i = 0; i < coords.length; i += coordDim ) {
+            double[] pointCoords = new double[coordDim];
+            System.arraycopy( coords, i, pointCoords, 0, coordDim );
+            points.add( geomFac.createPoint( null, pointCoords, crs ) );
+        }
+        return points;
+    }
+
+    /**
+     * Parses a <code>gml:posList</code> element into a {@link Points} object that is backed by a single
+     * <code>double</code> array.
+     */
+    protected Points parsePackedPosList( XMLStreamReaderWrapper xmlStream, ICRS crs )
+                            throws XMLParsingException, XMLStreamException {
+
+        int coordDim = determinePosListDimension( xmlStream, crs );
+        double[] coords = parsePosListCoordinates( xmlStream, coordDim );
+        return geomFac.createPoints( crs, coords, coordDim );
+    }
+
+    private int determinePosListDimension( XMLStreamReaderWrapper xmlStream, ICRS crs ) {
         int coordDim = determineCoordDimensions( xmlStream, -1 );
         if ( coordDim == -1 && crs != null ) {
             try {
@@ -133,41 +143,41 @@ class GML3GeometryBaseReader extends AbstractGMLObjectReader {
             }
             coordDim = defaultCoordDim;
         }
+        return coordDim;
+    }
 
-        String s = xmlStream.getElementText();
-        // don't use String.split(regex) here (speed)
-        StringTokenizer st = new StringTokenizer( s );
-        List<String> tokens = new ArrayList<String>();
-        while ( st.hasMoreTokens() ) {
-            tokens.add( st.nextToken() );
-        }
-        int numCoords = tokens.size();
-        if ( numCoords % coordDim != 0 ) {
-            String msg = "Cannot parse 'gml:posList': contains " + tokens.size()
+    private double[] parsePosListCoordinates( XMLStreamReaderWrapper xmlStream, int coordDim )
+                            throws XMLParsingException, XMLStreamException {
+        double[] coords = coordinateParser.parseDoubles( xmlStream );
+        if ( coords.length % coordDim != 0 ) {
+            String msg = "Cannot parse 'gml:posList': contains " + coords.length
                          + " values, but coordinate dimension is " + coordDim + ". This does not match.";
             throw new XMLParsingException( xmlStream, msg );
         }
+        return coords;
+    }
 
-        int numPoints = numCoords / coordDim;
-        List<Point> points = new ArrayList<Point>();
+    protected List<Point> parseCoordinates( XMLStreamReaderWrapper xmlStream, ICRS crs )
+                            throws XMLParsingException, XMLStreamException {
+        double[] coords = parseCoordinatesValues( xmlStream );
+        return coordinateParser.createPointList( geomFac, crs, coords );
+    }
 
-        int tokenPos = 0;
-        for ( int i = 0; i < numPoints; i++ ) {
-            double[] pointCoords = new double[coordDim];
-            for ( int j = 0; j < coordDim; j++ ) {
-                try {
-                    pointCoords[j] = Double.parseDouble( tokens.get( tokenPos++ ) );
-                } catch ( NumberFormatException e ) {
-                    String msg = "Value '" + tokens.get( tokenPos - 1 ) + "' cannot be parsed as a double.";
-                    throw new XMLParsingException( xmlStream, msg );
-                }
-            }
-            points.add( geomFac.createPoint( null, pointCoords, crs ) );
+    /**
+     * Parses a <code>gml:coordinates</code> element into a {@link Points} object. If all tuples have the same
+     * dimension, the points are backed by a single <code>double</code> array.
+     */
+    protected Points parsePackedCoordinates( XMLStreamReaderWrapper xmlStream, ICRS crs )
+                            throws XMLParsingException, XMLStreamException {
+        double[] coords = parseCoordinatesValues( xmlStream );
+        int coordDim = coordinateParser.getTupleDimension();
+        if ( coordDim > 0 ) {
+            return geomFac.createPoints( crs, coords, coordDim );
         }
-        return points;
+        return geomFac.createPoints( coordinateParser.createPointList( geomFac, crs, coords ) );
     }
 
-    protected List<Point> parseCoordinates( XMLStreamReaderWrapper xmlStream, ICRS crs )
+    private double[] parseCoordinatesValues( XMLStreamReaderWrapper xmlStream )
                             throws XMLParsingException, XMLStreamException {
 
         String decimalSeparator = xmlStream.getAttributeValueWDefault( "decimal", "." );
@@ -178,34 +188,7 @@ class GML3GeometryBaseReader extends AbstractGMLObjectReader {
 
         String coordinateSeparator = xmlStream.getAttributeValueWDefault( "cs", "," );
         String tupleSeparator = xmlStream.getAttributeValueWDefault( "ts", " " );
-
-        String text = xmlStream.getElementText();
-
-        List<String> tuples = new LinkedList<String>();
-        StringTokenizer tupleTokenizer = new StringTokenizer( text, tupleSeparator );
-        while ( tupleTokenizer.hasMoreTokens() ) {
-            tuples.add( tupleTokenizer.nextToken() );
-        }
-
-        List<Point> points = new ArrayList<Point>( tuples.size() );
-        for ( int i = 0; i < tuples.size(); i++ ) {
-            StringTokenizer coordinateTokenizer = new StringTokenizer( tuples.get( i ), coordinateSeparator );
-            List<String> tokens = new ArrayList<String>();
-            while ( coordinateTokenizer.hasMoreTokens() ) {
-                tokens.add( coordinateTokenizer.nextToken() );
-            }
-            double[] tuple = new double[tokens.size()];
-            for ( int j = 0; j < tuple.length; j++ ) {
-                try {
-                    tuple[j] = Double.parseDouble( tokens.get( j ) );
-                } catch ( NumberFormatException e ) {
-                    String msg = "Value '" + tokens.get( j ) + "' cannot be parsed as a double.";
-                    throw new XMLParsingException( xmlStream, msg );
-                }
-            }
-            points.add( geomFac.createPoint( null, tuple, crs ) );
-        }
-        return points;
+        return coordinateParser.parseCoordinates( xmlStream, coordinateSeparator, tupleSeparator );
     }
 
     protected double[] parseCoordType( XMLStreamReaderWrapper xmlStream )
@@ -328,23 +311,7 @@ class GML3GeometryBaseReader extends AbstractGMLObjectReader {
 
     protected double[] parseDoubleList( XMLStreamReaderWrapper xmlStream )
                             throws XMLParsingException, XMLStreamException {
-        String s = xmlStream.getElementText();
-        // don't use String.split(regex) here (speed)
-        StringTokenizer st = new StringTokenizer( s );
-        List<String> tokens = new ArrayList<String>();
-        while ( st.hasMoreTokens() ) {
-            tokens.add( st.nextToken() );
-        }
-        double[] doubles = new double[tokens.size()];
-        for ( int i = 0; i < doubles.length; i++ ) {
-            try {
-                doubles[i] = Double.parseDouble( tokens.get( i ) );
-            } catch ( NumberFormatException e ) {
-                String msg = "Value '" + tokens.get( i ) + "' cannot be parsed as a double.";
-                throw new XMLParsingException( xmlStream, msg );
-            }
-        }
-        return doubles;
+        return coordinateParser.parseDoubles( xmlStream );
     }
 
     /**
@@ -143,8 +143,18 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
 
     private final SFSProfiler simplifier;
 
+    private static final int ORDINATE_BUFFER_SIZE = 4096;
+
     private CoordinateFormatter formatter;
 
+    // set if the formatter can write into the ordinate buffer directly
+    private DecimalCoordinateFormatter decimalFormatter;
+
+    // collects the text content of coordinate elements (see #appendOrdinate(double,boolean))
+    private final char[] ordinateBuffer = new char[ORDINATE_BUFFER_SIZE];
+
+    private int ordinateBufferLength;
+
     private CoordinateTransformer transformer;
 
     private GeometryTransformer geoTransformer;
@@ -179,6 +189,9 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
         if ( formatter == null ) {
             formatter = new DecimalCoordinateFormatter( crsUnits );
         }
+        if ( formatter instanceof DecimalCoordinateFormatter ) {
+            decimalFormatter = (DecimalCoordinateFormatter) formatter;
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -417,10 +430,8 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
 
         writer.writeStartElement( gmlNs, "pos" );
         double[] ordinates = getTransformedCoordinate( point.getCoordinateSystem(), point.getAsArray() );
-        writer.writeCharacters( formatter.format( ordinates[0] ) );
-        for ( int i = 1; i < ordinates.length; i++ ) {
-            writer.writeCharacters( " " + formatter.format( ordinates[i] ) );
-        }
+        appendOrdinates( ordinates );
+        flushOrdinates();
         writer.writeEndElement();
     }
 
@@ -883,10 +894,8 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
             writer.writeStartElement( "gml", "lowerCorner", gmlNs );
         }
         double[] ordinates = env.getMin().getAsArray();
-        writer.writeCharacters( formatter.format( ordinates[0] ) );
-        for ( int i = 1; i < ordinates.length; i++ ) {
-            writer.writeCharacters( " " + formatter.format( ordinates[i] ) );
-        }
+        appendOrdinates( ordinates );
+        flushOrdinates();
         writer.writeEndElement();
 
         if ( version == GML_30 ) {
@@ -895,10 +904,8 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
             writer.writeStartElement( "gml", "upperCorner", gmlNs );
         }
         ordinates = env.getMax().getAsArray();
-        writer.writeCharacters( formatter.format( ordinates[0] ) );
-        for ( int i = 1; i < ordinates.length; i++ ) {
-            writer.writeCharacters( " " + formatter.format( ordinates[i] ) );
-        }
+        appendOrdinates( ordinates );
+        flushOrdinates();
         writer.writeEndElement();
         writer.writeEndElement();
     }
@@ -1514,14 +1521,11 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
             for ( final Point p : points ) {
                 final double[] ordinates = getTransformedCoordinate( p.getCoordinateSystem(), p.getAsArray() );
                 for ( int i = 0; i < ordinates.length; i++ ) {
-                    if ( !first ) {
-                        writer.writeCharacters( " " + formatter.format( ordinates[i] ) );
-                    } else {
-                        writer.writeCharacters( formatter.format( ordinates[i] ) );
-                        first = false;
-                    }
+                    appendOrdinate( ordinates[i], !first );
+                    first = false;
                 }
             }
+            flushOrdinates();
             writer.writeEndElement();
         } else {
             for ( final Point p : points ) {
@@ -1530,6 +1534,53 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
         }
     }
 
+    private void appendOrdinates( double[] ordinates )
+                            throws XMLStreamException {
+        for ( int i = 0; i < ordinates.length; i++ ) {
+            appendOrdinate( ordinates[i], i > 0 );
+        }
+    }
+
+    /**
+     * Appends the formatted ordinate to the ordinate buffer, which is passed to the writer in chunks (see
+     * {@link #flushOrdinates()}).
+     */
+    private void appendOrdinate( double ordinate, boolean separator )
+                            throws XMLStreamException {
+        if ( ordinateBufferLength + DecimalCoordinateFormatter.MAX_FAST_CHARS + 1 > ORDINATE_BUFFER_SIZE ) {
+            flushOrdinates();
+        }
+        if ( separator ) {
+            ordinateBuffer[ordinateBufferLength++] = ' ';
+        }
+        if ( decimalFormatter != null ) {
+            int end = decimalFormatter.format( ordinate, ordinateBuffer, ordinateBufferLength );
+            if ( end >= 0 ) {
+                ordinateBufferLength = end;
+                return;
+            }
+        }
+        String s = formatter.format( ordinate );
+        if ( ordinateBufferLength + s.length() > ORDINATE_BUFFER_SIZE ) {
+            flushOrdinates();
+            writer.writeCharacters( s );
+        } else {
+            s.getChars( 0, s.length(), ordinateBuffer, ordinateBufferLength );
+            ordinateBufferLength += s.length();
+        }
+    }
+
+    /**
+     * Writes the contents of the ordinate buffer, must be invoked before the coordinate element is closed.
+     */
+    private void flushOrdinates()
+                            throws XMLStreamException {
+        if ( ordinateBufferLength > 0 ) {
+            writer.writeCharacters( ordinateBuffer, 0, ordinateBufferLength );
+            ordinateBufferLength = 0;
+        }
+    }
+
     private void exportPointsAsProperties( final Points points )
                             throws XMLStreamException, UnknownCRSException, TransformationException {
         for ( final Point point : points ) {
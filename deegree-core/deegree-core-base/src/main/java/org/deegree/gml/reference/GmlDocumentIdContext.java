@@ -158,6 +158,19 @@ public class GmlDocumentIdContext implements GMLReferenceResolver {
         return refs;
     }
 
+    /**
+     * Removes all {@link GMLObject} and {@link GMLReference} instances that have been added.
+     * <p>
+     * Allows to release the memory held by objects that have already been processed when reading large documents in
+     * streaming mode.
+     * </p>
+     */
+    public void clear() {
+        idToObject.clear();
+        refs.clear();
+        localRefs.clear();
+    }
+
     @Override
     public GMLObject getObject( String uri, String baseURL ) {
         GMLObject object = null;
@@ -0,0 +1,178 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.deegree.feature.Feature;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParallelFeatureInputStream}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ParallelFeatureInputStreamTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = newFixedThreadPool( 2 );
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOrderIsPreserved() {
+        List<List<Feature>> features = new ArrayList<List<Feature>>();
+        List<Callable<FeatureInputStream>> sources = new ArrayList<Callable<FeatureInputStream>>();
+        for ( int i = 0; i < 3; i++ ) {
+            List<Feature> sourceFeatures = createFeatures( 10 );
+            features.add( sourceFeatures );
+            sources.add( createSource( mockStream( sourceFeatures.iterator() ) ) );
+        }
+
+        // queue size of 1 forces the sources to wait for the consumer
+        FeatureInputStream stream = new ParallelFeatureInputStream( sources, executor, 1 );
+        Iterator<Feature> iter = stream.iterator();
+        for ( List<Feature> sourceFeatures : features ) {
+            for ( Feature feature : sourceFeatures ) {
+                assertTrue( iter.hasNext() );
+                assertSame( feature, iter.next() );
+            }
+        }
+        assertFalse( iter.hasNext() );
+        stream.close();
+    }
+
+    @Test
+    public void testSourcesAreClosed() {
+        FeatureInputStream source1 = mockStream( createFeatures( 5 ).iterator() );
+        FeatureInputStream source2 = mockStream( createFeatures( 5 ).iterator() );
+        List<Callable<FeatureInputStream>> sources = new ArrayList<Callable<FeatureInputStream>>();
+        sources.add( createSource( source1 ) );
+        sources.add( createSource( source2 ) );
+
+        FeatureInputStream stream = new ParallelFeatureInputStream( sources, executor, 100 );
+        assertEquals( 10, stream.count() );
+        verify( source1, timeout( 1000 ) ).close();
+        verify( source2, timeout( 1000 ) ).close();
+    }
+
+    @Test
+    public void testCloseStopsSources() {
+        FeatureInputStream source1 = mockStream( createFeatures( 100 ).iterator() );
+        FeatureInputStream source2 = mockStream( createFeatures( 100 ).iterator() );
+        List<Callable<FeatureInputStream>> sources = new ArrayList<Callable<FeatureInputStream>>();
+        sources.add( createSource( source1 ) );
+        sources.add( createSource( source2 ) );
+
+        FeatureInputStream stream = new ParallelFeatureInputStream( sources, executor, 1 );
+        assertTrue( stream.iterator().hasNext() );
+        stream.close();
+        verify( source1, timeout( 1000 ) ).close();
+        verify( source2, timeout( 1000 ) ).close();
+    }
+
+    @Test
+    public void testExceptionIsPropagated() {
+        final RuntimeException exception = new RuntimeException( "source failed" );
+        List<Callable<FeatureInputStream>> sources = new ArrayList<Callable<FeatureInputStream>>();
+        sources.add( createSource( mockStream( createFeatures( 2 ).iterator() ) ) );
+        sources.add( new Callable<FeatureInputStream>() {
+            @Override
+            public FeatureInputStream call() {
+                throw exception;
+            }
+        } );
+
+        FeatureInputStream stream = new ParallelFeatureInputStream( sources, executor, 10 );
+        Iterator<Feature> iter = stream.iterator();
+        iter.next();
+        iter.next();
+        try {
+            iter.hasNext();
+            fail( "Expected exception." );
+        } catch ( RuntimeException e ) {
+            assertSame( exception, e.getCause() );
+        }
+    }
+
+    private List<Feature> createFeatures( int num ) {
+        List<Feature> features = new ArrayList<Feature>( num );
+        for ( int i = 0; i < num; i++ ) {
+            features.add( mock( Feature.class ) );
+        }
+        return features;
+    }
+
+    private FeatureInputStream mockStream( Iterator<Feature> iter ) {
+        FeatureInputStream fis = mock( FeatureInputStream.class );
+        when( fis.iterator() ).thenReturn( iter );
+        return fis;
+    }
+
+    private Callable<FeatureInputStream> createSource( final FeatureInputStream fis ) {
+        return new Callable<FeatureInputStream>() {
+            @Override
+            public FeatureInputStream call() {
+                return fis;
+            }
+        };
+    }
+}
@@ -0,0 +1,148 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Point;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CoordinateListParser}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CoordinateListParserTest {
+
+    @Test
+    public void testParseDoubleSameAsJdk() {
+        String[] values = { "0", "-0", "+1", "1.", ".5", "0.05", "1e5", "1E-5", "-1.5e+3", "7.123456789",
+                           "3456789.12345", "9007199254740993", "123456789012345678", "1e-400", "1e400", "NaN",
+                           "-Infinity", "1.0d", "0x1p3" };
+        for ( String value : values ) {
+            assertParsedLikeJdk( value );
+        }
+        Random rnd = new Random( 1 );
+        for ( int i = 0; i < 100000; i++ ) {
+            double d = ( rnd.nextDouble() - 0.5 ) * Math.pow( 10, rnd.nextInt( 20 ) - 10 );
+            assertParsedLikeJdk( Double.toString( d ) );
+            assertParsedLikeJdk( String.format( "%." + rnd.nextInt( 12 ) + "f", d ).replace( ',', '.' ) );
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseDoubleInvalid() {
+        CoordinateListParser.parseDouble( "1.2.3".toCharArray(), 0, 5 );
+    }
+
+    @Test
+    public void testParseDoubles()
+                            throws XMLStreamException {
+        XMLStreamReaderWrapper xmlStream = getReader( "<posList> 1.5  2\n\t3e2 -4 <!-- c -->5 <![CDATA[6]]> </posList>" );
+        double[] values = new CoordinateListParser().parseDoubles( xmlStream );
+        assertArrayEquals( new double[] { 1.5, 2.0, 300.0, -4.0, 5.0, 6.0 }, values, 0.0 );
+        assertEquals( XMLStreamReader.END_ELEMENT, xmlStream.getEventType() );
+    }
+
+    @Test
+    public void testParseDoublesEmpty()
+                            throws XMLStreamException {
+        assertEquals( 0, new CoordinateListParser().parseDoubles( getReader( "<posList/>" ) ).length );
+    }
+
+    @Test(expected = XMLParsingException.class)
+    public void testParseDoublesInvalid()
+                            throws XMLStreamException {
+        new CoordinateListParser().parseDoubles( getReader( "<posList>1 x2 3</posList>" ) );
+    }
+
+    @Test
+    public void testParseCoordinatesDefaultSeparators()
+                            throws XMLStreamException {
+        CoordinateListParser parser = new CoordinateListParser();
+        double[] values = parser.parseCoordinates( getReader( "<coordinates>1,2 3,4\n 5,6 </coordinates>" ), ",", " " );
+        assertArrayEquals( new double[] { 1, 2, 3, 4, 5, 6 }, values, 0.0 );
+        assertEquals( 2, parser.getTupleDimension() );
+    }
+
+    @Test
+    public void testParseCoordinatesCustomSeparators()
+                            throws XMLStreamException {
+        CoordinateListParser parser = new CoordinateListParser();
+        double[] values = parser.parseCoordinates( getReader( "<coordinates>1 ; 2 ; 3|4;5;6|</coordinates>" ), ";",
+                                                   "|" );
+        assertArrayEquals( new double[] { 1, 2, 3, 4, 5, 6 }, values, 0.0 );
+        assertEquals( 3, parser.getTupleDimension() );
+    }
+
+    @Test
+    public void testParseCoordinatesMixedDimensions()
+                            throws XMLStreamException {
+        CoordinateListParser parser = new CoordinateListParser();
+        double[] values = parser.parseCoordinates( getReader( "<coordinates>1,2,3 4,5</coordinates>" ), ",", " " );
+        assertEquals( -1, parser.getTupleDimension() );
+        List<Point> points = parser.createPointList( new GeometryFactory(), null, values );
+        assertEquals( 2, points.size() );
+        assertArrayEquals( new double[] { 1, 2, 3 }, points.get( 0 ).getAsArray(), 0.0 );
+        assertArrayEquals( new double[] { 4, 5 }, points.get( 1 ).getAsArray(), 0.0 );
+    }
+
+    private void assertParsedLikeJdk( String s ) {
+        char[] chars = ( "  " + s + " " ).toCharArray();
+        assertEquals( s, Double.doubleToLongBits( Double.parseDouble( s ) ),
+                      Double.doubleToLongBits( CoordinateListParser.parseDouble( chars, 2, s.length() ) ) );
+    }
+
+    private XMLStreamReaderWrapper getReader( String xml )
+                            throws XMLStreamException {
+        XMLStreamReader xmlReader = XMLInputFactory.newInstance().createXMLStreamReader( new StringReader( xml ) );
+        xmlReader.nextTag();
+        return new XMLStreamReaderWrapper( xmlReader, null );
+    }
+}
@@ -0,0 +1,364 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.deegree.commons.utils.Pair;
+
+/**
+ * Read-only, memory-mapped R-tree with <code>long</code> values.
+ * <p>
+ * The tree is packed bottom-up after sorting the entries along a Hilbert curve (see
+ * {@link #write(File, List, boolean, int)}) and stored as flat arrays of float envelopes and long values, level by
+ * level (leaves first, root last). Querying reads the mapped file directly without deserializing any nodes, so the
+ * heap footprint is independent of the number of entries and queries from multiple threads do not need
+ * synchronization.
+ * </p>
+ * <p>
+ * File layout (big endian): magic, version, node size, number of entries, flag, number of levels (all ints), the end
+ * index of each level (ints), then the envelopes of all nodes (4 floats each), then the values of all nodes (longs,
+ * for leaves the entry value, for inner nodes the index of the first child).
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class PackedRTree extends SpatialIndex<Long> {
+
+    private static final int MAGIC = 0x44505254; // "DPRT"
+
+    private static final int VERSION = 1;
+
+    private static final int HILBERT_MAX = ( 1 << 16 ) - 1;
+
+    private final ByteBuffer buffer;
+
+    private final int nodeSize;
+
+    private final int numItems;
+
+    private final boolean flag;
+
+    private final int[] levelBounds;
+
+    private final int boxesOffset;
+
+    private final int valuesOffset;
+
+    private PackedRTree( ByteBuffer buffer )
+                            throws IOException {
+        this.buffer = buffer;
+        if ( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != VERSION ) {
+            throw new IOException( "Not a packed r-tree index file (or unsupported version)." );
+        }
+        nodeSize = buffer.getInt( 8 );
+        numItems = buffer.getInt( 12 );
+        flag = buffer.getInt( 16 ) != 0;
+        int numLevels = buffer.getInt( 20 );
+        levelBounds = new int[numLevels];
+        for ( int i = 0; i < numLevels; ++i ) {
+            levelBounds[i] = buffer.getInt( 24 + 4 * i );
+        }
+        int numNodes = numLevels == 0 ? 0 : levelBounds[numLevels - 1];
+        boxesOffset = 24 + 4 * numLevels;
+        valuesOffset = boxesOffset + 16 * numNodes;
+        if ( buffer.capacity() < valuesOffset + 8L * numNodes ) {
+            throw new IOException( "Packed r-tree index file is truncated." );
+        }
+    }
+
+    /**
+     * Opens a packed r-tree that has been written with {@link #write(File, List, boolean, int)}.
+     * 
+     * @param file
+     *            index file, must not be <code>null</code>
+     * @return the index, never <code>null</code>
+     * @throws IOException
+     *             if the file cannot be read or is not a (complete) packed r-tree
+     */
+    public static PackedRTree open( File file )
+                            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            FileChannel channel = raf.getChannel();
+            if ( channel.size() > Integer.MAX_VALUE ) {
+                throw new IOException( "Packed r-tree index file '" + file + "' is too large." );
+            }
+            // the mapping stays valid after closing the channel
+            return new PackedRTree( channel.map( MapMode.READ_ONLY, 0, channel.size() ) );
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Builds a packed r-tree from the given entries and writes it to the given file.
+     * 
+     * @param file
+     *            index file to write, must not be <code>null</code>
+     * @param entries
+     *            envelopes (minx, miny, maxx, maxy) and values, envelopes may be <code>null</code> (entry is never
+     *            returned), must not be <code>null</code>
+     * @param flag
+     *            additional flag to store with the index (see {@link #getFlag()})
+     * @param nodeSize
+     *            maximum number of children per node, must be at least 2
+     * @throws IOException
+     * @throws IllegalArgumentException
+     *             if the node size is less than 2
+     */
+    public static void write( File file, List<Pair<float[], Long>> entries, boolean flag, int nodeSize )
+                            throws IOException {
+        if ( nodeSize < 2 ) {
+            throw new IllegalArgumentException( "Node size must be at least 2, but is " + nodeSize + "." );
+        }
+        final List<Pair<float[], Long>> items = new ArrayList<Pair<float[], Long>>( entries.size() );
+        float[] extent = null;
+        for ( Pair<float[], Long> entry : entries ) {
+            if ( entry.first == null ) {
+                continue;
+            }
+            items.add( entry );
+            extent = extent == null ? Arrays.copyOf( entry.first, 4 ) : union( extent, entry.first );
+        }
+
+        if ( extent != null ) {
+            final float[] ext = extent;
+            final long[] hilbert = new long[items.size()];
+            Integer[] order = new Integer[items.size()];
+            for ( int i = 0; i < hilbert.length; ++i ) {
+                hilbert[i] = hilbert( items.get( i ).first, ext );
+                order[i] = i;
+            }
+            Arrays.sort( order, new Comparator<Integer>() {
+                @Override
+                public int compare( Integer a, Integer b ) {
+                    long ha = hilbert[a];
+                    long hb = hilbert[b];
+                    return ha < hb ? -1 : ( ha == hb ? 0 : 1 );
+                }
+            } );
+            List<Pair<float[], Long>> sorted = new ArrayList<Pair<float[], Long>>( items.size() );
+            for ( Integer i : order ) {
+                sorted.add( items.get( i ) );
+            }
+            items.clear();
+            items.addAll( sorted );
+        }
+
+        // calculate level bounds
+        List<Integer> bounds = new ArrayList<Integer>();
+        int n = items.size();
+        int numNodes = n;
+        if ( n > 0 ) {
+            bounds.add( numNodes );
+            while ( n > 1 ) {
+                n = ( n + nodeSize - 1 ) / nodeSize;
+                numNodes += n;
+                bounds.add( numNodes );
+            }
+        }
+
+        float[][] boxes = new float[numNodes][];
+        long[] values = new long[numNodes];
+        for ( int i = 0; i < items.size(); ++i ) {
+            boxes[i] = items.get( i ).first;
+            values[i] = items.get( i ).second;
+        }
+        int pos = items.size();
+        int levelStart = 0;
+        for ( int level = 0; level < bounds.size() - 1; ++level ) {
+            int levelEnd = bounds.get( level );
+            for ( int child = levelStart; child < levelEnd; child += nodeSize ) {
+                float[] box = Arrays.copyOf( boxes[child], 4 );
+                for ( int i = child + 1; i < Math.min( child + nodeSize, levelEnd ); ++i ) {
+                    box = union( box, boxes[i] );
+                }
+                boxes[pos] = box;
+                values[pos] = child;
+                ++pos;
+            }
+            levelStart = levelEnd;
+        }
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+        try {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeInt( nodeSize );
+            out.writeInt( items.size() );
+            out.writeInt( flag ? 1 : 0 );
+            out.writeInt( bounds.size() );
+            for ( Integer bound : bounds ) {
+                out.writeInt( bound );
+            }
+            for ( float[] box : boxes ) {
+                for ( int i = 0; i < 4; ++i ) {
+                    out.writeFloat( box[i] );
+                }
+            }
+            for ( long value : values ) {
+                out.writeLong( value );
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the flag that has been stored with the index
+     */
+    public boolean getFlag() {
+        return flag;
+    }
+
+    /**
+     * @return the number of entries in the index
+     */
+    public int size() {
+        return numItems;
+    }
+
+    @Override
+    public List<Long> query( float[] envelope ) {
+        List<Long> result = new ArrayList<Long>();
+        if ( levelBounds.length == 0 ) {
+            return result;
+        }
+        int[] stack = new int[16];
+        int stackSize = 0;
+        int nodeIndex = levelBounds[levelBounds.length - 1] - 1;
+        int level = levelBounds.length - 1;
+        while ( true ) {
+            int end = Math.min( nodeIndex + nodeSize, levelBounds[level] );
+            for ( int pos = nodeIndex; pos < end; ++pos ) {
+                int offset = boxesOffset + 16 * pos;
+                if ( envelope != null
+                     && ( buffer.getFloat( offset + 8 ) < envelope[0] || buffer.getFloat( offset + 12 ) < envelope[1]
+                          || buffer.getFloat( offset ) > envelope[2] || buffer.getFloat( offset + 4 ) > envelope[3] ) ) {
+                    continue;
+                }
+                long value = buffer.getLong( valuesOffset + 8 * pos );
+                if ( nodeIndex < numItems ) {
+                    result.add( value );
+                } else {
+                    if ( stackSize + 2 > stack.length ) {
+                        stack = Arrays.copyOf( stack, stack.length * 2 );
+                    }
+                    stack[stackSize++] = (int) value;
+                    stack[stackSize++] = level - 1;
+                }
+            }
+            if ( stackSize == 0 ) {
+                break;
+            }
+            level = stack[--stackSize];
+            nodeIndex = stack[--stackSize];
+        }
+        return result;
+    }
+
+    @Override
+    public void insertBulk( List<Pair<float[], Long>> listOfObjects ) {
+        throw new UnsupportedOperationException( "A packed r-tree is read-only." );
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException( "A packed r-tree is read-only." );
+    }
+
+    @Override
+    public boolean insert( float[] envelope, Long object ) {
+        throw new UnsupportedOperationException( "A packed r-tree is read-only." );
+    }
+
+    @Override
+    public boolean remove( Long object ) {
+        throw new UnsupportedOperationException( "A packed r-tree is read-only." );
+    }
+
+    private static float[] union( float[] box1, float[] box2 ) {
+        box1[0] = Math.min( box1[0], box2[0] );
+        box1[1] = Math.min( box1[1], box2[1] );
+        box1[2] = Math.max( box1[2], box2[2] );
+        box1[3] = Math.max( box1[3], box2[3] );
+        return box1;
+    }
+
+    /**
+     * Calculates the position of the center of the given envelope on a Hilbert curve of order 16 covering the extent.
+     */
+    private static long hilbert( float[] box, float[] extent ) {
+        double width = extent[2] - extent[0];
+        double height = extent[3] - extent[1];
+        int x = width == 0 ? 0 : (int) ( HILBERT_MAX * ( ( box[0] + box[2] ) / 2 - extent[0] ) / width );
+        int y = height == 0 ? 0 : (int) ( HILBERT_MAX * ( ( box[1] + box[3] ) / 2 - extent[1] ) / height );
+        long d = 0;
+        for ( int s = 1 << 15; s > 0; s >>= 1 ) {
+            int rx = ( x & s ) > 0 ? 1 : 0;
+            int ry = ( y & s ) > 0 ? 1 : 0;
+            d += (long) s * s * ( ( 3 * rx ) ^ ry );
+            // rotate the quadrant
+            if ( ry == 0 ) {
+                if ( rx == 1 ) {
+                    x = HILBERT_MAX - x;
+                    y = HILBERT_MAX - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+}
@@ -46,6 +46,8 @@ import org.apache.commons.dbcp.DelegatingConnection;
 import org.apache.commons.dbcp.DriverManagerConnectionFactory;
 import org.apache.commons.dbcp.PoolableConnectionFactory;
 import org.apache.commons.dbcp.PoolingDataSource;
+import org.apache.commons.pool.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool.impl.GenericKeyedObjectPoolFactory;
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.deegree.commons.annotations.LoggingNotes;
 import org.slf4j.Logger;
@@ -82,6 +84,28 @@ public class ConnectionPool {
      */
     public ConnectionPool( String id, String connectURI, String user, String password, boolean readOnly, int minIdle,
                     int maxActive ) {
+        this( id, connectURI, user, password, readOnly, minIdle, maxActive, 0 );
+    }
+
+    /**
+     * Creates a new {@link ConnectionPool} instance that keeps a pool of prepared statements for each connection.
+     * <p>
+     * Statements that are prepared with the same SQL on the same connection are reused instead of being prepared
+     * again.
+     * </p>
+     * 
+     * @param id
+     * @param connectURI
+     * @param user
+     * @param password
+     * @param readOnly
+     * @param minIdle
+     * @param maxActive
+     * @param maxOpenPreparedStatements
+     *            maximum number of pooled statements per connection, 0 disables statement pooling
+     */
+    public ConnectionPool( String id, String connectURI, String user, String password, boolean readOnly, int minIdle,
+                    int maxActive, int maxOpenPreparedStatements ) {
 
         this.id = id;
         pool = new GenericObjectPool<Connection>( null );
@@ -89,8 +113,15 @@ public class ConnectionPool {
         pool.setMaxActive( maxActive );
 
         ConnectionFactory connectionFactory = new DriverManagerConnectionFactory( connectURI, user, password );
+        GenericKeyedObjectPoolFactory<Object, Object> stmtPoolFactory = null;
+        if ( maxOpenPreparedStatements > 0 ) {
+            // same settings as used by DBCP's BasicDataSource for poolPreparedStatements
+            stmtPoolFactory = new GenericKeyedObjectPoolFactory<Object, Object>( null, -1,
+                                                                                 GenericKeyedObjectPool.WHEN_EXHAUSTED_FAIL,
+                                                                                 0, 1, maxOpenPreparedStatements );
+        }
         // TODO make this configurable
-        new PoolableConnectionFactory( connectionFactory, pool, null, null, readOnly, true );
+        new PoolableConnectionFactory( connectionFactory, pool, stmtPoolFactory, null, readOnly, true );
         ds = new PoolingDataSource( pool );
         // needed, so users can retrieve the underlying connection from pooled
         // connections, e.g. to access the
@@ -149,6 +149,16 @@ public abstract class TransactionRow {
         return columnToObject.get( column );
     }
 
+    /**
+     * @param column
+     *            the name of the column, must not be <code>null</code>
+     * @return the SQL literal for the column with the given name (e.g. <code>?</code> for prepared arguments), null if
+     *         the column is not considered by this transaction
+     */
+    public String getLiteral( SQLIdentifier column ) {
+        return columnToLiteral.get( column );
+    }
+
     /**
      * @return the generated sl statement
      */
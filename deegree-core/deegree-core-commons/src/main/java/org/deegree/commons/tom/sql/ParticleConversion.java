@@ -59,6 +59,24 @@ public class ParticleConversion<T extends TypedObjectNode> {
         this.particle = particle;
     }
 
+    /**
+     * Returns the converter.
+     * 
+     * @return converter, never <code>null</code>
+     */
+    public ParticleConverter<T> getConverter() {
+        return converter;
+    }
+
+    /**
+     * Returns the particle to be converted.
+     * 
+     * @return particle, can be <code>null</code>
+     */
+    public T getParticle() {
+        return particle;
+    }
+
     public void setParticle( PreparedStatement stmt, int paramIndex )
                             throws SQLException {
         converter.setParticle( stmt, particle, paramIndex );
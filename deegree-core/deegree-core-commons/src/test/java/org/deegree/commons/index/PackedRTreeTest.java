@@ -0,0 +1,127 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.deegree.commons.utils.Pair;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PackedRTree}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PackedRTreeTest {
+
+    private static List<Long> bruteForce( List<Pair<float[], Long>> entries, float[] env ) {
+        List<Long> result = new ArrayList<Long>();
+        for ( Pair<float[], Long> entry : entries ) {
+            float[] box = entry.first;
+            if ( box != null && box[2] >= env[0] && box[3] >= env[1] && box[0] <= env[2] && box[1] <= env[3] ) {
+                result.add( entry.second );
+            }
+        }
+        Collections.sort( result );
+        return result;
+    }
+
+    @Test
+    public void testQueryMatchesBruteForce()
+                            throws IOException {
+        Random random = new Random( 42 );
+        List<Pair<float[], Long>> entries = new ArrayList<Pair<float[], Long>>();
+        for ( long i = 0; i < 5000; ++i ) {
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1000;
+            float[] box = new float[] { x, y, x + random.nextFloat() * 20, y + random.nextFloat() * 20 };
+            entries.add( new Pair<float[], Long>( i % 100 == 0 ? null : box, i ) );
+        }
+        File file = File.createTempFile( "packedrtree", ".rtx" );
+        file.deleteOnExit();
+        PackedRTree.write( file, entries, true, 16 );
+        PackedRTree tree = PackedRTree.open( file );
+        assertTrue( tree.getFlag() );
+        assertEquals( 4950, tree.size() );
+
+        for ( int i = 0; i < 100; ++i ) {
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1000;
+            float[] env = new float[] { x, y, x + random.nextFloat() * 200, y + random.nextFloat() * 200 };
+            List<Long> result = tree.query( env );
+            Collections.sort( result );
+            assertEquals( bruteForce( entries, env ), result );
+        }
+        assertEquals( 4950, tree.query( new float[] { -1, -1, 1100, 1100 } ).size() );
+    }
+
+    @Test
+    public void testSingleAndNoEntries()
+                            throws IOException {
+        File file = File.createTempFile( "packedrtree", ".rtx" );
+        file.deleteOnExit();
+        List<Pair<float[], Long>> entries = new ArrayList<Pair<float[], Long>>();
+        PackedRTree.write( file, entries, false, 16 );
+        assertEquals( 0, PackedRTree.open( file ).query( new float[] { 0, 0, 1, 1 } ).size() );
+
+        entries.add( new Pair<float[], Long>( new float[] { 0, 0, 1, 1 }, 7L ) );
+        PackedRTree.write( file, entries, false, 16 );
+        PackedRTree tree = PackedRTree.open( file );
+        assertEquals( Collections.singletonList( 7L ), tree.query( new float[] { 0.5f, 0.5f, 2, 2 } ) );
+        assertEquals( 0, tree.query( new float[] { 2, 2, 3, 3 } ).size() );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodeSizeTooSmall()
+                            throws IOException {
+        File file = File.createTempFile( "packedrtree", ".rtx" );
+        file.deleteOnExit();
+        List<Pair<float[], Long>> entries = new ArrayList<Pair<float[], Long>>();
+        entries.add( new Pair<float[], Long>( new float[] { 0, 0, 1, 1 }, 7L ) );
+        entries.add( new Pair<float[], Long>( new float[] { 1, 1, 2, 2 }, 8L ) );
+        PackedRTree.write( file, entries, false, 1 );
+    }
+
+}
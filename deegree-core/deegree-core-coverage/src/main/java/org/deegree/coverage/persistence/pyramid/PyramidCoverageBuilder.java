@@ -47,6 +47,7 @@ import static org.deegree.coverage.raster.io.RasterIOOptions.OPT_FORMAT;
 import static org.deegree.coverage.raster.utils.RasterBuilder.setNoDataValue;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReader;
 
+import java.io.File;
 import java.util.Iterator;
 
 import javax.imageio.ImageIO;
@@ -60,6 +61,7 @@ import org.deegree.coverage.raster.AbstractRaster;
 import org.deegree.coverage.raster.MultiResolutionRaster;
 import org.deegree.coverage.raster.io.RasterIOOptions;
 import org.deegree.coverage.raster.io.imageio.geotiff.GeoTiffIIOMetadataAdapter;
+import org.deegree.coverage.raster.io.tiff.CogRasterReader;
 import org.deegree.coverage.raster.utils.RasterFactory;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.exceptions.UnknownCRSException;
@@ -110,8 +112,8 @@ public class PyramidCoverageBuilder implements ResourceBuilder<Coverage> {
             }
 
             MultiResolutionRaster mrr = new MultiResolutionRaster( metadata );
-            String file = config.getPyramidFile();
-            ImageInputStream iis = ImageIO.createImageInputStream( metadata.getLocation().resolveToFile( file ) );
+            File file = metadata.getLocation().resolveToFile( config.getPyramidFile() );
+            ImageInputStream iis = ImageIO.createImageInputStream( file );
             reader.setInput( iis );
             int num = reader.getNumImages( true );
             if ( crs == null ) {
@@ -125,14 +127,20 @@ public class PyramidCoverageBuilder implements ResourceBuilder<Coverage> {
                                                  + " configured. Please configure a CRS or add one to the GeoTIFF." );
             }
 
+            // read the tiles of the levels directly from the file if possible, instead of caching them
+            String format = "tiff";
+            if ( new CogRasterReader().canLoad( file ) ) {
+                LOG.debug( "Reading the levels of pyramid {} natively.", file );
+                format = "cog";
+            }
+
             for ( int i = 0; i < num; ++i ) {
                 RasterIOOptions opts = new RasterIOOptions();
                 opts.add( IMAGE_INDEX, "" + i );
-                opts.add( OPT_FORMAT, "tiff" );
+                opts.add( OPT_FORMAT, format );
                 opts.add( CRS, crs.getAlias() );
 
-                AbstractRaster raster = RasterFactory.loadRasterFromFile( metadata.getLocation().resolveToFile( file ),
-                                                                          opts, metadata );
+                AbstractRaster raster = RasterFactory.loadRasterFromFile( file, opts, metadata );
                 setNoDataValue( raster, config.getNodata() );
                 raster.setCoordinateSystem( crs );
                 mrr.addRaster( raster );
@@ -301,6 +301,7 @@ public class CacheRasterReader extends GridFileReader {
     public AbstractRaster load( File gridFile, RasterIOOptions options )
                             throws IOException {
         lastReadAccess = currentTimeMillis();
+        RasterCache.recordAccess( this );
         return super.load( gridFile, options );
     }
 
@@ -321,6 +322,7 @@ public class CacheRasterReader extends GridFileReader {
 //                clear( true );
 //            }
             lastReadAccess = currentTimeMillis();
+            RasterCache.recordAccess( this );
 
             // now get the data in memory
             RasterRect intersection = snapToGrid( rect );
@@ -572,6 +574,7 @@ public class CacheRasterReader extends GridFileReader {
                     if ( entry.isOnFile() ) {
                         try {
                             entryBuffer = super.getTileData( column, row, entryBuffer );
+                            RasterCache.recordFileHit();
                         } catch ( IOException e ) {
                             // could not read from the tile, so get rid of the tilesOnFile
                             entry.setTileOnFile( false );
@@ -580,8 +583,11 @@ public class CacheRasterReader extends GridFileReader {
                     if ( !entry.isOnFile() ) {
                         // this can happen if the file could not be read from the cache file because of an IOException.
                         readTileFromReader( entry, entryBuffer );
+                        RasterCache.recordMiss();
                     }
                     this.inMemorySize += entry.setBuffer( entryBuffer );
+                } else {
+                    RasterCache.recordMemoryHit();
                 }
             }
             result = entryBuffer.asReadOnlyBuffer();
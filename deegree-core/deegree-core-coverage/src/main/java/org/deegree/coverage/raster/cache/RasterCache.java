@@ -41,14 +41,22 @@ package org.deegree.coverage.raster.cache;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.File;
-import java.io.Serializable;
-import java.util.Comparator;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.SortedSet;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.deegree.commons.utils.StringUtils;
 import org.deegree.coverage.raster.SimpleRaster;
@@ -66,6 +74,11 @@ import org.slf4j.Logger;
  * <p>
  * The RasterCache memory size and the amount of disk space can be set by adding the keys
  * {@link #DEF_RASTER_CACHE_MEM_SIZE} and {@link #DEF_RASTER_CACHE_DISK_SIZE} to the JVM.
+ * <p>
+ * Reserving memory is lock free as long as the cache is below its limit, only the eviction of least recently used
+ * readers is serialized. Read accesses are buffered and applied to the least recently used order before evicting.
+ * Writing evicted readers to their cache files can be done in a background thread by setting
+ * {@link #DEF_RASTER_CACHE_ASYNC_SPILL} to <code>true</code>.
  * 
  * @author <a href="mailto:bezema@lat-lon.de">Rutger Bezema</a>
  * @author last edited by: $Author$
@@ -87,16 +100,24 @@ public class RasterCache {
     /** A key which can be given to the JVM to define the amount of disk memory used for caching (e.g. 1024m). */
     public static final String DEF_RASTER_CACHE_DISK_SIZE = "deegree.raster.cache.disksize";
 
-    private static long maxCacheMem;
+    /**
+     * A key which can be given to the JVM to write evicted rasters to their cache files in a background thread (true or
+     * false, default is false).
+     */
+    public static final String DEF_RASTER_CACHE_ASYNC_SPILL = "deegree.raster.cache.asyncspill";
+
+    private static volatile long maxCacheMem;
+
+    private static volatile long maxCacheDisk;
 
-    private static long maxCacheDisk;
+    private static volatile boolean asyncSpill;
 
     /**
      * Standard name for a deegree cache file.
      */
     public static final String FILE_EXTENSION = ".d3rcache";
 
-    private static final Object MEM_LOCK = new Object();
+    private static final ReentrantLock EVICTION_LOCK = new ReentrantLock();
 
     private static final Object CURRENT_CACHE_LOCK = new Object();
 
@@ -104,12 +125,40 @@ public class RasterCache {
 
     private final File cacheDir;
 
-    private static long currentlyUsedMemory = 0;
+    private static final AtomicLong currentlyUsedMemory = new AtomicLong();
+
+    private static final AtomicLong currentlyUsedDisk = new AtomicLong();
+
+    // guarded by the EVICTION_LOCK
+    private final static ReaderLru cache = new ReaderLru();
+
+    // read accesses which were not yet applied to the lru order
+    private static final Queue<CacheRasterReader> pendingAccesses = new ConcurrentLinkedQueue<CacheRasterReader>();
+
+    private static final AtomicInteger numPendingAccesses = new AtomicInteger();
+
+    private static final int MAX_PENDING_ACCESSES = 256;
+
+    // readers which are currently written to their cache files by the spill thread
+    private static final Set<CacheRasterReader> pendingSpills = Collections.synchronizedSet( Collections.newSetFromMap( new IdentityHashMap<CacheRasterReader, Boolean>() ) );
+
+    private static final ExecutorService SPILL_EXECUTOR = Executors.newSingleThreadExecutor( new ThreadFactory() {
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "raster-cache-spill" );
+            t.setDaemon( true );
+            return t;
+        }
+    } );
+
+    private static final AtomicLong memoryHits = new AtomicLong();
 
-    private static long currentlyUsedDisk = 0;
+    private static final AtomicLong fileHits = new AtomicLong();
+
+    private static final AtomicLong misses = new AtomicLong();
+
+    private static final AtomicLong evictions = new AtomicLong();
 
-    private final static ConcurrentSkipListSet<CacheRasterReader> cache = new ConcurrentSkipListSet<CacheRasterReader>(
-                                                                                                                        new CacheComparator() );
     static {
         evaluateProperties();
     }
@@ -119,7 +168,8 @@ public class RasterCache {
      * properties in the JVM.
      */
     private static void evaluateProperties() {
-        synchronized ( MEM_LOCK ) {
+        EVICTION_LOCK.lock();
+        try {
             String cacheSize = System.getProperty( DEF_RASTER_CACHE_MEM_SIZE );
             long mm = StringUtils.parseByteSize( cacheSize );
             if ( mm == 0 ) {
@@ -151,11 +201,16 @@ public class RasterCache {
                           ( mm / ( 1024 * 1024 ) ) + "Mb", DEF_RASTER_CACHE_DISK_SIZE );
             }
             maxCacheDisk = mm;
+            asyncSpill = Boolean.parseBoolean( System.getProperty( DEF_RASTER_CACHE_ASYNC_SPILL ) );
+            if ( asyncSpill ) {
+                LOG.info( "Writing evicted rasters to their cache files in the background (because it was set with the {} property).",
+                          DEF_RASTER_CACHE_ASYNC_SPILL );
+            }
+        } finally {
+            EVICTION_LOCK.unlock();
         }
     }
 
-    // private final static TreeSet<CacheRasterReader> cache = new TreeSet<CacheRasterReader>( new CacheComparator() );
-
     private RasterCache( File cacheDir ) {
         this.cacheDir = cacheDir;
     }
@@ -170,6 +225,10 @@ public class RasterCache {
      */
     public static void reset( boolean deleteCachedFile ) {
         clear( deleteCachedFile );
+        memoryHits.set( 0 );
+        fileHits.set( 0 );
+        misses.set( 0 );
+        evictions.set( 0 );
         evaluateProperties();
     }
 
@@ -256,21 +315,36 @@ public class RasterCache {
      * @return the currentlyUsedMemory
      */
     public static final long getCurrentlyUsedMemory() {
-        return currentlyUsedMemory;
+        return currentlyUsedMemory.get();
     }
 
     /**
      * @return the currentlyUsedDisk
      */
     public static final long getCurrentlyUsedDisk() {
-        return currentlyUsedDisk;
+        return currentlyUsedDisk.get();
+    }
+
+    /**
+     * @return a snapshot of the hit, miss and eviction counters as well as the memory and disk space currently used by
+     *         the cache.
+     */
+    public static RasterCacheStatistics getStatistics() {
+        return new RasterCacheStatistics( memoryHits.get(), fileHits.get(), misses.get(), evictions.get(),
+                                          currentlyUsedMemory.get(), currentlyUsedDisk.get(), maxCacheMem,
+                                          maxCacheDisk );
     }
 
     /**
      * @return the number of cached readers.
      */
     public static int size() {
-        return cache.size();
+        EVICTION_LOCK.lock();
+        try {
+            return cache.size();
+        } finally {
+            EVICTION_LOCK.unlock();
+        }
     }
 
     /**
@@ -282,17 +356,19 @@ public class RasterCache {
      * 
      */
     public static void clear( boolean deleteCacheFiles ) {
-        synchronized ( MEM_LOCK ) {
-            Iterator<CacheRasterReader> it = cache.iterator();
-            while ( it != null && it.hasNext() ) {
-                CacheRasterReader next = it.next();
-                if ( next != null ) {
-                    next.clear( deleteCacheFiles );
-                }
+        awaitSpills();
+        EVICTION_LOCK.lock();
+        try {
+            for ( CacheRasterReader next : cache ) {
+                next.clear( deleteCacheFiles );
             }
             cache.clear();
-            currentlyUsedMemory = 0;
-            currentlyUsedDisk = 0;
+            pendingAccesses.clear();
+            numPendingAccesses.set( 0 );
+            currentlyUsedMemory.set( 0 );
+            currentlyUsedDisk.set( 0 );
+        } finally {
+            EVICTION_LOCK.unlock();
         }
         synchronized ( CURRENT_CACHE_LOCK ) {
             if ( deleteCacheFiles && currentCaches.values() != null ) {
@@ -321,14 +397,9 @@ public class RasterCache {
      * Writes all current caches to their cache files, but leaves the in memory cached rasters alone.
      */
     public static void flush() {
-        synchronized ( MEM_LOCK ) {
-            Iterator<CacheRasterReader> it = cache.iterator();
-            while ( it != null && it.hasNext() ) {
-                CacheRasterReader next = it.next();
-                if ( next != null ) {
-                    next.flush();
-                }
-            }
+        awaitSpills();
+        for ( CacheRasterReader next : readers() ) {
+            next.flush();
         }
     }
 
@@ -336,21 +407,15 @@ public class RasterCache {
      * Iterates over all current cache directories and calls dispose on their cache files.
      */
     public static void dispose() {
-        synchronized ( MEM_LOCK ) {
-            Iterator<CacheRasterReader> it = cache.iterator();
-            long allocatedMem = 0;
-            int i = 1;
-            while ( it != null && it.hasNext() ) {
-                CacheRasterReader next = it.next();
-                if ( next != null ) {
-                    LOG.debug( "{}: Disposing for file: {}", i++, next.file() );
-                    // currentlyUsedMemory -= next.dispose( false );
-                    allocatedMem += next.dispose( false );
-                }
-            }
-            LOG.debug( "Disposing allocated {} MB on the heap.",
-                       ( Math.round( ( allocatedMem / ( 1024 * 1024d ) ) * 100d ) / 100d ) );
+        awaitSpills();
+        long allocatedMem = 0;
+        int i = 1;
+        for ( CacheRasterReader next : readers() ) {
+            LOG.debug( "{}: Disposing for file: {}", i++, next.file() );
+            allocatedMem += next.dispose( false );
         }
+        LOG.debug( "Disposing allocated {} MB on the heap.",
+                   ( Math.round( ( allocatedMem / ( 1024 * 1024d ) ) * 100d ) / 100d ) );
     }
 
     /**
@@ -364,88 +429,203 @@ public class RasterCache {
      * @return the amount of currently used cache memory, which is only an approximation.
      */
     public static long freeMemory( long requiredMemory ) {
-        synchronized ( MEM_LOCK ) {
-            LOG.debug( "Currently used cache memory:{} MB, totalCacheMemory:{} MB", currentlyUsedMemory
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug( "Currently used cache memory:{} MB, totalCacheMemory:{} MB", currentlyUsedMemory.get()
                                                                                     / ( 1024d * 1024 ),
                        maxCacheMem / ( 1024d * 1024 ) );
-            if ( currentlyUsedMemory + requiredMemory > maxCacheMem ) {
-                disposeMemory( requiredMemory );
+        }
+        if ( currentlyUsedMemory.get() + requiredMemory > maxCacheMem ) {
+            disposeMemory( requiredMemory );
+        }
+        return currentlyUsedMemory.addAndGet( requiredMemory );
+    }
+
+    /**
+     * Marks the given reader as the most recently used one. The access is only recorded, it will be applied to the
+     * least recently used order before the next eviction.
+     * 
+     * @param reader
+     *            which was read from
+     */
+    static void recordAccess( CacheRasterReader reader ) {
+        pendingAccesses.offer( reader );
+        if ( numPendingAccesses.incrementAndGet() > MAX_PENDING_ACCESSES && !EVICTION_LOCK.isHeldByCurrentThread()
+             && EVICTION_LOCK.tryLock() ) {
+            try {
+                drainAccesses();
+            } finally {
+                EVICTION_LOCK.unlock();
             }
-            currentlyUsedMemory += requiredMemory;
         }
+    }
+
+    /**
+     * Called by the {@link CacheRasterReader}s if a requested tile was found in memory.
+     */
+    static void recordMemoryHit() {
+        memoryHits.incrementAndGet();
+    }
+
+    /**
+     * Called by the {@link CacheRasterReader}s if a requested tile was read from their cache file.
+     */
+    static void recordFileHit() {
+        fileHits.incrementAndGet();
+    }
+
+    /**
+     * Called by the {@link CacheRasterReader}s if a requested tile had to be read from the original data.
+     */
+    static void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Applies the recorded read accesses to the lru order, the eviction lock must be held.
+     */
+    private static void drainAccesses() {
+        CacheRasterReader reader = null;
+        while ( ( reader = pendingAccesses.poll() ) != null ) {
+            numPendingAccesses.decrementAndGet();
+            cache.touch( reader );
+        }
+    }
 
-        return currentlyUsedMemory;
+    /**
+     * @return a copy of the currently cached readers, least recently used first.
+     */
+    private static List<CacheRasterReader> readers() {
+        EVICTION_LOCK.lock();
+        try {
+            drainAccesses();
+            return cache.toList();
+        } finally {
+            EVICTION_LOCK.unlock();
+        }
     }
 
     private static void disposeMemory( long requiredMemory ) {
-        synchronized ( MEM_LOCK ) {
-            if ( currentlyUsedMemory + requiredMemory > maxCacheMem ) {
-                // make a copy, to reflect the last read access.
-                SortedSet<CacheRasterReader> sort = new ConcurrentSkipListSet<CacheRasterReader>( cache );
-                Iterator<CacheRasterReader> it = sort.iterator();
-                if ( it != null ) {
-                    final double halfMem = maxCacheMem * 0.5;
-                    int readersConsidered = 0;
-                    while ( it.hasNext() ) {
-                        CacheRasterReader next = it.next();
-                        if ( next != null ) {
-                            ++readersConsidered;
-                            long onDisk = next.cacheFileSize();
-                            if ( currentlyUsedDisk > maxCacheDisk && onDisk > 0 ) {
-                                // just delete the cache file and any in memory data from the least recently used cache
-                                // file.
-                                currentlyUsedMemory -= next.clear( true );
-                                currentlyUsedDisk -= onDisk;
-                            } else {
-                                long mem = next.currentApproxMemory();
-                                if ( mem > 0 && next.canCreateCacheFile() ) {
-                                    currentlyUsedMemory -= next.dispose( false );
-                                    // add the new cache file size
-                                    currentlyUsedDisk += ( next.cacheFileSize() - onDisk );
-                                } else if ( mem > 0 ) {
-                                    currentlyUsedMemory -= next.dispose( true );
-                                }
-                            }
-                        }
-                        if ( currentlyUsedMemory + requiredMemory < halfMem ) {
-                            break;
+        if ( EVICTION_LOCK.isHeldByCurrentThread() ) {
+            // a reader allocates memory while it is evicted, don't change the lru order while iterating over it.
+            return;
+        }
+        EVICTION_LOCK.lock();
+        try {
+            // another thread might have freed the memory while waiting for the lock
+            if ( currentlyUsedMemory.get() + requiredMemory <= maxCacheMem ) {
+                return;
+            }
+            drainAccesses();
+            final double halfMem = maxCacheMem * 0.5;
+            int readersConsidered = 0;
+            for ( CacheRasterReader next : cache ) {
+                ++readersConsidered;
+                if ( pendingSpills.contains( next ) ) {
+                    continue;
+                }
+                long onDisk = next.cacheFileSize();
+                if ( currentlyUsedDisk.get() > maxCacheDisk && onDisk > 0 ) {
+                    // just delete the cache file and any in memory data from the least recently used cache
+                    // file.
+                    currentlyUsedMemory.addAndGet( -next.clear( true ) );
+                    currentlyUsedDisk.addAndGet( -onDisk );
+                    evictions.incrementAndGet();
+                } else {
+                    long mem = next.currentApproxMemory();
+                    if ( mem > 0 && next.canCreateCacheFile() ) {
+                        if ( asyncSpill ) {
+                            spill( next, mem, onDisk );
+                        } else {
+                            currentlyUsedMemory.addAndGet( -next.dispose( false ) );
+                            // add the new cache file size
+                            currentlyUsedDisk.addAndGet( next.cacheFileSize() - onDisk );
                         }
+                        evictions.incrementAndGet();
+                    } else if ( mem > 0 ) {
+                        currentlyUsedMemory.addAndGet( -next.dispose( true ) );
+                        evictions.incrementAndGet();
                     }
-
-                    if ( currentlyUsedMemory > halfMem || readersConsidered > ( cache.size() * 0.5 ) ) {
-                        // disposed more than half of the readers or could not get required memory..., update the real
-                        // memory, it might well be the current values are invalid.
-                        updateCurrentlyUsedSpace();
-                    }
                 }
+                if ( currentlyUsedMemory.get() + requiredMemory < halfMem ) {
+                    break;
+                }
+            }
+
+            if ( ( currentlyUsedMemory.get() > halfMem || readersConsidered > ( cache.size() * 0.5 ) )
+                 && pendingSpills.isEmpty() ) {
+                // disposed more than half of the readers or could not get required memory..., update the real
+                // memory, it might well be the current values are invalid.
+                updateCurrentlyUsedSpace();
             }
+        } finally {
+            EVICTION_LOCK.unlock();
         }
     }
 
     /**
-     * Iterates over all known readers and (re) calculates their in memory data.
+     * Writes the memory of the given reader to its cache file in the spill thread. The memory is accounted as freed
+     * right away and corrected once the cache file was written.
      */
-    private static void updateCurrentlyUsedSpace() {
-        synchronized ( MEM_LOCK ) {
-            LOG.debug( "Updating estimation of in-memory cache." );
-            long cum = 0;
-            long onDisk = 0;
-            Iterator<CacheRasterReader> it = cache.iterator();
-            while ( it != null && it.hasNext() ) {
-                CacheRasterReader next = it.next();
-                if ( next != null ) {
-                    cum += next.currentApproxMemory();
-                    onDisk += next.cacheFileSize();
+    private static void spill( final CacheRasterReader reader, final long mem, final long onDisk ) {
+        pendingSpills.add( reader );
+        currentlyUsedMemory.addAndGet( -mem );
+        SPILL_EXECUTOR.execute( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long freed = reader.dispose( false );
+                    currentlyUsedMemory.addAndGet( mem - freed );
+                    currentlyUsedDisk.addAndGet( reader.cacheFileSize() - onDisk );
+                } catch ( Throwable t ) {
+                    LOG.warn( "Could not write raster cache file {}: {}", reader.file(), t.getLocalizedMessage() );
+                    LOG.trace( "Stack trace:", t );
+                } finally {
+                    pendingSpills.remove( reader );
                 }
             }
-            LOG.debug( "Resetting currently used memory from: {} to: {}", ( currentlyUsedMemory / ( 1024 * 1024d ) ),
-                       ( cum / ( 1024 * 1024d ) ) );
+        } );
+    }
 
-            LOG.debug( "Resetting currently used space on disk from: {} to: {}",
-                       ( currentlyUsedDisk / ( 1024 * 1024d ) ), ( onDisk / ( 1024 * 1024d ) ) );
-            currentlyUsedMemory = cum;
-            currentlyUsedDisk = onDisk;
+    /**
+     * Waits until all queued spills have been written to their cache files.
+     */
+    private static void awaitSpills() {
+        if ( pendingSpills.isEmpty() ) {
+            return;
+        }
+        try {
+            // the spill executor has a single thread, so all spills queued before have finished afterwards.
+            SPILL_EXECUTOR.submit( new Runnable() {
+                @Override
+                public void run() {
+                    // nothing to do
+                }
+            } ).get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        } catch ( ExecutionException e ) {
+            LOG.debug( "Waiting for the raster cache spills failed: {}", e.getLocalizedMessage() );
+        }
+    }
+
+    /**
+     * Iterates over all known readers and (re) calculates their in memory data, the eviction lock must be held.
+     */
+    private static void updateCurrentlyUsedSpace() {
+        LOG.debug( "Updating estimation of in-memory cache." );
+        long cum = 0;
+        long onDisk = 0;
+        for ( CacheRasterReader next : cache ) {
+            cum += next.currentApproxMemory();
+            onDisk += next.cacheFileSize();
         }
+        LOG.debug( "Resetting currently used memory from: {} to: {}",
+                   ( currentlyUsedMemory.get() / ( 1024 * 1024d ) ), ( cum / ( 1024 * 1024d ) ) );
+
+        LOG.debug( "Resetting currently used space on disk from: {} to: {}",
+                   ( currentlyUsedDisk.get() / ( 1024 * 1024d ) ), ( onDisk / ( 1024 * 1024d ) ) );
+        currentlyUsedMemory.set( cum );
+        currentlyUsedDisk.set( onDisk );
     }
 
     /**
@@ -455,10 +635,15 @@ public class RasterCache {
      */
     private static void addReader( CacheRasterReader reader ) {
         boolean added = false;
-        synchronized ( MEM_LOCK ) {
-            currentlyUsedMemory += reader.currentApproxMemory();
-            currentlyUsedDisk += reader.cacheFileSize();
+        EVICTION_LOCK.lock();
+        try {
             added = cache.add( reader );
+            if ( added ) {
+                currentlyUsedMemory.addAndGet( reader.currentApproxMemory() );
+                currentlyUsedDisk.addAndGet( reader.cacheFileSize() );
+            }
+        } finally {
+            EVICTION_LOCK.unlock();
         }
         if ( !added ) {
             LOG.debug( "Not adding reader ({}) to cache because it is already in the cache.", reader );
@@ -553,35 +738,6 @@ public class RasterCache {
         return result;
     }
 
-    /**
-     * The <code>CacheComparator</code> class compares two raster readers for their last read access time.
-     * 
-     * @author <a href="mailto:bezema@lat-lon.de">Rutger Bezema</a>
-     * @author last edited by: $Author$
-     * @version $Revision$, $Date$
-     * 
-     */
-    static class CacheComparator implements Comparator<CacheRasterReader>, Serializable {
-
-        /**
-         * just for the Serializable
-         */
-        private static final long serialVersionUID = 957737023397188332L;
-
-        @Override
-        public int compare( CacheRasterReader o1, CacheRasterReader o2 ) {
-            // rb: returning 0 will cause the above 'add' method to discard the new raster.
-            if ( o1 == null ) {
-                return -1;
-            }
-            if ( o2 == null ) {
-                return 1;
-            }
-            int result = o1.lastReadAccess() <= o2.lastReadAccess() ? -1 : 1;
-            return result;
-        }
-    }
-
     /**
      * @return the directory used for caching.
      */
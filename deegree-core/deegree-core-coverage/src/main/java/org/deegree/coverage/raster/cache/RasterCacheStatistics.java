@@ -0,0 +1,149 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.cache;
+
+/**
+ * Snapshot of the {@link RasterCache} counters, see {@link RasterCache#getStatistics()}. Tile accesses are counted
+ * since the last {@link RasterCache#reset(boolean)}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class RasterCacheStatistics {
+
+    private final long memoryHits;
+
+    private final long fileHits;
+
+    private final long misses;
+
+    private final long evictions;
+
+    private final long bytesInMemory;
+
+    private final long bytesOnDisk;
+
+    private final long maxBytesInMemory;
+
+    private final long maxBytesOnDisk;
+
+    RasterCacheStatistics( long memoryHits, long fileHits, long misses, long evictions, long bytesInMemory,
+                           long bytesOnDisk, long maxBytesInMemory, long maxBytesOnDisk ) {
+        this.memoryHits = memoryHits;
+        this.fileHits = fileHits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.bytesInMemory = bytesInMemory;
+        this.bytesOnDisk = bytesOnDisk;
+        this.maxBytesInMemory = maxBytesInMemory;
+        this.maxBytesOnDisk = maxBytesOnDisk;
+    }
+
+    /**
+     * @return the number of tiles which were found in memory
+     */
+    public long getMemoryHits() {
+        return memoryHits;
+    }
+
+    /**
+     * @return the number of tiles which were read from cache files
+     */
+    public long getFileHits() {
+        return fileHits;
+    }
+
+    /**
+     * @return the number of tiles which had to be read from the original raster data
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of times a reader released its memory or cache file to free cache memory
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the approximate number of bytes held in memory
+     */
+    public long getBytesInMemory() {
+        return bytesInMemory;
+    }
+
+    /**
+     * @return the approximate number of bytes held in cache files
+     */
+    public long getBytesOnDisk() {
+        return bytesOnDisk;
+    }
+
+    /**
+     * @return the configured maximum of bytes held in memory
+     */
+    public long getMaxBytesInMemory() {
+        return maxBytesInMemory;
+    }
+
+    /**
+     * @return the configured maximum of bytes held in cache files
+     */
+    public long getMaxBytesOnDisk() {
+        return maxBytesOnDisk;
+    }
+
+    /**
+     * @return the fraction of tile accesses which did not need the original raster data (memory or cache file hits),
+     *         0 if no tile was accessed yet
+     */
+    public double getHitRate() {
+        long total = memoryHits + fileHits + misses;
+        return total == 0 ? 0 : ( memoryHits + fileHits ) / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return "memory hits: " + memoryHits + ", file hits: " + fileHits + ", misses: " + misses + ", evictions: "
+               + evictions + ", memory: " + bytesInMemory + "/" + maxBytesInMemory + " bytes, disk: " + bytesOnDisk
+               + "/" + maxBytesOnDisk + " bytes";
+    }
+
+}
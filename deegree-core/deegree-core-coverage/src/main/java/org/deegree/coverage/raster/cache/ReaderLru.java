@@ -0,0 +1,180 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.cache;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Keeps {@link CacheRasterReader}s in least recently used order. All operations are O(1), readers are compared by
+ * identity. This class is not thread-safe, the {@link RasterCache} guards it with its eviction lock.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class ReaderLru implements Iterable<CacheRasterReader> {
+
+    private final Map<CacheRasterReader, Node> nodes = new IdentityHashMap<CacheRasterReader, Node>();
+
+    // sentinel, next is the least recently used reader, prev the most recently used one
+    private final Node head = new Node( null );
+
+    ReaderLru() {
+        head.prev = head;
+        head.next = head;
+    }
+
+    /**
+     * Adds the given reader as the least recently used one.
+     * 
+     * @param reader
+     *            to add
+     * @return <code>true</code>, if the reader was added, <code>false</code> if it is already known
+     */
+    boolean add( CacheRasterReader reader ) {
+        if ( nodes.containsKey( reader ) ) {
+            return false;
+        }
+        Node node = new Node( reader );
+        nodes.put( reader, node );
+        link( node, head, head.next );
+        return true;
+    }
+
+    /**
+     * Marks the given reader as the most recently used one, unknown readers are ignored.
+     * 
+     * @param reader
+     *            which was accessed
+     */
+    void touch( CacheRasterReader reader ) {
+        Node node = nodes.get( reader );
+        if ( node != null && node.next != head ) {
+            unlink( node );
+            link( node, head.prev, head );
+        }
+    }
+
+    /**
+     * @return the number of readers
+     */
+    int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Removes all readers.
+     */
+    void clear() {
+        nodes.clear();
+        head.prev = head;
+        head.next = head;
+    }
+
+    /**
+     * @return a copy of the readers, least recently used first
+     */
+    List<CacheRasterReader> toList() {
+        List<CacheRasterReader> result = new ArrayList<CacheRasterReader>( nodes.size() );
+        for ( CacheRasterReader reader : this ) {
+            result.add( reader );
+        }
+        return result;
+    }
+
+    /**
+     * Iterates over the readers, least recently used first. The order must not be changed while iterating.
+     */
+    @Override
+    public Iterator<CacheRasterReader> iterator() {
+        return new Iterator<CacheRasterReader>() {
+
+            private Node next = head.next;
+
+            @Override
+            public boolean hasNext() {
+                return next != head;
+            }
+
+            @Override
+            public CacheRasterReader next() {
+                if ( next == head ) {
+                    throw new NoSuchElementException();
+                }
+                CacheRasterReader reader = next.reader;
+                next = next.next;
+                return reader;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static void link( Node node, Node prev, Node next ) {
+        node.prev = prev;
+        node.next = next;
+        prev.next = node;
+        next.prev = node;
+    }
+
+    private static void unlink( Node node ) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+    }
+
+    private static class Node {
+
+        final CacheRasterReader reader;
+
+        Node prev;
+
+        Node next;
+
+        Node( CacheRasterReader reader ) {
+            this.reader = reader;
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.interpolation;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.media.jai.WarpPolynomial;
+
+import org.deegree.coverage.raster.data.RasterData;
+import org.deegree.coverage.raster.data.nio.ByteBufferRasterData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fills a destination raster by sampling a source raster at the positions given by a {@link WarpPolynomial}.
+ * <p>
+ * Larger rasters are split into bands of rows, which are interpolated in parallel on a shared pool of worker threads
+ * (one per available processor). Every band uses its own {@link Interpolation} instance on a read-only copy of the
+ * source data and writes the samples directly into the destination buffer, so no state is shared between the workers.
+ * </p>
+ * <p>
+ * Samples are passed through a single <code>byte[]</code> pixel that is reused for the whole band (like the sequential
+ * loop did before). There are no typed (short/float) band buffers: the {@link Interpolation}s only offer the
+ * <code>byte[]</code> based {@link Interpolation#getPixel(float, float, byte[])}.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class WarpTransformer {
+
+    private static final Logger LOG = LoggerFactory.getLogger( WarpTransformer.class );
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    // rasters with less pixels per band are not worth the overhead of a thread hand-off
+    private static final int MIN_PIXELS_PER_BAND = 16384;
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool( THREADS, new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "raster-warp-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    } );
+
+    private WarpTransformer() {
+        // only static methods
+    }
+
+    /**
+     * Interpolates all pixels of the destination raster.
+     * 
+     * @param warp
+     *            maps destination raster coordinates to source raster coordinates, must not be <code>null</code>
+     * @param interpolationType
+     *            the type of the interpolation, must not be <code>null</code>
+     * @param srcData
+     *            the source raster data, must not be <code>null</code>
+     * @param dstData
+     *            the (writable) destination raster data, must not be <code>null</code>
+     */
+    public static void warp( WarpPolynomial warp, InterpolationType interpolationType, RasterData srcData,
+                             RasterData dstData ) {
+        int rows = dstData.getRows();
+        int columns = dstData.getColumns();
+        int numBands = columns == 0 ? 1 : Math.min( THREADS * 2, ( rows * columns ) / MIN_PIXELS_PER_BAND );
+        if ( numBands < 2 || THREADS < 2 || !( srcData instanceof ByteBufferRasterData )
+             || !( dstData instanceof ByteBufferRasterData ) ) {
+            Interpolation interpolation = InterpolationFactory.getInterpolation( interpolationType, srcData );
+            new Band( warp, interpolation, dstData, null, 0, rows ).call();
+            return;
+        }
+
+        ByteBufferRasterData dst = (ByteBufferRasterData) dstData;
+        // initialize the buffer before handing it out to the workers
+        ByteBuffer dstBuffer = dst.getByteBuffer();
+        int rowsPerBand = ( rows + numBands - 1 ) / numBands;
+        List<Band> bands = new ArrayList<Band>( numBands );
+        for ( int y = 0; y < rows; y += rowsPerBand ) {
+            Interpolation interpolation = InterpolationFactory.getInterpolation( interpolationType,
+                                                                                 srcData.asReadOnly() );
+            bands.add( new Band( warp, interpolation, dst, dstBuffer, y, Math.min( rows, y + rowsPerBand ) ) );
+        }
+        LOG.debug( "Interpolating " + columns + "x" + rows + " pixels in " + bands.size() + " bands." );
+
+        List<Future<Void>> futures = null;
+        try {
+            futures = POOL.invokeAll( bands );
+            for ( Future<Void> future : futures ) {
+                future.get();
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while interpolating raster.", e );
+        } catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException( e.getCause().getMessage(), e.getCause() );
+        } finally {
+            if ( futures != null ) {
+                for ( Future<Void> future : futures ) {
+                    future.cancel( true );
+                }
+            }
+        }
+    }
+
+    /**
+     * Interpolates a range of rows of the destination raster.
+     */
+    private static class Band implements Callable<Void> {
+
+        private final WarpPolynomial warp;
+
+        private final Interpolation interpolation;
+
+        private final RasterData dstData;
+
+        private final ByteBuffer dstBuffer;
+
+        private final int minY;
+
+        private final int maxY;
+
+        /**
+         * @param dstBuffer
+         *            if not <code>null</code>, samples are written into this buffer using absolute puts (thread-safe
+         *            for disjoint rows), otherwise {@link RasterData#setPixel(int, int, byte[])} is used
+         */
+        Band( WarpPolynomial warp, Interpolation interpolation, RasterData dstData, ByteBuffer dstBuffer, int minY,
+              int maxY ) {
+            this.warp = warp;
+            this.interpolation = interpolation;
+            this.dstData = dstData;
+            this.dstBuffer = dstBuffer;
+            this.minY = minY;
+            this.maxY = maxY;
+        }
+
+        @Override
+        public Void call() {
+            int columns = dstData.getColumns();
+            int numBands = dstData.getBands();
+            int sampleSize = dstData.getDataType().getSize();
+            // reused for every pixel of the band
+            byte[] pixel = new byte[numBands * sampleSize];
+            float[] srcCoords = new float[columns * 2];
+            ByteBufferRasterData dst = dstBuffer == null ? null : (ByteBufferRasterData) dstData;
+            for ( int y = minY; y < maxY; y++ ) {
+                // look-up the pixel positions in the source raster for every pixel in this row, the srcCoords will
+                // contain the x,y ([2n],[2n+1]) values in the source raster for this row of pixels.
+                warp.warpRect( 0, y, columns, 1, srcCoords );
+                for ( int x = 0; x < columns; x++ ) {
+                    // get the interpolated pixel and set the value into the result raster
+                    interpolation.getPixel( srcCoords[x * 2], srcCoords[x * 2 + 1], pixel );
+                    if ( dst == null ) {
+                        dstData.setPixel( x, y, pixel );
+                        continue;
+                    }
+                    for ( int b = 0; b < numBands; b++ ) {
+                        int pos = dst.calculatePos( x, y, b );
+                        if ( pos != -1 ) {
+                            for ( int i = 0, offset = b * sampleSize; i < sampleSize; i++ ) {
+                                dstBuffer.put( pos + i, pixel[offset + i] );
+                            }
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+}
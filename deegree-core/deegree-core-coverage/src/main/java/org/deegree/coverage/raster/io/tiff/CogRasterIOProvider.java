@@ -0,0 +1,90 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.io.tiff;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.deegree.coverage.raster.io.RasterIOProvider;
+import org.deegree.coverage.raster.io.RasterReader;
+import org.deegree.coverage.raster.io.RasterWriter;
+
+/**
+ * Provides the {@link CogRasterReader} for the 'cog' format, there is no writer.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class CogRasterIOProvider implements RasterIOProvider {
+
+    /**
+     * Supported formats
+     */
+    final static Set<String> FORMATS;
+
+    static {
+        Set<String> formats = new HashSet<String>();
+        formats.add( "cog" );
+        FORMATS = Collections.unmodifiableSet( formats );
+    }
+
+    @Override
+    public RasterReader getRasterReader( String type ) {
+        if ( type != null && FORMATS.contains( type.toLowerCase() ) ) {
+            return new CogRasterReader();
+        }
+        return null;
+    }
+
+    @Override
+    public Set<String> getRasterReaderFormats() {
+        return new HashSet<String>( FORMATS );
+    }
+
+    @Override
+    public RasterWriter getRasterWriter( String type ) {
+        return null;
+    }
+
+    @Override
+    public Set<String> getRasterWriterFormats() {
+        return Collections.emptySet();
+    }
+
+}
@@ -0,0 +1,383 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.io.tiff;
+
+import static org.deegree.coverage.raster.io.imageio.geotiff.GeoTiffKey.GTModelTypeGeoKey;
+import static org.deegree.coverage.raster.io.imageio.geotiff.GeoTiffKey.GeographicTypeGeoKey;
+import static org.deegree.coverage.raster.io.imageio.geotiff.GeoTiffKey.ModelTypeGeographic;
+import static org.deegree.coverage.raster.io.imageio.geotiff.GeoTiffKey.ModelTypeProjected;
+import static org.deegree.coverage.raster.io.imageio.geotiff.GeoTiffKey.ProjectedCSTypeGeoKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Set;
+
+import org.deegree.commons.utils.FileUtils;
+import org.deegree.coverage.raster.AbstractRaster;
+import org.deegree.coverage.raster.cache.ByteBufferPool;
+import org.deegree.coverage.raster.data.RasterData;
+import org.deegree.coverage.raster.data.container.BufferResult;
+import org.deegree.coverage.raster.data.info.BandType;
+import org.deegree.coverage.raster.data.info.DataType;
+import org.deegree.coverage.raster.data.info.InterleaveType;
+import org.deegree.coverage.raster.data.info.RasterDataInfo;
+import org.deegree.coverage.raster.geom.RasterGeoReference;
+import org.deegree.coverage.raster.geom.RasterGeoReference.OriginLocation;
+import org.deegree.coverage.raster.geom.RasterRect;
+import org.deegree.coverage.raster.io.RasterIOOptions;
+import org.deegree.coverage.raster.io.RasterReader;
+import org.deegree.coverage.raster.io.WorldFileAccess;
+import org.deegree.coverage.raster.utils.RasterFactory;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.exceptions.UnknownCRSException;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.geometry.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads (cloud optimized) GeoTIFF files without ImageIO. Only the internal tiles (or strips) which intersect a
+ * requested rectangle are read with positional reads and decoded directly into the raster data buffer, so no cache
+ * files are needed. The {@link RasterIOOptions#IMAGE_INDEX} selects the image file directory, for a cloud optimized
+ * GeoTIFF index 0 is the full resolution image and the following indexes are its overviews. The geo reference of the
+ * overviews is derived from the full resolution image.
+ * <p>
+ * Supported are 8, 16, 32 and 64 bit samples in pixel interleaved (chunky) layout, which are uncompressed or
+ * compressed with LZW, deflate or PackBits, with or without predictor.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class CogRasterReader implements RasterReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger( CogRasterReader.class );
+
+    private final Object LOCK = new Object();
+
+    private File file;
+
+    private FileChannel channel;
+
+    private TiffDirectory dir;
+
+    private RasterDataInfo rdi;
+
+    private RasterGeoReference rasterReference;
+
+    private String dataLocationId;
+
+    @Override
+    public boolean canLoad( File filename ) {
+        if ( filename == null || !filename.isFile() ) {
+            return false;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile( filename, "r" );
+            try {
+                // all images must be readable, so that every image index of the file can be loaded
+                for ( TiffDirectory d : TiffDirectory.readDirectories( raf.getChannel() ) ) {
+                    String reason = d.getUnsupportedReason();
+                    if ( reason != null ) {
+                        LOG.debug( "Can not read {} natively: {}", filename, reason );
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                raf.close();
+            }
+        } catch ( IOException e ) {
+            LOG.debug( "Can not read {} natively: {}", filename, e.getLocalizedMessage() );
+            return false;
+        }
+    }
+
+    @Override
+    public AbstractRaster load( File filename, RasterIOOptions options )
+                            throws IOException {
+        RasterIOOptions opts = new RasterIOOptions();
+        if ( options != null ) {
+            opts.copyOf( options );
+        }
+        String index = opts.get( RasterIOOptions.IMAGE_INDEX );
+        int imageIndex = index == null ? 0 : Integer.parseInt( index );
+        LOG.debug( "Reading image {} of {} natively.", imageIndex, filename );
+
+        this.file = filename;
+        List<TiffDirectory> dirs = TiffDirectory.readDirectories( getChannel() );
+        if ( imageIndex < 0 || imageIndex >= dirs.size() ) {
+            throw new IOException( "The tiff file " + filename + " has no image with index " + imageIndex + "." );
+        }
+        dir = dirs.get( imageIndex );
+        String reason = dir.getUnsupportedReason();
+        if ( reason != null ) {
+            throw new IOException( "Can not read image " + imageIndex + " of " + filename + ": " + reason );
+        }
+        rdi = new RasterDataInfo( getBandTypes( dir ), dir.getDataType(), InterleaveType.PIXEL );
+
+        dataLocationId = opts.get( RasterIOOptions.ORIGIN_OF_RASTER );
+        if ( dataLocationId == null ) {
+            dataLocationId = FileUtils.getFilename( filename ) + ( imageIndex == 0 ? "" : "_" + imageIndex );
+        }
+
+        TiffDirectory base = dirs.get( 0 );
+        ICRS crs = getCRS( base );
+        if ( crs == null ) {
+            crs = opts.getCRS();
+        }
+        OriginLocation location = opts.getRasterOriginLocation();
+        rasterReference = getGeoReference( base, location, crs );
+        if ( rasterReference == null ) {
+            if ( opts.hasRasterGeoReference() ) {
+                rasterReference = opts.getRasterGeoReference();
+            } else {
+                // create a 1:1 mapping
+                rasterReference = new RasterGeoReference( location, 1, -1, 0.5, dir.height - 0.5 );
+                if ( opts.readWorldFile() ) {
+                    try {
+                        rasterReference = WorldFileAccess.readWorldFile( filename, opts );
+                    } catch ( IOException e ) {
+                        //
+                    }
+                }
+            }
+        }
+        Envelope envelope = rasterReference.getEnvelope( dir.width, dir.height, crs );
+        // cache the decoded tiles in memory only, the file itself is the tile store
+        return RasterFactory.createEmptyRaster( rdi, envelope, rasterReference, this, true, opts );
+    }
+
+    @Override
+    public AbstractRaster load( InputStream stream, RasterIOOptions options )
+                            throws IOException {
+        throw new IOException( "Cloud optimized GeoTIFFs can only be read from files." );
+    }
+
+    private static BandType[] getBandTypes( TiffDirectory dir ) {
+        int type = 0;
+        if ( dir.photometric == TiffDirectory.PHOTOMETRIC_RGB && dir.getDataType() == DataType.BYTE ) {
+            if ( dir.samplesPerPixel == 3 ) {
+                type = RasterData.TYPE_BYTE_RGB;
+            } else if ( dir.samplesPerPixel == 4 && dir.extraSamples != 0 ) {
+                type = RasterData.TYPE_BYTE_RGBA;
+            }
+        }
+        return BandType.fromBufferedImageType( type, dir.samplesPerPixel, null );
+    }
+
+    private static ICRS getCRS( TiffDirectory base ) {
+        int modelType = base.getGeoKey( GTModelTypeGeoKey );
+        int code = -1;
+        if ( modelType == ModelTypeProjected ) {
+            code = base.getGeoKey( ProjectedCSTypeGeoKey );
+        } else if ( modelType == ModelTypeGeographic ) {
+            code = base.getGeoKey( GeographicTypeGeoKey );
+        }
+        // 32767 is user defined
+        if ( code > 0 && code != 32767 ) {
+            try {
+                return CRSManager.lookup( "EPSG:" + code );
+            } catch ( UnknownCRSException e ) {
+                LOG.error( "No coordinate system found for EPSG:" + code );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates the geo reference of the read image from the model tie point and pixel scale of the full resolution
+     * image, the resolution of overviews is scaled by their size.
+     */
+    private RasterGeoReference getGeoReference( TiffDirectory base, OriginLocation location, ICRS crs ) {
+        double[] scale = base.pixelScale;
+        double[] tiePoints = base.tiePoints;
+        if ( scale == null || tiePoints == null || scale.length < 2 || tiePoints.length < 6 ) {
+            return null;
+        }
+        RasterGeoReference ref = new RasterGeoReference( location, scale[0], -scale[1], tiePoints[3], tiePoints[4],
+                                                         crs );
+        if ( dir == base ) {
+            return ref;
+        }
+        double factorX = base.width / (double) dir.width;
+        double factorY = base.height / (double) dir.height;
+        double[] outer = ref.getOrigin( OriginLocation.OUTER );
+        ref = new RasterGeoReference( OriginLocation.OUTER, scale[0] * factorX, -scale[1] * factorY, outer[0],
+                                      outer[1], crs );
+        return ref.createRelocatedReference( location );
+    }
+
+    @Override
+    public BufferResult read( RasterRect rect, ByteBuffer resultBuffer )
+                            throws IOException {
+        if ( dir == null || rect == null ) {
+            return null;
+        }
+        int x0 = Math.max( 0, rect.x );
+        int y0 = Math.max( 0, rect.y );
+        int x1 = Math.min( dir.width, rect.x + rect.width );
+        int y1 = Math.min( dir.height, rect.y + rect.height );
+        if ( x1 <= x0 || y1 <= y0 ) {
+            return null;
+        }
+        int width = x1 - x0;
+        int pixelSize = rdi.bands * rdi.dataSize;
+        ByteBuffer result = resultBuffer;
+        if ( result == null ) {
+            result = ByteBufferPool.allocate( width * ( y1 - y0 ) * pixelSize, false );
+        }
+        ByteBuffer target = result.duplicate();
+        int tilesAcross = dir.getTilesAcross();
+        for ( int tileRow = y0 / dir.tileHeight; tileRow <= ( y1 - 1 ) / dir.tileHeight; ++tileRow ) {
+            int tileY = tileRow * dir.tileHeight;
+            // strips at the bottom of the image are not padded
+            int rows = dir.tiled ? dir.tileHeight : Math.min( dir.tileHeight, dir.height - tileY );
+            int fromY = Math.max( y0, tileY );
+            int toY = Math.min( y1, tileY + rows );
+            for ( int tileCol = x0 / dir.tileWidth; tileCol <= ( x1 - 1 ) / dir.tileWidth; ++tileCol ) {
+                int tileX = tileCol * dir.tileWidth;
+                byte[] tile = readTile( tileRow * tilesAcross + tileCol, rows );
+                int fromX = Math.max( x0, tileX );
+                int length = ( Math.min( x1, tileX + dir.tileWidth ) - fromX ) * pixelSize;
+                for ( int y = fromY; y < toY; ++y ) {
+                    int src = ( ( y - tileY ) * dir.tileWidth + ( fromX - tileX ) ) * pixelSize;
+                    target.position( ( ( y - y0 ) * width + ( fromX - x0 ) ) * pixelSize );
+                    target.put( tile, src, length );
+                }
+            }
+        }
+        return new BufferResult( new RasterRect( x0, y0, width, y1 - y0 ), result );
+    }
+
+    private byte[] readTile( int index, int rows )
+                            throws IOException {
+        long offset = dir.tileOffsets[index];
+        long length = dir.tileByteCounts[index];
+        if ( offset == 0 || length == 0 ) {
+            // sparse tile
+            return new byte[dir.tileWidth * rows * rdi.bands * rdi.dataSize];
+        }
+        if ( length > Integer.MAX_VALUE ) {
+            throw new IOException( "Tile " + index + " of " + file + " is too large." );
+        }
+        ByteBuffer data;
+        try {
+            data = TiffDirectory.read( getChannel(), offset, (int) length, dir.byteOrder );
+        } catch ( ClosedChannelException e ) {
+            // the reader was disposed by another thread while reading, open it again.
+            data = TiffDirectory.read( getChannel(), offset, (int) length, dir.byteOrder );
+        }
+        return TiffTileDecoder.decode( dir, data.array(), rows );
+    }
+
+    private FileChannel getChannel()
+                            throws IOException {
+        synchronized ( LOCK ) {
+            if ( channel == null || !channel.isOpen() ) {
+                channel = new RandomAccessFile( file, "r" ).getChannel();
+            }
+            return channel;
+        }
+    }
+
+    @Override
+    public Set<String> getSupportedFormats() {
+        return CogRasterIOProvider.FORMATS;
+    }
+
+    @Override
+    public boolean shouldCreateCacheFile() {
+        return false;
+    }
+
+    @Override
+    public File file() {
+        return file;
+    }
+
+    @Override
+    public int getWidth() {
+        return dir == null ? 0 : dir.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return dir == null ? 0 : dir.height;
+    }
+
+    @Override
+    public RasterGeoReference getGeoReference() {
+        return rasterReference;
+    }
+
+    @Override
+    public RasterDataInfo getRasterDataInfo() {
+        return rdi;
+    }
+
+    @Override
+    public boolean canReadTiles() {
+        return true;
+    }
+
+    @Override
+    public String getDataLocationId() {
+        return dataLocationId;
+    }
+
+    @Override
+    public void dispose() {
+        synchronized ( LOCK ) {
+            if ( channel != null ) {
+                try {
+                    channel.close();
+                } catch ( IOException e ) {
+                    LOG.debug( "Could not close {}: {}", file, e.getLocalizedMessage() );
+                }
+                channel = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,499 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.io.tiff;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.deegree.coverage.raster.data.info.DataType;
+
+/**
+ * A single image file directory (IFD) of a (Big)TIFF file, holding the layout of the image and the offsets of its
+ * tiles or strips. Strips are treated as tiles which span the width of the image.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class TiffDirectory {
+
+    static final int COMPRESSION_NONE = 1;
+
+    static final int COMPRESSION_LZW = 5;
+
+    static final int COMPRESSION_DEFLATE = 8;
+
+    static final int COMPRESSION_PACKBITS = 32773;
+
+    static final int COMPRESSION_DEFLATE_OLD = 32946;
+
+    static final int PREDICTOR_NONE = 1;
+
+    static final int PREDICTOR_HORIZONTAL = 2;
+
+    static final int PREDICTOR_FLOATINGPOINT = 3;
+
+    static final int PHOTOMETRIC_RGB = 2;
+
+    private static final int TAG_IMAGE_WIDTH = 256;
+
+    private static final int TAG_IMAGE_LENGTH = 257;
+
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+
+    private static final int TAG_COMPRESSION = 259;
+
+    private static final int TAG_PHOTOMETRIC = 262;
+
+    private static final int TAG_STRIP_OFFSETS = 273;
+
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+
+    private static final int TAG_ROWS_PER_STRIP = 278;
+
+    private static final int TAG_STRIP_BYTE_COUNTS = 279;
+
+    private static final int TAG_PLANAR_CONFIGURATION = 284;
+
+    private static final int TAG_PREDICTOR = 317;
+
+    private static final int TAG_TILE_WIDTH = 322;
+
+    private static final int TAG_TILE_LENGTH = 323;
+
+    private static final int TAG_TILE_OFFSETS = 324;
+
+    private static final int TAG_TILE_BYTE_COUNTS = 325;
+
+    private static final int TAG_EXTRA_SAMPLES = 338;
+
+    private static final int TAG_SAMPLE_FORMAT = 339;
+
+    private static final int TAG_MODEL_PIXEL_SCALE = 33550;
+
+    private static final int TAG_MODEL_TIEPOINT = 33922;
+
+    private static final int TAG_GEO_KEY_DIRECTORY = 34735;
+
+    // the byte sizes of the tiff field types, indexed by type
+    private static final int[] TYPE_SIZES = { 0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8, 4, 0, 0, 8, 8, 8 };
+
+    private static final int MAX_DIRECTORIES = 1024;
+
+    ByteOrder byteOrder;
+
+    int width;
+
+    int height;
+
+    int tileWidth;
+
+    int tileHeight;
+
+    boolean tiled;
+
+    int bitsPerSample = 1;
+
+    int samplesPerPixel = 1;
+
+    int sampleFormat = 1;
+
+    int compression = COMPRESSION_NONE;
+
+    int predictor = PREDICTOR_NONE;
+
+    int photometric = -1;
+
+    int planarConfiguration = 1;
+
+    int extraSamples;
+
+    long[] tileOffsets;
+
+    long[] tileByteCounts;
+
+    double[] pixelScale;
+
+    double[] tiePoints;
+
+    int[] geoKeys;
+
+    /**
+     * Reads all directories of the main image chain of the given (Big)TIFF file.
+     * 
+     * @param channel
+     *            to read from
+     * @return the directories in file order, never empty
+     * @throws IOException
+     *             if the file is not a tiff file or could not be read
+     */
+    static List<TiffDirectory> readDirectories( FileChannel channel )
+                            throws IOException {
+        ByteBuffer header = read( channel, 0, 16, ByteOrder.BIG_ENDIAN );
+        ByteOrder order;
+        short bom = header.getShort( 0 );
+        if ( bom == 0x4949 ) {
+            order = ByteOrder.LITTLE_ENDIAN;
+        } else if ( bom == 0x4d4d ) {
+            order = ByteOrder.BIG_ENDIAN;
+        } else {
+            throw new IOException( "Not a tiff file." );
+        }
+        header.order( order );
+        int version = header.getShort( 2 );
+        boolean bigTiff;
+        long offset;
+        if ( version == 42 ) {
+            bigTiff = false;
+            offset = header.getInt( 4 ) & 0xffffffffL;
+        } else if ( version == 43 ) {
+            bigTiff = true;
+            if ( header.getShort( 4 ) != 8 ) {
+                throw new IOException( "Unsupported BigTIFF offset size." );
+            }
+            offset = header.getLong( 8 );
+        } else {
+            throw new IOException( "Unknown tiff version: " + version );
+        }
+        List<TiffDirectory> result = new ArrayList<TiffDirectory>();
+        Set<Long> visited = new HashSet<Long>();
+        while ( offset != 0 && visited.add( offset ) ) {
+            if ( result.size() == MAX_DIRECTORIES ) {
+                throw new IOException( "Too many image file directories." );
+            }
+            TiffDirectory dir = new TiffDirectory();
+            dir.byteOrder = order;
+            offset = dir.readEntries( channel, offset, bigTiff );
+            result.add( dir );
+        }
+        if ( result.isEmpty() ) {
+            throw new IOException( "The tiff file does not contain any image." );
+        }
+        return result;
+    }
+
+    private long readEntries( FileChannel channel, long offset, boolean bigTiff )
+                            throws IOException {
+        int countSize = bigTiff ? 8 : 2;
+        int entrySize = bigTiff ? 20 : 12;
+        ByteBuffer buf = read( channel, offset, countSize, byteOrder );
+        long count = bigTiff ? buf.getLong( 0 ) : ( buf.getShort( 0 ) & 0xffff );
+        if ( count <= 0 || count > 4096 ) {
+            throw new IOException( "Invalid number of directory entries: " + count );
+        }
+        int size = (int) count * entrySize + ( bigTiff ? 8 : 4 );
+        ByteBuffer entries = read( channel, offset + countSize, size, byteOrder );
+        long[] stripOffsets = null;
+        long[] stripByteCounts = null;
+        int rowsPerStrip = -1;
+        for ( int i = 0; i < count; ++i ) {
+            int pos = i * entrySize;
+            int tag = entries.getShort( pos ) & 0xffff;
+            int type = entries.getShort( pos + 2 ) & 0xffff;
+            long num = bigTiff ? entries.getLong( pos + 4 ) : ( entries.getInt( pos + 4 ) & 0xffffffffL );
+            int valuePos = pos + ( bigTiff ? 12 : 8 );
+            switch ( tag ) {
+            case TAG_IMAGE_WIDTH:
+                width = (int) readLongs( channel, entries, valuePos, type, num, bigTiff )[0];
+                break;
+            case TAG_IMAGE_LENGTH:
+                height = (int) readLongs( channel, entries, valuePos, type, num, bigTiff )[0];
+                break;
+            case TAG_BITS_PER_SAMPLE:
+                long[] bits = readLongs( channel, entries, valuePos, type, num, bigTiff );
+                bitsPerSample = (int) bits[0];
+                for ( long b : bits ) {
+                    if ( b != bitsPerSample ) {
+                        // mixed sample sizes are not supported
+                        bitsPerSample = -1;
+                    }
+                }
+                break;
+            case TAG_COMPRESSION:
+                compression = (int) readLongs( channel, entries, valuePos, type, num, bigTiff )[0];
+                break;
+            case TAG_PHOTOMETRIC:
+                photometric = (int) readLongs( channel, entries, valuePos, type, num, bigTiff )[0];
+                break;
+            case TAG_SAMPLES_PER_PIXEL:
+                samplesPerPixel = (int) readLongs( channel, entries, valuePos, type, num, bigTiff )[0];
+                break;
+            case TAG_ROWS_PER_STRIP:
+                rowsPerStrip = (int) readLongs( channel, entries, valuePos, type, num, bigTiff )[0];
+                break;
+            case TAG_STRIP_OFFSETS:
+                stripOffsets = readLongs( channel, entries, valuePos, type, num, bigTiff );
+                break;
+            case TAG_STRIP_BYTE_COUNTS:
+                stripByteCounts = readLongs( channel, entries, valuePos, type, num, bigTiff );
+                break;
+            case TAG_PLANAR_CONFIGURATION:
+                planarConfiguration = (int) readLongs( channel, entries, valuePos, type, num, bigTiff )[0];
+                break;
+            case TAG_PREDICTOR:
+                predictor = (int) readLongs( channel, entries, valuePos, type, num, bigTiff )[0];
+                break;
+            case TAG_TILE_WIDTH:
+                tileWidth = (int) readLongs( channel, entries, valuePos, type, num, bigTiff )[0];
+                tiled = true;
+                break;
+            case TAG_TILE_LENGTH:
+                tileHeight = (int) readLongs( channel, entries, valuePos, type, num, bigTiff )[0];
+                tiled = true;
+                break;
+            case TAG_TILE_OFFSETS:
+                tileOffsets = readLongs( channel, entries, valuePos, type, num, bigTiff );
+                break;
+            case TAG_TILE_BYTE_COUNTS:
+                tileByteCounts = readLongs( channel, entries, valuePos, type, num, bigTiff );
+                break;
+            case TAG_EXTRA_SAMPLES:
+                long[] extra = readLongs( channel, entries, valuePos, type, num, bigTiff );
+                // only an associated (1) or unassociated (2) alpha channel is of interest
+                extraSamples = extra.length > 0 ? (int) extra[0] : 0;
+                break;
+            case TAG_SAMPLE_FORMAT:
+                sampleFormat = (int) readLongs( channel, entries, valuePos, type, num, bigTiff )[0];
+                break;
+            case TAG_MODEL_PIXEL_SCALE:
+                pixelScale = readDoubles( channel, entries, valuePos, type, num, bigTiff );
+                break;
+            case TAG_MODEL_TIEPOINT:
+                tiePoints = readDoubles( channel, entries, valuePos, type, num, bigTiff );
+                break;
+            case TAG_GEO_KEY_DIRECTORY:
+                long[] keys = readLongs( channel, entries, valuePos, type, num, bigTiff );
+                geoKeys = new int[keys.length];
+                for ( int k = 0; k < keys.length; ++k ) {
+                    geoKeys[k] = (int) keys[k];
+                }
+                break;
+            default:
+                // not needed
+            }
+        }
+        if ( !tiled ) {
+            tileWidth = width;
+            tileHeight = rowsPerStrip <= 0 || rowsPerStrip > height ? height : rowsPerStrip;
+            tileOffsets = stripOffsets;
+            tileByteCounts = stripByteCounts;
+        }
+        int next = (int) count * entrySize;
+        return bigTiff ? entries.getLong( next ) : ( entries.getInt( next ) & 0xffffffffL );
+    }
+
+    /**
+     * @return <code>null</code> if the image can be decoded, otherwise the reason why it can't
+     */
+    String getUnsupportedReason() {
+        if ( width <= 0 || height <= 0 || tileWidth <= 0 || tileHeight <= 0 ) {
+            return "invalid image or tile size";
+        }
+        if ( tileOffsets == null || tileByteCounts == null || tileOffsets.length != tileByteCounts.length
+             || tileOffsets.length < getTilesAcross() * getTilesDown() ) {
+            return "missing or incomplete tile offsets";
+        }
+        if ( planarConfiguration != 1 && samplesPerPixel > 1 ) {
+            return "planar configuration " + planarConfiguration;
+        }
+        if ( compression != COMPRESSION_NONE && compression != COMPRESSION_LZW && compression != COMPRESSION_DEFLATE
+             && compression != COMPRESSION_DEFLATE_OLD && compression != COMPRESSION_PACKBITS ) {
+            return "compression " + compression;
+        }
+        if ( predictor != PREDICTOR_NONE && predictor != PREDICTOR_HORIZONTAL && predictor != PREDICTOR_FLOATINGPOINT ) {
+            return "predictor " + predictor;
+        }
+        if ( getDataType() == DataType.UNDEFINED ) {
+            return bitsPerSample + " bits per sample with sample format " + sampleFormat;
+        }
+        return null;
+    }
+
+    /**
+     * @return the deegree data type of the samples, {@link DataType#UNDEFINED} if not supported
+     */
+    DataType getDataType() {
+        switch ( bitsPerSample ) {
+        case 8:
+            return sampleFormat == 3 ? DataType.UNDEFINED : DataType.BYTE;
+        case 16:
+            if ( sampleFormat == 1 ) {
+                return DataType.USHORT;
+            }
+            return sampleFormat == 2 ? DataType.SHORT : DataType.UNDEFINED;
+        case 32:
+            return sampleFormat == 3 ? DataType.FLOAT : DataType.INT;
+        case 64:
+            return sampleFormat == 3 ? DataType.DOUBLE : DataType.UNDEFINED;
+        default:
+            return DataType.UNDEFINED;
+        }
+    }
+
+    int getTilesAcross() {
+        return ( width + tileWidth - 1 ) / tileWidth;
+    }
+
+    int getTilesDown() {
+        return ( height + tileHeight - 1 ) / tileHeight;
+    }
+
+    /**
+     * @param key
+     *            a geo key id
+     * @return the value of the given geo key if it is stored in the key directory itself, -1 otherwise
+     */
+    int getGeoKey( int key ) {
+        if ( geoKeys == null || geoKeys.length < 4 ) {
+            return -1;
+        }
+        int numKeys = geoKeys[3];
+        for ( int i = 0; i < numKeys && 4 + i * 4 + 3 < geoKeys.length; ++i ) {
+            int pos = 4 + i * 4;
+            if ( geoKeys[pos] == key && geoKeys[pos + 1] == 0 ) {
+                return geoKeys[pos + 3];
+            }
+        }
+        return -1;
+    }
+
+    private ByteBuffer readValues( FileChannel channel, ByteBuffer entries, int valuePos, int type, long num,
+                                   boolean bigTiff )
+                            throws IOException {
+        int typeSize = type < TYPE_SIZES.length ? TYPE_SIZES[type] : 0;
+        if ( typeSize == 0 ) {
+            throw new IOException( "Unknown tiff field type: " + type );
+        }
+        long size = typeSize * num;
+        if ( num <= 0 || size > Integer.MAX_VALUE ) {
+            throw new IOException( "Invalid tiff field value count: " + num );
+        }
+        if ( size <= ( bigTiff ? 8 : 4 ) ) {
+            ByteBuffer inline = entries.duplicate().order( byteOrder );
+            inline.position( valuePos );
+            inline = inline.slice().order( byteOrder );
+            return inline;
+        }
+        long offset = bigTiff ? entries.getLong( valuePos ) : ( entries.getInt( valuePos ) & 0xffffffffL );
+        return read( channel, offset, (int) size, byteOrder );
+    }
+
+    private long[] readLongs( FileChannel channel, ByteBuffer entries, int valuePos, int type, long num,
+                              boolean bigTiff )
+                            throws IOException {
+        ByteBuffer values = readValues( channel, entries, valuePos, type, num, bigTiff );
+        long[] result = new long[(int) num];
+        for ( int i = 0; i < result.length; ++i ) {
+            switch ( type ) {
+            case 1:
+            case 7:
+                result[i] = values.get( i ) & 0xff;
+                break;
+            case 6:
+                result[i] = values.get( i );
+                break;
+            case 3:
+                result[i] = values.getShort( i * 2 ) & 0xffff;
+                break;
+            case 8:
+                result[i] = values.getShort( i * 2 );
+                break;
+            case 4:
+            case 13:
+                result[i] = values.getInt( i * 4 ) & 0xffffffffL;
+                break;
+            case 9:
+                result[i] = values.getInt( i * 4 );
+                break;
+            case 16:
+            case 17:
+            case 18:
+                result[i] = values.getLong( i * 8 );
+                break;
+            default:
+                throw new IOException( "Expected an integer tiff field, found type: " + type );
+            }
+        }
+        return result;
+    }
+
+    private double[] readDoubles( FileChannel channel, ByteBuffer entries, int valuePos, int type, long num,
+                                  boolean bigTiff )
+                            throws IOException {
+        if ( type != 11 && type != 12 ) {
+            long[] longs = readLongs( channel, entries, valuePos, type, num, bigTiff );
+            double[] result = new double[longs.length];
+            for ( int i = 0; i < longs.length; ++i ) {
+                result[i] = longs[i];
+            }
+            return result;
+        }
+        ByteBuffer values = readValues( channel, entries, valuePos, type, num, bigTiff );
+        double[] result = new double[(int) num];
+        for ( int i = 0; i < result.length; ++i ) {
+            result[i] = type == 11 ? values.getFloat( i * 4 ) : values.getDouble( i * 8 );
+        }
+        return result;
+    }
+
+    /**
+     * Reads the given number of bytes at the given position of the channel, without changing the position of the
+     * channel.
+     */
+    static ByteBuffer read( FileChannel channel, long position, int size, ByteOrder order )
+                            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate( size );
+        long pos = position;
+        while ( buf.hasRemaining() ) {
+            int read = channel.read( buf, pos );
+            if ( read < 0 ) {
+                throw new IOException( "Unexpected end of tiff file at position " + pos + "." );
+            }
+            pos += read;
+        }
+        buf.order( order );
+        buf.rewind();
+        return buf;
+    }
+
+}
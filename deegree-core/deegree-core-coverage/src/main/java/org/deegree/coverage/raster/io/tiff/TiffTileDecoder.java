@@ -0,0 +1,327 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.io.tiff;
+
+import static org.deegree.coverage.raster.io.tiff.TiffDirectory.COMPRESSION_DEFLATE;
+import static org.deegree.coverage.raster.io.tiff.TiffDirectory.COMPRESSION_DEFLATE_OLD;
+import static org.deegree.coverage.raster.io.tiff.TiffDirectory.COMPRESSION_LZW;
+import static org.deegree.coverage.raster.io.tiff.TiffDirectory.COMPRESSION_NONE;
+import static org.deegree.coverage.raster.io.tiff.TiffDirectory.COMPRESSION_PACKBITS;
+import static org.deegree.coverage.raster.io.tiff.TiffDirectory.PREDICTOR_FLOATINGPOINT;
+import static org.deegree.coverage.raster.io.tiff.TiffDirectory.PREDICTOR_HORIZONTAL;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decodes the compressed tiles (or strips) of a {@link TiffDirectory} into pixel interleaved, big endian samples, which
+ * is the layout of the deegree raster data buffers.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+final class TiffTileDecoder {
+
+    private static final int LZW_CLEAR = 256;
+
+    private static final int LZW_EOI = 257;
+
+    private TiffTileDecoder() {
+        // static helpers only
+    }
+
+    /**
+     * @param dir
+     *            the directory the tile belongs to
+     * @param data
+     *            the tile data as stored in the file
+     * @param rows
+     *            the number of rows of the tile (strips at the bottom of the image may be smaller)
+     * @return the decoded samples of the tile in big endian order, (tileWidth * rows * bytes per pixel) bytes
+     * @throws IOException
+     *             if the data could not be decoded
+     */
+    static byte[] decode( TiffDirectory dir, byte[] data, int rows )
+                            throws IOException {
+        int bytesPerSample = dir.bitsPerSample / 8;
+        int rowLength = dir.tileWidth * dir.samplesPerPixel * bytesPerSample;
+        int size = rowLength * rows;
+        byte[] result;
+        switch ( dir.compression ) {
+        case COMPRESSION_NONE:
+            result = data;
+            break;
+        case COMPRESSION_DEFLATE:
+        case COMPRESSION_DEFLATE_OLD:
+            result = inflate( data, size );
+            break;
+        case COMPRESSION_LZW:
+            result = decodeLzw( data, size );
+            break;
+        case COMPRESSION_PACKBITS:
+            result = decodePackBits( data, size );
+            break;
+        default:
+            throw new IOException( "Unsupported tiff compression: " + dir.compression );
+        }
+        if ( result.length != size ) {
+            // truncated tile, missing values are 0
+            byte[] tmp = new byte[size];
+            System.arraycopy( result, 0, tmp, 0, Math.min( size, result.length ) );
+            result = tmp;
+        }
+        if ( dir.predictor == PREDICTOR_FLOATINGPOINT ) {
+            undoFloatingPointPredictor( result, rows, rowLength, dir.samplesPerPixel, bytesPerSample );
+            return result;
+        }
+        if ( bytesPerSample > 1 && dir.byteOrder == ByteOrder.LITTLE_ENDIAN ) {
+            swap( result, bytesPerSample );
+        }
+        if ( dir.predictor == PREDICTOR_HORIZONTAL ) {
+            undoHorizontalPredictor( result, rows, rowLength, dir.samplesPerPixel, bytesPerSample );
+        }
+        return result;
+    }
+
+    private static byte[] inflate( byte[] data, int size )
+                            throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput( data );
+            byte[] result = new byte[size];
+            int off = 0;
+            while ( off < size && !inflater.finished() ) {
+                int read = inflater.inflate( result, off, size - off );
+                if ( read == 0 && ( inflater.needsInput() || inflater.needsDictionary() ) ) {
+                    break;
+                }
+                off += read;
+            }
+            return result;
+        } catch ( DataFormatException e ) {
+            throw new IOException( "Could not inflate tiff tile: " + e.getLocalizedMessage() );
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Decodes msb first tiff lzw data (with 'early change' of the code length).
+     */
+    private static byte[] decodeLzw( byte[] data, int size )
+                            throws IOException {
+        byte[] result = new byte[size];
+        int[] prefix = new int[4096];
+        byte[] suffix = new byte[4096];
+        byte[] first = new byte[4096];
+        int[] length = new int[4096];
+        for ( int i = 0; i < 256; ++i ) {
+            suffix[i] = (byte) i;
+            first[i] = (byte) i;
+            length[i] = 1;
+        }
+        int tableSize = 258;
+        int codeLength = 9;
+        int old = -1;
+        int out = 0;
+        long bitBuffer = 0;
+        int bits = 0;
+        int in = 0;
+        while ( out < size ) {
+            while ( bits < codeLength && in < data.length ) {
+                bitBuffer = ( bitBuffer << 8 ) | ( data[in++] & 0xff );
+                bits += 8;
+            }
+            if ( bits < codeLength ) {
+                break;
+            }
+            int code = (int) ( ( bitBuffer >>> ( bits - codeLength ) ) & ( ( 1 << codeLength ) - 1 ) );
+            bits -= codeLength;
+            if ( code == LZW_EOI ) {
+                break;
+            }
+            if ( code == LZW_CLEAR ) {
+                tableSize = 258;
+                codeLength = 9;
+                old = -1;
+                continue;
+            }
+            if ( old == -1 ) {
+                if ( code > 255 ) {
+                    throw new IOException( "Invalid lzw code " + code + " after a clear code." );
+                }
+                result[out++] = (byte) code;
+                old = code;
+                continue;
+            }
+            int entry;
+            if ( code < tableSize ) {
+                entry = code;
+                if ( tableSize < 4096 ) {
+                    addLzwEntry( prefix, suffix, first, length, tableSize++, old, first[code] );
+                }
+            } else if ( code == tableSize && tableSize < 4096 ) {
+                addLzwEntry( prefix, suffix, first, length, tableSize++, old, first[old] );
+                entry = code;
+            } else {
+                throw new IOException( "Invalid lzw code " + code + "." );
+            }
+            out = writeLzwEntry( result, out, entry, prefix, suffix, length );
+            old = code;
+            if ( tableSize + 1 >= ( 1 << codeLength ) && codeLength < 12 ) {
+                ++codeLength;
+            }
+        }
+        return result;
+    }
+
+    private static void addLzwEntry( int[] prefix, byte[] suffix, byte[] first, int[] length, int code, int old,
+                                     byte b ) {
+        prefix[code] = old;
+        suffix[code] = b;
+        first[code] = first[old];
+        length[code] = length[old] + 1;
+    }
+
+    private static int writeLzwEntry( byte[] result, int out, int code, int[] prefix, byte[] suffix, int[] length ) {
+        int len = length[code];
+        int end = Math.min( result.length, out + len );
+        // write the entry backwards, skipping bytes which do not fit
+        int pos = out + len - 1;
+        int c = code;
+        while ( pos >= out ) {
+            if ( pos < end ) {
+                result[pos] = suffix[c];
+            }
+            c = prefix[c];
+            --pos;
+        }
+        return end;
+    }
+
+    private static byte[] decodePackBits( byte[] data, int size ) {
+        byte[] result = new byte[size];
+        int in = 0;
+        int out = 0;
+        while ( in < data.length && out < size ) {
+            int n = data[in++];
+            if ( n >= 0 ) {
+                int count = Math.min( Math.min( n + 1, data.length - in ), size - out );
+                System.arraycopy( data, in, result, out, count );
+                in += n + 1;
+                out += count;
+            } else if ( n != -128 && in < data.length ) {
+                byte b = data[in++];
+                int count = Math.min( 1 - n, size - out );
+                for ( int i = 0; i < count; ++i ) {
+                    result[out++] = b;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void swap( byte[] data, int bytesPerSample ) {
+        for ( int i = 0; i + bytesPerSample <= data.length; i += bytesPerSample ) {
+            for ( int lo = i, hi = i + bytesPerSample - 1; lo < hi; ++lo, --hi ) {
+                byte tmp = data[lo];
+                data[lo] = data[hi];
+                data[hi] = tmp;
+            }
+        }
+    }
+
+    /**
+     * Adds the previous sample of the same band to each sample, the data must be big endian.
+     */
+    private static void undoHorizontalPredictor( byte[] data, int rows, int rowLength, int samplesPerPixel,
+                                                 int bytesPerSample ) {
+        int stride = samplesPerPixel * bytesPerSample;
+        for ( int row = 0; row < rows; ++row ) {
+            int start = row * rowLength;
+            int end = start + rowLength;
+            for ( int i = start + stride; i < end; i += bytesPerSample ) {
+                int prev = i - stride;
+                switch ( bytesPerSample ) {
+                case 1:
+                    data[i] += data[prev];
+                    break;
+                case 2:
+                    int s = ( ( ( data[i] & 0xff ) << 8 ) | ( data[i + 1] & 0xff ) )
+                            + ( ( ( data[prev] & 0xff ) << 8 ) | ( data[prev + 1] & 0xff ) );
+                    data[i] = (byte) ( s >> 8 );
+                    data[i + 1] = (byte) s;
+                    break;
+                default:
+                    // 4 or 8 bytes, add with carry from the least significant byte on
+                    int carry = 0;
+                    for ( int b = bytesPerSample - 1; b >= 0; --b ) {
+                        int sum = ( data[i + b] & 0xff ) + ( data[prev + b] & 0xff ) + carry;
+                        data[i + b] = (byte) sum;
+                        carry = sum >> 8;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Undoes the byte wise differencing and the byte shuffling of the floating point predictor, the result is big
+     * endian.
+     */
+    private static void undoFloatingPointPredictor( byte[] data, int rows, int rowLength, int samplesPerPixel,
+                                                    int bytesPerSample ) {
+        int samples = rowLength / bytesPerSample;
+        byte[] tmp = new byte[rowLength];
+        for ( int row = 0; row < rows; ++row ) {
+            int start = row * rowLength;
+            for ( int i = start + samplesPerPixel; i < start + rowLength; ++i ) {
+                data[i] += data[i - samplesPerPixel];
+            }
+            System.arraycopy( data, start, tmp, 0, rowLength );
+            for ( int s = 0; s < samples; ++s ) {
+                for ( int b = 0; b < bytesPerSample; ++b ) {
+                    data[start + s * bytesPerSample + b] = tmp[b * samples + s];
+                }
+            }
+        }
+    }
+
+}
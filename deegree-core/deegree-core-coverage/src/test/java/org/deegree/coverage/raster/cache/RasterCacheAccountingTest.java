@@ -0,0 +1,234 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.cache;
+
+import static org.deegree.coverage.raster.cache.RasterCache.DEF_RASTER_CACHE_DISK_SIZE;
+import static org.deegree.coverage.raster.cache.RasterCache.DEF_RASTER_CACHE_MEM_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for the memory and disk accounting, the eviction order and the statistics of the {@link RasterCache}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class RasterCacheAccountingTest {
+
+    @Before
+    public void setUp() {
+        System.setProperty( DEF_RASTER_CACHE_MEM_SIZE, "1000" );
+        System.setProperty( DEF_RASTER_CACHE_DISK_SIZE, "1000" );
+        RasterCache.reset( false );
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty( DEF_RASTER_CACHE_MEM_SIZE );
+        System.clearProperty( DEF_RASTER_CACHE_DISK_SIZE );
+        RasterCache.reset( false );
+    }
+
+    @Test
+    public void testAddReaderAccounting() {
+        RasterCache.getInstance().addReader( reader( 300, 200, true ) );
+        RasterCache.getInstance().addReader( reader( 100, 0, true ) );
+        assertEquals( 2, RasterCache.size() );
+        assertEquals( 400, RasterCache.getCurrentlyUsedMemory() );
+        assertEquals( 200, RasterCache.getCurrentlyUsedDisk() );
+    }
+
+    @Test
+    public void testAddReaderTwice() {
+        CacheRasterReader reader = reader( 300, 200, true );
+        RasterCache.getInstance().addReader( reader );
+        RasterCache.getInstance().addReader( reader );
+        assertEquals( 1, RasterCache.size() );
+        assertEquals( 300, RasterCache.getCurrentlyUsedMemory() );
+        assertEquals( 200, RasterCache.getCurrentlyUsedDisk() );
+    }
+
+    @Test
+    public void testFreeMemoryWithinLimit() {
+        RasterCache.getInstance().addReader( reader( 300, 0, true ) );
+        assertEquals( 500, RasterCache.freeMemory( 200 ) );
+        assertEquals( 500, RasterCache.getCurrentlyUsedMemory() );
+        assertEquals( 0, RasterCache.getStatistics().getEvictions() );
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedFirst() {
+        CacheRasterReader a = reader( 300, 0, true );
+        CacheRasterReader b = reader( 300, 0, true );
+        CacheRasterReader c = reader( 300, 0, true );
+        RasterCache.getInstance().addReader( a );
+        RasterCache.getInstance().addReader( b );
+        RasterCache.getInstance().addReader( c );
+        // lru order is now c, b, a
+        RasterCache.recordAccess( c );
+        RasterCache.recordAccess( a );
+        // lru order is now b, c, a
+
+        // 900 + 150 exceeds the limit, memory is freed until less than half of the cache memory would be used
+        assertEquals( 450, RasterCache.freeMemory( 150 ) );
+
+        verify( b ).dispose( false );
+        verify( c ).dispose( false );
+        verify( a, never() ).dispose( anyBoolean() );
+        assertEquals( 450, RasterCache.getCurrentlyUsedMemory() );
+        // the evicted readers have been written to their cache files
+        assertEquals( 600, RasterCache.getCurrentlyUsedDisk() );
+        assertEquals( 2, RasterCache.getStatistics().getEvictions() );
+    }
+
+    @Test
+    public void testEvictsWithoutCacheFile() {
+        CacheRasterReader a = reader( 600, 0, false );
+        CacheRasterReader b = reader( 300, 0, true );
+        RasterCache.getInstance().addReader( b );
+        RasterCache.getInstance().addReader( a );
+
+        assertEquals( 450, RasterCache.freeMemory( 150 ) );
+
+        // memory of readers without cache file is just dropped
+        verify( a ).dispose( true );
+        verify( b, never() ).dispose( anyBoolean() );
+        assertEquals( 0, RasterCache.getCurrentlyUsedDisk() );
+        assertEquals( 1, RasterCache.getStatistics().getEvictions() );
+    }
+
+    @Test
+    public void testDeletesCacheFilesIfDiskIsFull() {
+        System.setProperty( DEF_RASTER_CACHE_DISK_SIZE, "100" );
+        RasterCache.reset( false );
+        CacheRasterReader a = reader( 600, 200, true );
+        CacheRasterReader b = reader( 300, 0, false );
+        RasterCache.getInstance().addReader( b );
+        RasterCache.getInstance().addReader( a );
+
+        assertEquals( 200, RasterCache.freeMemory( 200 ) );
+
+        verify( a ).clear( true );
+        verify( a, never() ).dispose( anyBoolean() );
+        verify( b ).dispose( true );
+        assertEquals( 0, RasterCache.getCurrentlyUsedDisk() );
+        assertEquals( 2, RasterCache.getStatistics().getEvictions() );
+    }
+
+    @Test
+    public void testStatistics() {
+        RasterCache.getInstance().addReader( reader( 300, 200, true ) );
+        RasterCache.recordMemoryHit();
+        RasterCache.recordMemoryHit();
+        RasterCache.recordFileHit();
+        RasterCache.recordMiss();
+
+        RasterCacheStatistics stats = RasterCache.getStatistics();
+        assertEquals( 2, stats.getMemoryHits() );
+        assertEquals( 1, stats.getFileHits() );
+        assertEquals( 1, stats.getMisses() );
+        assertEquals( 0, stats.getEvictions() );
+        assertEquals( 300, stats.getBytesInMemory() );
+        assertEquals( 200, stats.getBytesOnDisk() );
+        assertEquals( 1000, stats.getMaxBytesInMemory() );
+        assertEquals( 1000, stats.getMaxBytesOnDisk() );
+        assertEquals( 0.75, stats.getHitRate(), 1e-9 );
+
+        RasterCache.reset( false );
+        stats = RasterCache.getStatistics();
+        assertEquals( 0, stats.getMemoryHits() );
+        assertEquals( 0, stats.getFileHits() );
+        assertEquals( 0, stats.getMisses() );
+        assertEquals( 0, stats.getBytesInMemory() );
+        assertEquals( 0, stats.getHitRate(), 1e-9 );
+    }
+
+    /**
+     * Creates a reader mock which keeps track of its memory and cache file size like a {@link CacheRasterReader}.
+     */
+    private static CacheRasterReader reader( long memory, long onDisk, boolean canCreateCacheFile ) {
+        final long[] size = new long[] { memory, onDisk };
+        CacheRasterReader reader = mock( CacheRasterReader.class );
+        when( reader.currentApproxMemory() ).thenAnswer( new Answer<Long>() {
+            @Override
+            public Long answer( InvocationOnMock invocation ) {
+                return size[0];
+            }
+        } );
+        when( reader.cacheFileSize() ).thenAnswer( new Answer<Long>() {
+            @Override
+            public Long answer( InvocationOnMock invocation ) {
+                return size[1];
+            }
+        } );
+        when( reader.canCreateCacheFile() ).thenReturn( canCreateCacheFile );
+        when( reader.dispose( anyBoolean() ) ).thenAnswer( new Answer<Long>() {
+            @Override
+            public Long answer( InvocationOnMock invocation ) {
+                long freed = size[0];
+                if ( !( (Boolean) invocation.getArguments()[0] ) ) {
+                    // memory is written to the cache file
+                    size[1] += freed;
+                }
+                size[0] = 0;
+                return freed;
+            }
+        } );
+        when( reader.clear( anyBoolean() ) ).thenAnswer( new Answer<Long>() {
+            @Override
+            public Long answer( InvocationOnMock invocation ) {
+                long freed = size[0];
+                size[0] = 0;
+                if ( (Boolean) invocation.getArguments()[0] ) {
+                    size[1] = 0;
+                }
+                return freed;
+            }
+        } );
+        return reader;
+    }
+
+}
@@ -0,0 +1,152 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.cache;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ReaderLru}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ReaderLruTest {
+
+    private ReaderLru lru;
+
+    private CacheRasterReader a;
+
+    private CacheRasterReader b;
+
+    private CacheRasterReader c;
+
+    @Before
+    public void setUp() {
+        lru = new ReaderLru();
+        a = mock( CacheRasterReader.class );
+        b = mock( CacheRasterReader.class );
+        c = mock( CacheRasterReader.class );
+    }
+
+    @Test
+    public void testAddAsLeastRecentlyUsed() {
+        assertTrue( lru.add( a ) );
+        assertTrue( lru.add( b ) );
+        assertTrue( lru.add( c ) );
+        assertEquals( 3, lru.size() );
+        assertEquals( asList( c, b, a ), lru.toList() );
+    }
+
+    @Test
+    public void testAddTwice() {
+        assertTrue( lru.add( a ) );
+        lru.add( b );
+        assertFalse( lru.add( a ) );
+        assertEquals( 2, lru.size() );
+        assertEquals( asList( b, a ), lru.toList() );
+    }
+
+    @Test
+    public void testTouchMovesToMostRecentlyUsed() {
+        lru.add( a );
+        lru.add( b );
+        lru.add( c );
+        lru.touch( c );
+        assertEquals( asList( b, a, c ), lru.toList() );
+        lru.touch( b );
+        assertEquals( asList( a, c, b ), lru.toList() );
+        // already the most recently used one
+        lru.touch( b );
+        assertEquals( asList( a, c, b ), lru.toList() );
+    }
+
+    @Test
+    public void testTouchUnknownReader() {
+        lru.add( a );
+        lru.touch( b );
+        assertEquals( 1, lru.size() );
+        assertEquals( asList( a ), lru.toList() );
+    }
+
+    @Test
+    public void testClear() {
+        lru.add( a );
+        lru.add( b );
+        lru.clear();
+        assertEquals( 0, lru.size() );
+        assertFalse( lru.iterator().hasNext() );
+        // readers can be added again
+        assertTrue( lru.add( a ) );
+        assertEquals( asList( a ), lru.toList() );
+    }
+
+    @Test
+    public void testIterator() {
+        lru.add( a );
+        lru.add( b );
+        Iterator<CacheRasterReader> it = lru.iterator();
+        assertTrue( it.hasNext() );
+        assertEquals( b, it.next() );
+        assertEquals( a, it.next() );
+        assertFalse( it.hasNext() );
+        try {
+            it.next();
+            fail( "NoSuchElementException expected" );
+        } catch ( NoSuchElementException e ) {
+            // expected
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorRemove() {
+        lru.add( a );
+        Iterator<CacheRasterReader> it = lru.iterator();
+        it.next();
+        it.remove();
+    }
+
+}
@@ -0,0 +1,149 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.interpolation;
+
+import static org.deegree.coverage.raster.data.info.BandType.BAND_0;
+import static org.deegree.coverage.raster.data.info.BandType.BAND_1;
+import static org.deegree.coverage.raster.data.info.BandType.BAND_2;
+import static org.deegree.coverage.raster.data.info.InterleaveType.PIXEL;
+import static org.deegree.coverage.raster.interpolation.InterpolationType.BILINEAR;
+import static org.deegree.coverage.raster.interpolation.InterpolationType.NEAREST_NEIGHBOR;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.awt.geom.AffineTransform;
+
+import javax.media.jai.WarpAffine;
+import javax.media.jai.WarpPolynomial;
+
+import org.deegree.coverage.raster.data.RasterData;
+import org.deegree.coverage.raster.data.RasterDataFactory;
+import org.deegree.coverage.raster.data.info.BandType;
+import org.deegree.coverage.raster.data.info.DataType;
+import org.deegree.coverage.raster.geom.RasterRect;
+import org.junit.Test;
+
+/**
+ * Tests that {@link WarpTransformer} produces the same results as a plain single-threaded interpolation loop.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class WarpTransformerTest {
+
+    private static final int SRC_SIZE = 300;
+
+    private static final int DST_SIZE = 512;
+
+    private static final BandType[] BANDS = new BandType[] { BAND_0, BAND_1, BAND_2 };
+
+    // scales the source raster up and shifts it partially outside of the destination raster
+    private final WarpPolynomial warp = new WarpAffine( new AffineTransform( 0.61, 0.05, -0.03, 0.62, -7.3, 3.9 ) );
+
+    @Test
+    public void testByteRaster() {
+        RasterData src = createSource( DataType.BYTE );
+        for ( int y = 0; y < SRC_SIZE; y++ ) {
+            for ( int x = 0; x < SRC_SIZE; x++ ) {
+                for ( int b = 0; b < BANDS.length; b++ ) {
+                    src.setByteSample( x, y, b, (byte) ( x * 7 + y * 3 + b ) );
+                }
+            }
+        }
+        assertSameResult( src, NEAREST_NEIGHBOR );
+        assertSameResult( src, BILINEAR );
+    }
+
+    @Test
+    public void testShortRaster() {
+        RasterData src = createSource( DataType.SHORT );
+        for ( int y = 0; y < SRC_SIZE; y++ ) {
+            for ( int x = 0; x < SRC_SIZE; x++ ) {
+                for ( int b = 0; b < BANDS.length; b++ ) {
+                    src.setShortSample( x, y, b, (short) ( x * 101 - y * 37 + b ) );
+                }
+            }
+        }
+        assertSameResult( src, NEAREST_NEIGHBOR );
+        assertSameResult( src, BILINEAR );
+    }
+
+    @Test
+    public void testFloatRaster() {
+        RasterData src = createSource( DataType.FLOAT );
+        for ( int y = 0; y < SRC_SIZE; y++ ) {
+            for ( int x = 0; x < SRC_SIZE; x++ ) {
+                for ( int b = 0; b < BANDS.length; b++ ) {
+                    src.setFloatSample( x, y, b, (float) Math.sin( x * 0.1 ) * y + b );
+                }
+            }
+        }
+        assertSameResult( src, NEAREST_NEIGHBOR );
+        assertSameResult( src, BILINEAR );
+    }
+
+    private RasterData createSource( DataType dataType ) {
+        return RasterDataFactory.createRasterData( SRC_SIZE, SRC_SIZE, BANDS, dataType, PIXEL, false );
+    }
+
+    private void assertSameResult( RasterData src, InterpolationType type ) {
+        RasterRect rect = new RasterRect( 0, 0, DST_SIZE, DST_SIZE );
+
+        RasterData expected = src.createCompatibleWritableRasterData( rect, null );
+        Interpolation interpolation = InterpolationFactory.getInterpolation( type, src.asReadOnly() );
+        byte[] pixel = new byte[BANDS.length * src.getDataType().getSize()];
+        float[] srcCoords = new float[DST_SIZE * 2];
+        for ( int y = 0; y < DST_SIZE; y++ ) {
+            warp.warpRect( 0, y, DST_SIZE, 1, srcCoords );
+            for ( int x = 0; x < DST_SIZE; x++ ) {
+                interpolation.getPixel( srcCoords[x * 2], srcCoords[x * 2 + 1], pixel );
+                expected.setPixel( x, y, pixel );
+            }
+        }
+
+        RasterData actual = src.createCompatibleWritableRasterData( rect, null );
+        WarpTransformer.warp( warp, type, src.asReadOnly(), actual );
+
+        byte[] expectedPixel = new byte[pixel.length];
+        byte[] actualPixel = new byte[pixel.length];
+        for ( int y = 0; y < DST_SIZE; y++ ) {
+            for ( int x = 0; x < DST_SIZE; x++ ) {
+                assertArrayEquals( "pixel " + x + "," + y, expected.getPixel( x, y, expectedPixel ),
+                                   actual.getPixel( x, y, actualPixel ) );
+            }
+        }
+    }
+
+}
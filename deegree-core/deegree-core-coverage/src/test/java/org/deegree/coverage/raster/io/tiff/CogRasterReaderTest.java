@@ -0,0 +1,541 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.io.tiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.deegree.coverage.raster.AbstractRaster;
+import org.deegree.coverage.raster.SimpleRaster;
+import org.deegree.coverage.raster.data.RasterData;
+import org.deegree.coverage.raster.data.container.BufferResult;
+import org.deegree.coverage.raster.data.info.DataType;
+import org.deegree.coverage.raster.geom.RasterGeoReference;
+import org.deegree.coverage.raster.geom.RasterGeoReference.OriginLocation;
+import org.deegree.coverage.raster.geom.RasterRect;
+import org.deegree.coverage.raster.io.RasterIOOptions;
+import org.deegree.coverage.raster.utils.RasterFactory;
+import org.deegree.geometry.Envelope;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CogRasterReader} against tiled GeoTIFFs with overviews which are generated by the test.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CogRasterReaderTest {
+
+    private static final int WIDTH = 300;
+
+    private static final int HEIGHT = 200;
+
+    private static final int TILE = 64;
+
+    private static final double[] SCALE = { 0.01, 0.02, 0 };
+
+    private static final double[] TIE_POINT = { 0, 0, 0, 7.0, 51.0, 0 };
+
+    private final List<File> files = new ArrayList<File>();
+
+    private final List<CogRasterReader> readers = new ArrayList<CogRasterReader>();
+
+    @Before
+    public void setUp() {
+        files.clear();
+        readers.clear();
+    }
+
+    @After
+    public void tearDown() {
+        for ( CogRasterReader reader : readers ) {
+            reader.dispose();
+        }
+        for ( File f : files ) {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testDeflateWithHorizontalPredictor()
+                            throws IOException {
+        File f = createFixture( false, ByteOrder.LITTLE_ENDIAN, 16, 1, 2, TiffDirectory.COMPRESSION_DEFLATE,
+                                TiffDirectory.PREDICTOR_HORIZONTAL );
+        for ( int level = 0; level < 2; ++level ) {
+            CogRasterReader reader = load( f, level );
+            assertEquals( DataType.USHORT, reader.getRasterDataInfo().dataType );
+            assertEquals( 2, reader.getRasterDataInfo().bands );
+            // crosses tile borders and the right and bottom border of the image
+            RasterRect rect = new RasterRect( 40, 50, 400, 300 );
+            BufferResult result = reader.read( rect, null );
+            RasterRect read = result.getRect();
+            assertEquals( 40, read.x );
+            assertEquals( 50, read.y );
+            assertEquals( reader.getWidth() - 40, read.width );
+            assertEquals( reader.getHeight() - 50, read.height );
+            ByteBuffer buf = result.getResult();
+            int scale = 1 << level;
+            for ( int y = 0; y < read.height; ++y ) {
+                for ( int x = 0; x < read.width; ++x ) {
+                    for ( int b = 0; b < 2; ++b ) {
+                        int pos = ( ( y * read.width + x ) * 2 + b ) * 2;
+                        int expected = ushortValue( ( read.x + x ) * scale, ( read.y + y ) * scale, b );
+                        assertEquals( expected, buf.getShort( pos ) & 0xffff );
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBigTiffFloatingPointPredictor()
+                            throws IOException {
+        File f = createFixture( true, ByteOrder.BIG_ENDIAN, 32, 3, 1, TiffDirectory.COMPRESSION_DEFLATE,
+                                TiffDirectory.PREDICTOR_FLOATINGPOINT );
+        CogRasterReader reader = load( f, 1 );
+        assertEquals( DataType.FLOAT, reader.getRasterDataInfo().dataType );
+        BufferResult result = reader.read( new RasterRect( 0, 0, reader.getWidth(), reader.getHeight() ), null );
+        ByteBuffer buf = result.getResult();
+        for ( int y = 0; y < reader.getHeight(); ++y ) {
+            for ( int x = 0; x < reader.getWidth(); ++x ) {
+                float expected = floatValue( x * 2, y * 2 );
+                assertEquals( expected, buf.getFloat( ( y * reader.getWidth() + x ) * 4 ), 0 );
+            }
+        }
+    }
+
+    @Test
+    public void testUncompressedRasterValues()
+                            throws IOException {
+        File f = createFixture( false, ByteOrder.BIG_ENDIAN, 16, 1, 2, TiffDirectory.COMPRESSION_NONE,
+                                TiffDirectory.PREDICTOR_NONE );
+        RasterIOOptions opts = new RasterIOOptions();
+        opts.add( RasterIOOptions.IMAGE_INDEX, "0" );
+        CogRasterReader reader = new CogRasterReader();
+        readers.add( reader );
+        SimpleRaster raster = (SimpleRaster) reader.load( f, opts );
+        RasterData data = raster.getRasterData().getSubset( new RasterRect( 100, 60, 50, 40 ) );
+        assertEquals( 50, data.getColumns() );
+        assertEquals( 40, data.getRows() );
+        for ( int y = 0; y < 40; ++y ) {
+            for ( int x = 0; x < 50; ++x ) {
+                assertEquals( ushortValue( 100 + x, 60 + y, 1 ), data.getShortSample( x, y, 1 ) & 0xffff );
+            }
+        }
+    }
+
+    @Test
+    public void testOverviewGeoReference()
+                            throws IOException {
+        File f = createFixture( false, ByteOrder.LITTLE_ENDIAN, 16, 1, 1, TiffDirectory.COMPRESSION_DEFLATE,
+                                TiffDirectory.PREDICTOR_NONE );
+        RasterIOOptions opts = new RasterIOOptions();
+        opts.add( RasterIOOptions.GEO_ORIGIN_LOCATION, OriginLocation.OUTER.name() );
+        opts.add( RasterIOOptions.IMAGE_INDEX, "0" );
+        CogRasterReader fullReader = new CogRasterReader();
+        readers.add( fullReader );
+        AbstractRaster full = fullReader.load( f, opts );
+        opts.add( RasterIOOptions.IMAGE_INDEX, "1" );
+        CogRasterReader overviewReader = new CogRasterReader();
+        readers.add( overviewReader );
+        AbstractRaster overview = overviewReader.load( f, opts );
+
+        assertEquals( WIDTH, full.getColumns() );
+        assertEquals( WIDTH / 2, overview.getColumns() );
+        assertEquals( HEIGHT / 2, overview.getRows() );
+        RasterGeoReference ref = overview.getRasterReference();
+        assertEquals( SCALE[0] * 2, ref.getResolutionX(), 1E-10 );
+        assertEquals( -SCALE[1] * 2, ref.getResolutionY(), 1E-10 );
+        assertTrue( full.getCoordinateSystem().hasId( "epsg:4326", true, true ) );
+
+        Envelope env = full.getEnvelope();
+        Envelope overviewEnv = overview.getEnvelope();
+        assertEquals( TIE_POINT[3], env.getMin().get0(), 1E-10 );
+        assertEquals( TIE_POINT[4], env.getMax().get1(), 1E-10 );
+        assertEquals( env.getMin().get0(), overviewEnv.getMin().get0(), 1E-10 );
+        assertEquals( env.getMin().get1(), overviewEnv.getMin().get1(), 1E-10 );
+        assertEquals( env.getMax().get0(), overviewEnv.getMax().get0(), 1E-10 );
+        assertEquals( env.getMax().get1(), overviewEnv.getMax().get1(), 1E-10 );
+    }
+
+    @Test
+    public void testLzwTiffWrittenByImageIO()
+                            throws IOException {
+        BufferedImage img = new BufferedImage( WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR );
+        WritableRaster raster = img.getRaster();
+        for ( int y = 0; y < HEIGHT; ++y ) {
+            for ( int x = 0; x < WIDTH; ++x ) {
+                raster.setPixel( x, y, new int[] { x % 256, y % 256, ( x * y ) % 256 } );
+            }
+        }
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName( "tiff" );
+        assertTrue( writers.hasNext() );
+        ImageWriter writer = writers.next();
+        File f = createFile();
+        ImageOutputStream out = ImageIO.createImageOutputStream( f );
+        try {
+            writer.setOutput( out );
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setTilingMode( ImageWriteParam.MODE_EXPLICIT );
+            param.setTiling( TILE, TILE, 0, 0 );
+            param.setCompressionMode( ImageWriteParam.MODE_EXPLICIT );
+            param.setCompressionType( "LZW" );
+            writer.write( null, new IIOImage( img, null, null ), param );
+        } finally {
+            out.close();
+            writer.dispose();
+        }
+
+        CogRasterReader reader = load( f, 0 );
+        assertEquals( 3, reader.getRasterDataInfo().bands );
+        BufferResult result = reader.read( new RasterRect( 0, 0, WIDTH, HEIGHT ), null );
+        ByteBuffer buf = result.getResult();
+        for ( int y = 0; y < HEIGHT; ++y ) {
+            for ( int x = 0; x < WIDTH; ++x ) {
+                int pos = ( y * WIDTH + x ) * 3;
+                assertEquals( x % 256, buf.get( pos ) & 0xff );
+                assertEquals( y % 256, buf.get( pos + 1 ) & 0xff );
+                assertEquals( ( x * y ) % 256, buf.get( pos + 2 ) & 0xff );
+            }
+        }
+    }
+
+    @Test
+    public void testStrippedGeoTiff()
+                            throws Exception {
+        URL inputURL = CogRasterReaderTest.class.getResource( "/org/deegree/coverage/raster/epsg4326.tiff" );
+        File input = new File( inputURL.toURI() );
+        RasterIOOptions options = RasterIOOptions.forFile( input );
+        options.add( RasterIOOptions.GEO_ORIGIN_LOCATION, OriginLocation.OUTER.name() );
+        SimpleRaster expected = (SimpleRaster) RasterFactory.loadRasterFromFile( input, options );
+
+        CogRasterReader reader = new CogRasterReader();
+        readers.add( reader );
+        assertTrue( reader.canLoad( input ) );
+        SimpleRaster raster = (SimpleRaster) reader.load( input, options );
+        assertEquals( expected.getColumns(), raster.getColumns() );
+        assertEquals( expected.getRows(), raster.getRows() );
+        double[] origin = expected.getRasterReference().getOrigin();
+        assertEquals( origin[0], raster.getRasterReference().getOrigin()[0], 1E-10 );
+        assertEquals( origin[1], raster.getRasterReference().getOrigin()[1], 1E-10 );
+        RasterData expectedData = expected.getRasterData();
+        RasterData data = raster.getRasterData();
+        for ( int y = 0; y < raster.getRows(); ++y ) {
+            for ( int x = 0; x < raster.getColumns(); ++x ) {
+                assertEquals( expectedData.getByteSample( x, y, 0 ), data.getByteSample( x, y, 0 ) );
+            }
+        }
+    }
+
+    @Test
+    public void testCanNotLoadOtherFiles()
+                            throws IOException {
+        File f = createFile();
+        FileOutputStream out = new FileOutputStream( f );
+        try {
+            out.write( "no tiff".getBytes( "UTF-8" ) );
+        } finally {
+            out.close();
+        }
+        CogRasterReader reader = new CogRasterReader();
+        assertFalse( reader.canLoad( f ) );
+        assertFalse( reader.canLoad( new File( f.getParentFile(), "does-not-exist.tif" ) ) );
+    }
+
+    private CogRasterReader load( File f, int index )
+                            throws IOException {
+        CogRasterReader reader = new CogRasterReader();
+        readers.add( reader );
+        assertTrue( reader.canLoad( f ) );
+        RasterIOOptions opts = new RasterIOOptions();
+        opts.add( RasterIOOptions.IMAGE_INDEX, Integer.toString( index ) );
+        assertNotNull( reader.load( f, opts ) );
+        return reader;
+    }
+
+    private File createFile()
+                            throws IOException {
+        File f = File.createTempFile( "cog", ".tif" );
+        files.add( f );
+        return f;
+    }
+
+    private static int ushortValue( int x, int y, int band ) {
+        return ( x * 211 + y * 13 + band * 1000 ) & 0xffff;
+    }
+
+    private static float floatValue( int x, int y ) {
+        return x * 0.5f - y * 0.25f;
+    }
+
+    /**
+     * Writes a tiled GeoTIFF with the full resolution image and one overview, the overview samples are the samples of
+     * the even rows and columns of the full resolution image.
+     */
+    private File createFixture( boolean bigTiff, ByteOrder order, int bits, int sampleFormat, int bands,
+                                int compression, int predictor )
+                            throws IOException {
+        int bytes = bits / 8;
+        ByteBuffer file = ByteBuffer.allocate( 4 * 1024 * 1024 ).order( order );
+        file.put( (byte) ( order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M' ) );
+        file.put( (byte) ( order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M' ) );
+        if ( bigTiff ) {
+            file.putShort( (short) 43 ).putShort( (short) 8 ).putShort( (short) 0 ).putLong( 0 );
+        } else {
+            file.putShort( (short) 42 ).putInt( 0 );
+        }
+        int nextIfdPos = bigTiff ? 8 : 4;
+        for ( int level = 0; level < 2; ++level ) {
+            int width = WIDTH >> level;
+            int height = HEIGHT >> level;
+            int across = ( width + TILE - 1 ) / TILE;
+            int down = ( height + TILE - 1 ) / TILE;
+            long[] offsets = new long[across * down];
+            long[] counts = new long[across * down];
+            for ( int row = 0; row < down; ++row ) {
+                for ( int col = 0; col < across; ++col ) {
+                    byte[] tile = new byte[TILE * TILE * bands * bytes];
+                    ByteBuffer tileBuf = ByteBuffer.wrap( tile );
+                    for ( int y = 0; y < TILE; ++y ) {
+                        for ( int x = 0; x < TILE; ++x ) {
+                            int px = col * TILE + x;
+                            int py = row * TILE + y;
+                            if ( px >= width || py >= height ) {
+                                continue;
+                            }
+                            for ( int b = 0; b < bands; ++b ) {
+                                int pos = ( ( y * TILE + x ) * bands + b ) * bytes;
+                                if ( bits == 16 ) {
+                                    tileBuf.putShort( pos, (short) ushortValue( px << level, py << level, b ) );
+                                } else {
+                                    tileBuf.putFloat( pos, floatValue( px << level, py << level ) );
+                                }
+                            }
+                        }
+                    }
+                    byte[] encoded = encode( tile, order, bands, bytes, predictor, compression );
+                    offsets[row * across + col] = file.position();
+                    counts[row * across + col] = encoded.length;
+                    file.put( encoded );
+                }
+            }
+            if ( file.position() % 2 != 0 ) {
+                file.put( (byte) 0 );
+            }
+            putOffset( file, nextIfdPos, file.position(), bigTiff );
+            List<Object[]> entries = new ArrayList<Object[]>();
+            entries.add( new Object[] { 254, 4, new long[] { level == 0 ? 0 : 1 } } );
+            entries.add( new Object[] { 256, 4, new long[] { width } } );
+            entries.add( new Object[] { 257, 4, new long[] { height } } );
+            long[] bitsPerSample = new long[bands];
+            long[] formats = new long[bands];
+            for ( int b = 0; b < bands; ++b ) {
+                bitsPerSample[b] = bits;
+                formats[b] = sampleFormat;
+            }
+            entries.add( new Object[] { 258, 3, bitsPerSample } );
+            entries.add( new Object[] { 259, 3, new long[] { compression } } );
+            entries.add( new Object[] { 262, 3, new long[] { 1 } } );
+            entries.add( new Object[] { 277, 3, new long[] { bands } } );
+            entries.add( new Object[] { 284, 3, new long[] { 1 } } );
+            entries.add( new Object[] { 317, 3, new long[] { predictor } } );
+            entries.add( new Object[] { 322, 3, new long[] { TILE } } );
+            entries.add( new Object[] { 323, 3, new long[] { TILE } } );
+            entries.add( new Object[] { 324, bigTiff ? 16 : 4, offsets } );
+            entries.add( new Object[] { 325, bigTiff ? 16 : 4, counts } );
+            entries.add( new Object[] { 339, 3, formats } );
+            if ( level == 0 ) {
+                entries.add( new Object[] { 33550, 12, SCALE } );
+                entries.add( new Object[] { 33922, 12, TIE_POINT } );
+                // geographic model, pixel is area, wgs 84
+                entries.add( new Object[] { 34735, 3,
+                                           new long[] { 1, 1, 0, 3, 1024, 0, 1, 2, 1025, 0, 1, 1, 2048, 0, 1, 4326 } } );
+            }
+            nextIfdPos = writeIfd( file, entries, bigTiff );
+        }
+        File f = createFile();
+        FileOutputStream out = new FileOutputStream( f );
+        try {
+            out.write( file.array(), 0, file.position() );
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+
+    private static byte[] encode( byte[] tile, ByteOrder order, int bands, int bytes, int predictor, int compression ) {
+        int rowLength = TILE * bands * bytes;
+        byte[] data = tile.clone();
+        if ( predictor == TiffDirectory.PREDICTOR_FLOATINGPOINT ) {
+            int samples = TILE * bands;
+            for ( int row = 0; row < TILE; ++row ) {
+                int start = row * rowLength;
+                byte[] tmp = new byte[rowLength];
+                for ( int s = 0; s < samples; ++s ) {
+                    for ( int b = 0; b < bytes; ++b ) {
+                        tmp[b * samples + s] = data[start + s * bytes + b];
+                    }
+                }
+                for ( int i = rowLength - 1; i >= bands; --i ) {
+                    tmp[i] -= tmp[i - bands];
+                }
+                System.arraycopy( tmp, 0, data, start, rowLength );
+            }
+        } else {
+            ByteBuffer buf = ByteBuffer.wrap( data );
+            if ( predictor == TiffDirectory.PREDICTOR_HORIZONTAL ) {
+                // 16 bit samples only
+                for ( int row = 0; row < TILE; ++row ) {
+                    for ( int i = rowLength - 2; i >= bands * 2; i -= 2 ) {
+                        int pos = row * rowLength + i;
+                        buf.putShort( pos, (short) ( buf.getShort( pos ) - buf.getShort( pos - bands * 2 ) ) );
+                    }
+                }
+            }
+            if ( order == ByteOrder.LITTLE_ENDIAN ) {
+                ByteBuffer swapped = ByteBuffer.allocate( data.length ).order( order );
+                for ( int i = 0; i < data.length; i += bytes ) {
+                    if ( bytes == 2 ) {
+                        swapped.putShort( i, buf.getShort( i ) );
+                    } else {
+                        swapped.putInt( i, buf.getInt( i ) );
+                    }
+                }
+                data = swapped.array();
+            }
+        }
+        if ( compression == TiffDirectory.COMPRESSION_NONE ) {
+            return data;
+        }
+        Deflater deflater = new Deflater();
+        deflater.setInput( data );
+        deflater.finish();
+        byte[] out = new byte[data.length + 1024];
+        int length = 0;
+        while ( !deflater.finished() ) {
+            length += deflater.deflate( out, length, out.length - length );
+        }
+        deflater.end();
+        byte[] result = new byte[length];
+        System.arraycopy( out, 0, result, 0, length );
+        return result;
+    }
+
+    /**
+     * @return the position of the next ifd offset
+     */
+    private static int writeIfd( ByteBuffer file, List<Object[]> entries, boolean bigTiff ) {
+        int entrySize = bigTiff ? 20 : 12;
+        int inlineSize = bigTiff ? 8 : 4;
+        int start = file.position();
+        int countSize = bigTiff ? 8 : 2;
+        int nextIfdPos = start + countSize + entries.size() * entrySize;
+        int extra = nextIfdPos + inlineSize;
+        if ( bigTiff ) {
+            file.putLong( start, entries.size() );
+        } else {
+            file.putShort( start, (short) entries.size() );
+        }
+        for ( int i = 0; i < entries.size(); ++i ) {
+            Object[] entry = entries.get( i );
+            int tag = (Integer) entry[0];
+            int type = (Integer) entry[1];
+            int count = entry[2] instanceof long[] ? ( (long[]) entry[2] ).length : ( (double[]) entry[2] ).length;
+            int typeSize = type == 3 ? 2 : type == 4 ? 4 : 8;
+            int pos = start + countSize + i * entrySize;
+            file.putShort( pos, (short) tag );
+            file.putShort( pos + 2, (short) type );
+            if ( bigTiff ) {
+                file.putLong( pos + 4, count );
+            } else {
+                file.putInt( pos + 4, count );
+            }
+            int valuePos = pos + ( bigTiff ? 12 : 8 );
+            if ( count * typeSize > inlineSize ) {
+                putOffset( file, valuePos, extra, bigTiff );
+                valuePos = extra;
+                extra += count * typeSize;
+            }
+            for ( int v = 0; v < count; ++v ) {
+                int p = valuePos + v * typeSize;
+                if ( type == 12 ) {
+                    file.putDouble( p, ( (double[]) entry[2] )[v] );
+                } else if ( type == 3 ) {
+                    file.putShort( p, (short) ( (long[]) entry[2] )[v] );
+                } else if ( type == 4 ) {
+                    file.putInt( p, (int) ( (long[]) entry[2] )[v] );
+                } else {
+                    file.putLong( p, ( (long[]) entry[2] )[v] );
+                }
+            }
+        }
+        putOffset( file, nextIfdPos, 0, bigTiff );
+        file.position( extra );
+        return nextIfdPos;
+    }
+
+    private static void putOffset( ByteBuffer file, int pos, long offset, boolean bigTiff ) {
+        if ( bigTiff ) {
+            file.putLong( pos, offset );
+        } else {
+            file.putInt( pos, (int) offset );
+        }
+    }
+
+}
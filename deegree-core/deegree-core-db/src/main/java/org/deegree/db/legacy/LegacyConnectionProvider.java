@@ -71,6 +71,15 @@ public class LegacyConnectionProvider implements ConnectionProvider {
 
     public LegacyConnectionProvider( String url, String user, String password, boolean readOnly,
                                      LegacyConnectionProviderMetadata metadata ) {
+        this( url, user, password, readOnly, 0, metadata );
+    }
+
+    /**
+     * @param maxOpenPreparedStatements
+     *            maximum number of pooled prepared statements per connection, 0 disables statement pooling
+     */
+    public LegacyConnectionProvider( String url, String user, String password, boolean readOnly,
+                                     int maxOpenPreparedStatements, LegacyConnectionProviderMetadata metadata ) {
         this.metadata = metadata;
         // hardcoded as until 3.2
         int poolMinSize = 5;
@@ -78,9 +87,10 @@ public class LegacyConnectionProvider implements ConnectionProvider {
 
         if ( metadata != null ) {
             pool = new ConnectionPool( metadata.getIdentifier().getId(), url, user, password, readOnly, poolMinSize,
-                                       poolMaxSize );
+                                       poolMaxSize, maxOpenPreparedStatements );
         } else {
-            pool = new ConnectionPool( "<unspecified>", url, user, password, readOnly, poolMinSize, poolMaxSize );
+            pool = new ConnectionPool( "<unspecified>", url, user, password, readOnly, poolMinSize, poolMaxSize,
+                                       maxOpenPreparedStatements );
         }
     }
 
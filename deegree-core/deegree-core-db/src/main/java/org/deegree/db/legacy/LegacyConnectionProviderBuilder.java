@@ -85,8 +85,11 @@ public class LegacyConnectionProviderBuilder implements ResourceBuilder<Connecti
     public ConnectionProvider build() {
         String url = config.getUrl();
         LegacyConnectionProvider cprov;
+        int maxOpenPreparedStatements = config.getMaxOpenPreparedStatements() == null ? 0
+                                                                                      : config.getMaxOpenPreparedStatements().intValue();
         cprov = new LegacyConnectionProvider( url, config.getUser(), config.getPassword(),
-                                              config.isReadOnly() == null ? false : config.isReadOnly(), metadata );
+                                              config.isReadOnly() == null ? false : config.isReadOnly(),
+                                              maxOpenPreparedStatements, metadata );
 
         ServiceLoader<SqlDialectProvider> dialectLoader = ServiceLoader.load( SqlDialectProvider.class,
                                                                               workspace.getModuleClassLoader() );
@@ -58,6 +58,7 @@ import org.deegree.geometry.standard.multi.DefaultMultiGeometry;
 import org.deegree.geometry.standard.multi.DefaultMultiLineString;
 import org.deegree.geometry.standard.multi.DefaultMultiPoint;
 import org.deegree.geometry.standard.multi.DefaultMultiPolygon;
+import org.deegree.geometry.standard.points.PackedPoints;
 import org.deegree.geometry.standard.points.PointsList;
 import org.deegree.geometry.standard.primitive.DefaultLineString;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
@@ -177,6 +178,32 @@ public class SimpleGeometryFactory {
         return inspect( new PointsList( points ) );
     }
 
+    /**
+     * Creates a {@link Points} object from the given packed coordinates.
+     * 
+     * @param crs
+     *            coordinate reference system of the points, may be null
+     * @param coordinates
+     *            coordinates of all points (x0, y0, [z0,] x1, y1, [z1,] ...), must not be <code>null</code>; the array
+     *            is used as backing store and must not be modified afterwards
+     * @param dimension
+     *            number of coordinates per point, must be greater than zero
+     * @return created {@link Points}
+     */
+    public Points createPoints( ICRS crs, double[] coordinates, int dimension ) {
+        if ( inspectors.isEmpty() ) {
+            return new PackedPoints( crs, coordinates, dimension );
+        }
+        // inspectors may check (or replace) the individual points
+        List<Point> points = new ArrayList<Point>( coordinates.length / dimension );
+        for ( int i = 0; i < coordinates.length; i += dimension ) {
+            double[] pointCoordinates = new double[dimension];
+            System.arraycopy( coordinates, i, pointCoordinates, 0, dimension );
+            points.add( createPoint( null, pointCoordinates, crs ) );
+        }
+        return createPoints( points );
+    }
+
     /**
      * Creates a {@link Polygon} surface.
      * 
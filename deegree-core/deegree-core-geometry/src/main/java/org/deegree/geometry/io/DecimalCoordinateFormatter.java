@@ -43,6 +43,10 @@ import org.deegree.cs.components.Unit;
 
 /**
  * {@link CoordinateFormatter} based on {@link DecimalFormat}.
+ * <p>
+ * For formatters with a fixed number of decimal places, {@link #format(double, char[], int)} produces the same
+ * output as the {@link DecimalFormat} without creating intermediate objects.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -57,8 +61,22 @@ public class DecimalCoordinateFormatter implements CoordinateFormatter {
     /** Number of decimal places used for metric coordinates (3). **/
     private static final int DEFAULT_PLACES_METRE = 3;
 
+    /** Number of chars that must be available in the buffer passed to {@link #format(double, char[], int)} (32). **/
+    public static final int MAX_FAST_CHARS = 32;
+
+    // maximum number of decimal places supported by #format(double,char[],int)
+    private static final int MAX_FAST_PLACES = 9;
+
+    // scaled ordinates must be below this limit, so the integer part is exact and the fraction is precise enough
+    private static final double MAX_FAST_SCALED = 1e15;
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9 };
+
     private final DecimalFormat decimalFormat;
 
+    // number of decimal places for #format(double,char[],int), -1: not supported
+    private final int fastPlaces;
+
     /**
      * Creates a new {@link DecimalCoordinateFormatter} instance that uses {@link #DEFAULT_PLACES}.
      */
@@ -87,6 +105,7 @@ public class DecimalCoordinateFormatter implements CoordinateFormatter {
         DecimalFormatSymbols symbols = new DecimalFormatSymbols();
         symbols.setDecimalSeparator( '.' );
         decimalFormat = new DecimalFormat( pattern.toString(), symbols );
+        fastPlaces = getFastPlaces( decimalPlaces, symbols );
     }
 
     /**
@@ -106,6 +125,7 @@ public class DecimalCoordinateFormatter implements CoordinateFormatter {
         DecimalFormatSymbols symbols = new DecimalFormatSymbols();
         symbols.setDecimalSeparator( '.' );
         decimalFormat = new DecimalFormat( pattern.toString(), symbols );
+        fastPlaces = getFastPlaces( decimalPlaces, symbols );
     }
 
     /**
@@ -116,10 +136,80 @@ public class DecimalCoordinateFormatter implements CoordinateFormatter {
      */
     public DecimalCoordinateFormatter( DecimalFormat decimalFormat ) {
         this.decimalFormat = decimalFormat;
+        this.fastPlaces = -1;
+    }
+
+    private static int getFastPlaces( int decimalPlaces, DecimalFormatSymbols symbols ) {
+        if ( decimalPlaces < 0 || decimalPlaces > MAX_FAST_PLACES || symbols.getZeroDigit() != '0'
+             || symbols.getMinusSign() != '-' ) {
+            return -1;
+        }
+        return decimalPlaces;
     }
 
     @Override
     public String format( double number ) {
         return decimalFormat.format( number );
     }
+
+    /**
+     * Writes the formatted representation of the given ordinate into a char buffer (without creating intermediate
+     * objects).
+     * <p>
+     * Only ordinates of common magnitude are handled. For others (and for values that are too close to a rounding
+     * tie to be decided quickly), <code>-1</code> is returned and {@link #format(double)} has to be used instead.
+     * </p>
+     * 
+     * @param ordinate
+     *            ordinate to be formatted
+     * @param buf
+     *            buffer to write to, must not be <code>null</code> and have at least {@link #MAX_FAST_CHARS} chars
+     *            available after <code>off</code>
+     * @param off
+     *            position of the first char to write
+     * @return position after the last written char, or <code>-1</code> if nothing has been written
+     */
+    public int format( double ordinate, char[] buf, int off ) {
+        if ( fastPlaces < 0 ) {
+            return -1;
+        }
+        double scaled = Math.abs( ordinate ) * POWERS_OF_TEN[fastPlaces];
+        // also fails for NaN
+        if ( !( scaled < MAX_FAST_SCALED ) ) {
+            return -1;
+        }
+        long digits = (long) scaled;
+        double fraction = scaled - digits;
+        // the product may be off by half an ulp, so values near a tie are left to DecimalFormat (HALF_EVEN)
+        if ( Math.abs( fraction - 0.5 ) <= Math.ulp( scaled ) ) {
+            return -1;
+        }
+        if ( fraction > 0.5 ) {
+            digits++;
+        }
+
+        int pos = off;
+        // like DecimalFormat, keep the sign of negative values that are rounded to zero (and of -0.0)
+        if ( ordinate < 0 || ( ordinate == 0 && 1 / ordinate < 0 ) ) {
+            buf[pos++] = '-';
+        }
+        int numDigits = 1;
+        for ( long l = digits / 10; l != 0; l /= 10 ) {
+            numDigits++;
+        }
+        // at least one integer digit
+        if ( numDigits <= fastPlaces ) {
+            numDigits = fastPlaces + 1;
+        }
+        int end = pos + numDigits + ( fastPlaces > 0 ? 1 : 0 );
+        int i = end;
+        for ( int place = 0; place < numDigits; place++ ) {
+            if ( place == fastPlaces && fastPlaces > 0 ) {
+                buf[--i] = '.';
+            }
+            buf[--i] = (char) ( '0' + ( digits % 10 ) );
+            digits /= 10;
+        }
+        return end;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.standard;
+
+import org.deegree.geometry.Geometry;
+
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * A {@link Geometry} that has been prepared for evaluating many topological predicates against other geometries.
+ * <p>
+ * The JTS representation of the geometry and its spatial indexes are built once (see
+ * {@link com.vividsolutions.jts.geom.prep.PreparedGeometry}), and all predicates first check the envelopes. This pays
+ * off when the same geometry (e.g. a filter literal) is tested against many other geometries. Instances are
+ * thread-safe. The other geometries are expected to use the same coordinate system.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class PreparedGeometry {
+
+    private final Geometry geometry;
+
+    private final com.vividsolutions.jts.geom.prep.PreparedGeometry prepared;
+
+    private final com.vividsolutions.jts.geom.Envelope envelope;
+
+    /**
+     * Creates a new {@link PreparedGeometry} instance.
+     * 
+     * @param geometry
+     *            geometry to prepare, must not be <code>null</code>
+     */
+    public PreparedGeometry( Geometry geometry ) {
+        this.geometry = geometry;
+        com.vividsolutions.jts.geom.Geometry jtsGeom = AbstractDefaultGeometry.getAsDefaultGeometry( geometry ).getJTSGeometry();
+        this.prepared = PreparedGeometryFactory.prepare( jtsGeom );
+        this.envelope = jtsGeom.getEnvelopeInternal();
+    }
+
+    /**
+     * @return the prepared geometry, never <code>null</code>
+     */
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * @param other
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code>, if the prepared geometry intersects the other geometry
+     */
+    public boolean intersects( Geometry other ) {
+        com.vividsolutions.jts.geom.Geometry jtsGeom = toJTS( other );
+        return envelope.intersects( jtsGeom.getEnvelopeInternal() ) && prepared.intersects( jtsGeom );
+    }
+
+    /**
+     * @param other
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code>, if the prepared geometry contains the other geometry
+     */
+    public boolean contains( Geometry other ) {
+        com.vividsolutions.jts.geom.Geometry jtsGeom = toJTS( other );
+        return envelope.contains( jtsGeom.getEnvelopeInternal() ) && prepared.contains( jtsGeom );
+    }
+
+    /**
+     * @param other
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code>, if the prepared geometry is within the other geometry
+     */
+    public boolean isWithin( Geometry other ) {
+        com.vividsolutions.jts.geom.Geometry jtsGeom = toJTS( other );
+        return jtsGeom.getEnvelopeInternal().contains( envelope ) && prepared.within( jtsGeom );
+    }
+
+    /**
+     * @param other
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code>, if the prepared geometry touches the other geometry
+     */
+    public boolean touches( Geometry other ) {
+        com.vividsolutions.jts.geom.Geometry jtsGeom = toJTS( other );
+        return envelope.intersects( jtsGeom.getEnvelopeInternal() ) && prepared.touches( jtsGeom );
+    }
+
+    /**
+     * @param other
+     *            geometry to test, must not be <code>null</code>
+     * @return <code>true</code>, if the prepared geometry overlaps the other geometry
+     */
+    public boolean overlaps( Geometry other ) {
+        com.vividsolutions.jts.geom.Geometry jtsGeom = toJTS( other );
+        return envelope.intersects( jtsGeom.getEnvelopeInternal() ) && prepared.overlaps( jtsGeom );
+    }
+
+    private static com.vividsolutions.jts.geom.Geometry toJTS( Geometry geometry ) {
+        return AbstractDefaultGeometry.getAsDefaultGeometry( geometry ).getJTSGeometry();
+    }
+
+}
@@ -35,6 +35,7 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.standard.points;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -100,12 +101,6 @@ public class PackedPoints implements Points {
 
             private int idx = 0;
 
-            @SuppressWarnings("synthetic-access")
-            private double[] pointCoordinates = new double[dimension];
-
-            @SuppressWarnings("synthetic-access")
-            private DefaultPoint point = new DefaultPoint( null, crs, null, pointCoordinates );
-
             @Override
             public boolean hasNext() {
                 return idx < coordinates.length;
@@ -116,11 +111,11 @@ public class PackedPoints implements Points {
                 if ( !hasNext() ) {
                     throw new NoSuchElementException();
                 }
-                for ( int i = 0; i < dimension; i++ ) {
-                    pointCoordinates[i] = coordinates[idx + i];
-                }
+                // callers may keep references to the returned points, so don't reuse a single instance
+                double[] pointCoordinates = new double[dimension];
+                System.arraycopy( coordinates, idx, pointCoordinates, 0, dimension );
                 idx += dimension;
-                return point;
+                return new DefaultPoint( null, crs, null, pointCoordinates );
             }
 
             @Override
@@ -151,7 +146,7 @@ public class PackedPoints implements Points {
 
     @Override
     public Envelope expandEnvelope( Envelope env ) {
-        for ( int i = 0; i < coordinates.length; i += 2 ) {
+        for ( int i = 0; i < coordinates.length; i += dimension ) {
             env.expandToInclude( coordinates[i], coordinates[i + 1] );
         }
         return env;
@@ -159,37 +154,42 @@ public class PackedPoints implements Points {
 
     @Override
     public Coordinate getCoordinate( int index ) {
-        Point point = get( index );
-        return new Coordinate( point.get0(), point.get1(), point.get2() );
+        return getCoordinateCopy( index );
     }
 
     @Override
     public void getCoordinate( int index, Coordinate coord ) {
-        Point point = get( index );
-        coord.x = point.get0();
-        coord.y = point.get1();
-        coord.z = point.get2();
+        int idx = index * dimension;
+        coord.x = coordinates[idx];
+        coord.y = coordinates[idx + 1];
+        coord.z = dimension > 2 ? coordinates[idx + 2] : Double.NaN;
     }
 
     @Override
     public Coordinate getCoordinateCopy( int index ) {
-        Point point = get( index );
-        return new Coordinate( point.get0(), point.get1(), point.get2() );
+        int idx = index * dimension;
+        if ( dimension > 2 ) {
+            return new Coordinate( coordinates[idx], coordinates[idx + 1], coordinates[idx + 2] );
+        }
+        return new Coordinate( coordinates[idx], coordinates[idx + 1] );
     }
 
     @Override
     public double getOrdinate( int index, int ordinateIndex ) {
-        return get( index ).get( ordinateIndex );
+        if ( ordinateIndex < 0 || ordinateIndex >= dimension ) {
+            throw new IndexOutOfBoundsException();
+        }
+        return coordinates[index * dimension + ordinateIndex];
     }
 
     @Override
     public double getX( int index ) {
-        return get( index ).get0();
+        return coordinates[index * dimension];
     }
 
     @Override
     public double getY( int index ) {
-        return get( index ).get1();
+        return coordinates[index * dimension + 1];
     }
 
     @Override
@@ -201,13 +201,18 @@ public class PackedPoints implements Points {
     public Coordinate[] toCoordinateArray() {
         Coordinate[] coords = new Coordinate[coordinates.length / dimension];
         for ( int i = 0; i < coords.length; i++ ) {
-            coords[i] = new Coordinate( coordinates[i * 2], coordinates[i * 2 + 1] );
+            int idx = i * dimension;
+            if ( dimension > 2 ) {
+                coords[i] = new Coordinate( coordinates[idx], coordinates[idx + 1], coordinates[idx + 2] );
+            } else {
+                coords[i] = new Coordinate( coordinates[idx], coordinates[idx + 1] );
+            }
         }
         return coords;
     }
 
     @Override
     public Object clone() {
-        throw new UnsupportedOperationException();
+        return new PackedPoints( crs, Arrays.copyOf( coordinates, coordinates.length ), dimension );
     }
 }
@@ -0,0 +1,83 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.utils;
+
+/**
+ * Base class for {@link GeometryParticleConverter} implementations that may support optional capabilities.
+ * <p>
+ * Optional methods return <code>null</code> in this class, i.e. the capability is not supported. Callers must check
+ * for <code>null</code> and fall back to the corresponding method of {@link GeometryParticleConverter}.
+ * Implementations that extend this class keep compiling when further optional capabilities are added.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public abstract class AbstractGeometryParticleConverter implements GeometryParticleConverter {
+
+    /**
+     * Returns an SQL snippet for selecting a simplified version of the geometry, e.g. for rendering at small scales.
+     * <p>
+     * The snippet contains exactly one parameter (<code>?</code>) for the simplification tolerance, the value to bind
+     * is returned by {@link #getSimplifyTolerance(double)}. This way, the statement text does not depend on the
+     * tolerance. This implementation returns <code>null</code>, i.e. the database does not simplify the geometries.
+     * </p>
+     * 
+     * @param tableAlias
+     *            alias to use for qualifying the column, can be <code>null</code>
+     * @return SQL snippet, or <code>null</code> if simplification is not supported
+     */
+    public String getSimplifiedSelectSnippet( String tableAlias ) {
+        return null;
+    }
+
+    /**
+     * Returns the value to bind to the tolerance parameter of the {@link #getSimplifiedSelectSnippet(String)}.
+     * <p>
+     * This implementation returns the given tolerance.
+     * </p>
+     * 
+     * @param tolerance
+     *            simplification tolerance (in units of the storage CRS), must be positive
+     * @return value of the tolerance parameter
+     */
+    public double getSimplifyTolerance( double tolerance ) {
+        return tolerance;
+    }
+}
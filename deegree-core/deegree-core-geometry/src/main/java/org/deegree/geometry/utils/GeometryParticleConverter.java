@@ -42,6 +42,10 @@ import org.deegree.geometry.Geometry;
 
 /**
  * {@link ParticleConverter} for {@link Geometry} particles.
+ * <p>
+ * Implementations should extend {@link AbstractGeometryParticleConverter}, which provides the optional capabilities
+ * (e.g. simplification of geometries by the database).
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
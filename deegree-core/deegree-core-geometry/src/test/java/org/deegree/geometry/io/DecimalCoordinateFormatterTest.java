@@ -0,0 +1,100 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.deegree.cs.components.Unit;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DecimalCoordinateFormatter}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class DecimalCoordinateFormatterTest {
+
+    private static final double[] SPECIAL_VALUES = { 0.0, -0.0, 0.5, 1.5, 2.5, -2.5, 0.0005, 1.0005, -0.0004,
+                                                    -0.0006, 1e-300, -1e-300, 999999.9995, 0.125, 7.0, 10.0,
+                                                    123456789.123456789, 1e20, -1e20, Double.NaN,
+                                                    Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+    @Test
+    public void testCharBufferFormatIsIdentical() {
+        Random random = new Random( 42 );
+        for ( int places = 0; places <= 10; places++ ) {
+            DecimalCoordinateFormatter formatter = new DecimalCoordinateFormatter( places );
+            for ( double value : SPECIAL_VALUES ) {
+                assertFormat( formatter, value );
+            }
+            for ( int i = 0; i < 10000; i++ ) {
+                double magnitude = Math.pow( 10, random.nextInt( 16 ) - 6 );
+                assertFormat( formatter, ( random.nextDouble() * 2 - 1 ) * magnitude );
+            }
+        }
+    }
+
+    @Test
+    public void testCharBufferFormatMetre() {
+        DecimalCoordinateFormatter formatter = new DecimalCoordinateFormatter( Unit.METRE );
+        char[] buf = new char[DecimalCoordinateFormatter.MAX_FAST_CHARS];
+        int end = formatter.format( 5432123.45678, buf, 0 );
+        assertEquals( "5432123.457", new String( buf, 0, end ) );
+        end = formatter.format( -0.0001, buf, 0 );
+        assertEquals( "-0.000", new String( buf, 0, end ) );
+    }
+
+    @Test
+    public void testCharBufferFormatUnsupported() {
+        DecimalCoordinateFormatter formatter = new DecimalCoordinateFormatter( 12 );
+        assertEquals( -1, formatter.format( 1.0, new char[DecimalCoordinateFormatter.MAX_FAST_CHARS], 0 ) );
+    }
+
+    private void assertFormat( DecimalCoordinateFormatter formatter, double value ) {
+        char[] buf = new char[DecimalCoordinateFormatter.MAX_FAST_CHARS + 2];
+        buf[0] = 'x';
+        int end = formatter.format( value, buf, 1 );
+        if ( end >= 0 ) {
+            assertTrue( end <= buf.length );
+            assertEquals( 'x', buf[0] );
+            assertEquals( formatter.format( value ), new String( buf, 1, end - 1 ) );
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.standard;
+
+import static org.junit.Assert.assertEquals;
+
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.io.WKTReader;
+import org.junit.Test;
+
+/**
+ * Tests that the predicates of {@link PreparedGeometry} yield the same results as the plain {@link Geometry}
+ * predicates.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PreparedGeometryTest {
+
+    private static final String LITERAL = "POLYGON((0 0,10 0,10 10,5 5,0 10,0 0))";
+
+    private static final String[] CANDIDATES = { "POINT(1 1)", "POINT(5 5)", "POINT(5 8)", "POINT(20 20)",
+                                                "LINESTRING(-5 5,15 5)", "LINESTRING(1 1,2 2)",
+                                                "LINESTRING(0 0,10 0)", "POLYGON((1 1,2 1,2 2,1 2,1 1))",
+                                                "POLYGON((-1 -1,11 -1,11 11,-1 11,-1 -1))",
+                                                "POLYGON((8 8,12 8,12 12,8 12,8 8))",
+                                                "POLYGON((10 0,20 0,20 10,10 10,10 0))",
+                                                "POLYGON((30 30,40 30,40 40,30 40,30 30))" };
+
+    @Test
+    public void testPredicatesMatchUnprepared()
+                            throws Exception {
+        WKTReader reader = new WKTReader( CRSManager.getCRSRef( "EPSG:4326" ) );
+        Geometry literal = reader.read( LITERAL );
+        PreparedGeometry prepared = new PreparedGeometry( literal );
+        for ( String wkt : CANDIDATES ) {
+            Geometry candidate = reader.read( wkt );
+            assertEquals( wkt, literal.intersects( candidate ), prepared.intersects( candidate ) );
+            assertEquals( wkt, literal.contains( candidate ), prepared.contains( candidate ) );
+            assertEquals( wkt, literal.isWithin( candidate ), prepared.isWithin( candidate ) );
+            assertEquals( wkt, literal.touches( candidate ), prepared.touches( candidate ) );
+            assertEquals( wkt, literal.overlaps( candidate ), prepared.overlaps( candidate ) );
+        }
+    }
+
+}
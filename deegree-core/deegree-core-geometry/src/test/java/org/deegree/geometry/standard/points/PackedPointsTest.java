@@ -0,0 +1,112 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.standard.points;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+/**
+ * Tests the JTS coordinate sequence methods of {@link PackedPoints}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PackedPointsTest {
+
+    private static final double[] COORDS_2D = { 1, 2, 3, 4, 5, 6 };
+
+    private static final double[] COORDS_3D = { 1, 2, 3, 4, 5, 6 };
+
+    @Test
+    public void testGetCoordinate2d() {
+        PackedPoints points = new PackedPoints( null, COORDS_2D, 2 );
+        Coordinate coord = points.getCoordinate( 1 );
+        assertEquals( 3, coord.x, 0 );
+        assertEquals( 4, coord.y, 0 );
+        assertTrue( Double.isNaN( coord.z ) );
+        assertEquals( coord, points.getCoordinateCopy( 1 ) );
+    }
+
+    @Test
+    public void testGetCoordinate3d() {
+        PackedPoints points = new PackedPoints( null, COORDS_3D, 3 );
+        Coordinate coord = points.getCoordinateCopy( 1 );
+        assertEquals( 4, coord.x, 0 );
+        assertEquals( 5, coord.y, 0 );
+        assertEquals( 6, coord.z, 0 );
+    }
+
+    @Test
+    public void testGetCoordinateInto() {
+        Coordinate coord = new Coordinate( 0, 0, 0 );
+        new PackedPoints( null, COORDS_3D, 3 ).getCoordinate( 0, coord );
+        assertEquals( 1, coord.x, 0 );
+        assertEquals( 2, coord.y, 0 );
+        assertEquals( 3, coord.z, 0 );
+        new PackedPoints( null, COORDS_2D, 2 ).getCoordinate( 2, coord );
+        assertEquals( 5, coord.x, 0 );
+        assertEquals( 6, coord.y, 0 );
+        assertTrue( Double.isNaN( coord.z ) );
+    }
+
+    @Test
+    public void testGetOrdinate() {
+        PackedPoints points = new PackedPoints( null, COORDS_2D, 2 );
+        assertEquals( 5, points.getOrdinate( 2, 0 ), 0 );
+        assertEquals( 6, points.getOrdinate( 2, 1 ), 0 );
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOrdinateOutOfRange() {
+        new PackedPoints( null, COORDS_2D, 2 ).getOrdinate( 0, 2 );
+    }
+
+    @Test
+    public void testClone() {
+        PackedPoints points = new PackedPoints( null, COORDS_3D, 3 );
+        PackedPoints clone = (PackedPoints) points.clone();
+        assertEquals( 3, clone.getDimension() );
+        assertEquals( 2, clone.size() );
+        assertArrayEquals( COORDS_3D, clone.getAsArray(), 0 );
+        assertNotSame( points.getAsArray(), clone.getAsArray() );
+    }
+}
@@ -80,6 +80,8 @@ class GeometryHelper {
 
     private AffineTransform worldToScreen;
 
+    private double decimationTolerance;
+
     GeometryHelper( Envelope bbox, int width, AffineTransform worldToScreen ) {
         this.worldToScreen = worldToScreen;
         try {
@@ -92,14 +94,26 @@ class GeometryHelper {
         }
     }
 
-    Double fromCurve( Curve curve, boolean close ) {
-        Double line = new Double();
+    /**
+     * @param decimationTolerance
+     *            the distance in pixels below which consecutive vertices are merged when generating paths, 0 or less
+     *            disables decimation
+     */
+    void setDecimationTolerance( double decimationTolerance ) {
+        this.decimationTolerance = decimationTolerance;
+    }
 
+    Double fromCurve( Curve curve, boolean close ) {
         // TODO use error criterion
         ICRS crs = curve.getCoordinateSystem();
         curve = linearizer.linearize( curve, new NumPointsCriterion( 100 ) );
         curve.setCoordinateSystem( crs );
         Points points = curve.getControlPoints();
+        if ( decimationTolerance > 0 ) {
+            return fromPointsDecimated( points, close );
+        }
+
+        Double line = new Double();
         Iterator<Point> iter = points.iterator();
         Point p = iter.next();
         double x = p.get0(), y = p.get1();
@@ -122,6 +136,45 @@ class GeometryHelper {
         return line;
     }
 
+    /**
+     * Generates the screen path while dropping every vertex that lies within the decimation tolerance of the last
+     * vertex emitted. The first and last vertices are always kept, so rings stay closed.
+     */
+    private Double fromPointsDecimated( Points points, boolean close ) {
+        int size = points.size();
+        Double line = new Double( Double.WIND_NON_ZERO, size );
+        double tolerance = decimationTolerance * decimationTolerance;
+        double[] coords = new double[2];
+
+        Iterator<Point> iter = points.iterator();
+        Point p = iter.next();
+        double firstX = p.get0(), firstY = p.get1();
+        coords[0] = firstX;
+        coords[1] = firstY;
+        worldToScreen.transform( coords, 0, coords, 0, 1 );
+        double lastX = coords[0], lastY = coords[1];
+        line.moveTo( lastX, lastY );
+        while ( iter.hasNext() ) {
+            p = iter.next();
+            if ( !iter.hasNext() && close && isZero( firstX - p.get0() ) && isZero( firstY - p.get1() ) ) {
+                line.closePath();
+                break;
+            }
+            coords[0] = p.get0();
+            coords[1] = p.get1();
+            worldToScreen.transform( coords, 0, coords, 0, 1 );
+            double dx = coords[0] - lastX, dy = coords[1] - lastY;
+            if ( iter.hasNext() && dx * dx + dy * dy < tolerance ) {
+                continue;
+            }
+            lastX = coords[0];
+            lastY = coords[1];
+            line.lineTo( lastX, lastY );
+        }
+
+        return line;
+    }
+
     <T extends Geometry> T transform( T g ) {
         if ( g == null ) {
             LOG.warn( "Trying to transform null geometry." );
@@ -138,6 +138,19 @@ public class Java2DRenderer implements Renderer {
         rendererContext = new RendererContext( pixelSize, res, graphics, this, bbox, width, worldToScreen );
     }
 
+    /**
+     * Enables screen space decimation of curves and surface boundaries. Consecutive vertices that end up closer than
+     * the given tolerance after the world to screen transform are merged before the Java2D path is generated.
+     * 
+     * @param pixels
+     *            the tolerance in pixels, 0 or less disables decimation
+     */
+    public void setDecimationTolerance( double pixels ) {
+        if ( rendererContext.geomHelper != null ) {
+            rendererContext.geomHelper.setDecimationTolerance( pixels );
+        }
+    }
+
     @Override
     public void render( final PointStyling styling, final Geometry geom ) {
         if ( geom == null ) {
@@ -118,6 +118,7 @@ public class ImageRenderContext extends Java2DRenderContext {
         applyQuality( options );
         applyInterpolation( options );
         applyAntialias( options );
+        renderer.setDecimationTolerance( options.getDecimationTolerance() );
     }
 
     private void applyAntialias( MapOptions options ) {
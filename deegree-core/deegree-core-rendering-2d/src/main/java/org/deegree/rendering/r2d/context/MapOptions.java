@@ -52,13 +52,21 @@ public class MapOptions {
 
     private int featureInfoRadius;
 
+    private double decimationTolerance;
+
     public MapOptions( Quality quality, Interpolation interpol, Antialias antialias, int maxFeatures,
                        int featureInfoRadius ) {
+        this( quality, interpol, antialias, maxFeatures, featureInfoRadius, -1 );
+    }
+
+    public MapOptions( Quality quality, Interpolation interpol, Antialias antialias, int maxFeatures,
+                       int featureInfoRadius, double decimationTolerance ) {
         this.quality = quality;
         this.interpol = interpol;
         this.antialias = antialias;
         this.maxFeatures = maxFeatures;
         this.featureInfoRadius = featureInfoRadius;
+        this.decimationTolerance = decimationTolerance;
     }
 
     /**
@@ -136,6 +144,21 @@ public class MapOptions {
         this.featureInfoRadius = featureInfoRadius;
     }
 
+    /**
+     * @return the decimationTolerance in pixels, a value < 0 means default, 0 means disabled
+     */
+    public double getDecimationTolerance() {
+        return decimationTolerance;
+    }
+
+    /**
+     * @param decimationTolerance
+     *            the decimationTolerance to set in pixels, a value < 0 means default, 0 means disabled
+     */
+    public void setDecimationTolerance( double decimationTolerance ) {
+        this.decimationTolerance = decimationTolerance;
+    }
+
     /**
      * <code>Quality</code>
      * 
@@ -58,6 +58,19 @@ public class MapOptionsHelper {
         insertInterpolation( layer, options, layerDefaults, globalDefaults );
         insertMaxFeatures( layer, options, layerDefaults, globalDefaults );
         insertRadius( layer, options, layerDefaults, globalDefaults );
+        insertDecimationTolerance( layer, options, layerDefaults, globalDefaults );
+    }
+
+    private static void insertDecimationTolerance( String layer, MapOptionsMaps options, MapOptions layerDefaults,
+                                                   MapOptions globalDefaults ) {
+        if ( options.getDecimationTolerance( layer ) < 0 ) {
+            if ( layerDefaults != null ) {
+                options.setDecimationTolerance( layer, layerDefaults.getDecimationTolerance() );
+            }
+            if ( options.getDecimationTolerance( layer ) < 0 ) {
+                options.setDecimationTolerance( layer, globalDefaults.getDecimationTolerance() );
+            }
+        }
     }
 
     private static void insertRadius( String layer, MapOptionsMaps options, MapOptions layerDefaults,
@@ -93,6 +93,11 @@ public class MapOptionsMaps {
         return opts == null ? -1 : opts.getFeatureInfoRadius();
     }
 
+    public double getDecimationTolerance( String layer ) {
+        MapOptions opts = options.get( layer );
+        return opts == null ? -1 : opts.getDecimationTolerance();
+    }
+
     public Quality getQuality( String layer ) {
         MapOptions opts = options.get( layer );
         return opts == null ? null : opts.getQuality();
@@ -124,6 +129,14 @@ public class MapOptionsMaps {
         }
     }
 
+    public void setDecimationTolerance( String layer, double tolerance ) {
+        if ( options.get( layer ) == null ) {
+            options.put( layer, new MapOptions( null, null, null, -1, -1, tolerance ) );
+        } else {
+            options.get( layer ).setDecimationTolerance( tolerance );
+        }
+    }
+
     public void setQuality( String layer, Quality q ) {
         if ( options.get( layer ) == null ) {
             options.put( layer, new MapOptions( q, null, null, -1, -1 ) );
@@ -150,7 +163,8 @@ public class MapOptionsMaps {
 
     public MapOptions get( String layer ) {
         return new MapOptions( getQuality( layer ), getInterpolation( layer ), getAntialias( layer ),
-                               getMaxFeatures( layer ), getFeatureInfoRadius( layer ) );
+                               getMaxFeatures( layer ), getFeatureInfoRadius( layer ),
+                               getDecimationTolerance( layer ) );
     }
 
 }
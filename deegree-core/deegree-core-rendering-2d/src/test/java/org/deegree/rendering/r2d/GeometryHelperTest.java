@@ -0,0 +1,141 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.geom.PathIterator.SEG_CLOSE;
+import static java.awt.geom.PathIterator.SEG_LINETO;
+import static java.awt.geom.PathIterator.SEG_MOVETO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.io.WKTReader;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Polygon;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.io.ParseException;
+
+/**
+ * Test cases for the screen space decimation in {@link GeometryHelper}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class GeometryHelperTest {
+
+    private GeometryHelper helper;
+
+    @Before
+    public void setup() {
+        Envelope bbox = new GeometryFactory().createEnvelope( 0, 0, 1, 1, null );
+        AffineTransform worldToScreen = new AffineTransform();
+        RenderHelper.getWorldToScreenTransform( worldToScreen, bbox, 100, 100 );
+        helper = new GeometryHelper( bbox, 100, worldToScreen );
+    }
+
+    @Test
+    public void decimationDisabledKeepsAllVertices()
+                            throws ParseException {
+        Curve curve = (Curve) new WKTReader( null ).read( denseLineString( 1000 ) );
+        List<double[]> segments = segments( helper.fromCurve( curve, false ) );
+        assertEquals( 1000, segments.size() );
+    }
+
+    @Test
+    public void decimationDropsSubPixelVertices()
+                            throws ParseException {
+        helper.setDecimationTolerance( 1 );
+        Curve curve = (Curve) new WKTReader( null ).read( denseLineString( 1000 ) );
+        List<double[]> segments = segments( helper.fromCurve( curve, false ) );
+        assertTrue( segments.size() <= 101 );
+        assertEquals( SEG_MOVETO, (int) segments.get( 0 )[0] );
+        assertEquals( 0, segments.get( 0 )[1], 1e-9 );
+        double[] last = segments.get( segments.size() - 1 );
+        assertEquals( SEG_LINETO, (int) last[0] );
+        assertEquals( 99.9, last[1], 1e-9 );
+    }
+
+    @Test
+    public void decimationKeepsRingsClosed()
+                            throws ParseException {
+        helper.setDecimationTolerance( 2 );
+        StringBuilder wkt = new StringBuilder( "POLYGON ((" );
+        for ( int i = 0; i < 1000; ++i ) {
+            double angle = 2 * Math.PI * i / 1000;
+            wkt.append( 0.5 + 0.4 * Math.cos( angle ) ).append( " " ).append( 0.5 + 0.4 * Math.sin( angle ) );
+            wkt.append( "," );
+        }
+        wkt.append( "0.9 0.5))" );
+        Polygon polygon = (Polygon) new WKTReader( null ).read( wkt.toString() );
+        List<double[]> segments = segments( helper.fromCurve( polygon.getExteriorRing(), true ) );
+        assertTrue( segments.size() > 4 );
+        assertTrue( segments.size() < 200 );
+        assertEquals( SEG_CLOSE, (int) segments.get( segments.size() - 1 )[0] );
+    }
+
+    private static String denseLineString( int numPoints ) {
+        StringBuilder wkt = new StringBuilder( "LINESTRING (" );
+        for ( int i = 0; i < numPoints; ++i ) {
+            if ( i > 0 ) {
+                wkt.append( "," );
+            }
+            wkt.append( i / 1000.0 ).append( " 0.5" );
+        }
+        return wkt.append( ")" ).toString();
+    }
+
+    private static List<double[]> segments( Path2D path ) {
+        List<double[]> list = new ArrayList<double[]>();
+        double[] coords = new double[6];
+        for ( PathIterator iter = path.getPathIterator( null ); !iter.isDone(); iter.next() ) {
+            int type = iter.currentSegment( coords );
+            list.add( new double[] { type, coords[0], coords[1] } );
+        }
+        return list;
+    }
+
+}
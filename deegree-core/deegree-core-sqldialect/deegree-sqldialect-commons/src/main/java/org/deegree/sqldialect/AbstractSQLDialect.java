@@ -35,6 +35,13 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.sqldialect;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+
 /**
  * Implementations provide the vendor-specific behavior for a spatial DBMS so it can be accessed by deegree.
  *
@@ -56,4 +63,105 @@ public abstract class AbstractSQLDialect implements SQLDialect{
         return defaultEscapeChar;
     }
 
+    /**
+     * Returns an SQL snippet that restricts the rows returned by a <code>SELECT</code> statement to a certain window
+     * (paging).
+     * <p>
+     * The snippet has to be appended after the <code>ORDER BY</code> clause. As some databases require an
+     * <code>ORDER BY</code> clause for paging (and the result is not deterministic without one), callers should always
+     * provide one. This implementation returns an empty snippet (paging is not supported).
+     * </p>
+     * 
+     * @param offset
+     *            number of rows to skip, <code>0</code> for none
+     * @param limit
+     *            maximum number of rows to return, <code>-1</code> for no limit
+     * @return SQL snippet (with a leading space), never <code>null</code>, but empty if no restriction applies or
+     *         paging is not supported by the dialect
+     */
+    public String getPagingSnippet( int offset, int limit ) {
+        return "";
+    }
+
+    /**
+     * Returns a paging snippet that uses the SQL:2008 syntax (<code>OFFSET n ROWS FETCH NEXT m ROWS ONLY</code>).
+     * 
+     * @param offset
+     *            number of rows to skip, <code>0</code> for none
+     * @param limit
+     *            maximum number of rows to return, <code>-1</code> for no limit
+     * @return SQL snippet (with a leading space), never <code>null</code>, but empty if no restriction applies
+     */
+    protected static String getOffsetFetchSnippet( int offset, int limit ) {
+        if ( offset <= 0 && limit < 0 ) {
+            return "";
+        }
+        StringBuilder sql = new StringBuilder( " OFFSET " );
+        sql.append( offset > 0 ? offset : 0 );
+        sql.append( " ROWS" );
+        if ( limit >= 0 ) {
+            sql.append( " FETCH NEXT " );
+            sql.append( limit );
+            sql.append( " ROWS ONLY" );
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Returns a <code>SELECT</code> statement for retrieving multiple next values of the specified DB sequence at once
+     * (one row per value).
+     * <p>
+     * This implementation returns <code>null</code>.
+     * </p>
+     * 
+     * @param sequence
+     *            name of the database sequence, must not be <code>null</code>
+     * @param count
+     *            number of values to retrieve, must be positive
+     * @return SQL <code>SELECT</code> statement, <code>null</code> if not supported by the dialect
+     */
+    public String getSelectSequenceNextVals( String sequence, int count ) {
+        return null;
+    }
+
+    /**
+     * Returns a <code>SELECT</code> statement for retrieving multiple next values of the DB sequence that generates the
+     * values of an auto-increment column (one row per value, <code>NULL</code> if the column is not backed by a
+     * sequence).
+     * <p>
+     * This implementation returns <code>null</code>.
+     * </p>
+     * 
+     * @param table
+     *            table of the column, must not be <code>null</code>
+     * @param column
+     *            auto-increment column, must not be <code>null</code>
+     * @param count
+     *            number of values to retrieve, must be positive
+     * @return SQL <code>SELECT</code> statement, <code>null</code> if not supported by the dialect
+     */
+    public String getSelectAutoColumnNextVals( TableName table, SQLIdentifier column, int count ) {
+        return null;
+    }
+
+    /**
+     * Creates a {@link BulkLoader} for inserting rows into the specified table.
+     * <p>
+     * This implementation returns <code>null</code>.
+     * </p>
+     * 
+     * @param conn
+     *            JDBC connection to use, must not be <code>null</code>
+     * @param table
+     *            target table, must not be <code>null</code>
+     * @param columns
+     *            target columns, must not be <code>null</code>
+     * @return bulk loader, <code>null</code> if bulk loading is not supported (by the dialect or the connection)
+     * @throws SQLException
+     */
+    public BulkLoader createBulkLoader( Connection conn, TableName table, List<SQLIdentifier> columns )
+                            throws SQLException {
+        return null;
+    }
+
 }
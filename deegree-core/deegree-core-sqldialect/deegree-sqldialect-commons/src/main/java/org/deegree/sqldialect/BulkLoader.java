@@ -0,0 +1,83 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect;
+
+import java.sql.SQLException;
+
+import org.deegree.commons.jdbc.TransactionRow;
+
+/**
+ * Loads rows into a database table using a vendor-specific bulk loading mechanism (e.g. <code>COPY</code> for
+ * PostgreSQL) instead of <code>INSERT</code> statements.
+ * <p>
+ * Rows are buffered until {@link #execute()} is called.
+ * </p>
+ * 
+ * @see AbstractSQLDialect#createBulkLoader(java.sql.Connection, org.deegree.commons.jdbc.TableName, java.util.List)
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public interface BulkLoader {
+
+    /**
+     * Adds the given row.
+     * 
+     * @param row
+     *            row to be loaded, must target the table and columns of this loader, must not be <code>null</code>
+     * @return <code>true</code>, if the row has been added, <code>false</code> if the row cannot be bulk loaded (e.g.
+     *         because it contains SQL expressions or unsupported values) and must be inserted using an
+     *         <code>INSERT</code> statement
+     * @throws SQLException
+     */
+    boolean add( TransactionRow row )
+                            throws SQLException;
+
+    /**
+     * Sends all added rows to the database.
+     * 
+     * @throws SQLException
+     */
+    void execute()
+                            throws SQLException;
+
+    /**
+     * Discards added rows that have not been sent to the database and releases all resources.
+     */
+    void close();
+}
@@ -48,6 +48,7 @@ import org.deegree.geometry.io.WKBReader;
 import org.deegree.geometry.io.WKBWriter;
 import org.deegree.geometry.io.WKTReader;
 import org.deegree.geometry.io.WKTWriter;
+import org.deegree.geometry.utils.AbstractGeometryParticleConverter;
 import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.slf4j.Logger;
 
@@ -59,7 +60,7 @@ import org.slf4j.Logger;
  * 
  * @version $Revision: 31055 $, $Date: 2011-06-14 17:19:48 +0200 (Di, 14. Jun 2011) $
  */
-public class MSSQLGeometryConverter implements GeometryParticleConverter {
+public class MSSQLGeometryConverter extends AbstractGeometryParticleConverter {
 
     private static final Logger LOG = getLogger( MSSQLGeometryConverter.class );
 
@@ -97,6 +98,13 @@ public class MSSQLGeometryConverter implements GeometryParticleConverter {
         return tableAlias + "." + column + ".ToString()";
     }
 
+    public String getSimplifiedSelectSnippet( String tableAlias ) {
+        if ( !is2d ) {
+            return null;
+        }
+        return ( tableAlias == null ? "" : ( tableAlias + "." ) ) + column + ".Reduce(?).STAsBinary()";
+    }
+
     public String getSetSnippet( Geometry particle ) {
         if ( is2d )
             return "geometry::STGeomFromWKB(?, " + srid + ")";
@@ -0,0 +1,75 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect;
+
+import static org.deegree.sqldialect.AbstractSQLDialect.getOffsetFetchSnippet;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for the shared snippets of {@link AbstractSQLDialect}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class AbstractSQLDialectTest {
+
+    @Test
+    public void testOffsetFetchSnippetNoRestriction() {
+        assertEquals( "", getOffsetFetchSnippet( 0, -1 ) );
+    }
+
+    @Test
+    public void testOffsetFetchSnippetLimit() {
+        assertEquals( " OFFSET 0 ROWS FETCH NEXT 10 ROWS ONLY", getOffsetFetchSnippet( 0, 10 ) );
+    }
+
+    @Test
+    public void testOffsetFetchSnippetOffset() {
+        assertEquals( " OFFSET 20 ROWS", getOffsetFetchSnippet( 20, -1 ) );
+    }
+
+    @Test
+    public void testOffsetFetchSnippetOffsetAndLimit() {
+        assertEquals( " OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY", getOffsetFetchSnippet( 20, 10 ) );
+    }
+
+    @Test
+    public void testOffsetFetchSnippetZeroLimit() {
+        assertEquals( " OFFSET 0 ROWS FETCH NEXT 0 ROWS ONLY", getOffsetFetchSnippet( 0, 0 ) );
+    }
+}
@@ -200,4 +200,12 @@ public class MSSQLDialect extends AbstractSQLDialect implements SQLDialect {
                                                  "Using DB sequences for FIDs is currently not supported on Microsoft SQL Server." );
     }
 
+    /**
+     * Uses the <code>OFFSET/FETCH</code> syntax, which is available since SQL Server 2012.
+     */
+    @Override
+    public String getPagingSnippet( int offset, int limit ) {
+        return getOffsetFetchSnippet( offset, limit );
+    }
+
 }
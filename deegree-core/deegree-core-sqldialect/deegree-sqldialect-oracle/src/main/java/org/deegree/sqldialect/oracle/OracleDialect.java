@@ -268,4 +268,12 @@ public class OracleDialect extends AbstractSQLDialect implements SQLDialect {
         return "SELECT " + sequence + ".NEXTVAL from DUAL";
     }
 
+    /**
+     * Uses the <code>OFFSET/FETCH</code> syntax, which is available since Oracle 12c.
+     */
+    @Override
+    public String getPagingSnippet( int offset, int limit ) {
+        return getOffsetFetchSnippet( offset, limit );
+    }
+
 }
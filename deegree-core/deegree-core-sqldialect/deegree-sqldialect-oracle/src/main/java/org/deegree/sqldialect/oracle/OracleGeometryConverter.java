@@ -34,6 +34,9 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.sqldialect.oracle;
 
+import static org.deegree.commons.utils.MapUtils.WMTS_METERS_PER_DEGREE;
+import static org.deegree.cs.coordinatesystems.CRS.CRSType.GEOGRAPHIC;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -46,6 +49,7 @@ import oracle.sql.STRUCT;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.utils.AbstractGeometryParticleConverter;
 import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.deegree.sqldialect.oracle.sdo.SDOGeometryConverter;
 import org.slf4j.Logger;
@@ -59,7 +63,7 @@ import org.slf4j.LoggerFactory;
  * 
  * @since 3.2
  */
-public class OracleGeometryConverter implements GeometryParticleConverter {
+public class OracleGeometryConverter extends AbstractGeometryParticleConverter {
 
     private static Logger LOG = LoggerFactory.getLogger( OracleGeometryConverter.class );
 
@@ -102,6 +106,45 @@ public class OracleGeometryConverter implements GeometryParticleConverter {
         return column;
     }
 
+    /**
+     * Returns an SQL snippet that simplifies the geometry using <code>SDO_UTIL.SIMPLIFY</code>.
+     */
+    @Override
+    public String getSimplifiedSelectSnippet( String tableAlias ) {
+        return "SDO_UTIL.SIMPLIFY(" + getSelectSnippet( tableAlias ) + ",?)";
+    }
+
+    /**
+     * Returns the threshold for <code>SDO_UTIL.SIMPLIFY</code>.
+     * <p>
+     * For geodetic (geographic) CRSs, Oracle expects the threshold in meters, so the tolerance (given in degrees) is
+     * converted.
+     * </p>
+     * 
+     * @param tolerance
+     *            simplification tolerance in units of the storage CRS
+     * @return threshold in meters for geodetic CRSs, otherwise the tolerance
+     */
+    @Override
+    public double getSimplifyTolerance( double tolerance ) {
+        if ( isGeodetic() ) {
+            return tolerance * WMTS_METERS_PER_DEGREE;
+        }
+        return tolerance;
+    }
+
+    private boolean isGeodetic() {
+        if ( crs == null ) {
+            return false;
+        }
+        try {
+            return crs.getType() == GEOGRAPHIC;
+        } catch ( Exception e ) {
+            LOG.debug( "Unable to determine type of CRS '{}': {}", crs.getAlias(), e.getMessage() );
+            return false;
+        }
+    }
+
     @Override
     public String getSetSnippet( Geometry particle ) {
         return "?";
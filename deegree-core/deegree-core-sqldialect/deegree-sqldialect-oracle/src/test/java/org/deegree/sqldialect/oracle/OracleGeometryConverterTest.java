@@ -0,0 +1,74 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.oracle;
+
+import static org.deegree.commons.utils.MapUtils.WMTS_METERS_PER_DEGREE;
+import static org.junit.Assert.assertEquals;
+
+import org.deegree.cs.coordinatesystems.GeocentricCRS;
+import org.deegree.cs.coordinatesystems.GeographicCRS;
+import org.junit.Test;
+
+/**
+ * Tests for the simplification snippets of {@link OracleGeometryConverter}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class OracleGeometryConverterTest {
+
+    @Test
+    public void testSimplifiedSelectSnippet() {
+        OracleGeometryConverter converter = new OracleGeometryConverter( "GEOM", null, "25832" );
+        assertEquals( "SDO_UTIL.SIMPLIFY(X1.GEOM,?)", converter.getSimplifiedSelectSnippet( "X1" ) );
+        assertEquals( "SDO_UTIL.SIMPLIFY(GEOM,?)", converter.getSimplifiedSelectSnippet( null ) );
+    }
+
+    @Test
+    public void testSimplifyToleranceGeodetic() {
+        OracleGeometryConverter converter = new OracleGeometryConverter( "GEOM", GeographicCRS.WGS84, "4326" );
+        assertEquals( 0.001 * WMTS_METERS_PER_DEGREE, converter.getSimplifyTolerance( 0.001 ), 1E-9 );
+        assertEquals( 111.319490793273, converter.getSimplifyTolerance( 0.001 ), 1E-9 );
+    }
+
+    @Test
+    public void testSimplifyToleranceNotGeodetic() {
+        OracleGeometryConverter converter = new OracleGeometryConverter( "GEOM", GeocentricCRS.WGS84, "4978" );
+        assertEquals( 2.5, converter.getSimplifyTolerance( 2.5 ), 0 );
+        converter = new OracleGeometryConverter( "GEOM", null, "25832" );
+        assertEquals( 2.5, converter.getSimplifyTolerance( 2.5 ), 0 );
+    }
+}
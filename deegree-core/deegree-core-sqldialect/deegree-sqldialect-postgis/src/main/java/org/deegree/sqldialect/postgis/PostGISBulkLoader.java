@@ -0,0 +1,317 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.postgis;
+
+import static java.util.Calendar.DAY_OF_MONTH;
+import static java.util.Calendar.DST_OFFSET;
+import static java.util.Calendar.ERA;
+import static java.util.Calendar.HOUR_OF_DAY;
+import static java.util.Calendar.MILLISECOND;
+import static java.util.Calendar.MINUTE;
+import static java.util.Calendar.MONTH;
+import static java.util.Calendar.SECOND;
+import static java.util.Calendar.YEAR;
+import static java.util.Calendar.ZONE_OFFSET;
+import static java.util.GregorianCalendar.BC;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.jdbc.TransactionRow;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.tom.sql.DefaultPrimitiveConverter;
+import org.deegree.commons.tom.sql.ParticleConversion;
+import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.geometry.Geometry;
+import org.deegree.sqldialect.BulkLoader;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link BulkLoader} that uses PostgreSQL's <code>COPY ... FROM STDIN</code> (text format).
+ * <p>
+ * Geometries are transferred as hex-encoded EWKB. Temporal values are transferred in ISO 8601 format, times with the
+ * offset of the default time zone (as the JDBC driver does for parameters), so they don't depend on the time zone of
+ * the database session.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class PostGISBulkLoader implements BulkLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger( PostGISBulkLoader.class );
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final Pattern INTEGER_LITERAL = Pattern.compile( "-?\\d+" );
+
+    private final CopyManager copyManager;
+
+    private final List<SQLIdentifier> columns;
+
+    private final String sql;
+
+    private StringBuilder data = new StringBuilder();
+
+    private int rows;
+
+    private final Calendar cal = new GregorianCalendar();
+
+    /**
+     * Creates a new {@link PostGISBulkLoader} instance.
+     * 
+     * @param copyManager
+     *            copy manager of the connection, must not be <code>null</code>
+     * @param table
+     *            target table, must not be <code>null</code>
+     * @param columns
+     *            target columns, must not be <code>null</code>
+     */
+    PostGISBulkLoader( CopyManager copyManager, TableName table, List<SQLIdentifier> columns ) {
+        this.copyManager = copyManager;
+        this.columns = columns;
+        StringBuilder sb = new StringBuilder( "COPY " ).append( table ).append( " (" );
+        boolean first = true;
+        for ( SQLIdentifier column : columns ) {
+            if ( !first ) {
+                sb.append( ',' );
+            }
+            first = false;
+            sb.append( column );
+        }
+        sql = sb.append( ") FROM STDIN" ).toString();
+    }
+
+    @Override
+    public boolean add( TransactionRow row )
+                            throws SQLException {
+        for ( SQLIdentifier column : columns ) {
+            if ( !isSupported( row, column ) ) {
+                return false;
+            }
+        }
+        boolean first = true;
+        for ( SQLIdentifier column : columns ) {
+            if ( !first ) {
+                data.append( '\t' );
+            }
+            first = false;
+            appendValue( row, column );
+        }
+        data.append( '\n' );
+        rows++;
+        return true;
+    }
+
+    @Override
+    public void execute()
+                            throws SQLException {
+        if ( rows == 0 ) {
+            return;
+        }
+        LOG.debug( "Copying " + rows + " rows: " + sql );
+        try {
+            copyManager.copyIn( sql, new StringReader( data.toString() ) );
+        } catch ( IOException e ) {
+            throw new SQLException( "Error copying rows: " + e.getMessage(), e );
+        }
+        data.setLength( 0 );
+        rows = 0;
+    }
+
+    @Override
+    public void close() {
+        data = new StringBuilder();
+        rows = 0;
+    }
+
+    private boolean isSupported( TransactionRow row, SQLIdentifier column ) {
+        String literal = row.getLiteral( column );
+        if ( literal == null ) {
+            return false;
+        }
+        Object value = row.get( column );
+        if ( value instanceof ParticleConversion<?> ) {
+            ParticleConverter<?> converter = ( (ParticleConversion<?>) value ).getConverter();
+            if ( converter instanceof PostGISGeometryConverter ) {
+                return true;
+            }
+            return converter instanceof DefaultPrimitiveConverter && "?".equals( literal );
+        }
+        if ( "?".equals( literal ) ) {
+            return true;
+        }
+        // plain integer literals (e.g. values of order columns)
+        return value == null && INTEGER_LITERAL.matcher( literal ).matches();
+    }
+
+    private void appendValue( TransactionRow row, SQLIdentifier column )
+                            throws SQLException {
+        Object value = row.get( column );
+        String literal = row.getLiteral( column );
+        if ( value instanceof ParticleConversion<?> ) {
+            ParticleConversion<?> conversion = (ParticleConversion<?>) value;
+            if ( conversion.getConverter() instanceof PostGISGeometryConverter ) {
+                Geometry geom = (Geometry) conversion.getParticle();
+                if ( geom == null ) {
+                    data.append( "\\N" );
+                } else {
+                    appendHex( ( (PostGISGeometryConverter) conversion.getConverter() ).toEWKB( geom ) );
+                }
+                return;
+            }
+            PrimitiveValue pv = (PrimitiveValue) conversion.getParticle();
+            value = null;
+            if ( pv != null && pv.getValue() != null ) {
+                value = ( (DefaultPrimitiveConverter) conversion.getConverter() ).toSqlValue( pv.getValue() );
+            }
+        } else if ( !"?".equals( literal ) ) {
+            data.append( literal );
+            return;
+        }
+        appendText( value );
+    }
+
+    private void appendText( Object value ) {
+        if ( value == null ) {
+            data.append( "\\N" );
+        } else if ( value instanceof byte[] ) {
+            // bytea hex format (backslash escaped for COPY)
+            data.append( "\\\\x" );
+            appendHex( (byte[]) value );
+        } else if ( value instanceof Date ) {
+            appendTemporal( (Date) value );
+        } else {
+            String s = value instanceof BigDecimal ? ( (BigDecimal) value ).toPlainString() : value.toString();
+            for ( int i = 0; i < s.length(); i++ ) {
+                char c = s.charAt( i );
+                switch ( c ) {
+                case '\\':
+                    data.append( "\\\\" );
+                    break;
+                case '\t':
+                    data.append( "\\t" );
+                    break;
+                case '\n':
+                    data.append( "\\n" );
+                    break;
+                case '\r':
+                    data.append( "\\r" );
+                    break;
+                default:
+                    data.append( c );
+                }
+            }
+        }
+    }
+
+    private void appendTemporal( Date value ) {
+        cal.setTime( value );
+        boolean hasDate = !( value instanceof Time );
+        boolean hasTime = !( value instanceof java.sql.Date );
+        if ( hasDate ) {
+            appendDigits( cal.get( YEAR ), 4 );
+            data.append( '-' );
+            appendDigits( cal.get( MONTH ) + 1, 2 );
+            data.append( '-' );
+            appendDigits( cal.get( DAY_OF_MONTH ), 2 );
+        }
+        if ( hasTime ) {
+            if ( hasDate ) {
+                data.append( ' ' );
+            }
+            appendDigits( cal.get( HOUR_OF_DAY ), 2 );
+            data.append( ':' );
+            appendDigits( cal.get( MINUTE ), 2 );
+            data.append( ':' );
+            appendDigits( cal.get( SECOND ), 2 );
+            if ( value instanceof Timestamp ) {
+                int nanos = ( (Timestamp) value ).getNanos();
+                if ( nanos != 0 ) {
+                    data.append( '.' );
+                    appendDigits( nanos, 9 );
+                }
+            } else if ( cal.get( MILLISECOND ) != 0 ) {
+                data.append( '.' );
+                appendDigits( cal.get( MILLISECOND ), 3 );
+            }
+            int offset = ( cal.get( ZONE_OFFSET ) + cal.get( DST_OFFSET ) ) / 1000;
+            data.append( offset < 0 ? '-' : '+' );
+            offset = Math.abs( offset );
+            appendDigits( offset / 3600, 2 );
+            data.append( ':' );
+            appendDigits( ( offset / 60 ) % 60, 2 );
+            if ( offset % 60 != 0 ) {
+                // historical local mean times
+                data.append( ':' );
+                appendDigits( offset % 60, 2 );
+            }
+        }
+        if ( hasDate && cal.get( ERA ) == BC ) {
+            data.append( " BC" );
+        }
+    }
+
+    private void appendDigits( int value, int digits ) {
+        String s = Integer.toString( value );
+        for ( int i = s.length(); i < digits; i++ ) {
+            data.append( '0' );
+        }
+        data.append( s );
+    }
+
+    private void appendHex( byte[] bytes ) {
+        for ( byte b : bytes ) {
+            data.append( HEX_DIGITS[( b >> 4 ) & 0x0F] );
+            data.append( HEX_DIGITS[b & 0x0F] );
+        }
+    }
+}
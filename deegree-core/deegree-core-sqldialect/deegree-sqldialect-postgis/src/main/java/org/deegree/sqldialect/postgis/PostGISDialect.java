@@ -57,11 +57,13 @@ import org.deegree.geometry.standard.DefaultEnvelope;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
 import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.deegree.sqldialect.AbstractSQLDialect;
+import org.deegree.sqldialect.BulkLoader;
 import org.deegree.sqldialect.SQLDialect;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
 import org.deegree.sqldialect.filter.PropertyNameMapper;
 import org.deegree.sqldialect.filter.UnmappableException;
 import org.postgis.PGboxbase;
+import org.postgresql.PGConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -287,6 +289,55 @@ public class PostGISDialect extends AbstractSQLDialect implements SQLDialect {
         return "SELECT nextval('" + sequence + "')";
     }
 
+    @Override
+    public String getSelectSequenceNextVals( String sequence, int count ) {
+        return "SELECT nextval('" + sequence + "') FROM generate_series(1," + count + ")";
+    }
+
+    @Override
+    public String getSelectAutoColumnNextVals( TableName table, SQLIdentifier column, int count ) {
+        // column name is treated as quoted identifier by pg_get_serial_sequence
+        String columnName = column.getName();
+        if ( column.isEscaped() ) {
+            columnName = columnName.substring( 1, columnName.length() - 1 );
+        } else {
+            columnName = columnName.toLowerCase();
+        }
+        return "SELECT nextval(pg_get_serial_sequence('" + table + "','" + columnName
+               + "')) FROM generate_series(1," + count + ")";
+    }
+
+    @Override
+    public BulkLoader createBulkLoader( Connection conn, TableName table, List<SQLIdentifier> columns )
+                            throws SQLException {
+        PGConnection pgConn = null;
+        if ( conn instanceof PGConnection ) {
+            pgConn = (PGConnection) conn;
+        } else {
+            try {
+                pgConn = conn.unwrap( PGConnection.class );
+            } catch ( SQLException e ) {
+                LOG.warn( "Bulk loading not available. Cannot access PostgreSQL connection: " + e.getMessage() );
+                return null;
+            }
+        }
+        return new PostGISBulkLoader( pgConn.getCopyAPI(), table, columns );
+    }
+
+    @Override
+    public String getPagingSnippet( int offset, int limit ) {
+        StringBuilder sql = new StringBuilder();
+        if ( limit >= 0 ) {
+            sql.append( " LIMIT " );
+            sql.append( limit );
+        }
+        if ( offset > 0 ) {
+            sql.append( " OFFSET " );
+            sql.append( offset );
+        }
+        return sql.toString();
+    }
+
     @Override
     public char getLeadingEscapeChar() {
         return escapeChar;
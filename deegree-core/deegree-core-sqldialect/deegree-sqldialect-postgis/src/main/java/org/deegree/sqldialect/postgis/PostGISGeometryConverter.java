@@ -44,6 +44,7 @@ import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
 import org.deegree.geometry.io.WKBReader;
 import org.deegree.geometry.io.WKBWriter;
+import org.deegree.geometry.utils.AbstractGeometryParticleConverter;
 import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,7 +57,7 @@ import org.slf4j.LoggerFactory;
  * 
  * @version $Revision: 31055 $, $Date: 2011-06-14 17:19:48 +0200 (Di, 14. Jun 2011) $
  */
-public class PostGISGeometryConverter implements GeometryParticleConverter {
+public class PostGISGeometryConverter extends AbstractGeometryParticleConverter {
 
     private static Logger LOG = LoggerFactory.getLogger( PostGISGeometryConverter.class );
 
@@ -97,6 +98,14 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
         return asewkb + "(" + column + ")";
     }
 
+    @Override
+    public String getSimplifiedSelectSnippet( String tableAlias ) {
+        String asewkb = useLegacyPredicates ? "AsEWKB" : "ST_AsEWKB";
+        String simplify = useLegacyPredicates ? "SimplifyPreserveTopology" : "ST_SimplifyPreserveTopology";
+        String qualifiedColumn = tableAlias != null ? tableAlias + "." + column : column;
+        return asewkb + "(" + simplify + "(" + qualifiedColumn + ",?))";
+    }
+
     @Override
     public Geometry toParticle( ResultSet rs, int colIndex )
                             throws SQLException {
@@ -139,6 +148,46 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
         stmt.setBytes( paramIndex, wkb );
     }
 
+    /**
+     * Encodes the given geometry as EWKB (WKB with embedded SRID), e.g. for loading it via <code>COPY</code>.
+     * 
+     * @param particle
+     *            geometry to be encoded, must not be <code>null</code>
+     * @return EWKB, never <code>null</code>
+     * @throws SQLException
+     */
+    byte[] toEWKB( Geometry particle )
+                            throws SQLException {
+        byte[] wkb = null;
+        try {
+            wkb = WKBWriter.write( getCompatibleGeometry( particle ) );
+        } catch ( SQLException e ) {
+            throw e;
+        } catch ( Throwable t ) {
+            throw new IllegalArgumentException( t.getMessage(), t );
+        }
+        int sridValue = 0;
+        try {
+            sridValue = Integer.parseInt( srid );
+        } catch ( NumberFormatException e ) {
+            // no (numeric) SRID: plain WKB
+            return wkb;
+        }
+        byte[] ewkb = new byte[wkb.length + 4];
+        boolean littleEndian = wkb[0] == 1;
+        ewkb[0] = wkb[0];
+        // geometry type with SRID flag
+        System.arraycopy( wkb, 1, ewkb, 1, 4 );
+        ewkb[littleEndian ? 4 : 1] |= 0x20;
+        // SRID
+        for ( int i = 0; i < 4; i++ ) {
+            int shift = littleEndian ? 8 * i : 8 * ( 3 - i );
+            ewkb[5 + i] = (byte) ( sridValue >>> shift );
+        }
+        System.arraycopy( wkb, 5, ewkb, 9, wkb.length - 5 );
+        return ewkb;
+    }
+
     private Geometry getCompatibleGeometry( Geometry literal )
                             throws SQLException {
         if ( crs == null ) {
@@ -0,0 +1,265 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.postgis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.deegree.commons.jdbc.InsertRow;
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.tom.sql.DefaultPrimitiveConverter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Tests for {@link PostGISBulkLoader}: <code>COPY</code> statement and text format encoding of the rows.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PostGISBulkLoaderTest {
+
+    private static final TableName TABLE = new TableName( "t" );
+
+    private static final SQLIdentifier COL_A = new SQLIdentifier( "a" );
+
+    private static final SQLIdentifier COL_B = new SQLIdentifier( "b" );
+
+    private CopyManager copyManager;
+
+    private final List<String> copySql = new ArrayList<String>();
+
+    private final List<String> copyData = new ArrayList<String>();
+
+    private TimeZone defaultTimeZone;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault( TimeZone.getTimeZone( "Europe/Berlin" ) );
+        copyManager = mock( CopyManager.class );
+        when( copyManager.copyIn( anyString(), any( Reader.class ) ) ).thenAnswer( new Answer<Long>() {
+            @Override
+            public Long answer( InvocationOnMock invocation )
+                                    throws Throwable {
+                copySql.add( (String) invocation.getArguments()[0] );
+                Reader reader = (Reader) invocation.getArguments()[1];
+                StringBuilder sb = new StringBuilder();
+                int c;
+                while ( ( c = reader.read() ) != -1 ) {
+                    sb.append( (char) c );
+                }
+                copyData.add( sb.toString() );
+                return 0L;
+            }
+        } );
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault( defaultTimeZone );
+    }
+
+    @Test
+    public void testCopyStatement()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A, COL_B );
+        assertTrue( loader.add( createRow( "x", "y" ) ) );
+        loader.execute();
+        assertEquals( Arrays.asList( "COPY t (a,b) FROM STDIN" ), copySql );
+        assertEquals( Arrays.asList( "x\ty\n" ), copyData );
+    }
+
+    @Test
+    public void testEscaping()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A );
+        assertTrue( loader.add( createRow( "back\\slash" ) ) );
+        assertTrue( loader.add( createRow( "tab\tnewline\ncr\r" ) ) );
+        loader.execute();
+        assertEquals( "back\\\\slash\ntab\\tnewline\\ncr\\r\n", copyData.get( 0 ) );
+    }
+
+    @Test
+    public void testNull()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A, COL_B );
+        assertTrue( loader.add( createRow( null, "y" ) ) );
+        loader.execute();
+        assertEquals( "\\N\ty\n", copyData.get( 0 ) );
+    }
+
+    @Test
+    public void testBytes()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A );
+        assertTrue( loader.add( createRow( new byte[] { 0x00, 0x1F, (byte) 0xAB } ) ) );
+        loader.execute();
+        assertEquals( "\\\\x001FAB\n", copyData.get( 0 ) );
+    }
+
+    @Test
+    public void testBigDecimalPlainString()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A );
+        assertTrue( loader.add( createRow( new BigDecimal( "1E+3" ) ) ) );
+        loader.execute();
+        assertEquals( "1000\n", copyData.get( 0 ) );
+    }
+
+    @Test
+    public void testTimestampWithOffset()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A, COL_B );
+        assertTrue( loader.add( createRow( Timestamp.valueOf( "2014-07-01 12:30:45.123456789" ),
+                                           Timestamp.valueOf( "2014-01-01 00:00:00" ) ) ) );
+        loader.execute();
+        assertEquals( "2014-07-01 12:30:45.123456789+02:00\t2014-01-01 00:00:00+01:00\n", copyData.get( 0 ) );
+    }
+
+    @Test
+    public void testDateAndTime()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A, COL_B );
+        assertTrue( loader.add( createRow( Date.valueOf( "0099-03-04" ), Time.valueOf( "08:15:30" ) ) ) );
+        loader.execute();
+        assertEquals( "0099-03-04\t08:15:30+01:00\n", copyData.get( 0 ) );
+    }
+
+    @Test
+    public void testDateTimeConversion()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A );
+        PrimitiveType pt = new PrimitiveType( BaseType.DATE_TIME );
+        DefaultPrimitiveConverter converter = new DefaultPrimitiveConverter( pt, "a" );
+        InsertRow row = new InsertRow( TABLE, null );
+        // 12:30:45 in Berlin (summer time)
+        row.addPreparedArgument( COL_A, new PrimitiveValue( "2014-07-01T10:30:45Z", pt ), converter );
+        assertTrue( loader.add( row ) );
+        loader.execute();
+        assertEquals( "2014-07-01 12:30:45+02:00\n", copyData.get( 0 ) );
+    }
+
+    @Test
+    public void testPrimitiveConversion()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A, COL_B );
+        DefaultPrimitiveConverter converter = new DefaultPrimitiveConverter( new PrimitiveType( BaseType.STRING ),
+                                                                             "a" );
+        InsertRow row = new InsertRow( TABLE, null );
+        row.addPreparedArgument( COL_A, new PrimitiveValue( "a\tb", new PrimitiveType( BaseType.STRING ) ),
+                                 converter );
+        row.addPreparedArgument( COL_B, null, converter );
+        assertTrue( loader.add( row ) );
+        loader.execute();
+        assertEquals( "a\\tb\t\\N\n", copyData.get( 0 ) );
+    }
+
+    @Test
+    public void testIntegerLiteral()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A, COL_B );
+        InsertRow row = new InsertRow( TABLE, null );
+        row.addPreparedArgument( COL_A, "x" );
+        row.addLiteralValue( COL_B, "-42" );
+        assertTrue( loader.add( row ) );
+        loader.execute();
+        assertEquals( "x\t-42\n", copyData.get( 0 ) );
+    }
+
+    @Test
+    public void testUnsupportedLiteral()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A, COL_B );
+        InsertRow row = new InsertRow( TABLE, null );
+        row.addPreparedArgument( COL_A, "x" );
+        row.addPreparedArgument( COL_B, "POINT(1 2)", "ST_GeomFromText(?)" );
+        assertFalse( loader.add( row ) );
+        loader.execute();
+        verify( copyManager, never() ).copyIn( anyString(), any( Reader.class ) );
+    }
+
+    @Test
+    public void testExecuteResetsData()
+                            throws Exception {
+        PostGISBulkLoader loader = createLoader( COL_A );
+        assertTrue( loader.add( createRow( "x" ) ) );
+        loader.execute();
+        loader.execute();
+        assertTrue( loader.add( createRow( "y" ) ) );
+        loader.execute();
+        assertEquals( Arrays.asList( "x\n", "y\n" ), copyData );
+    }
+
+    private PostGISBulkLoader createLoader( SQLIdentifier... columns ) {
+        return new PostGISBulkLoader( copyManager, TABLE, Arrays.asList( columns ) );
+    }
+
+    private InsertRow createRow( Object... values ) {
+        InsertRow row = new InsertRow( TABLE, null );
+        List<SQLIdentifier> columns = Arrays.asList( COL_A, COL_B );
+        for ( int i = 0; i < values.length; i++ ) {
+            row.addPreparedArgument( columns.get( i ), values[i] );
+        }
+        return row;
+    }
+}
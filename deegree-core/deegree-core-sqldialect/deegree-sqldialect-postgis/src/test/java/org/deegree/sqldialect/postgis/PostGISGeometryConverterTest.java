@@ -0,0 +1,90 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.postgis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Point;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PostGISGeometryConverter}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PostGISGeometryConverterTest {
+
+    private final Point point = new GeometryFactory().createPoint( null, 1.0, 2.0, null );
+
+    @Test
+    public void testToEWKBWithSrid()
+                            throws Exception {
+        PostGISGeometryConverter converter = new PostGISGeometryConverter( "geom", null, "4326", false );
+        byte[] expected = new byte[] { 0, 0x20, 0, 0, 1, 0, 0, 0x10, (byte) 0xE6, 0x3F, (byte) 0xF0, 0, 0, 0, 0, 0, 0,
+                                      0x40, 0, 0, 0, 0, 0, 0, 0 };
+        assertArrayEquals( expected, converter.toEWKB( point ) );
+    }
+
+    @Test
+    public void testToEWKBWithoutSrid()
+                            throws Exception {
+        PostGISGeometryConverter converter = new PostGISGeometryConverter( "geom", null, null, false );
+        byte[] expected = new byte[] { 0, 0, 0, 0, 1, 0x3F, (byte) 0xF0, 0, 0, 0, 0, 0, 0, 0x40, 0, 0, 0, 0, 0, 0, 0 };
+        assertArrayEquals( expected, converter.toEWKB( point ) );
+    }
+
+    @Test
+    public void testSimplifiedSelectSnippet() {
+        PostGISGeometryConverter converter = new PostGISGeometryConverter( "geom", null, "4326", false );
+        assertEquals( "ST_AsEWKB(ST_SimplifyPreserveTopology(X1.geom,?))", converter.getSimplifiedSelectSnippet( "X1" ) );
+        assertEquals( "ST_AsEWKB(ST_SimplifyPreserveTopology(geom,?))", converter.getSimplifiedSelectSnippet( null ) );
+    }
+
+    @Test
+    public void testSimplifiedSelectSnippetLegacy() {
+        PostGISGeometryConverter converter = new PostGISGeometryConverter( "geom", null, "4326", true );
+        assertEquals( "AsEWKB(SimplifyPreserveTopology(X1.geom,?))", converter.getSimplifiedSelectSnippet( "X1" ) );
+    }
+
+    @Test
+    public void testSimplifyTolerance() {
+        PostGISGeometryConverter converter = new PostGISGeometryConverter( "geom", null, "4326", false );
+        assertEquals( 0.5, converter.getSimplifyTolerance( 0.5 ), 0 );
+    }
+}
@@ -0,0 +1,75 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+/**
+ * Base class for {@link Tile} implementations that can provide validators (version token, modification time) for the
+ * encoded tile data.
+ * <p>
+ * The default implementations report that no validators are available. Use {@link Tiles#getVersion(Tile)} and
+ * {@link Tiles#getLastModified(Tile)} to query arbitrary {@link Tile} instances.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public abstract class AbstractTile implements Tile {
+
+    /**
+     * Returns a token that changes whenever the encoded tile data changes (e.g. for use as HTTP entity tag).
+     * <p>
+     * Implementations should only return a token if it can be determined cheaply (e.g. from file timestamps), i.e.
+     * without generating the tile data.
+     * </p>
+     * 
+     * @return version token, or <code>null</code> if not available
+     */
+    public String getVersion() {
+        return null;
+    }
+
+    /**
+     * Returns the time of the last modification of the tile data.
+     * 
+     * @return last modification time (milliseconds since the epoch), or <code>-1</code> if not available
+     */
+    public long getLastModified() {
+        return -1;
+    }
+
+}
@@ -0,0 +1,70 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+/**
+ * A {@link TileDataLevel} that can produce a block of adjacent tiles at once.
+ * <p>
+ * This is useful for backends that produce tiles dynamically (e.g. remote WMS), where fetching a block of tiles with a
+ * single request is considerably cheaper than fetching each tile on its own. Caches may use this to slice the block
+ * into tiles and store all of them.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public interface MetatileDataLevel extends TileDataLevel {
+
+    /**
+     * Retrieves a block of adjacent tiles as a single tile.
+     * 
+     * @param x
+     *            column index of the upper left tile of the block, counting from zero
+     * @param y
+     *            row index of the upper left tile of the block, counting from zero
+     * @param columns
+     *            number of tile columns in the block, must be positive
+     * @param rows
+     *            number of tile rows in the block, must be positive
+     * @return a tile covering the whole block (the image is <code>columns</code> times the tile width and
+     *         <code>rows</code> times the tile height in pixels) or <code>null</code> if the block is not completely
+     *         inside the tile matrix
+     */
+    Tile getMetatile( long x, long y, int columns, int rows );
+
+}
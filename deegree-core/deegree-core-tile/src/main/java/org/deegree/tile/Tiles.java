@@ -41,6 +41,13 @@
 
 package org.deegree.tile;
 
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.GeometryFactory;
 
@@ -120,4 +127,77 @@ public class Tiles {
         return GEOMETRY_FACTORY.createEnvelope( minx, miny, minx + width, miny - height, env.getCoordinateSystem() );
     }
 
+    /**
+     * Encodes the given image in the given format.
+     * 
+     * @param img
+     *            image to encode, must not be <code>null</code>
+     * @param format
+     *            image format, either a mime type (e.g. <code>image/png</code>) or an ImageIO format name (e.g.
+     *            <code>png</code>), must not be <code>null</code>
+     * @return encoded image, never <code>null</code>
+     * @throws IOException
+     *             if no writer is available for the format or encoding fails
+     */
+    public static byte[] encode( BufferedImage img, String format )
+                            throws IOException {
+        String formatName = getFormatName( format );
+        boolean jpeg = "jpeg".equalsIgnoreCase( formatName ) || "jpg".equalsIgnoreCase( formatName );
+        if ( jpeg && img.getColorModel().hasAlpha() ) {
+            // JPEG does not support transparency
+            BufferedImage rgb = new BufferedImage( img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB );
+            Graphics2D g = rgb.createGraphics();
+            g.drawImage( img, 0, 0, null );
+            g.dispose();
+            img = rgb;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if ( !ImageIO.write( img, formatName, out ) ) {
+            throw new IOException( "No image writer available for format '" + format + "'." );
+        }
+        return out.toByteArray();
+    }
+
+    private static String getFormatName( String format ) {
+        int semicolon = format.indexOf( ';' );
+        if ( semicolon != -1 ) {
+            format = format.substring( 0, semicolon );
+        }
+        int slash = format.indexOf( '/' );
+        if ( slash != -1 ) {
+            format = format.substring( slash + 1 );
+        }
+        return format.trim();
+    }
+
+    /**
+     * Returns the version token of the given tile.
+     * 
+     * @param tile
+     *            tile, must not be <code>null</code>
+     * @return version token, or <code>null</code> if not available
+     * @see AbstractTile#getVersion()
+     */
+    public static String getVersion( Tile tile ) {
+        if ( tile instanceof AbstractTile ) {
+            return ( (AbstractTile) tile ).getVersion();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the time of the last modification of the given tile.
+     * 
+     * @param tile
+     *            tile, must not be <code>null</code>
+     * @return last modification time (milliseconds since the epoch), or <code>-1</code> if not available
+     * @see AbstractTile#getLastModified()
+     */
+    public static long getLastModified( Tile tile ) {
+        if ( tile instanceof AbstractTile ) {
+            return ( (AbstractTile) tile ).getLastModified();
+        }
+        return -1;
+    }
+
 }
@@ -97,6 +97,12 @@ public class Query {
 
     private int maxFeatures = -1;
 
+    private int startIndex = 0;
+
+    private boolean pagingRequested;
+
+    private boolean pagingApplied;
+
     private final List<ProjectionClause> projections;
 
     /**
@@ -277,4 +283,65 @@ public class Query {
     public int getMaxFeatures() {
         return maxFeatures;
     }
+
+    /**
+     * Sets the paging parameters that the {@link FeatureStore} may use to restrict the result.
+     * <p>
+     * Stores are free to ignore these parameters. A store that actually restricts the result stream to the requested
+     * page (e.g. using <code>LIMIT</code>/<code>OFFSET</code>) must signal this by calling {@link #setPagingApplied()}.
+     * Otherwise, the caller is responsible for skipping and limiting the returned features.
+     * </p>
+     * 
+     * @param startIndex
+     *            index of the first feature to be returned (zero-based), must not be negative
+     * @param maxFeatures
+     *            maximum number of features to return, -1 for no limit
+     */
+    public void setPaging( int startIndex, int maxFeatures ) {
+        if ( startIndex < 0 ) {
+            throw new IllegalArgumentException( "Start index must not be negative." );
+        }
+        this.startIndex = startIndex;
+        this.maxFeatures = maxFeatures;
+        this.pagingRequested = true;
+    }
+
+    /**
+     * Returns whether the caller requested a page of the result (see {@link #setPaging(int, int)}).
+     * <p>
+     * A limit that has only been set via the constructor (e.g. the maximum number of features for a map layer) is not
+     * considered a paging request, so stores don't have to return a stable order of features in this case.
+     * </p>
+     * 
+     * @return <code>true</code>, if paging has been requested, <code>false</code> otherwise
+     */
+    public boolean isPagingRequested() {
+        return pagingRequested;
+    }
+
+    /**
+     * Returns the index of the first feature to be returned.
+     * 
+     * @return zero-based index of the first feature, 0 if no start index has been set
+     */
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    /**
+     * Called by the {@link FeatureStore} to signal that the paging parameters ({@link #getStartIndex()},
+     * {@link #getMaxFeatures()}) have been applied to the result stream.
+     */
+    public void setPagingApplied() {
+        this.pagingApplied = true;
+    }
+
+    /**
+     * Returns whether the {@link FeatureStore} has already applied the paging parameters to the result stream.
+     * 
+     * @return <code>true</code>, if the result stream only contains the requested page, <code>false</code> otherwise
+     */
+    public boolean isPagingApplied() {
+        return pagingApplied;
+    }
 }
\ No newline at end of file
@@ -39,6 +39,7 @@ import static org.deegree.feature.i18n.Messages.getMessage;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.xml.namespace.QName;
@@ -63,7 +64,6 @@ import org.deegree.feature.persistence.lock.Lock;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.transaction.FeatureUpdater;
 import org.deegree.feature.types.FeatureType;
-import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
@@ -113,7 +113,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
      * @param fs
      *            invoking feature store instance, must not be <code>null</code>
      * @param sf
-     *            copy of features to work on, must not be <code>null</code>
+     *            (copy-on-write) copy of features to work on, must not be <code>null</code>
      * @param lockManager
      *            lock manager, must not be <code>null</code>
      */
@@ -126,12 +126,13 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
     @Override
     public void commit()
                             throws FeatureStoreException {
-        try {
-            sf.rebuildIndexes();
-        } catch ( UnknownCRSException e ) {
-            throw new FeatureStoreException( e.getMessage() );
+        StoredFeatures newFeatures = sf;
+        if ( sf.isCompactionRequired() ) {
+            long begin = System.currentTimeMillis();
+            newFeatures = sf.compact();
+            LOG.debug( "Compacting stored features took {} [ms]", System.currentTimeMillis() - begin );
         }
-        fs.releaseTransaction( this, sf );
+        fs.releaseTransaction( this, newFeatures );
     }
 
     @Override
@@ -149,35 +150,31 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
             throw new FeatureStoreException( getMessage( "TA_OPERATION_FT_NOT_SERVED", ftName ) );
         }
 
-        FeatureCollection fc = sf.getFeatures( ft );
         int deleted = 0;
-        if ( fc != null ) {
-            try {
-                TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
-                FeatureCollection delete = fc.getMembers( filter, evaluator );
-
-                // check if all can be deleted
-                for ( Feature feature : delete ) {
-                    if ( !lockManager.isFeatureModifiable( feature.getId(), lockId ) ) {
-                        if ( lockId == null ) {
-                            throw new MissingParameterException( getMessage( "TA_DELETE_LOCKED_NO_LOCK_ID",
-                                                                             feature.getId() ), "lockId" );
-                        }
-                        throw new InvalidParameterValueException( getMessage( "TA_DELETE_LOCKED_WRONG_LOCK_ID",
-                                                                              feature.getId() ), "lockId" );
+        try {
+            FeatureCollection delete = sf.getFeatures( ft, filter );
+
+            // check if all can be deleted
+            for ( Feature feature : delete ) {
+                if ( !lockManager.isFeatureModifiable( feature.getId(), lockId ) ) {
+                    if ( lockId == null ) {
+                        throw new MissingParameterException( getMessage( "TA_DELETE_LOCKED_NO_LOCK_ID",
+                                                                         feature.getId() ), "lockId" );
                     }
+                    throw new InvalidParameterValueException( getMessage( "TA_DELETE_LOCKED_WRONG_LOCK_ID",
+                                                                          feature.getId() ), "lockId" );
                 }
+            }
 
-                deleted = delete.size();
-                for ( Feature feature : delete ) {
-                    sf.removeFeature( feature );
-                    if ( lock != null ) {
-                        lock.release( feature.getId() );
-                    }
+            deleted = delete.size();
+            for ( Feature feature : delete ) {
+                sf.removeFeature( feature );
+                if ( lock != null ) {
+                    lock.release( feature.getId() );
                 }
-            } catch ( FilterEvaluationException e ) {
-                throw new FeatureStoreException( e.getMessage(), e );
             }
+        } catch ( FilterEvaluationException e ) {
+            throw new FeatureStoreException( e.getMessage(), e );
         }
         return deleted;
     }
@@ -526,35 +523,33 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
             throw new FeatureStoreException( getMessage( "TA_OPERATION_FT_NOT_SERVED", ftName ) );
         }
 
-        FeatureCollection fc = sf.getFeatures( ft );
         List<String> updatedFids = new ArrayList<String>();
-        if ( fc != null ) {
-            try {
-                TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
-                FeatureCollection update = fc.getMembers( filter, evaluator );
-
-                // check if all features can be updated
-                for ( Feature feature : update ) {
-                    if ( !lockManager.isFeatureModifiable( feature.getId(), lockId ) ) {
-                        if ( lockId == null ) {
-                            throw new MissingParameterException( getMessage( "TA_UPDATE_LOCKED_NO_LOCK_ID",
-                                                                             feature.getId() ), "lockId" );
-                        }
-                        throw new InvalidParameterValueException( getMessage( "TA_UPDATE_LOCKED_WRONG_LOCK_ID",
-                                                                              feature.getId() ), "lockId" );
+        try {
+            FeatureCollection update = sf.getFeatures( ft, filter );
+
+            // check if all features can be updated
+            for ( Feature feature : update ) {
+                if ( !lockManager.isFeatureModifiable( feature.getId(), lockId ) ) {
+                    if ( lockId == null ) {
+                        throw new MissingParameterException( getMessage( "TA_UPDATE_LOCKED_NO_LOCK_ID",
+                                                                         feature.getId() ), "lockId" );
                     }
+                    throw new InvalidParameterValueException( getMessage( "TA_UPDATE_LOCKED_WRONG_LOCK_ID",
+                                                                          feature.getId() ), "lockId" );
                 }
+            }
 
-                for ( Feature feature : update ) {
-                    updatedFids.add( feature.getId() );
-                    new FeatureUpdater().update( feature, replacementProps );
-                    if ( lock != null ) {
-                        lock.release( feature.getId() );
-                    }
+            for ( Feature feature : update ) {
+                updatedFids.add( feature.getId() );
+                Map<String, GMLObject> formerObjects = sf.getOwnedObjects( feature );
+                new FeatureUpdater().update( feature, replacementProps );
+                sf.updateFeature( feature, formerObjects );
+                if ( lock != null ) {
+                    lock.release( feature.getId() );
                 }
-            } catch ( FilterEvaluationException e ) {
-                throw new FeatureStoreException( e.getMessage(), e );
             }
+        } catch ( FilterEvaluationException e ) {
+            throw new FeatureStoreException( e.getMessage(), e );
         }
         return updatedFids;
     }
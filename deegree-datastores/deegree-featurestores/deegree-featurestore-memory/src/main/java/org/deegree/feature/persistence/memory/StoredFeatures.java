@@ -36,10 +36,15 @@
 package org.deegree.feature.persistence.memory;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import javax.xml.namespace.QName;
@@ -61,6 +66,7 @@ import org.deegree.feature.stream.MemoryFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
 import org.deegree.filter.ResourceId;
@@ -75,6 +81,14 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Encapsulates stored feature instances plus index structures for id and spatial queries.
+ * <p>
+ * Instances are used copy-on-write: the (potentially huge) feature collections and index structures are never modified
+ * after construction and shared between all instances derived via {@link #StoredFeatures(StoredFeatures)}. Changes
+ * (inserted, deleted and updated features) are only recorded in small delta structures that are copied for every
+ * transaction and evaluated in addition to the shared structures. Once the changes become too large, a transaction
+ * commit uses {@link #compact()} to build new shared structures. Therefore, an instance that has been published by the
+ * {@link MemoryFeatureStore} is never modified and can be read without locking.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -85,33 +99,102 @@ class StoredFeatures {
 
     private static final Logger LOG = LoggerFactory.getLogger( StoredFeatures.class );
 
+    // maximum number of changes before the shared structures are rebuilt (independent of the number of features)
+    private static final int MAX_CHANGES = 4096;
+
     private final AppSchema schema;
 
     private final ICRS storageCRS;
 
     private final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
 
-    private final Map<FeatureType, FeatureCollection> ftToFeatures = new HashMap<FeatureType, FeatureCollection>();
+    // shared structures, never modified after construction
+
+    private final Map<FeatureType, FeatureCollection> ftToFeatures;
+
+    private final Map<String, GMLObject> idToObject;
+
+    private final Map<FeatureType, RTree<Feature>> ftToIndex;
+
+    private final int numFeatures;
+
+    // changes relative to the shared structures
 
-    private final Map<String, GMLObject> idToObject = new HashMap<String, GMLObject>();
+    private final Map<FeatureType, List<Feature>> ftToAdded;
 
-    private final Map<FeatureType, RTree<Feature>> ftToIndex = new HashMap<FeatureType, RTree<Feature>>();
+    private final Map<String, GMLObject> addedIdToObject;
+
+    private final Set<String> removedIds;
+
+    private final Set<Feature> removed;
+
+    private final Set<Feature> updated;
+
+    private int numChanges;
 
     /**
-     * Creates a new {@link StoredFeatures} instance.
+     * Creates a new empty {@link StoredFeatures} instance.
      * 
      * @param schema
      *            application schema, must not be <code>null</code>
      * @param storageCRS
      *            target CRS for stored geometries, can be <code>null</code> (no CRS normalization)
-     * @param former
-     *            stored features to copy from, can be <code>null</code> (new instance will be empty)
      * @throws FeatureStoreException
      */
-    StoredFeatures( AppSchema schema, ICRS storageCRS, StoredFeatures former ) throws FeatureStoreException {
+    StoredFeatures( AppSchema schema, ICRS storageCRS ) throws FeatureStoreException {
+        this( schema, storageCRS, Collections.<Feature> emptyList() );
+    }
+
+    /**
+     * Creates a new {@link StoredFeatures} instance that shares the structures of the given instance (copy-on-write).
+     * 
+     * @param former
+     *            stored features to derive from, must not be <code>null</code>
+     */
+    StoredFeatures( StoredFeatures former ) {
+        this.schema = former.schema;
+        this.storageCRS = former.storageCRS;
+        this.ftToFeatures = former.ftToFeatures;
+        this.idToObject = former.idToObject;
+        this.ftToIndex = former.ftToIndex;
+        this.numFeatures = former.numFeatures;
+        this.ftToAdded = new HashMap<FeatureType, List<Feature>>();
+        for ( Map.Entry<FeatureType, List<Feature>> e : former.ftToAdded.entrySet() ) {
+            ftToAdded.put( e.getKey(), new ArrayList<Feature>( e.getValue() ) );
+        }
+        this.addedIdToObject = new HashMap<String, GMLObject>( former.addedIdToObject );
+        this.removedIds = new HashSet<String>( former.removedIds );
+        this.removed = newIdentitySet();
+        removed.addAll( former.removed );
+        this.updated = newIdentitySet();
+        updated.addAll( former.updated );
+        this.numChanges = former.numChanges;
+    }
+
+    private StoredFeatures( AppSchema schema, ICRS storageCRS, Collection<Feature> features )
+                            throws FeatureStoreException {
         this.schema = schema;
         this.storageCRS = storageCRS;
-        initFtToFeaturesMap( schema, former );
+        this.ftToFeatures = new HashMap<FeatureType, FeatureCollection>();
+        this.idToObject = new HashMap<String, GMLObject>();
+        this.ftToIndex = new HashMap<FeatureType, RTree<Feature>>();
+        this.numFeatures = features.size();
+        this.ftToAdded = new HashMap<FeatureType, List<Feature>>();
+        this.addedIdToObject = new HashMap<String, GMLObject>();
+        this.removedIds = new HashSet<String>();
+        this.removed = newIdentitySet();
+        this.updated = newIdentitySet();
+        for ( FeatureType ft : schema.getFeatureTypes( null, true, false ) ) {
+            ftToFeatures.put( ft, new GenericFeatureCollection() );
+        }
+        for ( Feature feature : features ) {
+            FeatureCollection fc = ftToFeatures.get( feature.getType() );
+            if ( fc == null ) {
+                fc = new GenericFeatureCollection();
+                ftToFeatures.put( feature.getType(), fc );
+            }
+            fc.add( feature );
+        }
         try {
             rebuildIndexes();
         } catch ( UnknownCRSException e ) {
@@ -119,26 +202,142 @@ class StoredFeatures {
         }
     }
 
-    private void initFtToFeaturesMap( AppSchema schema, StoredFeatures former ) {
-        for ( FeatureType ft : schema.getFeatureTypes( null, true, false ) ) {
-            FeatureCollection fc = new GenericFeatureCollection();
-            if ( former != null ) {
-                FeatureCollection oldFc = former.ftToFeatures.get( ft );
-                fc.addAll( oldFc );
+    private static Set<Feature> newIdentitySet() {
+        return Collections.newSetFromMap( new IdentityHashMap<Feature, Boolean>() );
+    }
+
+    /**
+     * Returns whether the recorded changes should be merged into the shared structures (see {@link #compact()}).
+     * 
+     * @return <code>true</code>, if the changes should be merged, <code>false</code> otherwise
+     */
+    boolean isCompactionRequired() {
+        return numChanges > MAX_CHANGES || numChanges * 10 > numFeatures;
+    }
+
+    /**
+     * Creates a new {@link StoredFeatures} instance with the same features, but without recorded changes (i.e. with
+     * rebuilt shared structures).
+     * 
+     * @return new instance, never <code>null</code>
+     * @throws FeatureStoreException
+     */
+    StoredFeatures compact()
+                            throws FeatureStoreException {
+        List<Feature> features = new ArrayList<Feature>();
+        for ( FeatureType ft : ftToFeatures.keySet() ) {
+            for ( Feature feature : getFeatureView( ft ) ) {
+                features.add( feature );
+            }
+        }
+        for ( Map.Entry<FeatureType, List<Feature>> e : ftToAdded.entrySet() ) {
+            if ( !ftToFeatures.containsKey( e.getKey() ) ) {
+                features.addAll( e.getValue() );
             }
-            ftToFeatures.put( ft, fc );
         }
+        return new StoredFeatures( schema, storageCRS, features );
     }
 
     /**
-     * Returns the stored features of the given type.
+     * Returns the stored features of the given type that match the given filter.
      * 
      * @param ft
      *            feature type, must not be <code>null</code>
-     * @return stored features of the given type, never <code>null</code>
+     * @param filter
+     *            filter to be applied, can be <code>null</code> (all features)
+     * @return matching features, never <code>null</code>
+     * @throws FilterEvaluationException
+     */
+    FeatureCollection getFeatures( FeatureType ft, Filter filter )
+                            throws FilterEvaluationException {
+        return filter( getFeatureView( ft ), filter );
+    }
+
+    private FeatureCollection filter( Iterable<Feature> features, Filter filter )
+                            throws FilterEvaluationException {
+        if ( filter == null && features instanceof FeatureCollection ) {
+            return (FeatureCollection) features;
+        }
+        FeatureCollection fc = new GenericFeatureCollection();
+        for ( Feature feature : features ) {
+            if ( filter == null || filter.evaluate( feature, evaluator ) ) {
+                fc.add( feature );
+            }
+        }
+        return fc;
+    }
+
+    /**
+     * Returns a view of the stored features of the given type, i.e. the shared features (minus the removed ones) plus
+     * the added features. The changes are applied during iteration, so the shared collection is not copied.
      */
-    FeatureCollection getFeatures( FeatureType ft ) {
-        return ftToFeatures.get( ft );
+    private Iterable<Feature> getFeatureView( FeatureType ft ) {
+        final FeatureCollection fc = ftToFeatures.get( ft );
+        final List<Feature> added = ftToAdded.get( ft );
+        boolean hasAdded = added != null && !added.isEmpty();
+        if ( removed.isEmpty() && !hasAdded ) {
+            return fc != null ? fc : new GenericFeatureCollection();
+        }
+        final Iterable<Feature> shared = fc != null ? fc : Collections.<Feature> emptyList();
+        final Iterable<Feature> additional = hasAdded ? added : Collections.<Feature> emptyList();
+        return new Iterable<Feature>() {
+            @Override
+            public Iterator<Feature> iterator() {
+                return new OverlayIterator( shared.iterator(), additional.iterator() );
+            }
+        };
+    }
+
+    /**
+     * Iterates over the shared features (skipping removed features) and the added features.
+     */
+    private class OverlayIterator implements Iterator<Feature> {
+
+        private final Iterator<Feature> shared;
+
+        private final Iterator<Feature> added;
+
+        private Feature next;
+
+        private OverlayIterator( Iterator<Feature> shared, Iterator<Feature> added ) {
+            this.shared = shared;
+            this.added = added;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while ( shared.hasNext() ) {
+                Feature feature = shared.next();
+                if ( !removed.contains( feature ) ) {
+                    next = feature;
+                    return;
+                }
+            }
+            if ( added.hasNext() ) {
+                next = added.next();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Feature next() {
+            if ( next == null ) {
+                throw new NoSuchElementException();
+            }
+            Feature feature = next;
+            advance();
+            return feature;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
     }
 
     /**
@@ -167,11 +366,9 @@ class StoredFeatures {
                 throw new FeatureStoreException( msg );
             }
 
-            // determine / filter features
-            fc = ftToFeatures.get( ft );
-
             // perform index filtering
-            Envelope ftEnv = ftToFeatures.get( ft ).getEnvelope();
+            Iterable<Feature> features = getFeatureView( ft );
+            Envelope ftEnv = getEnvelope( ft );
             if ( query.getPrefilterBBoxEnvelope() != null && ftEnv != null && storageCRS != null ) {
                 Envelope prefilterBox = query.getPrefilterBBoxEnvelope();
                 if ( prefilterBox.getCoordinateSystem() != null
@@ -185,13 +382,11 @@ class StoredFeatures {
                 }
 
                 float[] floats = toFloats( prefilterBox );
-                RTree<Feature> index = ftToIndex.get( ft );
-                fc = new GenericFeatureCollection( null, index.query( floats ) );
+                features = new GenericFeatureCollection( null, queryIndex( ft, floats ) );
             }
 
-            if ( query.getFilter() != null ) {
-                fc = fc.getMembers( query.getFilter(), evaluator );
-            }
+            // determine / filter features
+            fc = filter( features, query.getFilter() );
         } else {
             // must be an id filter based query
             if ( query.getFilter() == null || !( query.getFilter() instanceof IdFilter ) ) {
@@ -200,7 +395,7 @@ class StoredFeatures {
             }
             Set<Feature> features = new HashSet<Feature>();
             for ( ResourceId id : ( (IdFilter) query.getFilter() ).getSelectedIds() ) {
-                GMLObject object = idToObject.get( id.getRid() );
+                GMLObject object = getObjectById( id.getRid() );
                 if ( object != null && object instanceof Feature ) {
                     features.add( (Feature) object );
                 }
@@ -217,66 +412,182 @@ class StoredFeatures {
         return new MemoryFeatureInputStream( fc );
     }
 
+    private List<Feature> queryIndex( FeatureType ft, float[] box ) {
+        List<Feature> features = new ArrayList<Feature>();
+        RTree<Feature> index = ftToIndex.get( ft );
+        if ( index != null ) {
+            for ( Feature feature : index.query( box ) ) {
+                if ( !removed.contains( feature ) && !updated.contains( feature ) ) {
+                    features.add( feature );
+                }
+            }
+        }
+        // changed features are not contained in the index (or with an outdated envelope)
+        for ( Feature feature : updated ) {
+            if ( feature.getType() == ft && !removed.contains( feature ) && intersects( feature.getEnvelope(), box ) ) {
+                features.add( feature );
+            }
+        }
+        List<Feature> added = ftToAdded.get( ft );
+        if ( added != null ) {
+            for ( Feature feature : added ) {
+                if ( intersects( feature.getEnvelope(), box ) ) {
+                    features.add( feature );
+                }
+            }
+        }
+        return features;
+    }
+
+    private boolean intersects( Envelope env, float[] box ) {
+        if ( env == null ) {
+            return false;
+        }
+        float[] envBox = toFloats( env );
+        return envBox[0] <= box[2] && envBox[2] >= box[0] && envBox[1] <= box[3] && envBox[3] >= box[1];
+    }
+
     GMLObject getObjectById( String id ) {
-        return idToObject.get( id );
+        GMLObject object = addedIdToObject.get( id );
+        if ( object == null && !removedIds.contains( id ) ) {
+            object = idToObject.get( id );
+        }
+        return object;
     }
 
     /**
      * Returns the {@link Envelope} for the stored features of the specified type.
+     * <p>
+     * NOTE: Deleted features are only considered after the next compaction, so the returned envelope may be larger than
+     * necessary.
+     * </p>
      * 
      * @param ftName
      *            feature type name, must not be <code>null</code>
      * @return envelope, can be <code>null</code>
      */
     Envelope getEnvelope( QName ftName ) {
-        return ftToFeatures.get( schema.getFeatureType( ftName ) ).getEnvelope();
+        FeatureType ft = schema.getFeatureType( ftName );
+        return ft == null ? null : getEnvelope( ft );
+    }
+
+    private Envelope getEnvelope( FeatureType ft ) {
+        FeatureCollection fc = ftToFeatures.get( ft );
+        Envelope env = fc != null ? fc.getEnvelope() : null;
+        for ( Feature feature : updated ) {
+            if ( feature.getType() == ft ) {
+                env = merge( env, feature.getEnvelope() );
+            }
+        }
+        List<Feature> added = ftToAdded.get( ft );
+        if ( added != null ) {
+            for ( Feature feature : added ) {
+                env = merge( env, feature.getEnvelope() );
+            }
+        }
+        return env;
+    }
+
+    private Envelope merge( Envelope env, Envelope other ) {
+        if ( env == null ) {
+            return other;
+        }
+        if ( other == null ) {
+            return env;
+        }
+        return env.merge( other );
     }
 
     /**
-     * Adds the given {@link Feature} instance and updates the index structures.
+     * Adds the given {@link Feature} instance (and the contained objects) to the changes.
      * 
      * @param features
      *            feature to be added, must not be <code>null</code> and must have an id (as well as every geometry)
      */
     void addFeature( Feature feature ) {
         FeatureType ft = feature.getType();
-        FeatureCollection fc = ftToFeatures.get( ft );
-        if ( fc == null ) {
-            fc = new GenericFeatureCollection();
-            ftToFeatures.put( ft, fc );
-        }
-        fc.add( feature );
-        idToObject.put( feature.getId(), feature );
-        if ( feature.getEnvelope() != null ) {
-            RTree<Feature> rTree = ftToIndex.get( ft );
-            float[] insertBox = toFloats( feature.getEnvelope() );
-            if ( rTree == null ) {
-                rTree = new RTree<Feature>( insertBox, 16 );
-            }
-            rTree.insert( insertBox, feature );
+        List<Feature> added = ftToAdded.get( ft );
+        if ( added == null ) {
+            added = new ArrayList<Feature>();
+            ftToAdded.put( ft, added );
         }
+        added.add( feature );
+        addIds( feature, addedIdToObject );
+        numChanges++;
     }
 
     /**
-     * Removes the given {@link Feature} instance and updates the index structures.
+     * Removes the given {@link Feature} instance (and the contained objects, except for features, which are stored on
+     * their own).
      * 
      * @param feature
      *            feature to be removed, must not be <code>null</code>
      */
     void removeFeature( Feature feature ) {
-        idToObject.remove( feature.getId() );
-        FeatureType ft = feature.getType();
-        RTree<Feature> rTree = ftToIndex.get( ft );
-        if ( rTree != null ) {
-            rTree.remove( feature );
+        List<Feature> added = ftToAdded.get( feature.getType() );
+        if ( added == null || !removeIdentical( added, feature ) ) {
+            removed.add( feature );
+            updated.remove( feature );
         }
-        FeatureCollection fc = ftToFeatures.get( ft );
-        if ( fc != null ) {
-            fc.remove( feature );
+        for ( Map.Entry<String, GMLObject> e : getOwnedObjects( feature ).entrySet() ) {
+            String id = e.getKey();
+            if ( addedIdToObject.get( id ) == e.getValue() ) {
+                addedIdToObject.remove( id );
+            }
+            if ( idToObject.get( id ) == e.getValue() ) {
+                removedIds.add( id );
+            }
+        }
+        numChanges++;
+    }
+
+    private boolean removeIdentical( List<Feature> features, Feature feature ) {
+        for ( int i = 0; i < features.size(); i++ ) {
+            if ( features.get( i ) == feature ) {
+                features.remove( i );
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Notifies about a modification of the given (stored) {@link Feature} instance, so the index structures consider
+     * the new geometries and the ids of the objects that have been replaced are no longer resolvable.
+     * 
+     * @param feature
+     *            feature that has been modified, must not be <code>null</code>
+     * @param formerObjects
+     *            objects that were contained in the feature before the modification (as returned by
+     *            {@link #getOwnedObjects(Feature)}), must not be <code>null</code>
+     */
+    void updateFeature( Feature feature, Map<String, GMLObject> formerObjects ) {
+        List<Feature> added = ftToAdded.get( feature.getType() );
+        if ( added == null || !added.contains( feature ) ) {
+            updated.add( feature );
+            numChanges++;
+        }
+        Map<String, GMLObject> objects = getOwnedObjects( feature );
+        for ( Map.Entry<String, GMLObject> e : formerObjects.entrySet() ) {
+            String id = e.getKey();
+            if ( objects.get( id ) == e.getValue() ) {
+                continue;
+            }
+            if ( addedIdToObject.get( id ) == e.getValue() ) {
+                addedIdToObject.remove( id );
+            }
+            if ( idToObject.get( id ) == e.getValue() ) {
+                removedIds.add( id );
+            }
+        }
+        for ( Map.Entry<String, GMLObject> e : objects.entrySet() ) {
+            if ( getObjectById( e.getKey() ) != e.getValue() ) {
+                addedIdToObject.put( e.getKey(), e.getValue() );
+            }
         }
     }
 
-    void rebuildIndexes()
+    private void rebuildIndexes()
                             throws UnknownCRSException {
 
         long begin = System.currentTimeMillis();
@@ -324,6 +635,14 @@ class StoredFeatures {
 
     private void rebuildIdToObjectMap() {
         idToObject.clear();
+        for ( FeatureCollection fc : ftToFeatures.values() ) {
+            for ( Feature f : fc ) {
+                addIds( f, idToObject );
+            }
+        }
+    }
+
+    private void addIds( Feature root, final Map<String, GMLObject> idToObject ) {
         GMLObjectVisitor visitor = new GMLObjectVisitor() {
             @Override
             public boolean visitGeometry( Geometry geom ) {
@@ -350,12 +669,49 @@ class StoredFeatures {
                 return false;
             }
         };
+        new GMLObjectWalker( visitor ).traverse( root );
+    }
 
-        for ( FeatureCollection fc : ftToFeatures.values() ) {
-            for ( Feature f : fc ) {
-                new GMLObjectWalker( visitor ).traverse( f );
+    /**
+     * Returns the given feature and the objects that are only contained in this feature (i.e. without nested features,
+     * which are stored on their own).
+     * 
+     * @param root
+     *            feature, must not be <code>null</code>
+     * @return objects by id, never <code>null</code>
+     */
+    Map<String, GMLObject> getOwnedObjects( final Feature root ) {
+        final Map<String, GMLObject> idToOwned = new HashMap<String, GMLObject>();
+        GMLObjectVisitor visitor = new GMLObjectVisitor() {
+            @Override
+            public boolean visitGeometry( Geometry geom ) {
+                if ( geom.getId() != null ) {
+                    idToOwned.put( geom.getId(), geom );
+                }
+                return true;
             }
-        }
+
+            @Override
+            public boolean visitFeature( Feature feature ) {
+                if ( feature != root ) {
+                    return false;
+                }
+                idToOwned.put( feature.getId(), feature );
+                return true;
+            }
+
+            @Override
+            public boolean visitObject( GMLObject o ) {
+                return true;
+            }
+
+            @Override
+            public boolean visitReference( Reference<?> ref ) {
+                return false;
+            }
+        };
+        new GMLObjectWalker( visitor ).traverse( root );
+        return idToOwned;
     }
 
     private float[] toFloats( Envelope env ) {
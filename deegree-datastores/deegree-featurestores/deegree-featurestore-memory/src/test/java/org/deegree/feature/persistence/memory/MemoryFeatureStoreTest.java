@@ -37,6 +37,7 @@ package org.deegree.feature.persistence.memory;
 
 import static org.deegree.gml.GMLVersion.GML_31;
 import static org.deegree.protocol.wfs.transaction.action.IDGenMode.USE_EXISTING;
+import static org.deegree.protocol.wfs.transaction.action.UpdateAction.REPLACE;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -44,6 +45,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.FactoryConfigurationError;
@@ -53,9 +62,11 @@ import javax.xml.stream.XMLStreamWriter;
 
 import org.deegree.commons.config.ResourceInitException;
 import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.commons.tom.gml.property.PropertyType;
 import org.deegree.commons.xml.XMLParsingException;
 import org.deegree.cs.exceptions.TransformationException;
 import org.deegree.cs.exceptions.UnknownCRSException;
+import org.deegree.cs.persistence.CRSManager;
 import org.deegree.db.ConnectionProvider;
 import org.deegree.db.ConnectionProviderProvider;
 import org.deegree.feature.Feature;
@@ -63,11 +74,14 @@ import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.property.GenericProperty;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Point;
 import org.deegree.geometry.primitive.Ring;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLOutputFactory;
@@ -76,6 +90,7 @@ import org.deegree.gml.GMLStreamWriter;
 import org.deegree.gml.GMLVersion;
 import org.deegree.gml.schema.GMLAppSchemaReader;
 import org.deegree.protocol.wfs.getfeature.TypeName;
+import org.deegree.protocol.wfs.transaction.action.ParsedPropertyReplacement;
 import org.deegree.workspace.standard.DefaultWorkspace;
 import org.junit.After;
 import org.junit.Assert;
@@ -94,6 +109,12 @@ public class MemoryFeatureStoreTest {
 
     private static final String BASE_DIR = "../../../gml/feature/testdata/features/";
 
+    private static final QName PHILOSOPHER = QName.valueOf( "{http://www.deegree.org/app}Philosopher" );
+
+    private static final QName PLACE = QName.valueOf( "{http://www.deegree.org/app}Place" );
+
+    private static final QName COUNTRY = QName.valueOf( "{http://www.deegree.org/app}Country" );
+
     private MemoryFeatureStore store;
 
     private DefaultWorkspace workspace;
@@ -187,6 +208,135 @@ public class MemoryFeatureStoreTest {
         Assert.assertEquals( 2, fc.size() );
     }
 
+    @Test
+    public void testDeleteIsIsolatedUntilCommit()
+                            throws FilterEvaluationException, FeatureStoreException {
+        TypeName[] typeNames = new TypeName[] { new TypeName(
+                                                              QName.valueOf( "{http://www.deegree.org/app}Philosopher" ),
+                                                              null ) };
+        Query query = new Query( typeNames, null, null, null, null );
+
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        Assert.assertEquals( 1, ta.performDelete( new IdFilter( "PHILOSOPHER_1" ), null ) );
+        Assert.assertEquals( 7, store.query( query ).toCollection().size() );
+        Assert.assertNotNull( store.getObjectById( "PHILOSOPHER_1" ) );
+        ta.rollback();
+        Assert.assertEquals( 7, store.query( query ).toCollection().size() );
+
+        ta = store.acquireTransaction();
+        Assert.assertEquals( 1, ta.performDelete( new IdFilter( "PHILOSOPHER_1" ), null ) );
+        ta.commit();
+        Assert.assertEquals( 6, store.query( query ).toCollection().size() );
+        Assert.assertNull( store.getObjectById( "PHILOSOPHER_1" ) );
+        Assert.assertNotNull( store.getObjectById( "PHILOSOPHER_2" ) );
+    }
+
+    @Test
+    public void testDeleteRemovesContainedObjects()
+                            throws FeatureStoreException {
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        Assert.assertEquals( 1, ta.performDelete( new IdFilter( "COUNTRY_2" ), null ) );
+        Assert.assertNotNull( store.getObjectById( "MULTIPOLYGON_1" ) );
+        ta.commit();
+        Assert.assertNull( store.getObjectById( "COUNTRY_2" ) );
+        Assert.assertNull( store.getObjectById( "MULTIPOLYGON_1" ) );
+        Assert.assertNull( store.getObjectById( "RING_1" ) );
+        // features are stored on their own, even if they are contained in another feature
+        Assert.assertNotNull( store.getObjectById( "PLACE_2" ) );
+    }
+
+    @Test
+    public void testUpdateReplacesIdsOfContainedObjects()
+                            throws FeatureStoreException {
+        Feature country = (Feature) store.getObjectById( "COUNTRY_2" );
+        QName geomName = QName.valueOf( "{http://www.deegree.org/app}geom" );
+        PropertyType geomType = country.getType().getPropertyDeclaration( geomName );
+        Point point = new GeometryFactory().createPoint( "POINT_1", 7.0, 50.0, CRSManager.getCRSRef( "EPSG:4326" ) );
+        ParsedPropertyReplacement replacement = new ParsedPropertyReplacement( new GenericProperty( geomType, point ),
+                                                                               REPLACE, null, 0 );
+
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        List<String> fids = ta.performUpdate( COUNTRY, Collections.singletonList( replacement ),
+                                              new IdFilter( "COUNTRY_2" ), null );
+        Assert.assertEquals( Collections.singletonList( "COUNTRY_2" ), fids );
+        Assert.assertNull( store.getObjectById( "POINT_1" ) );
+        ta.commit();
+        Assert.assertSame( country, store.getObjectById( "COUNTRY_2" ) );
+        Assert.assertSame( point, store.getObjectById( "POINT_1" ) );
+        Assert.assertNull( store.getObjectById( "MULTIPOLYGON_1" ) );
+        Assert.assertNull( store.getObjectById( "RING_1" ) );
+        Assert.assertNotNull( store.getObjectById( "PLACE_2" ) );
+    }
+
+    @Test
+    public void testCompaction()
+                            throws FilterEvaluationException, FeatureStoreException {
+        Query query = new Query( new TypeName[] { new TypeName( PHILOSOPHER, null ) }, null, null, null, null );
+        FeatureCollection before = store.query( query ).toCollection();
+
+        // enough changes to rebuild the shared structures on commit
+        for ( int i = 1; i <= 3; i++ ) {
+            FeatureStoreTransaction ta = store.acquireTransaction();
+            Assert.assertEquals( 1, ta.performDelete( new IdFilter( "PHILOSOPHER_" + i ), null ) );
+            ta.commit();
+        }
+
+        Assert.assertEquals( 7, before.size() );
+        Assert.assertEquals( 4, store.query( query ).toCollection().size() );
+        Assert.assertNull( store.getObjectById( "PHILOSOPHER_1" ) );
+        Assert.assertNotNull( store.getObjectById( "PHILOSOPHER_4" ) );
+        Assert.assertNotNull( store.getObjectById( "PLACE_2" ) );
+        Assert.assertEquals( 7, store.query( new Query( new TypeName[] { new TypeName( PLACE, null ) }, null, null,
+                                                        null, null ) ).toCollection().size() );
+    }
+
+    @Test
+    public void testConcurrentReadersSeeCommittedSnapshots()
+                            throws Exception {
+        final Query query = new Query( new TypeName[] { new TypeName( PHILOSOPHER, null ) }, null, null, null, null );
+        final AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+        try {
+            for ( int i = 0; i < 4; i++ ) {
+                readers.add( executor.submit( new Callable<Integer>() {
+                    @Override
+                    public Integer call()
+                                            throws Exception {
+                        int queries = 0;
+                        int lastSize = 7;
+                        while ( !done.get() || queries == 0 ) {
+                            int size = 0;
+                            for ( Feature feature : store.query( query ).toCollection() ) {
+                                Assert.assertEquals( PHILOSOPHER, feature.getName() );
+                                size++;
+                            }
+                            // snapshots never go back in time and never show uncommitted deletes
+                            Assert.assertTrue( size <= lastSize && size >= 4 );
+                            lastSize = size;
+                            queries++;
+                        }
+                        return lastSize;
+                    }
+                } ) );
+            }
+            for ( int i = 1; i <= 3; i++ ) {
+                FeatureStoreTransaction ta = store.acquireTransaction();
+                ta.performDelete( new IdFilter( "PHILOSOPHER_" + i ), null );
+                Thread.sleep( 10 );
+                ta.commit();
+            }
+            done.set( true );
+            for ( Future<Integer> reader : readers ) {
+                int lastSize = reader.get();
+                Assert.assertTrue( lastSize >= 4 && lastSize <= 7 );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals( 4, store.query( query ).toCollection().size() );
+    }
+
     @Test
     public void testGetObjectByIdFeature() {
         Object o = store.getObjectById( "PHILOSOPHER_7" );
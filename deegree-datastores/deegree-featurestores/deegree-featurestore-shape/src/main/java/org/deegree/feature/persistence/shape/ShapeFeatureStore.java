@@ -39,7 +39,6 @@ import static org.deegree.commons.utils.CollectionUtils.unzipPair;
 import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2_OR_3;
 import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
 import static org.deegree.filter.Filters.splitOffBBoxConstraint;
-import static org.deegree.geometry.utils.GeometryUtils.createEnvelope;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.BufferedReader;
@@ -62,7 +61,7 @@ import javax.xml.namespace.QName;
 
 import org.apache.commons.io.IOUtils;
 import org.deegree.commons.annotations.LoggingNotes;
-import org.deegree.commons.index.RTree;
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.gml.property.PropertyType;
@@ -125,11 +124,14 @@ public class ShapeFeatureStore implements FeatureStore {
 
     private static final Logger LOG = getLogger( ShapeFeatureStore.class );
 
-    private SHPReader shp;
+    // number of children per node of the spatial index
+    private static final int INDEX_NODE_SIZE = 16;
+
+    private volatile SHPReader shp;
 
     private DBFReader dbf;
 
-    private long shpLastModified, dbfLastModified;
+    private volatile long shpLastModified, dbfLastModified;
 
     private File shpFile, dbfFile;
 
@@ -245,62 +247,54 @@ public class ShapeFeatureStore implements FeatureStore {
     private SHPReader getSHP( boolean forceIndexRebuild )
                             throws IOException {
 
-        shp = null;
-
-        File rtfile = new File( shpName + ".rti" );
+        File rtfile = new File( shpName + ".rtx" );
         RandomAccessFile raf = new RandomAccessFile( shpFile, "r" );
 
         if ( rtfile.exists() && !( rtfile.lastModified() < shpFile.lastModified() ) && !forceIndexRebuild ) {
             try {
-                LOG.debug( "Loading RTree from disk." );
-                RTree<Long> rtree = RTree.loadFromDisk( shpName + ".rti" );
-                shp = new SHPReader( raf, crs, rtree, rtree.getExtraFlag() );
+                LOG.debug( "Mapping spatial index from disk." );
+                PackedRTree rtree = PackedRTree.open( rtfile );
+                return new SHPReader( raf, crs, rtree, rtree.getFlag() );
             } catch ( IOException e ) {
                 LOG.debug( "Stack trace:", e );
-                LOG.warn( "Existing rtree index could not be read. Generating a new one..." );
-            }
-            if ( shp != null ) {
-                return shp;
+                LOG.warn( "Existing spatial index could not be read. Generating a new one..." );
             }
         }
 
-        shp = new SHPReader( raf, crs, null, false );
+        SHPReader reader = new SHPReader( raf, crs, null, false );
 
-        LOG.debug( "Building rtree index in memory for '{}'", new File( shpName ).getName() );
-
-        Pair<RTree<Long>, Boolean> p = createIndex( shp );
+        LOG.debug( "Building spatial index for '{}'", new File( shpName ).getName() );
+        Pair<ArrayList<Pair<float[], Long>>, Boolean> p = reader.readEnvelopes();
+        try {
+            PackedRTree.write( rtfile, p.first, p.second, INDEX_NODE_SIZE );
+        } catch ( IOException e ) {
+            LOG.warn( "Spatial index could not be written to '{}', using a temporary file: {}", rtfile,
+                      e.getLocalizedMessage() );
+            rtfile = File.createTempFile( "shape", ".rtx" );
+            rtfile.deleteOnExit();
+            PackedRTree.write( rtfile, p.first, p.second, INDEX_NODE_SIZE );
+        }
         LOG.debug( "done building index." );
-        shp = new SHPReader( raf, crs, p.first, p.second );
-        p.first.writeTreeToDisk( shpName + ".rti" );
-        return shp;
-    }
-
-    /**
-     * @param shapeReader
-     */
-    private static Pair<RTree<Long>, Boolean> createIndex( SHPReader shapeReader ) {
-        Envelope env = shapeReader.getEnvelope();
-        // use 128 values per rect.
-        RTree<Long> result = new RTree<Long>( createEnvelope( env ), -1 );
-        // to work around Java's non-existent variant type
-        LOG.debug( "Read envelopes from shape file..." );
-        Pair<ArrayList<Pair<float[], Long>>, Boolean> p = shapeReader.readEnvelopes();
-        LOG.debug( "done reading envelopes." );
-        result.insertBulk( p.first );
-        return new Pair<RTree<Long>, Boolean>( result, p.second );
+        return new SHPReader( raf, crs, PackedRTree.open( rtfile ), p.second );
     }
 
     private void checkForUpdate() {
         try {
-            synchronized ( shpFile ) {
-                if ( shpLastModified != shpFile.lastModified() ) {
-                    shp.close();
-                    LOG.debug( "Re-opening the shape file {}", shpName );
-                    shp = getSHP( true );
-                    shpLastModified = shpFile.lastModified();
-                    cache.clear();
+            // checked without locking first, queries do not need to wait for each other
+            if ( shpLastModified != shpFile.lastModified() ) {
+                synchronized ( shpFile ) {
+                    if ( shpLastModified != shpFile.lastModified() ) {
+                        shp.close();
+                        LOG.debug( "Re-opening the shape file {}", shpName );
+                        shp = getSHP( true );
+                        shpLastModified = shpFile.lastModified();
+                        cache.clear();
+                    }
                 }
             }
+            if ( dbf == null || dbfLastModified == dbfFile.lastModified() ) {
+                return;
+            }
             synchronized ( dbfFile ) {
                 if ( dbf != null && dbfLastModified != dbfFile.lastModified() ) {
                     dbf.close();
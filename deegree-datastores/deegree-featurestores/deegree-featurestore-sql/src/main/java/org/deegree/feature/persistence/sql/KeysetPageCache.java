@@ -0,0 +1,102 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the feature ids at page boundaries, so subsequent pages can be fetched using keyset pagination.
+ * <p>
+ * WFS clients page through results by incrementing the <code>startIndex</code>. If the id of the last feature of the
+ * previous page is known, the next page can be fetched by continuing after this feature (using the feature id
+ * columns), which avoids that the database has to read and skip all previous rows.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class KeysetPageCache {
+
+    private final Map<String, String> boundaryToId;
+
+    /**
+     * Creates a new {@link KeysetPageCache} instance.
+     * 
+     * @param maxEntries
+     *            maximum number of page boundaries to keep, least recently used entries are discarded first
+     */
+    KeysetPageCache( final int maxEntries ) {
+        boundaryToId = new LinkedHashMap<String, String>( 16, 0.75f, true ) {
+
+            private static final long serialVersionUID = -3311284627834618207L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, String> eldest ) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the id of the feature that precedes the given index.
+     * 
+     * @param queryKey
+     *            key that identifies the query (SQL and arguments), must not be <code>null</code>
+     * @param startIndex
+     *            index of the first feature of the requested page
+     * @return id of the feature at position <code>startIndex - 1</code>, or <code>null</code> if unknown
+     */
+    synchronized String get( String queryKey, int startIndex ) {
+        return boundaryToId.get( startIndex + ":" + queryKey );
+    }
+
+    /**
+     * Stores the id of the last feature of a page.
+     * 
+     * @param queryKey
+     *            key that identifies the query (SQL and arguments), must not be <code>null</code>
+     * @param nextStartIndex
+     *            index of the first feature of the following page
+     * @param lastId
+     *            id of the last feature of the page, must not be <code>null</code>
+     */
+    synchronized void put( String queryKey, int nextStartIndex, String lastId ) {
+        boundaryToId.put( nextStartIndex + ":" + queryKey, lastId );
+    }
+}
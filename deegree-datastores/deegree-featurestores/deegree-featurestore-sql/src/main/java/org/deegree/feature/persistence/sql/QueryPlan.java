@@ -0,0 +1,120 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SELECT statement (and select list) for a certain query shape, i.e. for a feature type, the geometry columns chosen
+ * for a map resolution and a filter / sort criteria / paging structure, with all literal values (including
+ * simplification tolerances) passed as statement arguments.
+ * <p>
+ * Besides the statement, the plan accumulates the time spent for preparing and executing the statement and for
+ * building the features, so costly query shapes can be identified (see {@link QueryPlanStatistics}).
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class QueryPlan {
+
+    private final String sql;
+
+    private final List<String> columns;
+
+    private final AtomicLong executions = new AtomicLong();
+
+    private final AtomicLong prepareNanos = new AtomicLong();
+
+    private final AtomicLong executeNanos = new AtomicLong();
+
+    private final AtomicLong buildNanos = new AtomicLong();
+
+    private final AtomicLong features = new AtomicLong();
+
+    /**
+     * Creates a new {@link QueryPlan} instance.
+     * 
+     * @param sql
+     *            SELECT statement (without paging snippet), must not be <code>null</code>
+     * @param columns
+     *            initial select list of the feature builder, must not be <code>null</code>
+     */
+    QueryPlan( String sql, List<String> columns ) {
+        this.sql = sql;
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the SELECT statement.
+     * 
+     * @return SELECT statement (without paging snippet), never <code>null</code>
+     */
+    String getSql() {
+        return sql;
+    }
+
+    /**
+     * Returns the initial select list of the feature builder.
+     * 
+     * @return initial select list, never <code>null</code>
+     */
+    List<String> getColumns() {
+        return columns;
+    }
+
+    void recordPrepare( long nanos ) {
+        prepareNanos.addAndGet( nanos );
+    }
+
+    void recordExecute( long nanos ) {
+        executions.incrementAndGet();
+        executeNanos.addAndGet( nanos );
+    }
+
+    void recordBuild( long nanos, long numFeatures ) {
+        buildNanos.addAndGet( nanos );
+        features.addAndGet( numFeatures );
+    }
+
+    QueryPlanStatistics getStatistics() {
+        return new QueryPlanStatistics( sql, executions.get(), prepareNanos.get(), executeNanos.get(),
+                                        buildNanos.get(), features.get() );
+    }
+}
@@ -0,0 +1,120 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the {@link QueryPlan}s of recently executed query shapes.
+ * <p>
+ * Map clients typically issue the same query (e.g. a BBOX filter on a feature type) over and over again, only with
+ * different literal values. Reusing the plan avoids determining the select list again and yields exactly the same
+ * statement text for every request of a shape, so that prepared statements can be reused by the database (and the
+ * statement pool of the connection, if enabled).
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class QueryPlanCache {
+
+    private final Map<String, QueryPlan> shapeToPlan;
+
+    /**
+     * Creates a new {@link QueryPlanCache} instance.
+     * 
+     * @param maxEntries
+     *            maximum number of plans to keep, least recently used plans are discarded first
+     */
+    QueryPlanCache( final int maxEntries ) {
+        shapeToPlan = new LinkedHashMap<String, QueryPlan>( 16, 0.75f, true ) {
+
+            private static final long serialVersionUID = 6164416357212957301L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, QueryPlan> eldest ) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the plan for the given query shape.
+     * 
+     * @param shapeKey
+     *            key that identifies the query shape, must not be <code>null</code>
+     * @return plan, or <code>null</code> if unknown
+     */
+    synchronized QueryPlan get( String shapeKey ) {
+        return shapeToPlan.get( shapeKey );
+    }
+
+    /**
+     * Stores the plan for the given query shape (unless another thread has already stored one).
+     * 
+     * @param shapeKey
+     *            key that identifies the query shape, must not be <code>null</code>
+     * @param plan
+     *            plan to store, must not be <code>null</code>
+     * @return plan that is stored for the shape, never <code>null</code>
+     */
+    synchronized QueryPlan put( String shapeKey, QueryPlan plan ) {
+        QueryPlan existing = shapeToPlan.get( shapeKey );
+        if ( existing != null ) {
+            return existing;
+        }
+        shapeToPlan.put( shapeKey, plan );
+        return plan;
+    }
+
+    /**
+     * Returns the statistics of all cached plans.
+     * 
+     * @return statistics, never <code>null</code>
+     */
+    synchronized List<QueryPlanStatistics> getStatistics() {
+        List<QueryPlanStatistics> stats = new ArrayList<QueryPlanStatistics>( shapeToPlan.size() );
+        for ( QueryPlan plan : shapeToPlan.values() ) {
+            stats.add( plan.getStatistics() );
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,121 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+/**
+ * Accumulated timings of the queries of one query shape of an {@link SQLFeatureStore}.
+ * 
+ * @see SQLFeatureStore#getQueryPlanStatistics()
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class QueryPlanStatistics {
+
+    private final String sql;
+
+    private final long executions;
+
+    private final long prepareNanos;
+
+    private final long executeNanos;
+
+    private final long buildNanos;
+
+    private final long features;
+
+    QueryPlanStatistics( String sql, long executions, long prepareNanos, long executeNanos, long buildNanos,
+                         long features ) {
+        this.sql = sql;
+        this.executions = executions;
+        this.prepareNanos = prepareNanos;
+        this.executeNanos = executeNanos;
+        this.buildNanos = buildNanos;
+        this.features = features;
+    }
+
+    /**
+     * Returns the SELECT statement of the query shape.
+     * 
+     * @return SELECT statement (without paging snippet), never <code>null</code>
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return number of executed queries
+     */
+    public long getExecutions() {
+        return executions;
+    }
+
+    /**
+     * @return total time spent preparing the statements (in milliseconds)
+     */
+    public double getPrepareTime() {
+        return prepareNanos / 1000000.0;
+    }
+
+    /**
+     * @return total time spent executing the statements (in milliseconds)
+     */
+    public double getExecuteTime() {
+        return executeNanos / 1000000.0;
+    }
+
+    /**
+     * @return total time spent building features from the result sets (in milliseconds)
+     */
+    public double getBuildTime() {
+        return buildNanos / 1000000.0;
+    }
+
+    /**
+     * @return number of features built from the result sets
+     */
+    public long getFeatures() {
+        return features;
+    }
+
+    @Override
+    public String toString() {
+        return executions + " executions, prepare: " + getPrepareTime() + " [ms], execute: " + getExecuteTime()
+               + " [ms], build: " + getBuildTime() + " [ms] (" + features + " features): " + sql;
+    }
+}
@@ -37,7 +37,11 @@ package org.deegree.feature.persistence.sql;
 
 import static org.deegree.commons.xml.CommonNamespaces.OGCNS;
 import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
+import static org.deegree.commons.utils.MapUtils.WMTS_METERS_PER_DEGREE;
 import static org.deegree.commons.xml.CommonNamespaces.XSINS;
+import static org.deegree.cs.components.Unit.DEGREE;
+import static org.deegree.cs.components.Unit.METRE;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_RESOLUTION;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.lang.reflect.Constructor;
@@ -51,9 +55,18 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.namespace.QName;
 
@@ -72,6 +85,7 @@ import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.commons.tom.sql.SQLValueMangler;
 import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
+import org.deegree.cs.components.IUnit;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.db.ConnectionProvider;
 import org.deegree.db.ConnectionProviderProvider;
@@ -111,6 +125,7 @@ import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.ParallelFeatureInputStream;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension;
 import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
@@ -124,6 +139,9 @@ import org.deegree.filter.spatial.BBOX;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.utils.AbstractGeometryParticleConverter;
+import org.deegree.geometry.utils.GeometryParticleConverter;
+import org.deegree.sqldialect.AbstractSQLDialect;
 import org.deegree.sqldialect.SQLDialect;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
 import org.deegree.sqldialect.filter.DBField;
@@ -159,6 +177,10 @@ public class SQLFeatureStore implements FeatureStore {
 
     private static final int DEFAULT_CACHE_SIZE = 10000;
 
+    private static final int KEYSET_PAGE_CACHE_SIZE = 1000;
+
+    private static final int QUERY_PLAN_CACHE_SIZE = 256;
+
     private final SQLFeatureStoreJAXB config;
 
     private final URL configURL;
@@ -167,6 +189,32 @@ public class SQLFeatureStore implements FeatureStore {
 
     private final boolean allowInMemoryFiltering;
 
+    private final boolean pagingPushDown;
+
+    private final KeysetPageCache keysetPageCache;
+
+    private final QueryPlanCache queryPlanCache = new QueryPlanCache( QUERY_PLAN_CACHE_SIZE );
+
+    // number of features that are built at once (batch-fetching of joined rows), 0: disabled
+    private final int joinBatchSize;
+
+    // number of rows that are sent to the DB at once (JDBC batching) when inserting features, 0: disabled
+    private final int insertBatchSize;
+
+    // minimum number of features of an insert that is performed using bulk loading, 0: disabled
+    private final int bulkLoadThreshold;
+
+    // simplification tolerance for rendering queries (in pixels), 0: disabled
+    private final double simplificationTolerance;
+
+    // number of threads for performing the queries of multiple feature types concurrently, 0: disabled
+    private final int parallelQueryThreads;
+
+    // number of features that are buffered per feature type when performing queries concurrently
+    private final int parallelQueueSize;
+
+    private ExecutorService queryExecutor;
+
     private MappedAppSchema schema;
 
     private BlobMapping blobMapping;
@@ -175,6 +223,8 @@ public class SQLFeatureStore implements FeatureStore {
 
     private final Map<Mapping, ParticleConverter<?>> particleMappingToConverter = new HashMap<Mapping, ParticleConverter<?>>();
 
+    private final Map<Mapping, NavigableMap<Double, GeometryParticleConverter>> generalizedConverters = new HashMap<Mapping, NavigableMap<Double, GeometryParticleConverter>>();
+
     private final FeatureStoreCache cache;
 
     private BBoxCache bboxCache;
@@ -230,6 +280,37 @@ public class SQLFeatureStore implements FeatureStore {
         } else {
             cache = null;
         }
+
+        String pagingMode = config.getPaging() != null ? config.getPaging().getMode() : "offset";
+        LOG.debug( "Paging mode: " + pagingMode );
+        pagingPushDown = !"disabled".equals( pagingMode );
+        if ( "keyset".equals( pagingMode ) ) {
+            keysetPageCache = new KeysetPageCache( KEYSET_PAGE_CACHE_SIZE );
+        } else {
+            keysetPageCache = null;
+        }
+
+        joinBatchSize = config.getJoinBatchSize() != null ? config.getJoinBatchSize().intValue() : 0;
+        LOG.debug( "Join batch size: " + joinBatchSize );
+
+        insertBatchSize = config.getInsertBatchSize() != null ? config.getInsertBatchSize().intValue() : 0;
+        LOG.debug( "Insert batch size: " + insertBatchSize );
+
+        bulkLoadThreshold = config.getBulkLoad() != null ? config.getBulkLoad().getThreshold().intValue() : 0;
+        LOG.debug( "Bulk load threshold: " + bulkLoadThreshold );
+
+        simplificationTolerance = config.getGeometrySimplification() != null ? config.getGeometrySimplification().getPixelTolerance()
+                                                                          : 0;
+        LOG.debug( "Geometry simplification tolerance: " + simplificationTolerance );
+
+        if ( config.getParallelQueries() != null ) {
+            parallelQueryThreads = config.getParallelQueries().getMaxThreads().intValue();
+            parallelQueueSize = config.getParallelQueries().getQueueSize().intValue();
+        } else {
+            parallelQueryThreads = 0;
+            parallelQueueSize = 0;
+        }
+        LOG.debug( "Parallel query threads: " + parallelQueryThreads );
     }
 
     private void initConverters() {
@@ -256,6 +337,13 @@ public class SQLFeatureStore implements FeatureStore {
             GeometryMapping gm = (GeometryMapping) particleMapping;
             ParticleConverter<?> converter = getGeometryConverter( gm );
             particleMappingToConverter.put( particleMapping, converter );
+            if ( gm.getGeneralizations() != null ) {
+                NavigableMap<Double, GeometryParticleConverter> converters = new TreeMap<Double, GeometryParticleConverter>();
+                for ( Entry<Double, MappingExpression> generalization : gm.getGeneralizations().entrySet() ) {
+                    converters.put( generalization.getKey(), getGeometryConverter( gm, generalization.getValue() ) );
+                }
+                generalizedConverters.put( particleMapping, converters );
+            }
         } else if ( particleMapping instanceof FeatureMapping ) {
             FeatureMapping fm = (FeatureMapping) particleMapping;
             SQLIdentifier fkColumn = null;
@@ -285,7 +373,11 @@ public class SQLFeatureStore implements FeatureStore {
     }
 
     ParticleConverter<Geometry> getGeometryConverter( GeometryMapping geomMapping ) {
-        String column = geomMapping.getMapping().toString();
+        return getGeometryConverter( geomMapping, geomMapping.getMapping() );
+    }
+
+    private GeometryParticleConverter getGeometryConverter( GeometryMapping geomMapping, MappingExpression me ) {
+        String column = me.toString();
         ICRS crs = geomMapping.getCRS();
         String srid = geomMapping.getSrid();
         boolean is2d = geomMapping.getDim() == CoordinateDimension.DIM_2;
@@ -350,6 +442,186 @@ public class SQLFeatureStore implements FeatureStore {
         return particleMappingToConverter.get( mapping );
     }
 
+    /**
+     * Returns the SQL snippet for selecting the geometry of the given {@link GeometryMapping} for rendering at the given
+     * resolution.
+     * <p>
+     * If a generalized geometry has been configured for the resolution, it is selected instead of the original one.
+     * Otherwise, if geometry simplification is enabled and the geometry converter supports it (see
+     * {@link AbstractGeometryParticleConverter#getSimplifiedSelectSnippet(String)}), the geometry is simplified by the
+     * database. In this case, the snippet contains a parameter for the tolerance that must be bound to the value of
+     * {@link #getGeometrySimplifyTolerance(GeometryMapping, double, ICRS)}.
+     * </p>
+     *
+     * @param mapping
+     *            geometry mapping, must not be <code>null</code>
+     * @param tableAlias
+     *            table alias, can be <code>null</code>
+     * @param resolution
+     *            map resolution (units per pixel), if not positive, the plain select snippet is returned
+     * @param resolutionCrs
+     *            CRS that the resolution refers to, can be <code>null</code> (same as storage CRS)
+     * @return SQL snippet, never <code>null</code>
+     */
+    public String getGeometrySelectSnippet( GeometryMapping mapping, String tableAlias, double resolution,
+                                            ICRS resolutionCrs ) {
+        ParticleConverter<?> converter = getConverter( mapping );
+        double storageResolution = getStorageResolution( resolution, resolutionCrs, mapping.getCRS() );
+        GeometryParticleConverter generalized = getGeneralizedConverter( mapping, storageResolution );
+        if ( generalized != null ) {
+            return generalized.getSelectSnippet( tableAlias );
+        }
+        if ( getSimplifyTolerance( mapping, storageResolution ) > 0 ) {
+            return ( (AbstractGeometryParticleConverter) converter ).getSimplifiedSelectSnippet( tableAlias );
+        }
+        return converter.getSelectSnippet( tableAlias );
+    }
+
+    /**
+     * Returns the simplification tolerance to bind to the parameter of the snippet returned by
+     * {@link #getGeometrySelectSnippet(GeometryMapping, String, double, ICRS)}.
+     *
+     * @param mapping
+     *            geometry mapping, must not be <code>null</code>
+     * @param resolution
+     *            map resolution (units per pixel)
+     * @param resolutionCrs
+     *            CRS that the resolution refers to, can be <code>null</code> (same as storage CRS)
+     * @return tolerance (in the units expected by the database), -1 if the selected geometry is not simplified
+     */
+    public double getGeometrySimplifyTolerance( GeometryMapping mapping, double resolution, ICRS resolutionCrs ) {
+        double storageResolution = getStorageResolution( resolution, resolutionCrs, mapping.getCRS() );
+        if ( getGeneralizedConverter( mapping, storageResolution ) != null ) {
+            return -1;
+        }
+        double tolerance = getSimplifyTolerance( mapping, storageResolution );
+        if ( tolerance > 0 ) {
+            return ( (AbstractGeometryParticleConverter) getConverter( mapping ) ).getSimplifyTolerance( tolerance );
+        }
+        return -1;
+    }
+
+    private GeometryParticleConverter getGeneralizedConverter( GeometryMapping mapping, double storageResolution ) {
+        if ( storageResolution > 0 && getConverter( mapping ) instanceof GeometryParticleConverter ) {
+            NavigableMap<Double, GeometryParticleConverter> generalized = generalizedConverters.get( mapping );
+            if ( generalized != null ) {
+                Entry<Double, GeometryParticleConverter> entry = generalized.floorEntry( storageResolution );
+                if ( entry != null ) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    // returns the tolerance in units of the storage CRS, -1 if the converter cannot simplify geometries
+    private double getSimplifyTolerance( GeometryMapping mapping, double storageResolution ) {
+        ParticleConverter<?> converter = getConverter( mapping );
+        if ( storageResolution > 0 && simplificationTolerance > 0
+             && converter instanceof AbstractGeometryParticleConverter
+             && ( (AbstractGeometryParticleConverter) converter ).getSimplifiedSelectSnippet( null ) != null ) {
+            return storageResolution * simplificationTolerance;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the part of the query plan key that identifies the geometry select snippets of the given feature type
+     * mapping at the given resolution.
+     * <p>
+     * The snippets only change if another generalized geometry is chosen or if simplification is switched on, so the
+     * key doesn't contain the resolution itself (the tolerance is a statement parameter).
+     * </p>
+     */
+    private String getGeometrySelectKey( FeatureTypeMapping ftMapping, double resolution, ICRS resolutionCrs ) {
+        StringBuilder key = new StringBuilder();
+        if ( resolution > 0 ) {
+            for ( Mapping mapping : ftMapping.getMappings() ) {
+                appendGeometrySelectKey( key, mapping, resolution, resolutionCrs );
+            }
+        }
+        return key.toString();
+    }
+
+    private void appendGeometrySelectKey( StringBuilder key, Mapping mapping, double resolution, ICRS resolutionCrs ) {
+        if ( mapping instanceof GeometryMapping ) {
+            GeometryMapping gm = (GeometryMapping) mapping;
+            if ( getConverter( gm ) != null ) {
+                double storageResolution = getStorageResolution( resolution, resolutionCrs, gm.getCRS() );
+                boolean simplified = getSimplifyTolerance( gm, storageResolution ) > 0;
+                key.append( getGeometrySelectKey( generalizedConverters.get( gm ), storageResolution, simplified ) );
+                key.append( ',' );
+            }
+        } else if ( mapping instanceof CompoundMapping ) {
+            for ( Mapping particle : ( (CompoundMapping) mapping ).getParticles() ) {
+                appendGeometrySelectKey( key, particle, resolution, resolutionCrs );
+            }
+        }
+    }
+
+    /**
+     * Returns the key for the select snippet of a single geometry.
+     * 
+     * @param generalized
+     *            generalized geometries of the mapping (keyed by minimum resolution), can be <code>null</code>
+     * @param storageResolution
+     *            resolution in units of the storage CRS, not positive for full resolution
+     * @param simplified
+     *            true, if the geometry is simplified (if no generalized geometry applies)
+     * @return key, never <code>null</code>, empty for the plain select snippet
+     */
+    static String getGeometrySelectKey( NavigableMap<Double, ?> generalized, double storageResolution,
+                                        boolean simplified ) {
+        if ( storageResolution <= 0 ) {
+            return "";
+        }
+        if ( generalized != null ) {
+            Double minResolution = generalized.floorKey( storageResolution );
+            if ( minResolution != null ) {
+                return "G" + minResolution;
+            }
+        }
+        return simplified ? "S" : "";
+    }
+
+    /**
+     * Converts a map resolution into the units of the storage CRS.
+     * 
+     * @param resolution
+     *            map resolution (units per pixel)
+     * @param resolutionCrs
+     *            CRS that the resolution refers to, can be <code>null</code> (same as storage CRS)
+     * @param storageCrs
+     *            CRS of the stored geometries, can be <code>null</code> (same as resolution CRS)
+     * @return resolution in units of the storage CRS, -1 if the units cannot be converted
+     */
+    static double getStorageResolution( double resolution, ICRS resolutionCrs, ICRS storageCrs ) {
+        if ( resolution <= 0 || resolutionCrs == null || storageCrs == null ) {
+            return resolution;
+        }
+        try {
+            IUnit from = resolutionCrs.getUnits()[0];
+            IUnit to = storageCrs.getUnits()[0];
+            if ( from.equals( to ) ) {
+                return resolution;
+            }
+            if ( from.canConvert( to ) ) {
+                return from.convert( resolution, to );
+            }
+            // rough approximation, but good enough for choosing a simplification tolerance
+            if ( DEGREE.equals( from ) && METRE.canConvert( to ) ) {
+                return METRE.convert( resolution * WMTS_METERS_PER_DEGREE, to );
+            }
+            if ( from.canConvert( METRE ) && DEGREE.equals( to ) ) {
+                return from.convert( resolution, METRE ) / WMTS_METERS_PER_DEGREE;
+            }
+        } catch ( Throwable t ) {
+            LOG.debug( "Unable to convert resolution from {} to {}: {}",
+                       new Object[] { resolutionCrs.getAlias(), storageCrs.getAlias(), t.getMessage() } );
+        }
+        return -1;
+    }
+
     @Override
     public Envelope getEnvelope( QName ftName )
                             throws FeatureStoreException {
@@ -611,7 +883,10 @@ public class SQLFeatureStore implements FeatureStore {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( queryExecutor != null ) {
+            queryExecutor.shutdownNow();
+            queryExecutor = null;
+        }
     }
 
     @Override
@@ -927,6 +1202,11 @@ public class SQLFeatureStore implements FeatureStore {
             return queryMultipleFts( queries, env );
         }
 
+        // transactions are bound to the connection of the current thread
+        if ( queryExecutor != null && queries.length > 1 && !isTransactionActive() ) {
+            return queryParallel( queries );
+        }
+
         Iterator<FeatureInputStream> rsIter = new Iterator<FeatureInputStream>() {
             int i = 0;
 
@@ -958,6 +1238,24 @@ public class SQLFeatureStore implements FeatureStore {
         return new CombinedFeatureInputStream( rsIter );
     }
 
+    /**
+     * Performs the given queries concurrently (each on a separate connection), the features are returned in the order
+     * of the queries.
+     */
+    private FeatureInputStream queryParallel( Query[] queries ) {
+        List<Callable<FeatureInputStream>> sources = new ArrayList<Callable<FeatureInputStream>>( queries.length );
+        for ( final Query q : queries ) {
+            sources.add( new Callable<FeatureInputStream>() {
+                @Override
+                public FeatureInputStream call()
+                                        throws Exception {
+                    return query( q );
+                }
+            } );
+        }
+        return new ParallelFeatureInputStream( sources, queryExecutor, parallelQueueSize );
+    }
+
     private FeatureInputStream queryByIdFilter( IdFilter filter, SortProperty[] sortCrit )
                             throws FeatureStoreException {
         if ( blobMapping != null ) {
@@ -1048,8 +1346,8 @@ public class SQLFeatureStore implements FeatureStore {
             conn = getConnection();
 
             String tableAlias = "X1";
-            FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, tableAlias,
-                                                                   nullEscalation );
+            FeatureBuilderRelational builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, tableAlias,
+                                                                             nullEscalation );
             List<String> columns = builder.getInitialSelectList();
             StringBuilder sql = new StringBuilder( "SELECT " );
             sql.append( columns.get( 0 ) );
@@ -1100,7 +1398,7 @@ public class SQLFeatureStore implements FeatureStore {
             begin = System.currentTimeMillis();
             rs = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
-            result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+            result = new IteratorFeatureInputStream( createFeatureResultSetIterator( builder, rs, conn, stmt ) );
         } catch ( Exception e ) {
             release( rs, stmt, conn );
             String msg = "Error performing query by id filter (relational mode): " + e.getMessage();
@@ -1301,19 +1599,23 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "WHERE clause: " + wb.getWhere() );
             LOG.debug( "ORDER BY clause: " + wb.getOrderBy() );
 
-            FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias,
-                                                                   nullEscalation );
-            List<String> columns = builder.getInitialSelectList();
+            // geometries are only simplified if they are neither used for in-memory filtering nor cached
+            double resolution = -1;
+            ICRS resolutionCrs = null;
+            if ( query.getHint( HINT_RESOLUTION ) != null && cache == null && wb.getPostFilter() == null ) {
+                resolution = (Double) query.getHint( HINT_RESOLUTION );
+                Envelope bbox = query.getPrefilterBBoxEnvelope();
+                resolutionCrs = bbox != null ? bbox.getCoordinateSystem() : null;
+            }
+
+            FeatureBuilderRelational builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias,
+                                                                             nullEscalation, resolution,
+                                                                             resolutionCrs );
 
             BlobMapping blobMapping = getSchema().getBlobMapping();
 
-            StringBuilder sql = new StringBuilder( "SELECT " );
-            sql.append( columns.get( 0 ) );
-            for ( int i = 1; i < columns.size(); i++ ) {
-                sql.append( ',' );
-                sql.append( columns.get( i ) );
-            }
-            sql.append( " FROM " );
+            // everything after the select list, only depends on the shape of the query (literals are arguments)
+            StringBuilder sql = new StringBuilder( " FROM " );
 
             // pure relational query
             sql.append( ftMapping.getFtTable() );
@@ -1339,34 +1641,85 @@ public class SQLFeatureStore implements FeatureStore {
                 }
                 sql.append( wb.getWhere().getSQL() );
             }
+
+            FIDMapping fidMapping = ftMapping.getFidMapping();
+            boolean applyPaging = pagingPushDown && isPagingPushDownPossible( query, wb, fidMapping )
+                                  && !getPagingSnippet( query.getStartIndex(), query.getMaxFeatures() ).isEmpty();
+            String pageQueryKey = null;
+            String resumeAfterId = null;
+            List<Object> keysetValues = null;
+            if ( applyPaging && wb.getOrderBy() == null ) {
+                // ordered by feature id only -> keyset pagination is possible
+                if ( keysetPageCache != null ) {
+                    pageQueryKey = getPageQueryKey( sql, wb );
+                }
+                if ( pageQueryKey != null && query.getStartIndex() > 0 ) {
+                    resumeAfterId = keysetPageCache.get( pageQueryKey, query.getStartIndex() );
+                }
+                if ( resumeAfterId != null ) {
+                    keysetValues = getFidValues( resumeAfterId, fidMapping );
+                    sql.append( wb.getWhere() != null ? " AND " : " WHERE " );
+                    appendKeysetCondition( sql, ftTableAlias, fidMapping );
+                }
+            }
+
             if ( wb.getOrderBy() != null ) {
                 sql.append( " ORDER BY " );
                 sql.append( wb.getOrderBy().getSQL() );
+                if ( applyPaging ) {
+                    // make paging deterministic for non-unique sort criteria
+                    sql.append( ',' );
+                    appendFidColumns( sql, ftTableAlias, fidMapping );
+                }
+            } else if ( applyPaging ) {
+                sql.append( " ORDER BY " );
+                appendFidColumns( sql, ftTableAlias, fidMapping );
             }
 
-            LOG.debug( "SQL: {}", sql );
-            long begin = System.currentTimeMillis();
-            stmt = conn.prepareStatement( sql.toString() );
-            LOG.debug( "Preparing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+            QueryPlan plan = getQueryPlan( ftMapping, resolution, resolutionCrs, sql.toString(), builder );
+            String stmtSql = plan.getSql();
+            if ( applyPaging ) {
+                int offset = resumeAfterId != null ? 0 : query.getStartIndex();
+                stmtSql += getPagingSnippet( offset, query.getMaxFeatures() );
+                query.setPagingApplied();
+            }
 
-            int i = 1;
+            LOG.debug( "SQL: {}", stmtSql );
+            long begin = System.nanoTime();
+            stmt = conn.prepareStatement( stmtSql );
+            long elapsed = System.nanoTime() - begin;
+            plan.recordPrepare( elapsed );
+            LOG.debug( "Preparing SELECT took {} [ms] ", elapsed / 1000000 );
+
+            int i = builder.setSelectArguments( stmt, plan.getColumns(), 1 );
             if ( wb.getWhere() != null ) {
                 for ( SQLArgument o : wb.getWhere().getArguments() ) {
                     o.setArgument( stmt, i++ );
                 }
             }
+            if ( keysetValues != null ) {
+                i = setKeysetArguments( stmt, keysetValues, i );
+            }
             if ( wb.getOrderBy() != null ) {
                 for ( SQLArgument o : wb.getOrderBy().getArguments() ) {
                     o.setArgument( stmt, i++ );
                 }
             }
 
-            begin = System.currentTimeMillis();
             stmt.setFetchSize( fetchSize );
+            begin = System.nanoTime();
             rs = stmt.executeQuery();
-            LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
-
-            result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+            elapsed = System.nanoTime() - begin;
+            plan.recordExecute( elapsed );
+            LOG.debug( "Executing SELECT took {} [ms] ", elapsed / 1000000 );
+
+            FeatureResultSetIterator iter = createFeatureResultSetIterator( builder, rs, conn, stmt );
+            iter.recordBuildTime( plan );
+            if ( pageQueryKey != null && query.getMaxFeatures() > 0 ) {
+                iter.recordPageEnd( pageQueryKey, query.getStartIndex() + query.getMaxFeatures(),
+                                    query.getMaxFeatures() );
+            }
+            result = new IteratorFeatureInputStream( iter );
         } catch ( Exception e ) {
             release( rs, stmt, conn );
             String msg = "Error performing query by operator filter: " + e.getMessage();
@@ -1385,6 +1738,173 @@ public class SQLFeatureStore implements FeatureStore {
         return result;
     }
 
+    /**
+     * Returns whether the paging parameters of the given query can be passed to the database.
+     * <p>
+     * Only queries that explicitly request a page (see {@link Query#setPaging(int, int)}) are considered, as paging
+     * requires an (otherwise unnecessary) <code>ORDER BY</code> on the feature id columns. This is not possible if the result requires in-memory filtering or sorting, as the database would skip or limit
+     * rows that don't belong to the actual result. It's also not possible if the statement joins other tables (joined
+     * rows may duplicate root rows, so the database would count rows instead of features) or if the feature type has
+     * no feature id mapping (no stable order of the rows).
+     * </p>
+     * 
+     * @param query
+     *            query, must not be <code>null</code>
+     * @param wb
+     *            where builder for the query, must not be <code>null</code>
+     * @param fidMapping
+     *            feature id mapping of the queried feature type, can be <code>null</code>
+     * @return <code>true</code>, if the paging can be pushed down, <code>false</code> otherwise
+     */
+    static boolean isPagingPushDownPossible( Query query, AbstractWhereBuilder wb, FIDMapping fidMapping ) {
+        if ( !query.isPagingRequested() || ( query.getStartIndex() <= 0 && query.getMaxFeatures() < 0 ) ) {
+            return false;
+        }
+        if ( wb.getPostFilter() != null || wb.getPostSortCriteria() != null ) {
+            LOG.debug( "Query requires in-memory filtering/sorting. Not pushing paging to the database." );
+            return false;
+        }
+        if ( fidMapping == null ) {
+            LOG.debug( "Feature type has no feature id mapping. Not pushing paging to the database." );
+            return false;
+        }
+        for ( PropertyNameMapping mappedPropName : wb.getMappedPropertyNames() ) {
+            if ( !mappedPropName.getJoins().isEmpty() ) {
+                LOG.debug( "Query requires joins. Not pushing paging to the database." );
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the {@link QueryPlan} for the given query shape, the select list of the given builder is initialized
+     * from the plan.
+     */
+    private QueryPlan getQueryPlan( FeatureTypeMapping ftMapping, double resolution, ICRS resolutionCrs,
+                                    String fromClause, FeatureBuilderRelational builder ) {
+        StringBuilder shapeKey = new StringBuilder( ftMapping.getFeatureType().toString() );
+        shapeKey.append( '|' );
+        // select snippets of geometries depend on the resolution
+        shapeKey.append( getGeometrySelectKey( ftMapping, resolution, resolutionCrs ) );
+        shapeKey.append( fromClause );
+        String key = shapeKey.toString();
+
+        QueryPlan plan = queryPlanCache.get( key );
+        if ( plan != null ) {
+            builder.setInitialSelectList( plan.getColumns() );
+            return plan;
+        }
+        List<String> columns = builder.getInitialSelectList();
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        sql.append( columns.get( 0 ) );
+        for ( int i = 1; i < columns.size(); i++ ) {
+            sql.append( ',' );
+            sql.append( columns.get( i ) );
+        }
+        sql.append( fromClause );
+        return queryPlanCache.put( key, new QueryPlan( sql.toString(), columns ) );
+    }
+
+    /**
+     * Returns the timings of the recently executed query shapes (queries by operator filter in relational mode).
+     * 
+     * @return timings, never <code>null</code>
+     */
+    public List<QueryPlanStatistics> getQueryPlanStatistics() {
+        return queryPlanCache.getStatistics();
+    }
+
+    private String getPageQueryKey( StringBuilder sql, AbstractWhereBuilder wb ) {
+        StringBuilder key = new StringBuilder( sql );
+        if ( wb.getWhere() != null ) {
+            for ( SQLArgument o : wb.getWhere().getArguments() ) {
+                key.append( '|' );
+                key.append( o );
+            }
+        }
+        return key.toString();
+    }
+
+    private void appendFidColumns( StringBuilder sql, String tableAlias, FIDMapping fidMapping ) {
+        boolean first = true;
+        for ( Pair<SQLIdentifier, BaseType> fidColumn : fidMapping.getColumns() ) {
+            if ( !first ) {
+                sql.append( ',' );
+            }
+            sql.append( tableAlias );
+            sql.append( '.' );
+            sql.append( fidColumn.first );
+            first = false;
+        }
+    }
+
+    /**
+     * Appends a condition that selects all rows that follow a certain feature id (in lexicographical order of the
+     * feature id columns): <code>(c1 > ?) OR (c1 = ? AND c2 > ?) OR ...</code>
+     */
+    static void appendKeysetCondition( StringBuilder sql, String tableAlias, FIDMapping fidMapping ) {
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = fidMapping.getColumns();
+        sql.append( '(' );
+        for ( int col = 0; col < fidColumns.size(); col++ ) {
+            if ( col > 0 ) {
+                sql.append( " OR " );
+            }
+            sql.append( '(' );
+            for ( int j = 0; j < col; j++ ) {
+                sql.append( tableAlias );
+                sql.append( '.' );
+                sql.append( fidColumns.get( j ).first );
+                sql.append( "=? AND " );
+            }
+            sql.append( tableAlias );
+            sql.append( '.' );
+            sql.append( fidColumns.get( col ).first );
+            sql.append( ">?)" );
+        }
+        sql.append( ')' );
+    }
+
+    /**
+     * Binds the feature id values for the condition created by
+     * {@link #appendKeysetCondition(StringBuilder, String, FIDMapping)}.
+     * 
+     * @return index of the next parameter
+     */
+    static int setKeysetArguments( PreparedStatement stmt, List<Object> fidValues, int i )
+                            throws SQLException {
+        for ( int col = 0; col < fidValues.size(); col++ ) {
+            for ( int j = 0; j <= col; j++ ) {
+                stmt.setObject( i++, fidValues.get( j ) );
+            }
+        }
+        return i;
+    }
+
+    private String getPagingSnippet( int offset, int limit ) {
+        if ( dialect instanceof AbstractSQLDialect ) {
+            return ( (AbstractSQLDialect) dialect ).getPagingSnippet( offset, limit );
+        }
+        return "";
+    }
+
+    private List<Object> getFidValues( String fid, FIDMapping fidMapping )
+                            throws FeatureStoreException {
+        IdAnalysis analysis;
+        try {
+            analysis = getSchema().analyzeId( fid );
+        } catch ( IllegalArgumentException e ) {
+            throw new FeatureStoreException( e.getMessage(), e );
+        }
+        List<Object> values = new ArrayList<Object>();
+        int j = 0;
+        for ( Object o : analysis.getIdKernels() ) {
+            PrimitiveType pt = new PrimitiveType( fidMapping.getColumns().get( j++ ).getSecond() );
+            values.add( SQLValueMangler.internalToSQL( new PrimitiveValue( o, pt ) ) );
+        }
+        return values;
+    }
+
     private FeatureInputStream queryMultipleFts( Query[] queries, Envelope looseBBox )
                             throws FeatureStoreException {
         FeatureInputStream result = null;
@@ -1495,6 +2015,33 @@ public class SQLFeatureStore implements FeatureStore {
         return dialect;
     }
 
+    /**
+     * Returns the maximum number of rows that are sent to the database at once when inserting features.
+     * 
+     * @return maximum number of rows per JDBC batch, 0: batching disabled
+     */
+    public int getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
+    /**
+     * Returns the minimum number of features for inserts that are performed using the bulk loading mechanism of the
+     * database (e.g. <code>COPY</code> for PostgreSQL).
+     * 
+     * @return minimum number of features, 0: bulk loading disabled
+     */
+    public int getBulkLoadThreshold() {
+        return bulkLoadThreshold;
+    }
+
+    private FeatureResultSetIterator createFeatureResultSetIterator( FeatureBuilderRelational builder, ResultSet rs,
+                                                                     Connection conn, Statement stmt ) {
+        if ( joinBatchSize > 0 ) {
+            return new BatchedFeatureResultSetIterator( builder, rs, conn, stmt );
+        }
+        return new FeatureResultSetIterator( builder, rs, conn, stmt );
+    }
+
     private class FeatureResultSetIterator extends ResultSetIterator<Feature> {
 
         private final FeatureBuilder builder;
@@ -1505,6 +2052,20 @@ public class SQLFeatureStore implements FeatureStore {
 
         private final Statement stmt;
 
+        private String pageQueryKey;
+
+        private int nextStartIndex;
+
+        private int pageSize;
+
+        private int built;
+
+        private QueryPlan plan;
+
+        private long buildNanos;
+
+        private long numBuilt;
+
         public FeatureResultSetIterator( FeatureBuilder builder, ResultSet rs, Connection conn, Statement stmt ) {
             super( rs, conn, stmt );
             this.builder = builder;
@@ -1513,15 +2074,100 @@ public class SQLFeatureStore implements FeatureStore {
             this.stmt = stmt;
         }
 
+        /**
+         * Enables recording of the id of the last feature of the page in the {@link KeysetPageCache}.
+         */
+        void recordPageEnd( String pageQueryKey, int nextStartIndex, int pageSize ) {
+            this.pageQueryKey = pageQueryKey;
+            this.nextStartIndex = nextStartIndex;
+            this.pageSize = pageSize;
+        }
+
+        /**
+         * Enables recording of the time spent for building the features in the given {@link QueryPlan}.
+         */
+        void recordBuildTime( QueryPlan plan ) {
+            this.plan = plan;
+        }
+
         @Override
         public void close() {
+            if ( plan != null ) {
+                plan.recordBuild( buildNanos, numBuilt );
+                LOG.debug( "Query plan statistics: {}", plan.getStatistics() );
+                plan = null;
+            }
             release( rs, stmt, conn );
         }
 
         @Override
         protected Feature createElement( ResultSet rs )
                                 throws SQLException {
-            return builder.buildFeature( rs );
+            long begin = System.nanoTime();
+            Feature feature = builder.buildFeature( rs );
+            recordBuild( begin, 1 );
+            return recordFeature( feature );
+        }
+
+        void recordBuild( long begin, int numFeatures ) {
+            buildNanos += System.nanoTime() - begin;
+            numBuilt += numFeatures;
+        }
+
+        Feature recordFeature( Feature feature ) {
+            if ( pageQueryKey != null && ++built == pageSize && feature.getId() != null ) {
+                keysetPageCache.put( pageQueryKey, nextStartIndex, feature.getId() );
+            }
+            return feature;
+        }
+    }
+
+    /**
+     * {@link FeatureResultSetIterator} that builds the features in batches of {@link #joinBatchSize}, so the rows of
+     * joined tables can be fetched for the whole batch at once.
+     */
+    private class BatchedFeatureResultSetIterator extends FeatureResultSetIterator {
+
+        private final FeatureBuilderRelational builder;
+
+        private final ResultSet rs;
+
+        private final LinkedList<Feature> batch = new LinkedList<Feature>();
+
+        private boolean exhausted;
+
+        BatchedFeatureResultSetIterator( FeatureBuilderRelational builder, ResultSet rs, Connection conn,
+                                         Statement stmt ) {
+            super( builder, rs, conn, stmt );
+            this.builder = builder;
+            this.rs = rs;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if ( batch.isEmpty() && !exhausted ) {
+                try {
+                    long begin = System.nanoTime();
+                    List<Feature> features = builder.buildFeatures( rs, joinBatchSize );
+                    recordBuild( begin, features.size() );
+                    exhausted = features.size() < joinBatchSize;
+                    batch.addAll( features );
+                } catch ( SQLException e ) {
+                    // try to close everything
+                    close();
+                    // wrap as unchecked exception
+                    throw new RuntimeException( e.getMessage(), e );
+                }
+            }
+            return !batch.isEmpty();
+        }
+
+        @Override
+        public Feature next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            return recordFeature( batch.removeFirst() );
         }
     }
 
@@ -1535,6 +2181,20 @@ public class SQLFeatureStore implements FeatureStore {
         connProvider = workspace.getResource( ConnectionProviderProvider.class, getConnId() );
         LOG.debug( "init" );
 
+        if ( parallelQueryThreads > 0 ) {
+            final String threadPrefix = "sqlfeaturestore-query-" + getConnId() + "-";
+            queryExecutor = Executors.newFixedThreadPool( parallelQueryThreads, new ThreadFactory() {
+                private final AtomicInteger threadNumber = new AtomicInteger();
+
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread t = new Thread( r, threadPrefix + threadNumber.incrementAndGet() );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } );
+        }
+
         List<String> resolverClasses = config.getCustomReferenceResolver();
         List<GMLReferenceResolver> resolvers = new ArrayList<GMLReferenceResolver>();
         for ( String resolver : resolverClasses ) {
@@ -86,6 +86,7 @@ import org.deegree.feature.persistence.sql.id.FIDMapping;
 import org.deegree.feature.persistence.sql.id.IdAnalysis;
 import org.deegree.feature.persistence.sql.insert.FeatureRow;
 import org.deegree.feature.persistence.sql.insert.InsertRowManager;
+import org.deegree.feature.persistence.sql.insert.StoredFeatureIds;
 import org.deegree.feature.persistence.sql.rules.CompoundMapping;
 import org.deegree.feature.persistence.sql.rules.FeatureMapping;
 import org.deegree.feature.persistence.sql.rules.GeometryMapping;
@@ -139,6 +140,10 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
     // TODO
     private ParticleConverter<Geometry> blobGeomConverter;
 
+    private StoredFeatureIds storedIds;
+
+    private boolean bulkLoad;
+
     /**
      * Creates a new {@link SQLFeatureStoreTransaction} instance.
      *
@@ -530,6 +535,33 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         }
     }
 
+    /**
+     * Sets the ids of features that have been stored by previous transactions (relational mode only).
+     * <p>
+     * References to these features are resolved against the stored rows, and the ids of features inserted by this
+     * transaction are added.
+     * </p>
+     * 
+     * @param storedIds
+     *            ids of stored features, can be <code>null</code> (only features of the inserted collection can be
+     *            referenced)
+     */
+    public void setStoredFeatureIds( StoredFeatureIds storedIds ) {
+        this.storedIds = storedIds;
+    }
+
+    /**
+     * Enables bulk loading (e.g. <code>COPY</code> for PostgreSQL) for all following inserts, regardless of the
+     * configured threshold (relational mode only).
+     * 
+     * @param bulkLoad
+     *            <code>true</code>, if inserts shall be performed using bulk loading, <code>false</code> if the
+     *            configured threshold applies
+     */
+    public void setBulkLoad( boolean bulkLoad ) {
+        this.bulkLoad = bulkLoad;
+    }
+
     @Override
     public List<String> performInsert( FeatureCollection fc, IDGenMode mode )
                             throws FeatureStoreException {
@@ -638,7 +670,11 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
             } else {
                 // pure relational mode
                 List<FeatureRow> idAssignments = new ArrayList<FeatureRow>();
-                InsertRowManager insertManager = new InsertRowManager( fs, conn, mode );
+                int bulkLoadThreshold = fs.getBulkLoadThreshold();
+                boolean useBulkLoad = bulkLoad || ( bulkLoadThreshold > 0 && features.size() >= bulkLoadThreshold );
+                InsertRowManager insertManager = new InsertRowManager( fs, conn, mode, fs.getInsertBatchSize(),
+                                                                       useBulkLoad );
+                insertManager.setStoredFeatureIds( storedIds );
                 for ( Feature feature : features ) {
                     FeatureTypeMapping ftMapping = fs.getMapping( feature.getName() );
                     if ( ftMapping == null ) {
@@ -653,6 +689,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                         bboxTracker.insert( feature, storageSrs );
                     }
                 }
+                insertManager.flush();
                 if ( insertManager.getDelayedRows() != 0 ) {
                     String msg = "After insertion, " + insertManager.getDelayedRows()
                                  + " delayed rows left uninserted. Probably a cyclic key constraint blocks insertion.";
@@ -662,6 +699,9 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                 fids.clear();
                 for ( FeatureRow assignment : idAssignments ) {
                     fids.add( assignment.getNewId() );
+                    if ( storedIds != null && assignment.getOriginalId() != null ) {
+                        storedIds.addStoredId( assignment.getOriginalId(), assignment.getNewId() );
+                    }
                 }
             }
         } catch ( Throwable t ) {
@@ -50,6 +50,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 import javax.xml.bind.JAXBElement;
 
@@ -73,6 +75,8 @@ import org.deegree.feature.persistence.sql.id.UUIDGenerator;
 import org.deegree.feature.persistence.sql.jaxb.AbstractIDGeneratorType;
 import org.deegree.feature.persistence.sql.jaxb.AutoIdGenerator;
 import org.deegree.feature.persistence.sql.jaxb.FeatureTypeMappingJAXB;
+import org.deegree.feature.persistence.sql.jaxb.GeometryParticleJAXB;
+import org.deegree.feature.persistence.sql.jaxb.GeometryParticleJAXB.GeneralizedGeometry;
 import org.deegree.feature.persistence.sql.jaxb.Join.AutoKeyColumn;
 import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB;
 import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB.BLOBMapping;
@@ -205,6 +209,17 @@ public abstract class AbstractMappedSchemaBuilder {
         return mapping;
     }
 
+    protected NavigableMap<Double, MappingExpression> buildGeneralizations( GeometryParticleJAXB config ) {
+        if ( config.getGeneralizedGeometry().isEmpty() ) {
+            return null;
+        }
+        NavigableMap<Double, MappingExpression> generalizations = new TreeMap<Double, MappingExpression>();
+        for ( GeneralizedGeometry generalized : config.getGeneralizedGeometry() ) {
+            generalizations.put( generalized.getMinResolution(), parseMappingExpression( generalized.getMapping() ) );
+        }
+        return generalizations;
+    }
+
     protected List<TableJoin> buildJoinTable( TableName from, org.deegree.feature.persistence.sql.jaxb.Join join ) {
         if ( join != null ) {
             TableName target = createFromQualifiedName( join.getTable() );
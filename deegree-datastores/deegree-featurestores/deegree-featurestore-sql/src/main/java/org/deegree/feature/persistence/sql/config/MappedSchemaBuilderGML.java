@@ -418,7 +418,7 @@ public class MappedSchemaBuilderGML extends AbstractMappedSchemaBuilder {
         boolean escalateVoid = determineParticleVoidability( elDecl.second, config.getNullEscalation() );
         List<TableJoin> joinedTable = buildJoinTable( currentTable, config.getJoin() );
         return new GeometryMapping( path, escalateVoid, me, type, geometryParams, joinedTable,
-                                    config.getCustomConverter() );
+                                    config.getCustomConverter(), buildGeneralizations( config ) );
     }
 
     private FeatureMapping buildMapping( TableName currentTable, Pair<XSElementDeclaration, Boolean> elDecl,
@@ -378,7 +378,7 @@ public class MappedSchemaBuilderTable extends AbstractMappedSchemaBuilder {
             CoordinateDimension dim = crs.getDimension() == 3 ? DIM_2 : DIM_3;
             pt = new GeometryPropertyType( propName, minOccurs, maxOccurs, null, null, type, dim, INLINE );
             m = new GeometryMapping( path, minOccurs == 0, mapping, type, new GeometryStorageParams( crs, srid, dim ),
-                                     jc );
+                                     jc, null, buildGeneralizations( geomDecl ) );
         } else {
             LOG.warn( "Unhandled property declaration '" + propDecl.getClass() + "'. Skipping it." );
         }
@@ -0,0 +1,290 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deegree.commons.utils.JDBCUtils;
+import org.deegree.sqldialect.BulkLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the batches of {@link InsertRow}s that have not been sent to the database yet (and of the batched rows
+ * that are referenced by other rows) for the {@link InsertRowManager}.
+ * <p>
+ * Batches are sent in the order in which they have received their first row (since they have last been sent), so a row
+ * may be batched if the batches of all rows it references are sent before (or together with) its own batch. The
+ * statements and bulk loaders of the batches stay open when the batches are sent, they are only released by
+ * {@link #close()}.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class InsertBatches {
+
+    private static final Logger LOG = LoggerFactory.getLogger( InsertBatches.class );
+
+    // key: INSERT statement (table, columns and literals) or bulk load key, value: batch (in order of execution)
+    private final Map<String, Batch> keyToBatch = new LinkedHashMap<String, Batch>();
+
+    // number of times a batch has received its first row
+    private int batchCount;
+
+    // key: row that has been added to a batch, but has not been sent to the DB yet, value: batch
+    private final Map<InsertRow, Batch> rowToBatch = new HashMap<InsertRow, Batch>();
+
+    // key: row that references rows that may not have been sent to the DB yet, value: referenced rows
+    private final Map<InsertRow, List<InsertRow>> rowToBatchedParents = new HashMap<InsertRow, List<InsertRow>>();
+
+    /**
+     * Returns the batch for the given key.
+     * 
+     * @param key
+     *            INSERT statement or bulk load key, must not be <code>null</code>
+     * @return batch, <code>null</code> if no batch has been opened for the key
+     */
+    Batch get( String key ) {
+        return keyToBatch.get( key );
+    }
+
+    /**
+     * Returns the number of open batches (i.e. of open statements and bulk loaders).
+     * 
+     * @return number of open batches
+     */
+    int size() {
+        return keyToBatch.size();
+    }
+
+    /**
+     * Opens a new batch.
+     * 
+     * @param key
+     *            INSERT statement or bulk load key, must not be <code>null</code>
+     * @param stmt
+     *            prepared INSERT statement, <code>null</code> for bulk load batches
+     * @param loader
+     *            bulk loader, <code>null</code> for JDBC batches
+     * @return new batch, never <code>null</code>
+     */
+    Batch open( String key, PreparedStatement stmt, BulkLoader loader ) {
+        Batch batch = new Batch( key, stmt, loader );
+        keyToBatch.put( key, batch );
+        return batch;
+    }
+
+    /**
+     * Records that the given row has been added to the given batch (the statement arguments must have been set or the
+     * row must have been added to the bulk loader already).
+     * 
+     * @param batch
+     *            batch, must not be <code>null</code>
+     * @param row
+     *            row, must not be <code>null</code>
+     * @return number of rows in the batch
+     */
+    int add( Batch batch, InsertRow row ) {
+        if ( batch.rows.isEmpty() ) {
+            // batch is sent after all batches that already contain rows
+            keyToBatch.remove( batch.key );
+            keyToBatch.put( batch.key, batch );
+            batch.index = batchCount++;
+        }
+        batch.rows.add( row );
+        rowToBatch.put( row, batch );
+        return batch.rows.size();
+    }
+
+    /**
+     * Records that the child row references the parent row, if the parent row has not been sent to the DB yet.
+     * 
+     * @param child
+     *            referencing row, must not be <code>null</code>
+     * @param parent
+     *            referenced row, must not be <code>null</code>
+     */
+    void addBatchedParent( InsertRow child, InsertRow parent ) {
+        if ( rowToBatch.containsKey( parent ) ) {
+            List<InsertRow> parents = rowToBatchedParents.get( child );
+            if ( parents == null ) {
+                parents = new ArrayList<InsertRow>();
+                rowToBatchedParents.put( child, parents );
+            }
+            parents.add( parent );
+        }
+    }
+
+    /**
+     * Returns whether the given row references rows that have not been sent to the DB yet.
+     * 
+     * @param row
+     *            row, must not be <code>null</code>
+     * @return <code>true</code>, if the row references batched rows, <code>false</code> otherwise
+     */
+    boolean hasBatchedParents( InsertRow row ) {
+        return rowToBatchedParents.containsKey( row );
+    }
+
+    /**
+     * Forgets the batched rows referenced by the given row (called when the row has been inserted or batched).
+     * 
+     * @param row
+     *            row, must not be <code>null</code>
+     */
+    void removeBatchedParents( InsertRow row ) {
+        rowToBatchedParents.remove( row );
+    }
+
+    /**
+     * Returns whether the given row can be added to one of the batches with the given keys without sending the
+     * batches first, i.e. whether the batch would be sent after (or together with) the batches of all batched rows the
+     * row references.
+     * 
+     * @param row
+     *            row, must not be <code>null</code>
+     * @param keys
+     *            keys of the batches the row may be added to (<code>null</code> entries are ignored)
+     * @return <code>true</code>, if the row can be batched, <code>false</code> otherwise
+     */
+    boolean isBatchedAfterParents( InsertRow row, String... keys ) {
+        List<InsertRow> parents = rowToBatchedParents.get( row );
+        if ( parents == null ) {
+            return true;
+        }
+        for ( String key : keys ) {
+            Batch batch = key != null ? keyToBatch.get( key ) : null;
+            if ( batch != null && !batch.rows.isEmpty() ) {
+                for ( InsertRow parent : parents ) {
+                    Batch parentBatch = rowToBatch.get( parent );
+                    if ( parentBatch != null && parentBatch.index > batch.index ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends the rows of all batches to the database (in order). The statements and bulk loaders stay open.
+     * 
+     * @throws SQLException
+     */
+    void execute()
+                            throws SQLException {
+        for ( Batch batch : keyToBatch.values() ) {
+            if ( batch.rows.isEmpty() ) {
+                continue;
+            }
+            LOG.debug( "Executing batch of " + batch.rows.size() + " rows." );
+            if ( batch.loader != null ) {
+                batch.loader.execute();
+            } else {
+                batch.stmt.executeBatch();
+            }
+            batch.rows.clear();
+        }
+        rowToBatch.clear();
+        rowToBatchedParents.clear();
+    }
+
+    /**
+     * Releases the statements and bulk loaders of all batches, rows that have not been sent are discarded.
+     */
+    void close() {
+        for ( Batch batch : keyToBatch.values() ) {
+            if ( batch.loader != null ) {
+                batch.loader.close();
+            } else {
+                JDBCUtils.close( batch.stmt );
+            }
+        }
+        keyToBatch.clear();
+        rowToBatch.clear();
+        rowToBatchedParents.clear();
+    }
+
+    /**
+     * Rows for a single INSERT statement or bulk loader.
+     */
+    static class Batch {
+
+        private final String key;
+
+        // null for bulk load batches
+        private final PreparedStatement stmt;
+
+        // null for JDBC batches
+        private final BulkLoader loader;
+
+        // position in the order of execution (assigned when the batch receives its first row)
+        private int index = -1;
+
+        private final List<InsertRow> rows = new ArrayList<InsertRow>();
+
+        private Batch( String key, PreparedStatement stmt, BulkLoader loader ) {
+            this.key = key;
+            this.stmt = stmt;
+            this.loader = loader;
+        }
+
+        PreparedStatement getStatement() {
+            return stmt;
+        }
+
+        BulkLoader getLoader() {
+            return loader;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        int size() {
+            return rows.size();
+        }
+    }
+}
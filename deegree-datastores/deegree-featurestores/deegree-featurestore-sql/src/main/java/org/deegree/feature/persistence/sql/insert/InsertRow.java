@@ -96,7 +96,11 @@ public abstract class InsertRow extends TransactionRow {
             for ( SQLIdentifier autoKeyColumn : keyColumnToGenerator.keySet() ) {
                 IDGenerator idGenerator = keyColumnToGenerator.get( autoKeyColumn );
                 if ( idGenerator instanceof SequenceIDGenerator ) {
-                    int seqVal = getSequenceNextVal( ( (SequenceIDGenerator) idGenerator ).getSequence() );
+                    String sequence = ( (SequenceIDGenerator) idGenerator ).getSequence();
+                    Object seqVal = mgr.getPreallocatedSequenceValue( sequence );
+                    if ( seqVal == null ) {
+                        seqVal = getSequenceNextVal( sequence );
+                    }
                     LOG.debug( "Got key value for column '" + autoKeyColumn.getName() + "' from sequence: " + seqVal );
                     addPreparedArgument( autoKeyColumn, seqVal );
                 } else if ( idGenerator instanceof UUIDGenerator ) {
@@ -104,7 +108,15 @@ public abstract class InsertRow extends TransactionRow {
                     LOG.debug( "Got key value for column '" + autoKeyColumn.getName() + "' from UUID: " + uuid );
                     addPreparedArgument( autoKeyColumn, uuid );
                 } else if ( idGenerator instanceof AutoIDGenerator ) {
-                    LOG.debug( "Key for column '" + autoKeyColumn.getName() + "' will be generated on insert by DB." );
+                    Object value = mgr.getPreallocatedAutoValue( table, autoKeyColumn );
+                    if ( value != null ) {
+                        LOG.debug( "Got pre-allocated key value for column '" + autoKeyColumn.getName() + "': "
+                                   + value );
+                        addPreparedArgument( autoKeyColumn, value );
+                    } else {
+                        LOG.debug( "Key for column '" + autoKeyColumn.getName()
+                                   + "' will be generated on insert by DB." );
+                    }
                 } else {
                     LOG.warn( "Unhandled ID generator: " + idGenerator.getClass().getName() );
                 }
@@ -112,7 +124,7 @@ public abstract class InsertRow extends TransactionRow {
         }
     }
 
-    private int getSequenceNextVal( String sequenceName )
+    private Object getSequenceNextVal( String sequenceName )
                             throws FeatureStoreException {
         String sql = mgr.getDialect().getSelectSequenceNextVal( sequenceName );
         Statement stmt = null;
@@ -122,7 +134,7 @@ public abstract class InsertRow extends TransactionRow {
             LOG.debug( "Determing feature ID from db sequence: " + sql );
             rs = stmt.executeQuery( sql );
             if ( rs.next() ) {
-                return rs.getInt( 1 );
+                return rs.getObject( 1 );
             } else {
                 String msg = "Error determining ID from db sequence. No value returned for: " + sql;
                 throw new FeatureStoreException( msg );
@@ -194,10 +206,16 @@ public abstract class InsertRow extends TransactionRow {
             LOG.debug( "Inserting row: " + this );
         }
 
+        Set<SQLIdentifier> autoGenColumns = getAutogenColumns( propagateNonFidAutoGenColumns );
+        if ( canBatch( autoGenColumns ) ) {
+            // key values are known already (e.g. from a sequence), so there's nothing to retrieve from the DB
+            mgr.addToBatch( this );
+            return;
+        }
+
         String sql = getSql();
         PreparedStatement stmt = null;
 
-        Set<SQLIdentifier> autoGenColumns = getAutogenColumns( propagateNonFidAutoGenColumns );
         if ( autoGenColumns.isEmpty() ) {
             stmt = conn.prepareStatement( sql );
         } else {
@@ -212,22 +230,7 @@ public abstract class InsertRow extends TransactionRow {
             }
             stmt = conn.prepareStatement( sql, cols );
         }
-        int columnId = 1;
-        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
-            if ( entry.getValue() != null ) {
-                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
-                           + entry.getValue().getClass() + ")" );
-                if ( entry.getValue() instanceof ParticleConversion<?> ) {
-                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
-                    conversion.setParticle( stmt, columnId++ );
-                } else {
-                    stmt.setObject( columnId++, entry.getValue() );
-                }
-            } else {
-                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
-                stmt.setObject( columnId++, null );
-            }
-        }
+        setArguments( stmt );
         stmt.execute();
 
         if ( !autoGenColumns.isEmpty() ) {
@@ -253,6 +256,59 @@ public abstract class InsertRow extends TransactionRow {
         stmt.close();
     }
 
+    /**
+     * Sets the values of the prepared arguments of this row on the given statement.
+     * 
+     * @param stmt
+     *            statement that has been prepared from {@link #getSql()}, must not be <code>null</code>
+     * @throws SQLException
+     */
+    void setArguments( PreparedStatement stmt )
+                            throws SQLException {
+        int columnId = 1;
+        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
+            if ( entry.getValue() != null ) {
+                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
+                           + entry.getValue().getClass() + ")" );
+                if ( entry.getValue() instanceof ParticleConversion<?> ) {
+                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
+                    conversion.setParticle( stmt, columnId++ );
+                } else {
+                    stmt.setObject( columnId++, entry.getValue() );
+                }
+            } else {
+                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
+                stmt.setObject( columnId++, null );
+            }
+        }
+    }
+
+    /**
+     * Returns whether this row will be added to a batch by {@link #performInsert(Connection, boolean)}, i.e. whether
+     * batching is enabled and the values of all auto-generated columns are known already.
+     * 
+     * @param propagateNonFidAutoGenColumns
+     *            <code>true</code>, if auto generated key columns need to be processed (and propagated),
+     *            <code>false</code> otherwise
+     * @return <code>true</code>, if this row will be batched, <code>false</code> otherwise
+     */
+    boolean canBatch( boolean propagateNonFidAutoGenColumns ) {
+        return canBatch( getAutogenColumns( propagateNonFidAutoGenColumns ) );
+    }
+
+    private boolean canBatch( Set<SQLIdentifier> autoGenColumns ) {
+        return mgr.isBatching() && hasValues( autoGenColumns );
+    }
+
+    private boolean hasValues( Set<SQLIdentifier> columns ) {
+        for ( SQLIdentifier column : columns ) {
+            if ( get( column ) == null ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     protected Set<SQLIdentifier> getAutogenColumns( boolean propagateNonFidAutoGenColumns ) {
         Set<SQLIdentifier> cols = new LinkedHashSet<SQLIdentifier>();
         if ( propagateNonFidAutoGenColumns ) {
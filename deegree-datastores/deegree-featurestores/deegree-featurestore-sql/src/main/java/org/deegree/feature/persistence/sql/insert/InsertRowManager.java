@@ -36,11 +36,15 @@
 package org.deegree.feature.persistence.sql.insert;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -53,8 +57,11 @@ import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.genericxml.GenericXMLElement;
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.commons.tom.sql.SQLValueMangler;
+import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.Feature;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -63,6 +70,7 @@ import org.deegree.feature.persistence.sql.MappedAppSchema;
 import org.deegree.feature.persistence.sql.SQLFeatureStore;
 import org.deegree.feature.persistence.sql.SQLFeatureStoreTransaction;
 import org.deegree.feature.persistence.sql.expressions.TableJoin;
+import org.deegree.feature.persistence.sql.id.IdAnalysis;
 import org.deegree.feature.persistence.sql.id.KeyPropagation;
 import org.deegree.feature.persistence.sql.id.TableDependencies;
 import org.deegree.feature.persistence.sql.rules.CompoundMapping;
@@ -78,6 +86,8 @@ import org.deegree.geometry.Geometry;
 import org.deegree.gml.reference.FeatureReference;
 import org.deegree.protocol.wfs.transaction.action.IDGenMode;
 import org.deegree.protocol.wfs.transaction.action.ParsedPropertyReplacement;
+import org.deegree.sqldialect.AbstractSQLDialect;
+import org.deegree.sqldialect.BulkLoader;
 import org.deegree.sqldialect.SQLDialect;
 import org.deegree.sqldialect.filter.DBField;
 import org.deegree.sqldialect.filter.MappingExpression;
@@ -93,6 +103,8 @@ import org.slf4j.LoggerFactory;
  * <li>Usability for complex structures/mappings</li>
  * <li>Coping with unresolved feature references (forward/backward xlinks)</li>
  * <li>Auto-generated feature ids/key columns</li>
+ * <li>Optional JDBC batching of rows that don't need to wait for keys generated by the DB</li>
+ * <li>Optional bulk loading (e.g. PostgreSQL <code>COPY</code>) with pre-allocated key values</li>
  * </ul>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
@@ -104,6 +116,12 @@ public class InsertRowManager {
 
     private static Logger LOG = LoggerFactory.getLogger( InsertRowManager.class );
 
+    // maximum number of INSERT statements with pending batches
+    private static final int MAX_OPEN_BATCHES = 64;
+
+    // number of rows per bulk load and pre-allocated keys, if no batch size is specified
+    private static final int DEFAULT_BULK_LOAD_SIZE = 1000;
+
     private final SQLFeatureStore fs;
 
     private final SQLDialect dialect;
@@ -126,6 +144,24 @@ public class InsertRowManager {
     // values: rows that have not been inserted yet, but can be inserted (no parents)
     private final Set<InsertRow> rootRows = new HashSet<InsertRow>();
 
+    // maximum number of rows per JDBC batch/bulk load, 0: rows are inserted one by one
+    private final int batchSize;
+
+    // if true, rows are bulk loaded (if supported by the dialect)
+    private boolean bulkLoad;
+
+    // rows that have been batched, but not been sent to the DB yet
+    private final InsertBatches batches = new InsertBatches();
+
+    // key: sequence or auto-increment column, value: pre-allocated key values (for bulk loading)
+    private final Map<String, LinkedList<Object>> preallocatedKeys = new HashMap<String, LinkedList<Object>>();
+
+    // sequences and auto-increment columns that don't support pre-allocation
+    private final Set<String> nonPreallocatableKeys = new HashSet<String>();
+
+    // ids of features that have been stored by previous transactions, may be null
+    private StoredFeatureIds storedIds;
+
     /**
      * Creates a new {@link InsertRowManager} instance.
      * 
@@ -137,11 +173,62 @@ public class InsertRowManager {
      *            feature id generation mode, must not be <code>null</code>
      */
     public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode ) {
+        this( fs, conn, idGenMode, 0 );
+    }
+
+    /**
+     * Creates a new {@link InsertRowManager} instance that sends rows to the database in JDBC batches.
+     * <p>
+     * Only rows whose key values are known before the INSERT (e.g. values from sequences or UUIDs) are batched, rows
+     * that rely on keys generated by the database are still inserted one by one. Batches are sent (in order) when one
+     * of them is full, before a row that references one of their rows can't be batched in a later batch and on
+     * {@link #flush()}.
+     * </p>
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param conn
+     *            connection, must not be <code>null</code>
+     * @param idGenMode
+     *            feature id generation mode, must not be <code>null</code>
+     * @param batchSize
+     *            maximum number of rows per batch, 0 (or 1) disables batching
+     */
+    public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode, int batchSize ) {
+        this( fs, conn, idGenMode, batchSize, false );
+    }
+
+    /**
+     * Creates a new {@link InsertRowManager} instance that optionally uses the bulk loading mechanism of the database
+     * (e.g. <code>COPY</code> for PostgreSQL).
+     * <p>
+     * In bulk load mode, key values from sequences and auto-increment columns are pre-allocated in blocks, so the key
+     * values of (almost) all rows are known before the insert and can be propagated to dependent rows. Rows are
+     * collected per table and columns and bulk loaded when a batch is full. Rows that cannot be bulk loaded (or if
+     * the dialect doesn't support bulk loading) are batched as <code>INSERT</code> statements.
+     * </p>
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param conn
+     *            connection, must not be <code>null</code>
+     * @param idGenMode
+     *            feature id generation mode, must not be <code>null</code>
+     * @param batchSize
+     *            maximum number of rows per batch, 0 (or 1) disables batching (uses a default in bulk load mode)
+     * @param bulkLoad
+     *            <code>true</code>, if rows shall be bulk loaded, <code>false</code> otherwise
+     */
+    public InsertRowManager( SQLFeatureStore fs, Connection conn, IDGenMode idGenMode, int batchSize,
+                             boolean bulkLoad ) {
         this.fs = fs;
         this.dialect = fs.getDialect();
         this.conn = conn;
         this.idGenMode = idGenMode;
         this.tableDeps = fs.getSchema().getKeyDependencies();
+        // bulk loading and key pre-allocation are provided by AbstractSQLDialect only
+        this.bulkLoad = bulkLoad && dialect instanceof AbstractSQLDialect;
+        this.batchSize = bulkLoad && batchSize <= 1 ? DEFAULT_BULK_LOAD_SIZE : batchSize;
     }
 
     /**
@@ -244,6 +331,18 @@ public class InsertRowManager {
         return featureRow;
     }
 
+    /**
+     * Sets the ids of features that have been stored by previous transactions. References to these features are
+     * resolved against the stored rows.
+     * 
+     * @param storedIds
+     *            ids of stored features, can be <code>null</code> (only features inserted by this manager can be
+     *            referenced)
+     */
+    public void setStoredFeatureIds( StoredFeatureIds storedIds ) {
+        this.storedIds = storedIds;
+    }
+
     SQLDialect getDialect() {
         return dialect;
     }
@@ -271,6 +370,13 @@ public class InsertRowManager {
     private FeatureRow lookupFeatureRow( String fid )
                             throws FeatureStoreException {
         FeatureRow featureRow = origFidToFeatureRow.get( fid );
+        if ( featureRow == null && storedIds != null ) {
+            String storedId = storedIds.getStoredId( fid );
+            if ( storedId != null ) {
+                featureRow = buildStoredFeatureRow( fid, storedId );
+                origFidToFeatureRow.put( fid, featureRow );
+            }
+        }
         if ( featureRow == null ) {
             featureRow = new FeatureRow( this, fid );
             origFidToFeatureRow.put( fid, featureRow );
@@ -279,6 +385,46 @@ public class InsertRowManager {
         return featureRow;
     }
 
+    // feature row for a feature that has been inserted by a previous transaction
+    private FeatureRow buildStoredFeatureRow( String fid, final String storedId )
+                            throws FeatureStoreException {
+        IdAnalysis analysis = null;
+        try {
+            analysis = getSchema().analyzeId( storedId );
+        } catch ( IllegalArgumentException e ) {
+            String msg = "Cannot reference stored feature with id '" + storedId + "': " + e.getMessage();
+            throw new FeatureStoreException( msg );
+        }
+        final FeatureTypeMapping ftMapping = getSchema().getFtMapping( analysis.getFeatureType().getName() );
+        final String[] idKernels = analysis.getIdKernels();
+        return new FeatureRow( this, fid ) {
+            @Override
+            void performInsert( Connection conn, boolean propagateAutoGenColumns )
+                                    throws SQLException, FeatureStoreException {
+                // already stored
+            }
+
+            @Override
+            public String getNewId() {
+                return storedId;
+            }
+
+            @Override
+            public Object get( SQLIdentifier id ) {
+                int idx = 0;
+                for ( Pair<SQLIdentifier, BaseType> p : ftMapping.getFidMapping().getColumns() ) {
+                    if ( p.first.equals( id ) ) {
+                        // same conversion as for queries by id (the key may e.g. be an integer column)
+                        PrimitiveType pt = new PrimitiveType( p.second );
+                        return SQLValueMangler.internalToSQL( new PrimitiveValue( idKernels[idx], pt ) );
+                    }
+                    ++idx;
+                }
+                return null;
+            }
+        };
+    }
+
     private FeatureRow lookupFeatureRow( Feature feature )
                             throws FeatureStoreException {
         FeatureRow featureRow = origFidToFeatureRow.get( feature.getId() );
@@ -391,6 +537,7 @@ public class InsertRowManager {
                         if ( !delayedRows.contains( subFeatureRow ) ) {
                             // sub feature already inserted, propagate key values right away
                             currentRow.removeParent( subFeatureRow );
+                            batches.addBatchedParent( currentRow, subFeatureRow );
                         }
                     }
                 }
@@ -519,7 +666,13 @@ public class InsertRowManager {
             List<InsertRow> rootAdds = new ArrayList<InsertRow>();
             for ( InsertRow row : rootRows ) {
                 LOG.debug( "Inserting row " + row );
-                row.performInsert( conn, rowToChildRows.get( row ) != null );
+                boolean propagate = rowToChildRows.get( row ) != null;
+                if ( batches.hasBatchedParents( row ) && !isBatchedAfterParents( row, propagate ) ) {
+                    // referenced rows must be in the DB before (foreign key constraints), statements stay open
+                    batches.execute();
+                }
+                row.performInsert( conn, propagate );
+                batches.removeBatchedParents( row );
                 delayedRows.remove( row );
                 rootRemoves.add( row );
 
@@ -529,6 +682,7 @@ public class InsertRowManager {
                     for ( InsertRow childRow : childRows ) {
                         LOG.debug( "Child row: " + childRow );
                         childRow.removeParent( row );
+                        batches.addBatchedParent( childRow, row );
                         if ( !childRow.hasParents() ) {
                             rootAdds.add( childRow );
                         }
@@ -541,6 +695,175 @@ public class InsertRowManager {
         }
     }
 
+    /**
+     * Sends all rows that have been batched, but not been sent yet, to the database and releases the batch statements.
+     * <p>
+     * Must be called after the last feature has been inserted.
+     * </p>
+     * 
+     * @throws SQLException
+     */
+    public void flush()
+                            throws SQLException {
+        try {
+            batches.execute();
+        } finally {
+            batches.close();
+        }
+    }
+
+    boolean isBatching() {
+        return batchSize > 1;
+    }
+
+    /**
+     * Adds the given row to a batch. In bulk load mode, the row is added to the bulk loader for its table and columns
+     * (if possible), otherwise to the batch of its INSERT statement. All batches are sent when one contains
+     * <code>batchSize</code> rows.
+     * 
+     * @param row
+     *            row to be inserted, all values must be known, must not be <code>null</code>
+     * @throws SQLException
+     */
+    void addToBatch( InsertRow row )
+                            throws SQLException {
+        if ( bulkLoad ) {
+            String copySql = getBulkLoadKey( row );
+            InsertBatches.Batch batch = batches.get( copySql );
+            if ( batch == null ) {
+                List<SQLIdentifier> columns = new ArrayList<SQLIdentifier>( row.getColumns() );
+                BulkLoader loader = ( (AbstractSQLDialect) dialect ).createBulkLoader( conn, row.getTable(), columns );
+                if ( loader == null ) {
+                    LOG.debug( "Bulk loading is not supported by the SQL dialect/connection. Using JDBC batches." );
+                    bulkLoad = false;
+                } else {
+                    batch = openBatch( copySql, null, loader );
+                }
+            }
+            if ( batch != null && batch.getLoader().add( row ) ) {
+                addToBatch( batch, row );
+                return;
+            }
+        }
+        String sql = row.getSql();
+        InsertBatches.Batch batch = batches.get( sql );
+        if ( batch == null ) {
+            LOG.debug( "Preparing batch for: " + sql );
+            batch = openBatch( sql, conn.prepareStatement( sql ), null );
+        }
+        row.setArguments( batch.getStatement() );
+        batch.getStatement().addBatch();
+        addToBatch( batch, row );
+    }
+
+    private InsertBatches.Batch openBatch( String sql, PreparedStatement stmt, BulkLoader loader )
+                            throws SQLException {
+        if ( batches.size() >= MAX_OPEN_BATCHES ) {
+            flush();
+        }
+        return batches.open( sql, stmt, loader );
+    }
+
+    private void addToBatch( InsertBatches.Batch batch, InsertRow row )
+                            throws SQLException {
+        if ( batches.add( batch, row ) >= batchSize ) {
+            // rows may reference rows in other batches, so these have to be sent as well
+            batches.execute();
+        }
+    }
+
+    // key for the bulk loader of a row (the rows of a bulk load don't need to have the same literals)
+    private String getBulkLoadKey( InsertRow row ) {
+        return "COPY " + row.getTable() + " " + row.getColumns();
+    }
+
+    // true, if the row will be batched and the batch will be sent after the batches of all referenced rows
+    private boolean isBatchedAfterParents( InsertRow row, boolean propagateAutoGenColumns ) {
+        if ( !row.canBatch( propagateAutoGenColumns ) ) {
+            return false;
+        }
+        return batches.isBatchedAfterParents( row, row.getSql(), bulkLoad ? getBulkLoadKey( row ) : null );
+    }
+
+    /**
+     * Returns a pre-allocated value of the given sequence (bulk load mode only).
+     * 
+     * @param sequence
+     *            name of the sequence, must not be <code>null</code>
+     * @return sequence value, <code>null</code> if not in bulk load mode or values cannot be pre-allocated
+     * @throws FeatureStoreException
+     */
+    Object getPreallocatedSequenceValue( String sequence )
+                            throws FeatureStoreException {
+        if ( !bulkLoad ) {
+            return null;
+        }
+        return getPreallocatedKey( sequence,
+                                   ( (AbstractSQLDialect) dialect ).getSelectSequenceNextVals( sequence, batchSize ) );
+    }
+
+    /**
+     * Returns a pre-allocated value for the given auto-increment column (bulk load mode only).
+     * 
+     * @param table
+     *            table, must not be <code>null</code>
+     * @param column
+     *            auto-increment column, must not be <code>null</code>
+     * @return column value, <code>null</code> if not in bulk load mode or values cannot be pre-allocated (value has to
+     *         be generated by the DB on insert)
+     * @throws FeatureStoreException
+     */
+    Object getPreallocatedAutoValue( TableName table, SQLIdentifier column )
+                            throws FeatureStoreException {
+        if ( !bulkLoad ) {
+            return null;
+        }
+        return getPreallocatedKey( table + "." + column,
+                                   ( (AbstractSQLDialect) dialect ).getSelectAutoColumnNextVals( table, column,
+                                                                                                  batchSize ) );
+    }
+
+    private Object getPreallocatedKey( String key, String sql )
+                            throws FeatureStoreException {
+        if ( sql == null || nonPreallocatableKeys.contains( key ) ) {
+            return null;
+        }
+        LinkedList<Object> values = preallocatedKeys.get( key );
+        if ( values == null ) {
+            values = new LinkedList<Object>();
+            preallocatedKeys.put( key, values );
+        }
+        if ( values.isEmpty() ) {
+            Statement stmt = null;
+            ResultSet rs = null;
+            try {
+                stmt = conn.createStatement();
+                LOG.debug( "Pre-allocating key values: " + sql );
+                rs = stmt.executeQuery( sql );
+                while ( rs.next() ) {
+                    // keep the type of the column (e.g. BIGINT for sequences), values may exceed the integer range
+                    Object value = rs.getObject( 1 );
+                    if ( value == null ) {
+                        LOG.debug( "Key values for '" + key + "' cannot be pre-allocated." );
+                        nonPreallocatableKeys.add( key );
+                        return null;
+                    }
+                    values.add( value );
+                }
+            } catch ( SQLException e ) {
+                String msg = "Error pre-allocating key values using '" + sql + "': " + e.getMessage();
+                throw new FeatureStoreException( msg, e );
+            } finally {
+                JDBCUtils.close( rs, stmt, null, LOG );
+            }
+            if ( values.isEmpty() ) {
+                nonPreallocatableKeys.add( key );
+                return null;
+            }
+        }
+        return values.removeFirst();
+    }
+
     /**
      * Returns the number of currently delayed rows (rows that depend on some other row to be inserted first).
      * 
@@ -0,0 +1,80 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.sql.SQLFeatureStoreTransaction;
+
+/**
+ * Keeps track of the ids of features that have been stored by previous transactions.
+ * <p>
+ * Allows to split large imports into several transactions: references to features that have been inserted by an
+ * earlier transaction (and are therefore not contained in the current feature collection) are resolved against the
+ * stored feature ids.
+ * </p>
+ * 
+ * @see SQLFeatureStoreTransaction#setStoredFeatureIds(StoredFeatureIds)
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public interface StoredFeatureIds {
+
+    /**
+     * Returns the id of the stored feature that had the given id in the original dataset.
+     * 
+     * @param originalId
+     *            original feature id (from the dataset), must not be <code>null</code>
+     * @return id of the stored feature, <code>null</code> if no such feature has been stored
+     * @throws FeatureStoreException
+     */
+    String getStoredId( String originalId )
+                            throws FeatureStoreException;
+
+    /**
+     * Records that the feature with the given original id has been stored with the given id.
+     * 
+     * @param originalId
+     *            original feature id (from the dataset), must not be <code>null</code>
+     * @param storedId
+     *            id of the stored feature, must not be <code>null</code>
+     * @throws FeatureStoreException
+     */
+    void addStoredId( String originalId, String storedId )
+                            throws FeatureStoreException;
+}
@@ -0,0 +1,284 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.rowset.serial.SerialBlob;
+
+/**
+ * Provides {@link ResultSet} access to rows that have been read into memory.
+ * <p>
+ * Supports forward iteration (<code>next()</code>), the getters that take a column index (<code>getObject(int)</code>,
+ * <code>getString(int)</code>, <code>getBytes(int)</code>, <code>getInt(int)</code>, <code>getTimestamp(int)</code>
+ * etc.), <code>wasNull()</code>, <code>close()</code>, <code>isClosed()</code> and <code>getStatement()</code>
+ * (always <code>null</code>). Getters convert the buffered value to the requested type like JDBC drivers do for
+ * compatible types. Column labels, metadata, cursor positioning and updates are not available, invoking these methods
+ * results in an {@link SQLException}.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class BufferedResultSet implements InvocationHandler {
+
+    private final List<Object[]> rows;
+
+    private int current;
+
+    private Object lastValue;
+
+    private boolean closed;
+
+    private BufferedResultSet( List<Object[]> rows, int current ) {
+        this.rows = rows;
+        this.current = current;
+    }
+
+    /**
+     * Creates a {@link ResultSet} that is positioned before the first of the given rows.
+     * 
+     * @param rows
+     *            rows (column values, in select order), must not be <code>null</code>
+     * @return result set, never <code>null</code>
+     */
+    static ResultSet create( List<Object[]> rows ) {
+        return create( rows, -1 );
+    }
+
+    /**
+     * Creates a {@link ResultSet} that is positioned on the given row (as if <code>next()</code> had been called).
+     * 
+     * @param row
+     *            column values, in select order, must not be <code>null</code>
+     * @return result set, never <code>null</code>
+     */
+    static ResultSet createPositioned( Object[] row ) {
+        return create( Collections.singletonList( row ), 0 );
+    }
+
+    private static ResultSet create( List<Object[]> rows, int current ) {
+        return (ResultSet) Proxy.newProxyInstance( BufferedResultSet.class.getClassLoader(),
+                                                   new Class<?>[] { ResultSet.class },
+                                                   new BufferedResultSet( rows, current ) );
+    }
+
+    /**
+     * Reads the values of the current row of the given {@link ResultSet} (BLOB values are read into byte arrays).
+     * 
+     * @param rs
+     *            result set, must be positioned on a row
+     * @param numColumns
+     *            number of columns to read
+     * @return column values, never <code>null</code>
+     * @throws SQLException
+     */
+    static Object[] readRow( ResultSet rs, int numColumns )
+                            throws SQLException {
+        Object[] row = new Object[numColumns];
+        for ( int i = 0; i < numColumns; i++ ) {
+            Object value = rs.getObject( i + 1 );
+            if ( value instanceof Blob ) {
+                // BLOB locators may not be valid anymore after the result set has been advanced
+                Blob blob = (Blob) value;
+                value = blob.getBytes( 1, (int) blob.length() );
+            }
+            row[i] = value;
+        }
+        return row;
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args )
+                            throws Throwable {
+        String name = method.getName();
+        if ( "next".equals( name ) ) {
+            if ( current + 1 < rows.size() ) {
+                current++;
+                return true;
+            }
+            current = rows.size();
+            return false;
+        }
+        if ( name.startsWith( "get" ) && args != null && args.length == 1 && args[0] instanceof Integer ) {
+            Object value = getValue( (Integer) args[0] );
+            return convert( value, method.getReturnType(), name );
+        }
+        if ( "wasNull".equals( name ) ) {
+            return lastValue == null;
+        }
+        if ( "close".equals( name ) ) {
+            closed = true;
+            return null;
+        }
+        if ( "isClosed".equals( name ) ) {
+            return closed;
+        }
+        if ( "getStatement".equals( name ) ) {
+            return null;
+        }
+        if ( "equals".equals( name ) ) {
+            return proxy == args[0];
+        }
+        if ( "hashCode".equals( name ) ) {
+            return System.identityHashCode( proxy );
+        }
+        if ( "toString".equals( name ) ) {
+            return "BufferedResultSet (" + rows.size() + " rows)";
+        }
+        throw new SQLException( "Method '" + name + "' is not supported by buffered result sets." );
+    }
+
+    private Object getValue( int columnIndex )
+                            throws SQLException {
+        if ( closed ) {
+            throw new SQLException( "Result set has been closed." );
+        }
+        if ( current < 0 || current >= rows.size() ) {
+            throw new SQLException( "Result set is not positioned on a row." );
+        }
+        Object[] row = rows.get( current );
+        if ( columnIndex < 1 || columnIndex > row.length ) {
+            throw new SQLException( "Invalid column index: " + columnIndex );
+        }
+        lastValue = row[columnIndex - 1];
+        return lastValue;
+    }
+
+    private static Object convert( Object value, Class<?> type, String getter )
+                            throws SQLException {
+        if ( type.isPrimitive() ) {
+            return convertToPrimitive( value, type, getter );
+        }
+        if ( value == null || type.isInstance( value ) ) {
+            return value;
+        }
+        if ( type == String.class ) {
+            return value.toString();
+        }
+        if ( type == BigDecimal.class && value instanceof Number ) {
+            return new BigDecimal( value.toString() );
+        }
+        if ( value instanceof java.util.Date ) {
+            long time = ( (java.util.Date) value ).getTime();
+            if ( type == Timestamp.class ) {
+                return new Timestamp( time );
+            }
+            if ( type == Date.class ) {
+                return new Date( time );
+            }
+            if ( type == Time.class ) {
+                return new Time( time );
+            }
+        }
+        if ( type == Blob.class && value instanceof byte[] ) {
+            return new SerialBlob( (byte[]) value );
+        }
+        if ( type == InputStream.class && value instanceof byte[] ) {
+            return new ByteArrayInputStream( (byte[]) value );
+        }
+        if ( type == Reader.class ) {
+            return new StringReader( value.toString() );
+        }
+        throw new SQLException( "Cannot convert value of type '" + value.getClass().getName() + "' (" + getter
+                                + "())." );
+    }
+
+    private static Object convertToPrimitive( Object value, Class<?> type, String getter )
+                            throws SQLException {
+        if ( type == Boolean.TYPE ) {
+            if ( value == null ) {
+                return false;
+            }
+            if ( value instanceof Boolean ) {
+                return value;
+            }
+            if ( value instanceof Number ) {
+                return ( (Number) value ).intValue() != 0;
+            }
+            String s = value.toString().trim();
+            return "true".equalsIgnoreCase( s ) || "1".equals( s );
+        }
+        Number number;
+        if ( value == null ) {
+            number = 0;
+        } else if ( value instanceof Number ) {
+            number = (Number) value;
+        } else {
+            try {
+                number = new BigDecimal( value.toString().trim() );
+            } catch ( NumberFormatException e ) {
+                throw new SQLException( "Cannot convert '" + value + "' to a number (" + getter + "())." );
+            }
+        }
+        if ( type == Integer.TYPE ) {
+            return number.intValue();
+        }
+        if ( type == Long.TYPE ) {
+            return number.longValue();
+        }
+        if ( type == Double.TYPE ) {
+            return number.doubleValue();
+        }
+        if ( type == Float.TYPE ) {
+            return number.floatValue();
+        }
+        if ( type == Short.TYPE ) {
+            return number.shortValue();
+        }
+        if ( type == Byte.TYPE ) {
+            return number.byteValue();
+        }
+        throw new SQLException( "Unsupported result type '" + type + "' (" + getter + "())." );
+    }
+}
@@ -44,11 +44,15 @@ import static org.jaxen.saxpath.Axis.CHILD;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -75,6 +79,7 @@ import org.deegree.commons.tom.gml.property.PropertyType;
 import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.commons.utils.Pair;
 import org.deegree.commons.xml.CommonNamespaces;
 import org.deegree.commons.xml.NamespaceBindings;
@@ -127,6 +132,9 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
     private static final Logger LOG = LoggerFactory.getLogger( FeatureBuilderRelational.class );
 
+    // maximum number of join keys per subsequent SELECT in batched mode (Oracle allows 1000 IN list entries)
+    private static final int MAX_KEYS_PER_SELECT = 1000;
+
     private final SQLFeatureStore fs;
 
     private final FeatureType ft;
@@ -145,6 +153,21 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
     private final boolean nullEscalation;
 
+    private Boolean hasJoinedTables;
+
+    // only set while building a batch of features (see #buildFeatures(ResultSet,int))
+    private Map<Mapping, PrefetchedJoin> prefetchedJoins;
+
+    private int subsequentSelects;
+
+    // map resolution for simplifying geometries, -1: no simplification
+    private final double resolution;
+
+    private final ICRS resolutionCrs;
+
+    // select snippets of simplified geometries -> tolerance to bind, built on demand
+    private Map<String, Double> simplifiedColumns;
+
     /**
      * Creates a new {@link FeatureBuilderRelational} instance.
      * 
@@ -161,12 +184,41 @@ public class FeatureBuilderRelational implements FeatureBuilder {
      */
     public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
                                      String ftTableAlias, boolean nullEscalation ) {
+        this( fs, ft, ftMapping, conn, ftTableAlias, nullEscalation, -1, null );
+    }
+
+    /**
+     * Creates a new {@link FeatureBuilderRelational} instance that selects geometries suitable for rendering at the
+     * given resolution (see {@link SQLFeatureStore#getGeometrySelectSnippet(GeometryMapping, String, double, ICRS)}).
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param ft
+     *            feature type, must not be <code>null</code>
+     * @param ftMapping
+     *            feature type mapping, must not be <code>null</code>
+     * @param conn
+     *            JDBC connection (used for performing subsequent SELECTs), must not be <code>null</code>
+     * @param ftTableAlias
+     *            alias of the feature type table, must not be <code>null</code>
+     * @param nullEscalation
+     *            true, if void particles are escalated to the parent particle
+     * @param resolution
+     *            map resolution (units per pixel), -1 for full resolution geometries
+     * @param resolutionCrs
+     *            CRS that the resolution refers to, can be <code>null</code>
+     */
+    public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
+                                     String ftTableAlias, boolean nullEscalation, double resolution,
+                                     ICRS resolutionCrs ) {
         this.fs = fs;
         this.ft = ft;
         this.ftMapping = ftMapping;
         this.conn = conn;
         this.tableAlias = ftTableAlias;
         this.nullEscalation = nullEscalation;
+        this.resolution = resolution;
+        this.resolutionCrs = resolutionCrs;
         this.nsBindings = new NamespaceBindings();
         for ( String prefix : fs.getNamespaceContext().keySet() ) {
             String ns = fs.getNamespaceContext().get( prefix );
@@ -191,6 +243,20 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         return new ArrayList<String>( qualifiedSqlExprToRsIdx.keySet() );
     }
 
+    /**
+     * Initializes the builder with a select list that has been determined by {@link #getInitialSelectList()} of a
+     * builder for the same feature type, table alias and resolution (instead of determining it again).
+     * 
+     * @param columns
+     *            initial select list, must not be <code>null</code>
+     */
+    public void setInitialSelectList( List<String> columns ) {
+        qualifiedSqlExprToRsIdx.clear();
+        for ( String column : columns ) {
+            addColumn( qualifiedSqlExprToRsIdx, column );
+        }
+    }
+
     private void addColumn( LinkedHashMap<String, Integer> colToRsIdx, String column ) {
         if ( !colToRsIdx.containsKey( column ) ) {
             colToRsIdx.put( column, colToRsIdx.size() + 1 );
@@ -228,7 +294,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 }
             } else if ( mapping instanceof GeometryMapping ) {
                 if ( particleConverter != null ) {
-                    addColumn( colToRsIdx, particleConverter.getSelectSnippet( tableAlias ) );
+                    addColumn( colToRsIdx, getGeometrySelectSnippet( (GeometryMapping) mapping ) );
                 } else {
                     LOG.info( "Omitting mapping '" + mapping + "' from SELECT list. Not mapped to column.'" );
                 }
@@ -251,19 +317,101 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         }
     }
 
+    /**
+     * Builds the {@link Feature} instances for the next rows of the given {@link ResultSet} (batched mode).
+     * <p>
+     * Reads up to <code>maxFeatures</code> rows ahead and retrieves the rows of the joined tables for all of these
+     * features at once (one SELECT per join using the collected join keys), instead of performing one SELECT per
+     * feature and join.
+     * </p>
+     * 
+     * @param rs
+     *            SQL result set, must not be <code>null</code>, <code>next()</code> is invoked by this method
+     * @param maxFeatures
+     *            maximum number of rows to read from the result set
+     * @return created {@link Feature} instances, never <code>null</code>, contains less than <code>maxFeatures</code>
+     *         features if the end of the result set has been reached
+     * @throws SQLException
+     */
+    public List<Feature> buildFeatures( ResultSet rs, int maxFeatures )
+                            throws SQLException {
+        List<Feature> features = new ArrayList<Feature>();
+        if ( !hasJoinedTables() ) {
+            while ( features.size() < maxFeatures && rs.next() ) {
+                features.add( buildFeature( rs ) );
+            }
+            return features;
+        }
+
+        int numColumns = qualifiedSqlExprToRsIdx.size();
+        List<ResultSet> rows = new ArrayList<ResultSet>();
+        // features that are already cached (pinned, so cache evictions during the batch don't matter)
+        List<Feature> cachedFeatures = new ArrayList<Feature>();
+        List<ResultSet> rowsToBuild = new ArrayList<ResultSet>();
+        while ( rows.size() < maxFeatures && rs.next() ) {
+            ResultSet row = BufferedResultSet.createPositioned( BufferedResultSet.readRow( rs, numColumns ) );
+            rows.add( row );
+            Feature cached = fs.getCache() != null ? (Feature) fs.getCache().get( getGmlId( row ) ) : null;
+            cachedFeatures.add( cached );
+            if ( cached == null ) {
+                rowsToBuild.add( row );
+            }
+        }
+
+        long begin = System.currentTimeMillis();
+        subsequentSelects = 0;
+        try {
+            prefetchJoins( rowsToBuild );
+            LOG.debug( "Fetching joined rows for {} features took {} subsequent SELECTs and {} [ms]",
+                       new Object[] { rowsToBuild.size(), subsequentSelects, System.currentTimeMillis() - begin } );
+            for ( int i = 0; i < rows.size(); i++ ) {
+                Feature cached = cachedFeatures.get( i );
+                features.add( cached != null ? cached : buildFeature( rows.get( i ) ) );
+            }
+        } finally {
+            prefetchedJoins = null;
+        }
+        return features;
+    }
+
+    private boolean hasJoinedTables() {
+        if ( hasJoinedTables == null ) {
+            hasJoinedTables = hasJoinedTables( ftMapping.getMappings() );
+        }
+        return hasJoinedTables;
+    }
+
+    private boolean hasJoinedTables( List<Mapping> mappings ) {
+        for ( Mapping mapping : mappings ) {
+            if ( !( mapping instanceof FeatureMapping ) && mapping.getJoinedTable() != null ) {
+                return true;
+            }
+            if ( mapping instanceof CompoundMapping && hasJoinedTables( ( (CompoundMapping) mapping ).getParticles() ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getGmlId( ResultSet rs )
+                            throws SQLException {
+        String gmlId = ftMapping.getFidMapping().getPrefix();
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = ftMapping.getFidMapping().getColumns();
+        gmlId += rs.getObject( qualifiedSqlExprToRsIdx.get( tableAlias + "." + fidColumns.get( 0 ).first ) );
+        for ( int i = 1; i < fidColumns.size(); i++ ) {
+            gmlId += ftMapping.getFidMapping().getDelimiter()
+                     + rs.getObject( qualifiedSqlExprToRsIdx.get( tableAlias + "." + fidColumns.get( i ).first ) );
+        }
+        return gmlId;
+    }
+
     @Override
     public Feature buildFeature( ResultSet rs )
                             throws SQLException {
 
         Feature feature = null;
         try {
-            String gmlId = ftMapping.getFidMapping().getPrefix();
-            List<Pair<SQLIdentifier, BaseType>> fidColumns = ftMapping.getFidMapping().getColumns();
-            gmlId += rs.getObject( qualifiedSqlExprToRsIdx.get( tableAlias + "." + fidColumns.get( 0 ).first ) );
-            for ( int i = 1; i < fidColumns.size(); i++ ) {
-                gmlId += ftMapping.getFidMapping().getDelimiter()
-                         + rs.getObject( qualifiedSqlExprToRsIdx.get( tableAlias + "." + fidColumns.get( i ).first ) );
-            }
+            String gmlId = getGmlId( rs );
             if ( fs.getCache() != null ) {
                 feature = (Feature) fs.getCache().get( gmlId );
             }
@@ -297,6 +445,70 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         return feature;
     }
 
+    private String getGeometrySelectSnippet( GeometryMapping mapping ) {
+        if ( resolution > 0 ) {
+            return fs.getGeometrySelectSnippet( mapping, tableAlias, resolution, resolutionCrs );
+        }
+        return fs.getConverter( mapping ).getSelectSnippet( tableAlias );
+    }
+
+    /**
+     * Binds the parameters of the given select columns (simplification tolerances of geometries) to the statement.
+     * 
+     * @param stmt
+     *            prepared statement, must not be <code>null</code>
+     * @param columns
+     *            select columns of the statement (in order), must not be <code>null</code>
+     * @param paramIndex
+     *            index of the first parameter to bind
+     * @return index of the next parameter
+     * @throws SQLException
+     */
+    public int setSelectArguments( PreparedStatement stmt, Collection<String> columns, int paramIndex )
+                            throws SQLException {
+        Map<String, Double> simplifiedColumns = getSimplifiedColumns();
+        if ( simplifiedColumns.isEmpty() ) {
+            return paramIndex;
+        }
+        int i = paramIndex;
+        for ( String column : columns ) {
+            Double tolerance = simplifiedColumns.get( column );
+            if ( tolerance != null ) {
+                LOG.debug( "? = '{}' (simplification tolerance)", tolerance );
+                stmt.setDouble( i++, tolerance );
+            }
+        }
+        return i;
+    }
+
+    private Map<String, Double> getSimplifiedColumns() {
+        if ( simplifiedColumns == null ) {
+            simplifiedColumns = new HashMap<String, Double>();
+            if ( resolution > 0 ) {
+                for ( Mapping mapping : ftMapping.getMappings() ) {
+                    addSimplifiedColumns( mapping );
+                }
+            }
+        }
+        return simplifiedColumns;
+    }
+
+    private void addSimplifiedColumns( Mapping mapping ) {
+        if ( mapping instanceof GeometryMapping ) {
+            GeometryMapping gm = (GeometryMapping) mapping;
+            if ( fs.getConverter( gm ) != null ) {
+                double tolerance = fs.getGeometrySimplifyTolerance( gm, resolution, resolutionCrs );
+                if ( tolerance > 0 ) {
+                    simplifiedColumns.put( getGeometrySelectSnippet( gm ), tolerance );
+                }
+            }
+        } else if ( mapping instanceof CompoundMapping ) {
+            for ( Mapping particle : ( (CompoundMapping) mapping ).getParticles() ) {
+                addSimplifiedColumns( particle );
+            }
+        }
+    }
+
     private String toIdPrefix( ValueReference propName ) {
         String s = propName.getAsText();
         s = s.replace( "/", "_" );
@@ -414,8 +626,12 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 }
             } finally {
                 if ( rs2 != null ) {
-                    rs2.getStatement().close();
+                    // NOTE: prefetched result sets (batched mode) don't have a statement
+                    Statement stmt = rs2.getStatement();
                     rs2.close();
+                    if ( stmt != null ) {
+                        stmt.close();
+                    }
                 }
             }
             return values;
@@ -446,7 +662,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             GeometryMapping pm = (GeometryMapping) mapping;
             MappingExpression me = pm.getMapping();
             if ( me instanceof DBField ) {
-                String col = converter.getSelectSnippet( tableAlias );
+                String col = getGeometrySelectSnippet( pm );
                 int colIndex = colToRsIdx.get( col );
                 particle = converter.toParticle( rs, colIndex );
                 Geometry geom = ( (Geometry) particle );
@@ -685,12 +901,26 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         return null;
     }
 
-    private Pair<ResultSet, LinkedHashMap<String, Integer>> getJoinedResultSet( TableJoin jc,
-                                                                                Mapping mapping,
-                                                                                ResultSet rs,
-                                                                                LinkedHashMap<String, Integer> colToRsIdx )
+    Pair<ResultSet, LinkedHashMap<String, Integer>> getJoinedResultSet( TableJoin jc, Mapping mapping, ResultSet rs,
+                                                                        LinkedHashMap<String, Integer> colToRsIdx )
                             throws SQLException {
 
+        if ( prefetchedJoins != null ) {
+            PrefetchedJoin join = prefetchedJoins.get( mapping );
+            if ( join != null ) {
+                List<Object[]> rows = null;
+                String key = getJoinKey( rs, jc.getFromColumns(), colToRsIdx );
+                if ( key != null ) {
+                    rows = join.keyToRows.get( key );
+                }
+                if ( rows == null ) {
+                    rows = Collections.emptyList();
+                }
+                return new Pair<ResultSet, LinkedHashMap<String, Integer>>( BufferedResultSet.create( rows ),
+                                                                            join.colToRsIdx );
+            }
+        }
+
         LinkedHashMap<String, Integer> rsToIdx = getSubsequentSelectColumns( mapping );
 
         StringBuilder sql = new StringBuilder( "SELECT " );
@@ -716,9 +946,38 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             sql.append( " = ?" );
             first = false;
         }
+        appendOrderBy( sql, jc );
+        LOG.debug( "SQL: {}", sql );
+
+        PreparedStatement stmt = null;
+        ResultSet rs2 = null;
+        try {
+            long begin = System.currentTimeMillis();
+            stmt = conn.prepareStatement( sql.toString() );
+
+            LOG.debug( "Preparing subsequent SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+            int i = setSelectArguments( stmt, rsToIdx.keySet(), 1 );
+            for ( SQLIdentifier keyColumn : jc.getFromColumns() ) {
+                Object key = rs.getObject( colToRsIdx.get( tableAlias + "." + keyColumn ) );
+                LOG.debug( "? = '{}' ({})", key, keyColumn );
+                stmt.setObject( i++, key );
+            }
+            begin = System.currentTimeMillis();
+            rs2 = stmt.executeQuery();
+            LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+        } catch ( Throwable t ) {
+            close( rs2, stmt, null, LOG );
+            String msg = "Error performing subsequent SELECT: " + t.getMessage();
+            LOG.error( msg, t );
+            throw new SQLException( msg, t );
+        }
+        return new Pair<ResultSet, LinkedHashMap<String, Integer>>( rs2, rsToIdx );
+    }
+
+    private void appendOrderBy( StringBuilder sql, TableJoin jc ) {
         if ( jc.getOrderColumns() != null && !jc.getOrderColumns().isEmpty() ) {
             sql.append( " ORDER BY " );
-            first = true;
+            boolean first = true;
             for ( SQLIdentifier orderColumn : jc.getOrderColumns() ) {
                 if ( !first ) {
                     sql.append( "," );
@@ -732,31 +991,235 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 first = false;
             }
         }
+    }
+
+    /**
+     * Retrieves the rows of all joined tables for the given rows of the feature type table, so
+     * {@link #getJoinedResultSet(TableJoin, Mapping, ResultSet, LinkedHashMap)} can assign them without performing a
+     * SELECT per row.
+     * 
+     * @param rows
+     *            rows of the feature type table (columns as returned by {@link #getInitialSelectList()}), must not be
+     *            <code>null</code>
+     * @throws SQLException
+     */
+    void prefetchJoins( List<ResultSet> rows )
+                            throws SQLException {
+        prefetchedJoins = new HashMap<Mapping, PrefetchedJoin>();
+        prefetchJoins( ftMapping.getMappings(), rows, qualifiedSqlExprToRsIdx );
+    }
+
+    private void prefetchJoins( List<Mapping> mappings, List<ResultSet> parentRows,
+                                LinkedHashMap<String, Integer> colToRsIdx )
+                            throws SQLException {
+        for ( Mapping mapping : mappings ) {
+            if ( parentRows.isEmpty() ) {
+                return;
+            }
+            if ( !( mapping instanceof FeatureMapping ) && mapping.getJoinedTable() != null ) {
+                PrefetchedJoin join = fetchJoinedRows( mapping.getJoinedTable().get( 0 ), mapping, parentRows,
+                                                       colToRsIdx );
+                prefetchedJoins.put( mapping, join );
+                if ( mapping instanceof CompoundMapping ) {
+                    prefetchJoins( ( (CompoundMapping) mapping ).getParticles(), join.rows, join.colToRsIdx );
+                }
+            } else if ( mapping instanceof CompoundMapping ) {
+                prefetchJoins( ( (CompoundMapping) mapping ).getParticles(), parentRows, colToRsIdx );
+            }
+        }
+    }
+
+    private PrefetchedJoin fetchJoinedRows( TableJoin jc, Mapping mapping, List<ResultSet> parentRows,
+                                            LinkedHashMap<String, Integer> colToRsIdx )
+                            throws SQLException {
+
+        // key columns are needed to assign the joined rows to the parent rows
+        LinkedHashMap<String, Integer> rsToIdx = getSubsequentSelectColumns( mapping );
+        for ( SQLIdentifier keyColumn : jc.getToColumns() ) {
+            addColumn( rsToIdx, tableAlias + "." + keyColumn );
+        }
+        PrefetchedJoin join = new PrefetchedJoin( rsToIdx );
+
+        LinkedHashMap<String, Object[]> keys = new LinkedHashMap<String, Object[]>();
+        for ( ResultSet parentRow : parentRows ) {
+            Object[] key = new Object[jc.getFromColumns().size()];
+            int i = 0;
+            for ( SQLIdentifier keyColumn : jc.getFromColumns() ) {
+                key[i++] = parentRow.getObject( colToRsIdx.get( tableAlias + "." + keyColumn ) );
+            }
+            String keyString = toKeyString( key );
+            if ( keyString != null ) {
+                keys.put( keyString, key );
+            }
+        }
+
+        List<Object[]> keyValues = new ArrayList<Object[]>( keys.values() );
+        for ( int start = 0; start < keyValues.size(); start += MAX_KEYS_PER_SELECT ) {
+            int end = Math.min( start + MAX_KEYS_PER_SELECT, keyValues.size() );
+            fetchJoinedRows( jc, keyValues.subList( start, end ), join );
+        }
+        return join;
+    }
+
+    private void fetchJoinedRows( TableJoin jc, List<Object[]> keys, PrefetchedJoin join )
+                            throws SQLException {
+
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        boolean first = true;
+        for ( String column : join.colToRsIdx.keySet() ) {
+            if ( !first ) {
+                sql.append( ',' );
+            }
+            sql.append( column );
+            first = false;
+        }
+        sql.append( " FROM " );
+        sql.append( jc.getToTable() );
+        sql.append( ' ' );
+        sql.append( tableAlias );
+        sql.append( " WHERE " );
+        List<SQLIdentifier> keyColumns = jc.getToColumns();
+        if ( keyColumns.size() == 1 ) {
+            sql.append( keyColumns.get( 0 ) );
+            sql.append( " IN (" );
+            for ( int i = 0; i < keys.size(); i++ ) {
+                sql.append( i == 0 ? "?" : ",?" );
+            }
+            sql.append( ')' );
+        } else {
+            for ( int i = 0; i < keys.size(); i++ ) {
+                sql.append( i == 0 ? "(" : " OR (" );
+                for ( int j = 0; j < keyColumns.size(); j++ ) {
+                    if ( j > 0 ) {
+                        sql.append( " AND " );
+                    }
+                    sql.append( keyColumns.get( j ) );
+                    sql.append( " = ?" );
+                }
+                sql.append( ')' );
+            }
+        }
+        appendOrderBy( sql, jc );
         LOG.debug( "SQL: {}", sql );
 
+        int[] keyIdx = new int[keyColumns.size()];
+        for ( int i = 0; i < keyIdx.length; i++ ) {
+            keyIdx[i] = join.colToRsIdx.get( tableAlias + "." + keyColumns.get( i ) ) - 1;
+        }
+
         PreparedStatement stmt = null;
-        ResultSet rs2 = null;
+        ResultSet rs = null;
         try {
             long begin = System.currentTimeMillis();
             stmt = conn.prepareStatement( sql.toString() );
-
-            LOG.debug( "Preparing subsequent SELECT took {} [ms] ", System.currentTimeMillis() - begin );
-            int i = 1;
-            for ( SQLIdentifier keyColumn : jc.getFromColumns() ) {
-                Object key = rs.getObject( colToRsIdx.get( tableAlias + "." + keyColumn ) );
-                LOG.debug( "? = '{}' ({})", key, keyColumn );
-                stmt.setObject( i++, key );
+            int i = setSelectArguments( stmt, join.colToRsIdx.keySet(), 1 );
+            for ( Object[] key : keys ) {
+                for ( Object value : key ) {
+                    stmt.setObject( i++, value );
+                }
             }
-            begin = System.currentTimeMillis();
-            rs2 = stmt.executeQuery();
-            LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+            rs = stmt.executeQuery();
+            subsequentSelects++;
+            int numColumns = join.colToRsIdx.size();
+            Object[] key = new Object[keyIdx.length];
+            while ( rs.next() ) {
+                Object[] row = BufferedResultSet.readRow( rs, numColumns );
+                for ( int j = 0; j < keyIdx.length; j++ ) {
+                    key[j] = row[keyIdx[j]];
+                }
+                join.add( toKeyString( key ), row );
+            }
+            LOG.debug( "Executing batched subsequent SELECT ({} keys) took {} [ms] ", keys.size(),
+                       System.currentTimeMillis() - begin );
         } catch ( Throwable t ) {
-            close( rs2, stmt, null, LOG );
-            String msg = "Error performing subsequent SELECT: " + t.getMessage();
+            String msg = "Error performing batched subsequent SELECT: " + t.getMessage();
             LOG.error( msg, t );
             throw new SQLException( msg, t );
+        } finally {
+            close( rs, stmt, null, LOG );
+        }
+    }
+
+    private String getJoinKey( ResultSet rs, List<SQLIdentifier> keyColumns, LinkedHashMap<String, Integer> colToRsIdx )
+                            throws SQLException {
+        Object[] key = new Object[keyColumns.size()];
+        int i = 0;
+        for ( SQLIdentifier keyColumn : keyColumns ) {
+            key[i++] = rs.getObject( colToRsIdx.get( tableAlias + "." + keyColumn ) );
+        }
+        return toKeyString( key );
+    }
+
+    /**
+     * Normalizes join key values, so keys from columns with different (but compatible) SQL types match, e.g.
+     * <code>INTEGER</code> and <code>NUMERIC(10,2)</code>.
+     * 
+     * @return key string, or <code>null</code> if any of the values is <code>null</code> (never matches in SQL)
+     */
+    static String toKeyString( Object[] key ) {
+        StringBuilder sb = new StringBuilder();
+        for ( Object value : key ) {
+            if ( value == null ) {
+                return null;
+            }
+            if ( value instanceof Number ) {
+                sb.append( toKeyString( (Number) value ) );
+            } else {
+                sb.append( value );
+            }
+            sb.append( '\u0000' );
+        }
+        return sb.toString();
+    }
+
+    private static String toKeyString( Number value ) {
+        if ( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ) {
+            return Long.toString( value.longValue() );
+        }
+        BigDecimal decimal;
+        if ( value instanceof BigDecimal ) {
+            decimal = (BigDecimal) value;
+        } else if ( value instanceof BigInteger ) {
+            decimal = new BigDecimal( (BigInteger) value );
+        } else {
+            try {
+                decimal = new BigDecimal( value.toString() );
+            } catch ( NumberFormatException e ) {
+                // NaN or infinite
+                return value.toString();
+            }
+        }
+        if ( decimal.signum() == 0 ) {
+            // stripTrailingZeros() doesn't normalize zero before Java 8
+            return "0";
+        }
+        return decimal.stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Rows of a joined table that have been retrieved for a batch of features.
+     */
+    private static class PrefetchedJoin {
+
+        private final LinkedHashMap<String, Integer> colToRsIdx;
+
+        private final Map<String, List<Object[]>> keyToRows = new HashMap<String, List<Object[]>>();
+
+        private final List<ResultSet> rows = new ArrayList<ResultSet>();
+
+        private PrefetchedJoin( LinkedHashMap<String, Integer> colToRsIdx ) {
+            this.colToRsIdx = colToRsIdx;
+        }
+
+        private void add( String key, Object[] row ) {
+            List<Object[]> keyRows = keyToRows.get( key );
+            if ( keyRows == null ) {
+                keyRows = new ArrayList<Object[]>();
+                keyToRows.put( key, keyRows );
+            }
+            keyRows.add( row );
+            rows.add( BufferedResultSet.createPositioned( row ) );
         }
-        return new Pair<ResultSet, LinkedHashMap<String, Integer>>( rs2, rsToIdx );
     }
 
     private QName getChildElementStepAsQName( ValueReference ref ) {
@@ -46,6 +46,8 @@ import org.deegree.geometry.Geometry;
 import org.deegree.sqldialect.filter.MappingExpression;
 
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 /**
  * {@link Mapping} of {@link Geometry} particles.
@@ -63,20 +65,35 @@ public class GeometryMapping extends Mapping {
 
     private final GeometryStorageParams geometryParams;
 
+    private final NavigableMap<Double, MappingExpression> generalizations;
+
     public GeometryMapping(ValueReference path, boolean voidable, MappingExpression mapping, GeometryType type,
                            GeometryStorageParams geometryParams, List<TableJoin> tableChange, CustomConverterJAXB converter) {
+        this( path, voidable, mapping, type, geometryParams, tableChange, converter, null );
+    }
+
+    /**
+     * @param generalizations
+     *            pre-computed generalized versions of the geometry, keyed by the minimum resolution (in units of the
+     *            storage CRS per pixel) they are to be used for, can be <code>null</code>
+     */
+    public GeometryMapping(ValueReference path, boolean voidable, MappingExpression mapping, GeometryType type,
+                           GeometryStorageParams geometryParams, List<TableJoin> tableChange, CustomConverterJAXB converter,
+                           NavigableMap<Double, MappingExpression> generalizations) {
         super( path, voidable, tableChange, converter );
         this.mapping = mapping;
         this.type = type;
         this.geometryParams = geometryParams;
+        if ( generalizations != null ) {
+            this.generalizations = new TreeMap<Double, MappingExpression>( generalizations );
+        } else {
+            this.generalizations = null;
+        }
     }
 
     public GeometryMapping(ValueReference path, boolean voidable, MappingExpression mapping, GeometryType type,
                            GeometryStorageParams geometryParams, List<TableJoin> tableChange) {
-        super( path, voidable, tableChange, null );
-        this.mapping = mapping;
-        this.type = type;
-        this.geometryParams = geometryParams;
+        this( path, voidable, mapping, type, geometryParams, tableChange, null, null );
     }
 
     public MappingExpression getMapping() {
@@ -99,6 +116,16 @@ public class GeometryMapping extends Mapping {
         return geometryParams.getSrid();
     }
 
+    /**
+     * Returns the pre-computed generalized versions of the geometry.
+     * 
+     * @return generalized versions, keyed by the minimum resolution (in units of the storage CRS per pixel), may be
+     *         <code>null</code> (no generalizations)
+     */
+    public NavigableMap<Double, MappingExpression> getGeneralizations() {
+        return generalizations;
+    }
+
     @Override
     public String toString() {
         return super.toString() + ",{type=" + type + "}";
@@ -0,0 +1,135 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the LRU eviction and statistics of the {@link QueryPlanCache}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class QueryPlanCacheTest {
+
+    @Test
+    public void testGetUnknown() {
+        QueryPlanCache cache = new QueryPlanCache( 2 );
+        assertNull( cache.get( "a" ) );
+    }
+
+    @Test
+    public void testPutAndGet() {
+        QueryPlanCache cache = new QueryPlanCache( 2 );
+        QueryPlan plan = plan( "a" );
+        assertSame( plan, cache.put( "a", plan ) );
+        assertSame( plan, cache.get( "a" ) );
+    }
+
+    @Test
+    public void testPutKeepsExistingPlan() {
+        QueryPlanCache cache = new QueryPlanCache( 2 );
+        QueryPlan first = plan( "a" );
+        cache.put( "a", first );
+        assertSame( first, cache.put( "a", plan( "a" ) ) );
+        assertSame( first, cache.get( "a" ) );
+    }
+
+    @Test
+    public void testEvictsEldest() {
+        QueryPlanCache cache = new QueryPlanCache( 2 );
+        cache.put( "a", plan( "a" ) );
+        cache.put( "b", plan( "b" ) );
+        cache.put( "c", plan( "c" ) );
+        assertNull( cache.get( "a" ) );
+        assertEquals( "b", cache.get( "b" ).getSql() );
+        assertEquals( "c", cache.get( "c" ).getSql() );
+    }
+
+    @Test
+    public void testAccessRefreshesEntry() {
+        QueryPlanCache cache = new QueryPlanCache( 2 );
+        cache.put( "a", plan( "a" ) );
+        cache.put( "b", plan( "b" ) );
+        cache.get( "a" );
+        cache.put( "c", plan( "c" ) );
+        assertNull( cache.get( "b" ) );
+        assertEquals( "a", cache.get( "a" ).getSql() );
+        assertEquals( "c", cache.get( "c" ).getSql() );
+    }
+
+    @Test
+    public void testStatisticsOfEvictedPlansAreDropped() {
+        QueryPlanCache cache = new QueryPlanCache( 2 );
+        cache.put( "a", plan( "SELECT a" ) );
+        cache.put( "b", plan( "SELECT b" ) );
+        cache.put( "c", plan( "SELECT c" ) );
+
+        List<QueryPlanStatistics> stats = cache.getStatistics();
+        assertEquals( 2, stats.size() );
+        assertEquals( "SELECT b", stats.get( 0 ).getSql() );
+        assertEquals( 0, stats.get( 0 ).getExecutions() );
+        assertEquals( "SELECT c", stats.get( 1 ).getSql() );
+    }
+
+    @Test
+    public void testStatisticsOfPlan() {
+        QueryPlanCache cache = new QueryPlanCache( 2 );
+        QueryPlan plan = cache.put( "a", plan( "SELECT a" ) );
+        plan.recordPrepare( 2000000 );
+        plan.recordExecute( 3000000 );
+        plan.recordExecute( 1000000 );
+        plan.recordBuild( 5000000, 7 );
+        QueryPlanStatistics stats = cache.getStatistics().get( 0 );
+        assertEquals( "SELECT a", stats.getSql() );
+        assertEquals( 2, stats.getExecutions() );
+        assertEquals( 2.0, stats.getPrepareTime(), 0 );
+        assertEquals( 4.0, stats.getExecuteTime(), 0 );
+        assertEquals( 5.0, stats.getBuildTime(), 0 );
+        assertEquals( 7, stats.getFeatures() );
+    }
+
+    private static QueryPlan plan( String sql ) {
+        return new QueryPlan( sql, singletonList( "X1.id" ) );
+    }
+}
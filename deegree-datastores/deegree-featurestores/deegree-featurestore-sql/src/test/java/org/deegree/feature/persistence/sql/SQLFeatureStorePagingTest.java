@@ -0,0 +1,157 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.deegree.feature.persistence.sql.SQLFeatureStore.appendKeysetCondition;
+import static org.deegree.feature.persistence.sql.SQLFeatureStore.isPagingPushDownPossible;
+import static org.deegree.feature.persistence.sql.SQLFeatureStore.setKeysetArguments;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.persistence.sql.id.FIDMapping;
+import org.deegree.sqldialect.filter.AbstractWhereBuilder;
+import org.deegree.sqldialect.filter.Join;
+import org.deegree.sqldialect.filter.PropertyNameMapping;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+/**
+ * Tests the decision whether paging can be pushed down to the database and the keyset condition
+ * ({@link SQLFeatureStore}).
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SQLFeatureStorePagingTest {
+
+    private final FIDMapping fidMapping = mock( FIDMapping.class );
+
+    @Test
+    public void testPushDownWithoutJoins() {
+        AbstractWhereBuilder wb = mockWhereBuilder( new PropertyNameMapping( null, null, "name", "X1" ) );
+        assertTrue( isPagingPushDownPossible( createQuery( 10, 5 ), wb, fidMapping ) );
+    }
+
+    @Test
+    public void testNoPushDownWithoutPaging() {
+        AbstractWhereBuilder wb = mockWhereBuilder();
+        assertFalse( isPagingPushDownPossible( createQuery( 0, -1 ), wb, fidMapping ) );
+    }
+
+    @Test
+    public void testNoPushDownForMaxFeaturesOnly() {
+        // e.g. the maximum number of features of a map layer
+        Query query = new Query( new QName( "app", "Road" ), null, -1, 10000, -1 );
+        assertFalse( isPagingPushDownPossible( query, mockWhereBuilder(), fidMapping ) );
+    }
+
+    @Test
+    public void testNoPushDownWithJoins() {
+        Join join = mock( Join.class );
+        PropertyNameMapping joined = new PropertyNameMapping( null, singletonList( join ), "name", "X2" );
+        AbstractWhereBuilder wb = mockWhereBuilder( joined );
+        assertFalse( isPagingPushDownPossible( createQuery( 10, 5 ), wb, fidMapping ) );
+    }
+
+    @Test
+    public void testNoPushDownWithoutFidMapping() {
+        AbstractWhereBuilder wb = mockWhereBuilder();
+        assertFalse( isPagingPushDownPossible( createQuery( 10, 5 ), wb, null ) );
+    }
+
+    @Test
+    public void testKeysetConditionSingleColumn() {
+        StringBuilder sql = new StringBuilder();
+        appendKeysetCondition( sql, "X1", mockFidMapping( "id" ) );
+        assertEquals( "((X1.id>?))", sql.toString() );
+    }
+
+    @Test
+    public void testKeysetConditionMultipleColumns() {
+        StringBuilder sql = new StringBuilder();
+        appendKeysetCondition( sql, "X1", mockFidMapping( "a", "b", "c" ) );
+        assertEquals( "((X1.a>?) OR (X1.a=? AND X1.b>?) OR (X1.a=? AND X1.b=? AND X1.c>?))", sql.toString() );
+    }
+
+    @Test
+    public void testKeysetArguments()
+                            throws Exception {
+        PreparedStatement stmt = mock( PreparedStatement.class );
+        assertEquals( 6, setKeysetArguments( stmt, asList( (Object) "a", 5 ), 3 ) );
+        InOrder order = inOrder( stmt );
+        order.verify( stmt ).setObject( 3, "a" );
+        order.verify( stmt ).setObject( 4, "a" );
+        order.verify( stmt ).setObject( 5, 5 );
+    }
+
+    private FIDMapping mockFidMapping( String... columns ) {
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = new ArrayList<Pair<SQLIdentifier, BaseType>>();
+        for ( String column : columns ) {
+            fidColumns.add( new Pair<SQLIdentifier, BaseType>( new SQLIdentifier( column ), BaseType.STRING ) );
+        }
+        FIDMapping mapping = mock( FIDMapping.class );
+        when( mapping.getColumns() ).thenReturn( fidColumns );
+        return mapping;
+    }
+
+    private Query createQuery( int startIndex, int maxFeatures ) {
+        Query query = new Query( new QName( "app", "Road" ), null, -1, -1, -1 );
+        query.setPaging( startIndex, maxFeatures );
+        return query;
+    }
+
+    private AbstractWhereBuilder mockWhereBuilder( PropertyNameMapping... mappedPropNames ) {
+        AbstractWhereBuilder wb = mock( AbstractWhereBuilder.class );
+        when( wb.getMappedPropertyNames() ).thenReturn( asList( mappedPropNames ) );
+        return wb;
+    }
+}
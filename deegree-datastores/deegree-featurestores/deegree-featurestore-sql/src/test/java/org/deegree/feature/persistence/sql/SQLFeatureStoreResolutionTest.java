@@ -0,0 +1,144 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static org.deegree.commons.utils.MapUtils.WMTS_METERS_PER_DEGREE;
+import static org.deegree.cs.components.Unit.DEGREE;
+import static org.deegree.cs.components.Unit.FOOT;
+import static org.deegree.cs.components.Unit.METRE;
+import static org.deegree.cs.components.Unit.SECOND;
+import static org.deegree.feature.persistence.sql.SQLFeatureStore.getGeometrySelectKey;
+import static org.deegree.feature.persistence.sql.SQLFeatureStore.getStorageResolution;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.deegree.cs.components.IUnit;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.junit.Test;
+
+/**
+ * Tests the conversion of map resolutions into units of the storage CRS, which determines the simplification tolerance
+ * and the generalized geometry column, and the query plan keys of the geometry select snippets ({@link SQLFeatureStore}).
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SQLFeatureStoreResolutionTest {
+
+    private static final double DELTA = 1E-9;
+
+    @Test
+    public void testSameUnits() {
+        assertEquals( 2.5, getStorageResolution( 2.5, crs( METRE ), crs( METRE ) ), DELTA );
+    }
+
+    @Test
+    public void testUnknownCrs() {
+        assertEquals( 2.5, getStorageResolution( 2.5, null, crs( DEGREE ) ), DELTA );
+        assertEquals( 2.5, getStorageResolution( 2.5, crs( DEGREE ), null ), DELTA );
+    }
+
+    @Test
+    public void testNoResolution() {
+        assertEquals( -1, getStorageResolution( -1, crs( METRE ), crs( DEGREE ) ), DELTA );
+    }
+
+    @Test
+    public void testConvertibleUnits() {
+        assertEquals( 0.3048, getStorageResolution( 1, crs( FOOT ), crs( METRE ) ), DELTA );
+    }
+
+    @Test
+    public void testDegreesToMetres() {
+        assertEquals( 0.001 * WMTS_METERS_PER_DEGREE, getStorageResolution( 0.001, crs( DEGREE ), crs( METRE ) ),
+                      DELTA );
+    }
+
+    @Test
+    public void testMetresToDegrees() {
+        assertEquals( 100 / WMTS_METERS_PER_DEGREE, getStorageResolution( 100, crs( METRE ), crs( DEGREE ) ), DELTA );
+    }
+
+    @Test
+    public void testInconvertibleUnits() {
+        assertEquals( -1, getStorageResolution( 100, crs( SECOND ), crs( METRE ) ), DELTA );
+    }
+
+    @Test
+    public void testGeometrySelectKeyFullResolution() {
+        assertEquals( "", getGeometrySelectKey( generalized(), -1, true ) );
+        assertEquals( "", getGeometrySelectKey( null, 0, true ) );
+    }
+
+    @Test
+    public void testGeometrySelectKeyGeneralized() {
+        assertEquals( "G10.0", getGeometrySelectKey( generalized(), 10, true ) );
+        assertEquals( "G10.0", getGeometrySelectKey( generalized(), 99.9, false ) );
+        assertEquals( "G100.0", getGeometrySelectKey( generalized(), 1000, true ) );
+    }
+
+    @Test
+    public void testGeometrySelectKeySimplified() {
+        // below the smallest generalized resolution
+        assertEquals( "S", getGeometrySelectKey( generalized(), 5, true ) );
+        assertEquals( "", getGeometrySelectKey( generalized(), 5, false ) );
+        assertEquals( "S", getGeometrySelectKey( null, 5, true ) );
+    }
+
+    @Test
+    public void testGeometrySelectKeyIndependentOfResolution() {
+        // the tolerance is a statement parameter, so all these resolutions share the same plan
+        assertEquals( getGeometrySelectKey( null, 0.5, true ), getGeometrySelectKey( null, 0.50001, true ) );
+        assertEquals( getGeometrySelectKey( generalized(), 11, true ), getGeometrySelectKey( generalized(), 12.3, true ) );
+    }
+
+    private static NavigableMap<Double, Object> generalized() {
+        NavigableMap<Double, Object> generalized = new TreeMap<Double, Object>();
+        generalized.put( 10.0, "geom_10" );
+        generalized.put( 100.0, "geom_100" );
+        return generalized;
+    }
+
+    private static ICRS crs( IUnit unit ) {
+        ICRS crs = mock( ICRS.class );
+        when( crs.getUnits() ).thenReturn( new IUnit[] { unit } );
+        return crs;
+    }
+}
@@ -0,0 +1,287 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.deegree.feature.persistence.sql.insert.InsertBatches.Batch;
+import org.deegree.sqldialect.BulkLoader;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+/**
+ * Tests the bookkeeping of batched rows and the order of execution of the batches ({@link InsertBatches}).
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class InsertBatchesTest {
+
+    private InsertBatches batches;
+
+    private PreparedStatement stmtA;
+
+    private PreparedStatement stmtB;
+
+    private BulkLoader loader;
+
+    @Before
+    public void setUp() {
+        batches = new InsertBatches();
+        stmtA = mock( PreparedStatement.class );
+        stmtB = mock( PreparedStatement.class );
+        loader = mock( BulkLoader.class );
+    }
+
+    @Test
+    public void testOpenAndGet() {
+        Batch a = batches.open( "A", stmtA, null );
+        assertSame( a, batches.get( "A" ) );
+        assertSame( stmtA, a.getStatement() );
+        assertNull( a.getLoader() );
+        assertNull( batches.get( "B" ) );
+        assertEquals( 1, batches.size() );
+    }
+
+    @Test
+    public void testAddReturnsBatchSize() {
+        Batch a = batches.open( "A", stmtA, null );
+        assertEquals( 1, batches.add( a, row() ) );
+        assertEquals( 2, batches.add( a, row() ) );
+        assertEquals( 2, a.size() );
+    }
+
+    @Test
+    public void testIndexAssignedOnFirstRow() {
+        Batch a = batches.open( "A", stmtA, null );
+        Batch b = batches.open( "B", stmtB, null );
+        batches.add( b, row() );
+        batches.add( a, row() );
+        assertTrue( b.getIndex() < a.getIndex() );
+    }
+
+    @Test
+    public void testExecuteInOrderOfFirstRow()
+                            throws SQLException {
+        Batch a = batches.open( "A", stmtA, null );
+        Batch b = batches.open( "B", stmtB, null );
+        batches.add( b, row() );
+        batches.add( a, row() );
+        batches.execute();
+        InOrder order = inOrder( stmtA, stmtB );
+        order.verify( stmtB ).executeBatch();
+        order.verify( stmtA ).executeBatch();
+        assertEquals( 0, a.size() );
+        assertEquals( 0, b.size() );
+    }
+
+    @Test
+    public void testExecuteSkipsEmptyBatches()
+                            throws SQLException {
+        batches.open( "A", stmtA, null );
+        Batch b = batches.open( "B", null, loader );
+        batches.add( b, row() );
+        batches.execute();
+        verify( stmtA, never() ).executeBatch();
+        verify( loader ).execute();
+    }
+
+    @Test
+    public void testExecuteKeepsStatementsOpen()
+                            throws SQLException {
+        Batch a = batches.open( "A", stmtA, null );
+        Batch b = batches.open( "B", null, loader );
+        batches.add( a, row() );
+        batches.add( b, row() );
+        batches.execute();
+        verify( stmtA, never() ).close();
+        verify( loader, never() ).close();
+        assertSame( a, batches.get( "A" ) );
+        assertSame( b, batches.get( "B" ) );
+        assertEquals( 2, batches.size() );
+    }
+
+    @Test
+    public void testCloseReleasesStatements()
+                            throws SQLException {
+        Batch a = batches.open( "A", stmtA, null );
+        batches.open( "B", null, loader );
+        InsertRow parent = row();
+        InsertRow child = row();
+        batches.add( a, parent );
+        batches.addBatchedParent( child, parent );
+        batches.close();
+        verify( stmtA ).close();
+        verify( loader ).close();
+        assertEquals( 0, batches.size() );
+        assertNull( batches.get( "A" ) );
+        assertFalse( batches.hasBatchedParents( child ) );
+    }
+
+    @Test
+    public void testReusedBatchIsExecutedLast()
+                            throws SQLException {
+        Batch a = batches.open( "A", stmtA, null );
+        Batch b = batches.open( "B", stmtB, null );
+        batches.add( a, row() );
+        batches.add( b, row() );
+        batches.execute();
+
+        // A receives its first row after B now
+        batches.add( b, row() );
+        batches.add( a, row() );
+        assertTrue( b.getIndex() < a.getIndex() );
+        batches.execute();
+        InOrder order = inOrder( stmtA, stmtB );
+        order.verify( stmtA ).executeBatch();
+        order.verify( stmtB ).executeBatch();
+        order.verify( stmtB ).executeBatch();
+        order.verify( stmtA ).executeBatch();
+    }
+
+    @Test
+    public void testBatchedParentOnlyRecordedIfBatched() {
+        Batch a = batches.open( "A", stmtA, null );
+        InsertRow batchedParent = row();
+        InsertRow insertedParent = row();
+        InsertRow child = row();
+        batches.add( a, batchedParent );
+
+        batches.addBatchedParent( child, insertedParent );
+        assertFalse( batches.hasBatchedParents( child ) );
+        batches.addBatchedParent( child, batchedParent );
+        assertTrue( batches.hasBatchedParents( child ) );
+        batches.removeBatchedParents( child );
+        assertFalse( batches.hasBatchedParents( child ) );
+    }
+
+    @Test
+    public void testExecuteForgetsBatchedParents()
+                            throws SQLException {
+        Batch a = batches.open( "A", stmtA, null );
+        InsertRow parent = row();
+        InsertRow child = row();
+        batches.add( a, parent );
+        batches.addBatchedParent( child, parent );
+        batches.execute();
+        assertFalse( batches.hasBatchedParents( child ) );
+        // parent has been sent, so it's not recorded as batched parent anymore
+        batches.addBatchedParent( child, parent );
+        assertFalse( batches.hasBatchedParents( child ) );
+    }
+
+    @Test
+    public void testBatchedAfterParentsWithoutParents() {
+        Batch a = batches.open( "A", stmtA, null );
+        batches.add( a, row() );
+        assertTrue( batches.isBatchedAfterParents( row(), "A" ) );
+    }
+
+    @Test
+    public void testBatchedAfterParentInEarlierBatch() {
+        Batch a = batches.open( "A", stmtA, null );
+        Batch b = batches.open( "B", stmtB, null );
+        InsertRow parent = row();
+        InsertRow child = row();
+        batches.add( a, parent );
+        batches.add( b, row() );
+        batches.addBatchedParent( child, parent );
+        assertTrue( batches.isBatchedAfterParents( child, "B" ) );
+    }
+
+    @Test
+    public void testBatchedAfterParentInSameBatch() {
+        Batch a = batches.open( "A", stmtA, null );
+        InsertRow parent = row();
+        InsertRow child = row();
+        batches.add( a, parent );
+        batches.addBatchedParent( child, parent );
+        assertTrue( batches.isBatchedAfterParents( child, "A" ) );
+    }
+
+    @Test
+    public void testNotBatchedAfterParentInLaterBatch() {
+        Batch a = batches.open( "A", stmtA, null );
+        Batch b = batches.open( "B", stmtB, null );
+        InsertRow parent = row();
+        InsertRow child = row();
+        batches.add( a, row() );
+        batches.add( b, parent );
+        batches.addBatchedParent( child, parent );
+        assertFalse( batches.isBatchedAfterParents( child, "A" ) );
+        // the check covers all batches the row may be added to (e.g. bulk loader and INSERT statement)
+        assertFalse( batches.isBatchedAfterParents( child, "C", "A" ) );
+        assertFalse( batches.isBatchedAfterParents( child, null, "A" ) );
+    }
+
+    @Test
+    public void testBatchedAfterParentsInNewOrEmptyBatch()
+                            throws SQLException {
+        Batch a = batches.open( "A", stmtA, null );
+        Batch b = batches.open( "B", stmtB, null );
+        batches.add( a, row() );
+        batches.execute();
+
+        InsertRow parent = row();
+        InsertRow child = row();
+        batches.add( b, parent );
+        batches.addBatchedParent( child, parent );
+        // A is empty, so it will receive a new index after B
+        assertTrue( batches.isBatchedAfterParents( child, "A" ) );
+        // C doesn't exist yet and will be opened after B
+        assertTrue( batches.isBatchedAfterParents( child, "C" ) );
+        batches.add( a, child );
+        assertTrue( b.getIndex() < a.getIndex() );
+    }
+
+    private static InsertRow row() {
+        return new InsertRow( null ) {
+            // no table / values needed for the bookkeeping
+        };
+    }
+}
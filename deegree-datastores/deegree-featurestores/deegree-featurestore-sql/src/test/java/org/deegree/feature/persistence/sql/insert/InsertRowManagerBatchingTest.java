@@ -0,0 +1,143 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.feature.persistence.sql.MappedAppSchema;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.id.TableDependencies;
+import org.deegree.protocol.wfs.transaction.action.IDGenMode;
+import org.deegree.sqldialect.SQLDialect;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+/**
+ * Tests the JDBC batching of rows by the {@link InsertRowManager}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class InsertRowManagerBatchingTest {
+
+    private static final String SQL_A = "INSERT INTO A(id) VALUES(?)";
+
+    private static final String SQL_B = "INSERT INTO B(id) VALUES(?)";
+
+    private SQLFeatureStore fs;
+
+    private Connection conn;
+
+    private PreparedStatement stmtA;
+
+    private PreparedStatement stmtB;
+
+    @Before
+    public void setUp()
+                            throws SQLException {
+        fs = mock( SQLFeatureStore.class );
+        MappedAppSchema schema = mock( MappedAppSchema.class );
+        when( fs.getDialect() ).thenReturn( mock( SQLDialect.class ) );
+        when( fs.getSchema() ).thenReturn( schema );
+        when( schema.getKeyDependencies() ).thenReturn( mock( TableDependencies.class ) );
+        conn = mock( Connection.class );
+        stmtA = mock( PreparedStatement.class );
+        stmtB = mock( PreparedStatement.class );
+        when( conn.prepareStatement( SQL_A ) ).thenReturn( stmtA );
+        when( conn.prepareStatement( SQL_B ) ).thenReturn( stmtB );
+    }
+
+    @Test
+    public void testRowsAreBatched()
+                            throws SQLException {
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 3 );
+        mgr.addToBatch( new TestRow( mgr, "A", 1 ) );
+        mgr.addToBatch( new TestRow( mgr, "A", 2 ) );
+        verify( conn, times( 1 ) ).prepareStatement( SQL_A );
+        verify( stmtA, times( 2 ) ).addBatch();
+        verify( stmtA, never() ).executeBatch();
+        mgr.flush();
+        verify( stmtA ).executeBatch();
+        verify( stmtA ).close();
+    }
+
+    @Test
+    public void testFullBatchSendsAllBatchesInOrder()
+                            throws SQLException {
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 2 );
+        mgr.addToBatch( new TestRow( mgr, "B", 1 ) );
+        mgr.addToBatch( new TestRow( mgr, "A", 2 ) );
+        mgr.addToBatch( new TestRow( mgr, "A", 3 ) );
+        InOrder order = inOrder( stmtA, stmtB );
+        order.verify( stmtB ).executeBatch();
+        order.verify( stmtA ).executeBatch();
+    }
+
+    @Test
+    public void testStatementsStayOpenUntilFlush()
+                            throws SQLException {
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 2 );
+        mgr.addToBatch( new TestRow( mgr, "A", 1 ) );
+        mgr.addToBatch( new TestRow( mgr, "A", 2 ) );
+        mgr.addToBatch( new TestRow( mgr, "A", 3 ) );
+        mgr.addToBatch( new TestRow( mgr, "A", 4 ) );
+        verify( stmtA, times( 2 ) ).executeBatch();
+        verify( stmtA, never() ).close();
+        verify( conn, times( 1 ) ).prepareStatement( SQL_A );
+        mgr.flush();
+        verify( stmtA ).close();
+    }
+
+    private static class TestRow extends InsertRow {
+
+        TestRow( InsertRowManager mgr, String table, int id ) {
+            super( mgr );
+            this.table = new TableName( table );
+            addPreparedArgument( "id", id );
+        }
+    }
+}
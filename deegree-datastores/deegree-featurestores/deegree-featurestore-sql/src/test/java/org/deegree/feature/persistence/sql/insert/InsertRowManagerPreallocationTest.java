@@ -0,0 +1,180 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.feature.persistence.sql.MappedAppSchema;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.id.TableDependencies;
+import org.deegree.protocol.wfs.transaction.action.IDGenMode;
+import org.deegree.sqldialect.AbstractSQLDialect;
+import org.deegree.sqldialect.SQLDialect;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the pre-allocation of key values by the {@link InsertRowManager} (bulk load mode).
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class InsertRowManagerPreallocationTest {
+
+    private static final String SEQ_SQL = "SELECT nextval('seq') FROM generate_series(1,3)";
+
+    private static final String AUTO_SQL = "SELECT nextval(pg_get_serial_sequence('a','id')) FROM generate_series(1,3)";
+
+    private static final TableName TABLE = new TableName( "a" );
+
+    private static final SQLIdentifier COLUMN = new SQLIdentifier( "id" );
+
+    private SQLFeatureStore fs;
+
+    private AbstractSQLDialect dialect;
+
+    private Connection conn;
+
+    private Statement stmt;
+
+    private ResultSet rs;
+
+    @Before
+    public void setUp()
+                            throws SQLException {
+        fs = mock( SQLFeatureStore.class );
+        MappedAppSchema schema = mock( MappedAppSchema.class );
+        dialect = mock( AbstractSQLDialect.class );
+        when( fs.getDialect() ).thenReturn( dialect );
+        when( fs.getSchema() ).thenReturn( schema );
+        when( schema.getKeyDependencies() ).thenReturn( mock( TableDependencies.class ) );
+        when( dialect.getSelectSequenceNextVals( "seq", 3 ) ).thenReturn( SEQ_SQL );
+        when( dialect.getSelectAutoColumnNextVals( TABLE, COLUMN, 3 ) ).thenReturn( AUTO_SQL );
+        conn = mock( Connection.class );
+        stmt = mock( Statement.class );
+        rs = mock( ResultSet.class );
+        when( conn.createStatement() ).thenReturn( stmt );
+        when( stmt.executeQuery( anyString() ) ).thenReturn( rs );
+    }
+
+    @Test
+    public void testSequenceValuesAreConsumedInOrder()
+                            throws Exception {
+        when( rs.next() ).thenReturn( true, true, true, false, true, false );
+        when( rs.getObject( 1 ) ).thenReturn( 5L, 6L, 7L, 8L );
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 3, true );
+        assertEquals( Long.valueOf( 5 ), mgr.getPreallocatedSequenceValue( "seq" ) );
+        assertEquals( Long.valueOf( 6 ), mgr.getPreallocatedSequenceValue( "seq" ) );
+        assertEquals( Long.valueOf( 7 ), mgr.getPreallocatedSequenceValue( "seq" ) );
+        verify( stmt, times( 1 ) ).executeQuery( SEQ_SQL );
+        assertEquals( Long.valueOf( 8 ), mgr.getPreallocatedSequenceValue( "seq" ) );
+        verify( stmt, times( 2 ) ).executeQuery( SEQ_SQL );
+        verify( rs, times( 2 ) ).close();
+        verify( stmt, times( 2 ) ).close();
+    }
+
+    @Test
+    public void testAutoColumnValues()
+                            throws Exception {
+        when( rs.next() ).thenReturn( true, false );
+        when( rs.getObject( 1 ) ).thenReturn( 42 );
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 3, true );
+        assertEquals( Integer.valueOf( 42 ), mgr.getPreallocatedAutoValue( TABLE, COLUMN ) );
+        verify( stmt ).executeQuery( AUTO_SQL );
+    }
+
+    @Test
+    public void testValuesBeyondIntegerRange()
+                            throws Exception {
+        long value = Integer.MAX_VALUE + 1L;
+        when( rs.next() ).thenReturn( true, false );
+        when( rs.getObject( 1 ) ).thenReturn( value );
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 3, true );
+        assertEquals( Long.valueOf( value ), mgr.getPreallocatedSequenceValue( "seq" ) );
+    }
+
+    @Test
+    public void testNullValuesAreNotPreallocated()
+                            throws Exception {
+        when( rs.next() ).thenReturn( true );
+        when( rs.getObject( 1 ) ).thenReturn( null );
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 3, true );
+        assertNull( mgr.getPreallocatedAutoValue( TABLE, COLUMN ) );
+        assertNull( mgr.getPreallocatedAutoValue( TABLE, COLUMN ) );
+        verify( stmt, times( 1 ) ).executeQuery( AUTO_SQL );
+    }
+
+    @Test
+    public void testEmptyResultIsNotPreallocated()
+                            throws Exception {
+        when( rs.next() ).thenReturn( false );
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 3, true );
+        assertNull( mgr.getPreallocatedSequenceValue( "seq" ) );
+        assertNull( mgr.getPreallocatedSequenceValue( "seq" ) );
+        verify( stmt, times( 1 ) ).executeQuery( SEQ_SQL );
+    }
+
+    @Test
+    public void testNoPreallocationWithoutBulkLoad()
+                            throws Exception {
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 3, false );
+        assertNull( mgr.getPreallocatedSequenceValue( "seq" ) );
+        verify( conn, never() ).createStatement();
+    }
+
+    @Test
+    public void testNoPreallocationForOtherDialects()
+                            throws Exception {
+        when( fs.getDialect() ).thenReturn( mock( SQLDialect.class ) );
+        InsertRowManager mgr = new InsertRowManager( fs, conn, IDGenMode.USE_EXISTING, 3, true );
+        assertNull( mgr.getPreallocatedSequenceValue( "seq" ) );
+        verify( conn, never() ).createStatement();
+    }
+}
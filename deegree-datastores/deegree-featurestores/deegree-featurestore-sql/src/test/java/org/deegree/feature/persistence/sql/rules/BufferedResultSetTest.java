@@ -0,0 +1,159 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link BufferedResultSet}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class BufferedResultSetTest {
+
+    @Test
+    public void testIteration()
+                            throws SQLException {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add( new Object[] { 1, "a" } );
+        rows.add( new Object[] { 2, "b" } );
+        ResultSet rs = BufferedResultSet.create( rows );
+        assertTrue( rs.next() );
+        assertEquals( 1, rs.getObject( 1 ) );
+        assertEquals( "a", rs.getString( 2 ) );
+        assertTrue( rs.next() );
+        assertEquals( 2, rs.getInt( 1 ) );
+        assertFalse( rs.next() );
+        assertFalse( rs.next() );
+    }
+
+    @Test
+    public void testPositioned()
+                            throws SQLException {
+        ResultSet rs = BufferedResultSet.createPositioned( new Object[] { "x" } );
+        assertEquals( "x", rs.getObject( 1 ) );
+        assertFalse( rs.next() );
+    }
+
+    @Test(expected = SQLException.class)
+    public void testNotPositioned()
+                            throws SQLException {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add( new Object[] { 1 } );
+        BufferedResultSet.create( rows ).getObject( 1 );
+    }
+
+    @Test
+    public void testNullValues()
+                            throws SQLException {
+        ResultSet rs = BufferedResultSet.createPositioned( new Object[] { null, 5 } );
+        assertNull( rs.getString( 1 ) );
+        assertTrue( rs.wasNull() );
+        assertEquals( 0, rs.getInt( 1 ) );
+        assertEquals( 0.0, rs.getDouble( 1 ), 0.0 );
+        assertFalse( rs.getBoolean( 1 ) );
+        assertEquals( 5L, rs.getLong( 2 ) );
+        assertFalse( rs.wasNull() );
+    }
+
+    @Test
+    public void testNumericConversions()
+                            throws SQLException {
+        ResultSet rs = BufferedResultSet.createPositioned( new Object[] { new BigDecimal( "42.5" ), "17", 1 } );
+        assertEquals( 42, rs.getInt( 1 ) );
+        assertEquals( 42.5, rs.getDouble( 1 ), 0.0 );
+        assertEquals( new BigDecimal( "42.5" ), rs.getBigDecimal( 1 ) );
+        assertEquals( 17L, rs.getLong( 2 ) );
+        assertEquals( (short) 17, rs.getShort( 2 ) );
+        assertTrue( rs.getBoolean( 3 ) );
+        assertEquals( new BigDecimal( "1" ), rs.getBigDecimal( 3 ) );
+        assertEquals( "42.5", rs.getString( 1 ) );
+    }
+
+    @Test
+    public void testBinaryAndTemporalValues()
+                            throws SQLException {
+        byte[] bytes = new byte[] { 1, 2, 3 };
+        Timestamp ts = new Timestamp( 1000000L );
+        ResultSet rs = BufferedResultSet.createPositioned( new Object[] { bytes, ts } );
+        assertArrayEquals( bytes, rs.getBytes( 1 ) );
+        assertArrayEquals( bytes, rs.getBlob( 1 ).getBytes( 1, 3 ) );
+        assertEquals( ts, rs.getTimestamp( 2 ) );
+        assertEquals( ts.getTime(), rs.getDate( 2 ).getTime() );
+    }
+
+    @Test(expected = SQLException.class)
+    public void testInvalidConversion()
+                            throws SQLException {
+        BufferedResultSet.createPositioned( new Object[] { "abc" } ).getInt( 1 );
+    }
+
+    @Test(expected = SQLException.class)
+    public void testInvalidColumnIndex()
+                            throws SQLException {
+        BufferedResultSet.createPositioned( new Object[] { "abc" } ).getObject( 2 );
+    }
+
+    @Test(expected = SQLException.class)
+    public void testUnsupportedMethod()
+                            throws SQLException {
+        BufferedResultSet.createPositioned( new Object[] { "abc" } ).getString( "col" );
+    }
+
+    @Test
+    public void testClose()
+                            throws SQLException {
+        ResultSet rs = BufferedResultSet.createPositioned( new Object[] { "abc" } );
+        assertFalse( rs.isClosed() );
+        assertNull( rs.getStatement() );
+        rs.close();
+        assertTrue( rs.isClosed() );
+    }
+}
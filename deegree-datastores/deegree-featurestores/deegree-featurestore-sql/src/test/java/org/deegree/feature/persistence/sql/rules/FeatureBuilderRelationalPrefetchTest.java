@@ -0,0 +1,215 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.deegree.feature.persistence.sql.rules.FeatureBuilderRelational.toKeyString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.persistence.sql.FeatureTypeMapping;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.expressions.TableJoin;
+import org.deegree.feature.persistence.sql.id.FIDMapping;
+import org.deegree.feature.types.FeatureType;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests the batched retrieval of joined rows ({@link FeatureBuilderRelational#prefetchJoins(List)}) and their
+ * assignment to the rows of the feature type table.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class FeatureBuilderRelationalPrefetchTest {
+
+    private final List<String> sqls = new ArrayList<String>();
+
+    private TableJoin join;
+
+    private PrimitiveMapping mapping;
+
+    private PreparedStatement stmt;
+
+    private FeatureBuilderRelational builder;
+
+    private LinkedHashMap<String, Integer> colToRsIdx;
+
+    @Before
+    public void setUp()
+                            throws SQLException {
+        join = new TableJoin( new TableName( "parent" ), new TableName( "child" ), singletonList( "id" ),
+                              singletonList( "parent_id" ), null, false, null );
+        mapping = mock( PrimitiveMapping.class );
+        when( mapping.getJoinedTable() ).thenReturn( singletonList( join ) );
+
+        ParticleConverter<?> converter = mock( ParticleConverter.class );
+        when( converter.getSelectSnippet( "X1" ) ).thenReturn( "X1.value" );
+        SQLFeatureStore fs = mock( SQLFeatureStore.class );
+        when( fs.getNamespaceContext() ).thenReturn( Collections.<String, String> emptyMap() );
+        doReturn( converter ).when( fs ).getConverter( mapping );
+
+        FIDMapping fidMapping = mock( FIDMapping.class );
+        Pair<SQLIdentifier, BaseType> fidColumn = new Pair<SQLIdentifier, BaseType>( new SQLIdentifier( "fid" ),
+                                                                                     BaseType.INTEGER );
+        when( fidMapping.getColumns() ).thenReturn( singletonList( fidColumn ) );
+        FeatureTypeMapping ftMapping = mock( FeatureTypeMapping.class );
+        when( ftMapping.getFidMapping() ).thenReturn( fidMapping );
+        when( ftMapping.getMappings() ).thenReturn( Collections.<Mapping> singletonList( mapping ) );
+
+        // joined rows: value, parent_id (NUMERIC column, so the keys don't have the type of the parent keys)
+        final List<Object[]> childRows = new ArrayList<Object[]>();
+        childRows.add( new Object[] { "a", new BigDecimal( "1" ) } );
+        childRows.add( new Object[] { "b", new BigDecimal( "1.0" ) } );
+        childRows.add( new Object[] { "c", new BigDecimal( "2.00" ) } );
+        stmt = mock( PreparedStatement.class );
+        when( stmt.executeQuery() ).thenAnswer( new Answer<ResultSet>() {
+            @Override
+            public ResultSet answer( InvocationOnMock invocation ) {
+                return BufferedResultSet.create( childRows );
+            }
+        } );
+        Connection conn = mock( Connection.class );
+        when( conn.prepareStatement( anyString() ) ).thenAnswer( new Answer<PreparedStatement>() {
+            @Override
+            public PreparedStatement answer( InvocationOnMock invocation ) {
+                sqls.add( (String) invocation.getArguments()[0] );
+                return stmt;
+            }
+        } );
+
+        builder = new FeatureBuilderRelational( fs, mock( FeatureType.class ), ftMapping, conn, "X1", false );
+        colToRsIdx = new LinkedHashMap<String, Integer>();
+        List<String> columns = builder.getInitialSelectList();
+        for ( String column : columns ) {
+            colToRsIdx.put( column, colToRsIdx.size() + 1 );
+        }
+        assertEquals( asList( "X1.fid", "X1.id" ), columns );
+    }
+
+    @Test
+    public void testPrefetchUsesSingleInList()
+                            throws SQLException {
+        List<ResultSet> parents = parentRows( 1, 2L, 3, null, 1 );
+        builder.prefetchJoins( parents );
+
+        assertEquals( 1, sqls.size() );
+        assertEquals( "SELECT X1.value,X1.parent_id FROM child X1 WHERE parent_id IN (?,?,?)", sqls.get( 0 ) );
+        // null keys never match and duplicate keys are only bound once
+        verify( stmt ).setObject( 1, 1 );
+        verify( stmt ).setObject( 2, 2L );
+        verify( stmt ).setObject( 3, 3 );
+        verify( stmt, times( 1 ) ).executeQuery();
+    }
+
+    @Test
+    public void testPrefetchedRowsAreAssignedByNormalizedKey()
+                            throws SQLException {
+        List<ResultSet> parents = parentRows( 1, 2L, 3, null );
+        builder.prefetchJoins( parents );
+
+        assertEquals( asList( "a", "b" ), getJoinedValues( parents.get( 0 ) ) );
+        assertEquals( asList( "c" ), getJoinedValues( parents.get( 1 ) ) );
+        assertTrue( getJoinedValues( parents.get( 2 ) ).isEmpty() );
+        assertTrue( getJoinedValues( parents.get( 3 ) ).isEmpty() );
+        // no SELECT per row
+        assertEquals( 1, sqls.size() );
+    }
+
+    @Test
+    public void testToKeyStringNormalizesNumbers() {
+        String expected = toKeyString( new Object[] { 42 } );
+        assertEquals( expected, toKeyString( new Object[] { 42L } ) );
+        assertEquals( expected, toKeyString( new Object[] { (short) 42 } ) );
+        assertEquals( expected, toKeyString( new Object[] { new BigDecimal( "42.000" ) } ) );
+        assertEquals( expected, toKeyString( new Object[] { new BigDecimal( "4.2E+1" ) } ) );
+        assertEquals( expected, toKeyString( new Object[] { BigInteger.valueOf( 42 ) } ) );
+        assertEquals( expected, toKeyString( new Object[] { 42.0d } ) );
+        assertEquals( toKeyString( new Object[] { 0 } ), toKeyString( new Object[] { new BigDecimal( "0.00" ) } ) );
+        assertEquals( toKeyString( new Object[] { new BigDecimal( "4.2" ) } ), toKeyString( new Object[] { 4.2d } ) );
+        assertFalse( expected.equals( toKeyString( new Object[] { "42.0" } ) ) );
+        assertFalse( toKeyString( new Object[] { 1, 23 } ).equals( toKeyString( new Object[] { 12, 3 } ) ) );
+        assertNull( toKeyString( new Object[] { 1, null } ) );
+    }
+
+    private List<ResultSet> parentRows( Object... keys ) {
+        List<ResultSet> rows = new ArrayList<ResultSet>();
+        int fid = 1;
+        for ( Object key : keys ) {
+            rows.add( BufferedResultSet.createPositioned( new Object[] { fid++, key } ) );
+        }
+        return rows;
+    }
+
+    private List<Object> getJoinedValues( ResultSet parent )
+                            throws SQLException {
+        Pair<ResultSet, LinkedHashMap<String, Integer>> joined = builder.getJoinedResultSet( join, mapping, parent,
+                                                                                             colToRsIdx );
+        List<Object> values = new ArrayList<Object>();
+        while ( joined.first.next() ) {
+            values.add( joined.first.getObject( joined.second.get( "X1.value" ) ) );
+        }
+        return values;
+    }
+}
@@ -50,12 +50,11 @@ import java.io.InputStream;
 
 import javax.imageio.ImageIO;
 
-import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
 
-import org.apache.commons.io.IOUtils;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
+import org.deegree.tile.AbstractTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
 import org.slf4j.Logger;
@@ -69,22 +68,35 @@ import org.slf4j.Logger;
  * 
  * @version $Revision: 31882 $, $Date: 2011-09-15 02:05:04 +0200 (Thu, 15 Sep 2011) $
  */
-public class CachedTile implements Tile {
+public class CachedTile extends AbstractTile {
 
     private static final Logger LOG = getLogger( CachedTile.class );
 
     private final Tile tile;
 
-    private final Cache cache;
+    private final CachingTileMatrix matrix;
 
-    private final String key;
+    private final long x, y;
 
     private byte[] data;
 
-    public CachedTile( Tile tile, Cache cache, String key ) {
+    /**
+     * Creates a new {@link CachedTile} instance.
+     * 
+     * @param tile
+     *            tile of the underlying tile store, must not be <code>null</code>
+     * @param matrix
+     *            caching tile matrix the tile belongs to, must not be <code>null</code>
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     */
+    CachedTile( Tile tile, CachingTileMatrix matrix, long x, long y ) {
         this.tile = tile;
-        this.cache = cache;
-        this.key = key;
+        this.matrix = matrix;
+        this.x = x;
+        this.y = y;
     }
 
     @Override
@@ -117,24 +129,31 @@ public class CachedTile implements Tile {
 
     private synchronized byte[] getData() {
         if ( data == null ) {
-            Element elem = cache.get( key );
-            if ( elem == null ) {
-                try {
-                    InputStream is = tile.getAsStream();
-                    if ( is == null ) {
-                        data = new byte[] {};
-                    } else {
-                        data = IOUtils.toByteArray( is );
-                    }
-                    cache.put( new Element( key, data ) );
-                } catch ( IOException e ) {
-                    LOG.trace( e.getMessage(), e );
-                    throw new TileIOException( e.getMessage(), e );
-                }
-            } else {
-                data = (byte[]) elem.getValue();
-            }
+            data = matrix.fetch( tile, x, y );
         }
         return data;
     }
+
+    /**
+     * Returns a version that is derived from the cache entry of the tile (creation time and size of the cached data).
+     * The tile is not fetched, so <code>null</code> is returned if it is not cached yet.
+     */
+    @Override
+    public String getVersion() {
+        Element elem = matrix.getCacheEntry( x, y );
+        if ( elem == null ) {
+            return null;
+        }
+        byte[] cached = (byte[]) elem.getObjectValue();
+        return Long.toHexString( elem.getCreationTime() ) + "-" + Integer.toHexString( cached.length );
+    }
+
+    /**
+     * Returns the time when the tile has been put into the cache, <code>-1</code> if it is not cached yet.
+     */
+    @Override
+    public long getLastModified() {
+        Element elem = matrix.getCacheEntry( x, y );
+        return elem == null ? -1 : elem.getCreationTime();
+    }
 }
@@ -43,7 +43,7 @@ package org.deegree.tile.persistence.cache;
 
 import java.util.List;
 
-import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
 
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
@@ -62,13 +62,31 @@ public class CachingTileMatrix implements TileDataLevel {
 
     private final TileDataLevel tileMatrix;
 
-    private final Cache cache;
+    private final TileFetcher fetcher;
+
+    private final String dataSetId;
+
+    private final String nativeFormat;
 
     private final String identifier;
 
-    public CachingTileMatrix( TileDataLevel tileMatrix, Cache cache ) {
+    /**
+     * Creates a new {@link CachingTileMatrix} instance.
+     * 
+     * @param tileMatrix
+     *            underlying tile data level, must not be <code>null</code>
+     * @param fetcher
+     *            used for fetching tiles that are not cached yet, must not be <code>null</code>
+     * @param dataSetId
+     *            identifier of the tile data set, must not be <code>null</code>
+     * @param nativeFormat
+     *            native image format of the tile data set, must not be <code>null</code>
+     */
+    CachingTileMatrix( TileDataLevel tileMatrix, TileFetcher fetcher, String dataSetId, String nativeFormat ) {
         this.tileMatrix = tileMatrix;
-        this.cache = cache;
+        this.fetcher = fetcher;
+        this.dataSetId = dataSetId;
+        this.nativeFormat = nativeFormat;
         this.identifier = tileMatrix.getMetadata().getIdentifier();
     }
 
@@ -83,8 +101,15 @@ public class CachingTileMatrix implements TileDataLevel {
         if (tile == null) {
             return null;
         }
-        String key = identifier + "_" + x + "_" + y;
-        return new CachedTile( tile, cache, key );
+        return new CachedTile( tile, this, x, y );
+    }
+
+    byte[] fetch( Tile tile, long x, long y ) {
+        return fetcher.fetch( dataSetId, tileMatrix, nativeFormat, tile, identifier, x, y );
+    }
+
+    Element getCacheEntry( long x, long y ) {
+        return fetcher.getCacheEntry( identifier, x, y );
     }
 
     @Override
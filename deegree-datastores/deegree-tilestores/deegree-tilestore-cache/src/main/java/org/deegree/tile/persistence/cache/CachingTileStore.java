@@ -81,12 +81,41 @@ public class CachingTileStore implements TileStore {
 
     private ResourceMetadata<TileStore> metadata;
 
+    private final TileFetcher fetcher;
+
     public CachingTileStore( TileStore tileStore, CacheManager cacheManager, String cacheName,
                              ResourceMetadata<TileStore> metadata ) {
+        this( tileStore, cacheManager, cacheName, metadata, 0, 1, 1 );
+    }
+
+    /**
+     * Creates a new {@link CachingTileStore} instance.
+     * 
+     * @param tileStore
+     *            tile store to cache, must not be <code>null</code>
+     * @param cacheManager
+     *            cache manager, must not be <code>null</code>
+     * @param cacheName
+     *            name of the cache to use, must not be <code>null</code>
+     * @param metadata
+     *            resource metadata, must not be <code>null</code>
+     * @param maxConcurrentFetches
+     *            maximum number of concurrent fetches from the cached tile store, zero or less for no limit
+     * @param metatileColumns
+     *            number of tile columns to fetch with a single request (if supported by the cached tile store), must
+     *            be positive
+     * @param metatileRows
+     *            number of tile rows to fetch with a single request (if supported by the cached tile store), must be
+     *            positive
+     */
+    public CachingTileStore( TileStore tileStore, CacheManager cacheManager, String cacheName,
+                             ResourceMetadata<TileStore> metadata, int maxConcurrentFetches, int metatileColumns,
+                             int metatileRows ) {
         this.tileStore = tileStore;
         this.cacheManager = cacheManager;
         this.metadata = metadata;
         this.cache = cacheManager.getCache( cacheName );
+        this.fetcher = new TileFetcher( cache, maxConcurrentFetches, metatileColumns, metatileRows );
     }
 
     @Override
@@ -97,7 +126,7 @@ public class CachingTileStore implements TileStore {
             TileDataSet cachedDataset = tileStore.getTileDataSet( id );
             List<TileDataLevel> list = new ArrayList<TileDataLevel>();
             for ( TileDataLevel tm : cachedDataset.getTileDataLevels() ) {
-                list.add( new CachingTileMatrix( tm, cache ) );
+                list.add( new CachingTileMatrix( tm, fetcher, id, cachedDataset.getNativeImageFormat() ) );
             }
             TileDataSet cachingDataset = new DefaultTileDataSet( list, cachedDataset.getTileMatrixSet(),
                                                                  cachedDataset.getNativeImageFormat() );
@@ -155,7 +184,7 @@ public class CachingTileStore implements TileStore {
                 String id = tm.getMetadata().getIdentifier();
                 for ( long x = ts[0]; x <= ts[2]; ++x ) {
                     for ( long y = ts[1]; y <= ts[3]; ++y ) {
-                        if ( cache.remove( id + "_" + x + "_" + y ) ) {
+                        if ( cache.remove( TileFetcher.getKey( id, x, y ) ) ) {
                             ++cnt;
                         }
                     }
@@ -165,9 +194,19 @@ public class CachingTileStore implements TileStore {
         return cnt;
     }
 
+    /**
+     * Returns a transaction that modifies the cache (but not the cached tile store).
+     */
     @Override
     public TileStoreTransaction acquireTransaction( String id ) {
-        throw new UnsupportedOperationException( "CachingTileStore does not support transactions." );
+        return new CachingTileStoreTransaction( id, this, cache );
+    }
+
+    /**
+     * @return the tile store whose tiles are cached, never <code>null</code>
+     */
+    public TileStore getCachedTileStore() {
+        return tileStore;
     }
 
     @Override
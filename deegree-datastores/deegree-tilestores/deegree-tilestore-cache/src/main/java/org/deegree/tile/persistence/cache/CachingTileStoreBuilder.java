@@ -71,7 +71,18 @@ public class CachingTileStoreBuilder implements ResourceBuilder<TileStore> {
             }
             CacheManager cmgr = new CacheManager( f.toURI().toURL() );
             TileStore tileStore = workspace.getResource( TileStoreProvider.class, cfg.getTileStoreId() );
-            return new CachingTileStore( tileStore, cmgr, cfg.getCacheName(), metadata );
+            int maxConcurrentFetches = 0;
+            if ( cfg.getMaxConcurrentFetches() != null ) {
+                maxConcurrentFetches = cfg.getMaxConcurrentFetches().intValue();
+            }
+            int metatileColumns = 1;
+            int metatileRows = 1;
+            if ( cfg.getMetatile() != null ) {
+                metatileColumns = cfg.getMetatile().getColumns().intValue();
+                metatileRows = cfg.getMetatile().getRows().intValue();
+            }
+            return new CachingTileStore( tileStore, cmgr, cfg.getCacheName(), metadata, maxConcurrentFetches,
+                                         metatileColumns, metatileRows );
         } catch ( CacheException e ) {
             // case needed, as NPE's inside exception can occur otherwise
             throw new ResourceInitException( "Unable to create tile store: " + e.getMessage() );
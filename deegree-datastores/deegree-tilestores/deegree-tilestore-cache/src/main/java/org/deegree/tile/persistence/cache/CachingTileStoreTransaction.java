@@ -0,0 +1,112 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.geometry.Envelope;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.persistence.AbstractTileStoreTransaction;
+
+/**
+ * {@link org.deegree.tile.persistence.TileStoreTransaction} for the {@link CachingTileStore}.
+ * <p>
+ * Putting a tile stores its encoded data in the cache, deleting removes it from the cache (the cached tile store is
+ * not modified).
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class CachingTileStoreTransaction extends AbstractTileStoreTransaction {
+
+    private final Cache cache;
+
+    /**
+     * Creates a new {@link CachingTileStoreTransaction} instance.
+     * 
+     * @param id
+     *            the id of the tile data set, must not be <code>null</code>
+     * @param store
+     *            tile store, must not be <code>null</code>
+     * @param cache
+     *            cache of the tile store, must not be <code>null</code>
+     */
+    CachingTileStoreTransaction( String id, CachingTileStore store, Cache cache ) {
+        super( store, id );
+        this.cache = cache;
+    }
+
+    @Override
+    public void put( String matrixId, Tile tile, long x, long y )
+                            throws TileIOException {
+        InputStream is = null;
+        try {
+            is = tile.getAsStream();
+            byte[] data = is == null ? new byte[] {} : IOUtils.toByteArray( is );
+            cache.put( new Element( TileFetcher.getKey( matrixId, x, y ), data ) );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error retrieving tile data: " + e.getMessage(), e );
+        } finally {
+            IOUtils.closeQuietly( is );
+        }
+    }
+
+    @Override
+    public void delete( String matrixId, long x, long y )
+                            throws TileIOException {
+        cache.remove( TileFetcher.getKey( matrixId, x, y ) );
+    }
+
+    @Override
+    public void delete( String matrixId, Envelope envelope )
+                            throws TileIOException {
+        if ( matrixId == null ) {
+            ( (CachingTileStore) store ).invalidateCache( tileMatrixSet, envelope );
+        } else {
+            super.delete( matrixId, envelope );
+        }
+    }
+
+}
@@ -0,0 +1,322 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.tile.MetatileDataLevel;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.Tiles;
+import org.slf4j.Logger;
+
+/**
+ * Fetches tiles that are missing in the cache of a {@link CachingTileStore} from the underlying tile store.
+ * <p>
+ * Concurrent misses for the same tile (or the same metatile, if metatiling is enabled) are coalesced, i.e. the tile is
+ * only fetched once and all requesting threads wait for the result. Optionally, the number of concurrent fetches from
+ * the underlying tile store is limited.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class TileFetcher {
+
+    private static final Logger LOG = getLogger( TileFetcher.class );
+
+    private final Cache cache;
+
+    private final Semaphore fetchPermits;
+
+    private final int metatileColumns;
+
+    private final int metatileRows;
+
+    private final ConcurrentMap<String, FutureTask<Map<String, byte[]>>> inFlight = new ConcurrentHashMap<String, FutureTask<Map<String, byte[]>>>();
+
+    /**
+     * @param cache
+     *            cache to store fetched tiles in, must not be <code>null</code>
+     * @param maxConcurrentFetches
+     *            maximum number of concurrent fetches from the underlying tile store, zero or less for no limit
+     * @param metatileColumns
+     *            number of tile columns to fetch at once (only used for {@link MetatileDataLevel}s), must be positive
+     * @param metatileRows
+     *            number of tile rows to fetch at once (only used for {@link MetatileDataLevel}s), must be positive
+     */
+    TileFetcher( Cache cache, int maxConcurrentFetches, int metatileColumns, int metatileRows ) {
+        this.cache = cache;
+        this.fetchPermits = maxConcurrentFetches > 0 ? new Semaphore( maxConcurrentFetches, true ) : null;
+        this.metatileColumns = metatileColumns;
+        this.metatileRows = metatileRows;
+    }
+
+    /**
+     * Returns the encoded tile, fetching it from the underlying tile store if it is not cached yet.
+     * 
+     * @param dataSetId
+     *            identifier of the tile data set, must not be <code>null</code>
+     * @param level
+     *            underlying tile data level, must not be <code>null</code>
+     * @param nativeFormat
+     *            native image format of the tile data set (mime type), must not be <code>null</code>
+     * @param tile
+     *            underlying tile, must not be <code>null</code>
+     * @param identifier
+     *            identifier of the tile matrix, must not be <code>null</code>
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @return encoded tile, never <code>null</code>
+     */
+    byte[] fetch( String dataSetId, TileDataLevel level, String nativeFormat, Tile tile, String identifier, long x,
+                  long y ) {
+        String key = getKey( identifier, x, y );
+        Element elem = cache.get( key );
+        if ( elem != null ) {
+            return (byte[]) elem.getValue();
+        }
+
+        Callable<Map<String, byte[]>> producer;
+        String flightKey;
+        if ( level instanceof MetatileDataLevel && ( metatileColumns > 1 || metatileRows > 1 ) ) {
+            TileMatrix md = level.getMetadata();
+            long minX = x - x % metatileColumns;
+            long minY = y - y % metatileRows;
+            int columns = (int) Math.min( metatileColumns, md.getNumTilesX() - minX );
+            int rows = (int) Math.min( metatileRows, md.getNumTilesY() - minY );
+            flightKey = dataSetId + "/" + getKey( identifier, minX, minY ) + "_meta";
+            producer = new MetatileProducer( (MetatileDataLevel) level, nativeFormat, identifier, minX, minY, columns,
+                                             rows );
+        } else {
+            flightKey = dataSetId + "/" + key;
+            producer = new TileProducer( tile, key );
+        }
+
+        FutureTask<Map<String, byte[]>> task = new FutureTask<Map<String, byte[]>>( producer );
+        FutureTask<Map<String, byte[]>> running = inFlight.putIfAbsent( flightKey, task );
+        if ( running == null ) {
+            try {
+                task.run();
+            } finally {
+                inFlight.remove( flightKey, task );
+            }
+            running = task;
+        } else {
+            LOG.debug( "Waiting for tile '{}' that is already being fetched.", key );
+        }
+
+        byte[] data;
+        try {
+            data = running.get().get( key );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new TileIOException( "Interrupted while waiting for tile '" + key + "'." );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            throw new TileIOException( cause.getMessage(), cause );
+        }
+        if ( data == null ) {
+            throw new TileIOException( "Tile '" + key + "' was not produced by the underlying tile store." );
+        }
+        return data;
+    }
+
+    /**
+     * Returns the cache entry of the given tile without fetching the tile or updating the cache statistics.
+     * 
+     * @param identifier
+     *            identifier of the tile matrix, must not be <code>null</code>
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @return cache entry, <code>null</code> if the tile is not cached
+     */
+    Element getCacheEntry( String identifier, long x, long y ) {
+        return cache.getQuiet( getKey( identifier, x, y ) );
+    }
+
+    private void acquirePermit()
+                            throws InterruptedException {
+        if ( fetchPermits != null ) {
+            fetchPermits.acquire();
+        }
+    }
+
+    private void releasePermit() {
+        if ( fetchPermits != null ) {
+            fetchPermits.release();
+        }
+    }
+
+    /**
+     * Fetches a single tile.
+     */
+    private class TileProducer implements Callable<Map<String, byte[]>> {
+
+        private final Tile tile;
+
+        private final String key;
+
+        TileProducer( Tile tile, String key ) {
+            this.tile = tile;
+            this.key = key;
+        }
+
+        @Override
+        public Map<String, byte[]> call()
+                                throws Exception {
+            // may have been put into the cache by a fetch that completed in the meantime
+            Element elem = cache.get( key );
+            if ( elem != null ) {
+                return Collections.singletonMap( key, (byte[]) elem.getValue() );
+            }
+            byte[] data;
+            acquirePermit();
+            try {
+                InputStream is = tile.getAsStream();
+                if ( is == null ) {
+                    data = new byte[] {};
+                } else {
+                    try {
+                        data = IOUtils.toByteArray( is );
+                    } finally {
+                        IOUtils.closeQuietly( is );
+                    }
+                }
+            } finally {
+                releasePermit();
+            }
+            cache.put( new Element( key, data ) );
+            return Collections.singletonMap( key, data );
+        }
+    }
+
+    /**
+     * Fetches a block of tiles with a single request, slices it and puts all tiles into the cache.
+     */
+    private class MetatileProducer implements Callable<Map<String, byte[]>> {
+
+        private final MetatileDataLevel level;
+
+        private final String nativeFormat;
+
+        private final String identifier;
+
+        private final long minX, minY;
+
+        private final int columns, rows;
+
+        MetatileProducer( MetatileDataLevel level, String nativeFormat, String identifier, long minX, long minY,
+                          int columns, int rows ) {
+            this.level = level;
+            this.nativeFormat = nativeFormat;
+            this.identifier = identifier;
+            this.minX = minX;
+            this.minY = minY;
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        @Override
+        public Map<String, byte[]> call()
+                                throws Exception {
+            Tile metatile = level.getMetatile( minX, minY, columns, rows );
+            if ( metatile == null ) {
+                return Collections.emptyMap();
+            }
+            BufferedImage img;
+            acquirePermit();
+            try {
+                img = metatile.getAsImage();
+            } finally {
+                releasePermit();
+            }
+            if ( img == null ) {
+                throw new TileIOException( "Metatile at " + minX + "/" + minY + " could not be decoded." );
+            }
+            TileMatrix md = level.getMetadata();
+            int tileWidth = (int) md.getTilePixelsX();
+            int tileHeight = (int) md.getTilePixelsY();
+            Map<String, byte[]> tiles = new HashMap<String, byte[]>();
+            for ( int i = 0; i < columns; ++i ) {
+                for ( int j = 0; j < rows; ++j ) {
+                    BufferedImage tileImg = img.getSubimage( i * tileWidth, j * tileHeight, tileWidth, tileHeight );
+                    byte[] data = Tiles.encode( tileImg, nativeFormat );
+                    String key = getKey( identifier, minX + i, minY + j );
+                    cache.put( new Element( key, data ) );
+                    tiles.put( key, data );
+                }
+            }
+            LOG.debug( "Cached {} tiles from metatile at {}/{}.", new Object[] { tiles.size(), minX, minY } );
+            return tiles;
+        }
+    }
+
+    /**
+     * Returns the cache key of a tile.
+     */
+    static String getKey( String identifier, long x, long y ) {
+        return identifier + "_" + x + "_" + y;
+    }
+
+}
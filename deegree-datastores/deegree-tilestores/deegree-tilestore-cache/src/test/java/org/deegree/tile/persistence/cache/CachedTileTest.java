@@ -0,0 +1,101 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileMatrix;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the validators (version and last modification time) of {@link CachedTile}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CachedTileTest {
+
+    private Cache cache;
+
+    private Tile tile;
+
+    private CachedTile cachedTile;
+
+    @Before
+    public void setUp() {
+        cache = mock( Cache.class );
+        tile = mock( Tile.class );
+        TileMatrix md = mock( TileMatrix.class );
+        when( md.getIdentifier() ).thenReturn( "level0" );
+        TileDataLevel level = mock( TileDataLevel.class );
+        when( level.getMetadata() ).thenReturn( md );
+        CachingTileMatrix matrix = new CachingTileMatrix( level, new TileFetcher( cache, 0, 1, 1 ), "dataset",
+                                                          "image/png" );
+        cachedTile = new CachedTile( tile, matrix, 2, 3 );
+    }
+
+    @Test
+    public void testNoValidatorsIfNotCached() {
+        assertNull( cachedTile.getVersion() );
+        assertEquals( -1, cachedTile.getLastModified() );
+        // must not fetch or render the tile just to compute the validators
+        verify( tile, never() ).getAsStream();
+        verify( cache, never() ).put( any( Element.class ) );
+    }
+
+    @Test
+    public void testValidatorsFromCacheEntry() {
+        Element elem = new Element( TileFetcher.getKey( "level0", 2, 3 ), new byte[] { 1, 2, 3 }, 1L, 1000L, 1000L,
+                                    1000L, 0L );
+        when( cache.getQuiet( (Object) TileFetcher.getKey( "level0", 2, 3 ) ) ).thenReturn( elem );
+        assertEquals( Long.toHexString( 1000L ) + "-3", cachedTile.getVersion() );
+        assertEquals( cachedTile.getVersion(), cachedTile.getVersion() );
+        assertEquals( 1000L, cachedTile.getLastModified() );
+        verify( tile, never() ).getAsStream();
+    }
+}
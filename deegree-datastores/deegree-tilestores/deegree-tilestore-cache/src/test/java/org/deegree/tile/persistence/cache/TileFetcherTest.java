@@ -0,0 +1,337 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+
+import org.deegree.tile.MetatileDataLevel;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileMatrix;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests the coalescing of concurrent misses, the slicing of metatiles and the fetch limit of {@link TileFetcher}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TileFetcherTest {
+
+    private static final String FORMAT = "image/png";
+
+    private static final int TILE_SIZE = 4;
+
+    private FakeLevel level;
+
+    private FakeCache cache;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        level = new FakeLevel( 5, 3 );
+        cache = new FakeCache();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        level.gate.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentMissesAreCoalesced()
+                            throws Exception {
+        // without storing, only the coalescing prevents fetching the tile more than once
+        cache.storing = false;
+        final TileFetcher fetcher = new TileFetcher( cache.cache, 0, 1, 1 );
+        final Tile tile = level.getTile( 1, 2 );
+        List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+        final CountDownLatch requested = new CountDownLatch( 8 );
+        for ( int i = 0; i < 8; ++i ) {
+            results.add( executor.submit( new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    requested.countDown();
+                    return fetcher.fetch( "ds", level, FORMAT, tile, "level0", 1, 2 );
+                }
+            } ) );
+        }
+        assertTrue( level.started.await( 10, SECONDS ) );
+        assertTrue( requested.await( 10, SECONDS ) );
+        // give the other threads time to run into the fetch in progress
+        Thread.sleep( 200 );
+        level.gate.countDown();
+        for ( Future<byte[]> result : results ) {
+            assertArrayEquals( FakeLevel.encode( 1, 2 ), result.get( 10, SECONDS ) );
+        }
+        assertEquals( 1, level.tileFetches.get() );
+
+        // the fetch is not in flight anymore, so the next miss fetches again
+        fetcher.fetch( "ds", level, FORMAT, tile, "level0", 1, 2 );
+        assertEquals( 2, level.tileFetches.get() );
+    }
+
+    @Test
+    public void testMetatileSlicing()
+                            throws Exception {
+        level.gate.countDown();
+        TileFetcher fetcher = new TileFetcher( cache.cache, 0, 2, 2 );
+        byte[] data = fetcher.fetch( "ds", level, FORMAT, level.getTile( 3, 1 ), "level0", 3, 1 );
+        assertEquals( Collections.singletonList( "2,0,2,2" ), level.metatiles );
+        assertEquals( 4, cache.elements.size() );
+        assertEquals( color( 3, 1 ), decode( data ).getRGB( 0, 0 ) );
+        for ( int x = 2; x <= 3; ++x ) {
+            for ( int y = 0; y <= 1; ++y ) {
+                BufferedImage img = decode( getCached( x, y ) );
+                assertEquals( TILE_SIZE, img.getWidth() );
+                assertEquals( TILE_SIZE, img.getHeight() );
+                assertEquals( color( x, y ), img.getRGB( 0, 0 ) );
+                assertEquals( color( x, y ), img.getRGB( TILE_SIZE - 1, TILE_SIZE - 1 ) );
+            }
+        }
+
+        // other tiles of the same metatile come from the cache
+        fetcher.fetch( "ds", level, FORMAT, level.getTile( 2, 1 ), "level0", 2, 1 );
+        assertEquals( 1, level.metatiles.size() );
+        assertEquals( 0, level.tileFetches.get() );
+    }
+
+    @Test
+    public void testPartialMetatilesAtMatrixEdges()
+                            throws Exception {
+        level.gate.countDown();
+        TileFetcher fetcher = new TileFetcher( cache.cache, 0, 2, 2 );
+        // matrix has 5 columns and 3 rows
+        byte[] corner = fetcher.fetch( "ds", level, FORMAT, level.getTile( 4, 2 ), "level0", 4, 2 );
+        byte[] right = fetcher.fetch( "ds", level, FORMAT, level.getTile( 4, 1 ), "level0", 4, 1 );
+        byte[] bottom = fetcher.fetch( "ds", level, FORMAT, level.getTile( 1, 2 ), "level0", 1, 2 );
+        assertEquals( asList( "4,2,1,1", "4,0,1,2", "0,2,2,1" ), level.metatiles );
+        assertEquals( color( 4, 2 ), decode( corner ).getRGB( 0, 0 ) );
+        assertEquals( color( 4, 1 ), decode( right ).getRGB( 0, 0 ) );
+        assertEquals( color( 1, 2 ), decode( bottom ).getRGB( 0, 0 ) );
+        assertEquals( color( 0, 2 ), decode( getCached( 0, 2 ) ).getRGB( 0, 0 ) );
+        assertEquals( color( 4, 0 ), decode( getCached( 4, 0 ) ).getRGB( 0, 0 ) );
+        assertEquals( 1 + 2 + 2, cache.elements.size() );
+    }
+
+    @Test
+    public void testMaxConcurrentFetches()
+                            throws Exception {
+        final TileFetcher fetcher = new TileFetcher( cache.cache, 2, 1, 1 );
+        List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+        for ( int i = 0; i < 5; ++i ) {
+            final int x = i;
+            results.add( executor.submit( new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    return fetcher.fetch( "ds", level, FORMAT, level.getTile( x, 0 ), "level0", x, 0 );
+                }
+            } ) );
+        }
+        assertTrue( level.started.await( 10, SECONDS ) );
+        // give the other threads time to (not) start fetching
+        Thread.sleep( 200 );
+        assertEquals( 2, level.active.get() );
+        level.gate.countDown();
+        for ( int i = 0; i < 5; ++i ) {
+            assertArrayEquals( FakeLevel.encode( i, 0 ), results.get( i ).get( 10, SECONDS ) );
+        }
+        assertEquals( 5, level.tileFetches.get() );
+        assertEquals( 2, level.maxActive.get() );
+        assertEquals( 0, level.active.get() );
+    }
+
+    private byte[] getCached( long x, long y ) {
+        return (byte[]) cache.elements.get( TileFetcher.getKey( "level0", x, y ) ).getObjectValue();
+    }
+
+    private static BufferedImage decode( byte[] data )
+                            throws Exception {
+        return ImageIO.read( new ByteArrayInputStream( data ) );
+    }
+
+    private static int color( long x, long y ) {
+        return 0xff000000 | (int) ( x * 40 ) << 16 | (int) ( y * 40 ) << 8;
+    }
+
+    /**
+     * Cache backed by a map, the mocked {@link Cache} can't be instantiated without a cache manager.
+     */
+    private static class FakeCache {
+
+        final Map<Object, Element> elements = new ConcurrentHashMap<Object, Element>();
+
+        final Cache cache = mock( Cache.class );
+
+        volatile boolean storing = true;
+
+        FakeCache() {
+            when( cache.get( any( Serializable.class ) ) ).thenAnswer( new Answer<Element>() {
+                @Override
+                public Element answer( InvocationOnMock invocation ) {
+                    return elements.get( invocation.getArguments()[0] );
+                }
+            } );
+            doAnswer( new Answer<Void>() {
+                @Override
+                public Void answer( InvocationOnMock invocation ) {
+                    if ( storing ) {
+                        Element elem = (Element) invocation.getArguments()[0];
+                        elements.put( elem.getObjectKey(), elem );
+                    }
+                    return null;
+                }
+            } ).when( cache ).put( any( Element.class ) );
+        }
+    }
+
+    /**
+     * Tile data level that counts fetches. Fetches of single tiles block until the gate is opened.
+     */
+    private static class FakeLevel implements MetatileDataLevel {
+
+        final CountDownLatch gate = new CountDownLatch( 1 );
+
+        // counted down by the first tile fetch
+        final CountDownLatch started = new CountDownLatch( 1 );
+
+        final AtomicInteger tileFetches = new AtomicInteger();
+
+        final AtomicInteger active = new AtomicInteger();
+
+        final AtomicInteger maxActive = new AtomicInteger();
+
+        final List<String> metatiles = Collections.synchronizedList( new ArrayList<String>() );
+
+        private final TileMatrix md = mock( TileMatrix.class );
+
+        FakeLevel( long numTilesX, long numTilesY ) {
+            when( md.getIdentifier() ).thenReturn( "level0" );
+            when( md.getNumTilesX() ).thenReturn( numTilesX );
+            when( md.getNumTilesY() ).thenReturn( numTilesY );
+            when( md.getTilePixelsX() ).thenReturn( (long) TILE_SIZE );
+            when( md.getTilePixelsY() ).thenReturn( (long) TILE_SIZE );
+        }
+
+        @Override
+        public TileMatrix getMetadata() {
+            return md;
+        }
+
+        @Override
+        public Tile getTile( final long x, final long y ) {
+            Tile tile = mock( Tile.class );
+            when( tile.getAsStream() ).thenAnswer( new Answer<InputStream>() {
+                @Override
+                public InputStream answer( InvocationOnMock invocation )
+                                        throws Exception {
+                    tileFetches.incrementAndGet();
+                    int current = active.incrementAndGet();
+                    try {
+                        synchronized ( maxActive ) {
+                            maxActive.set( Math.max( maxActive.get(), current ) );
+                        }
+                        started.countDown();
+                        gate.await();
+                        return new ByteArrayInputStream( encode( x, y ) );
+                    } finally {
+                        active.decrementAndGet();
+                    }
+                }
+            } );
+            return tile;
+        }
+
+        @Override
+        public Tile getMetatile( long x, long y, int columns, int rows ) {
+            metatiles.add( x + "," + y + "," + columns + "," + rows );
+            BufferedImage img = new BufferedImage( columns * TILE_SIZE, rows * TILE_SIZE, BufferedImage.TYPE_INT_RGB );
+            for ( int i = 0; i < columns * TILE_SIZE; ++i ) {
+                for ( int j = 0; j < rows * TILE_SIZE; ++j ) {
+                    img.setRGB( i, j, color( x + i / TILE_SIZE, y + j / TILE_SIZE ) );
+                }
+            }
+            Tile tile = mock( Tile.class );
+            when( tile.getAsImage() ).thenReturn( img );
+            return tile;
+        }
+
+        @Override
+        public List<String> getStyles() {
+            return null;
+        }
+
+        static byte[] encode( long x, long y ) {
+            return ( x + "/" + y ).getBytes();
+        }
+    }
+
+}
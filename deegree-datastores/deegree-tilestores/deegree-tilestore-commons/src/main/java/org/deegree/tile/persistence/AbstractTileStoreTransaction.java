@@ -86,6 +86,38 @@ public abstract class AbstractTileStoreTransaction implements TileStoreTransacti
         }
     }
 
+    /**
+     * Makes the changes of this transaction persistent and ends it. The transaction must not be used afterwards.
+     * <p>
+     * This implementation does nothing, as the changes are expected to be written through by
+     * {@link #put(String, org.deegree.tile.Tile, long, long)} and {@link #delete(String, long, long)}. Subclasses that
+     * buffer changes must override this.
+     * </p>
+     * 
+     * @throws TileIOException
+     *             if the changes could not be made persistent
+     */
+    public void commit()
+                            throws TileIOException {
+        // nothing to do
+    }
+
+    /**
+     * Ends this transaction and discards the changes that have not been made persistent yet. The transaction must not
+     * be used afterwards.
+     * <p>
+     * This implementation does nothing, as changes that have been written through cannot be discarded. Subclasses that
+     * buffer changes must override this.
+     * </p>
+     * 
+     * @throws TileIOException
+     *             if the transaction could not be ended
+     */
+    public void rollback()
+                            throws TileIOException {
+        // nothing to do
+    }
+
     private void delete( TileDataLevel matrix, Envelope env ) throws TileIOException {
         long[] tileIndexRange = Tiles.getTileIndexRange( matrix, env );
         long minX = tileIndexRange[0];
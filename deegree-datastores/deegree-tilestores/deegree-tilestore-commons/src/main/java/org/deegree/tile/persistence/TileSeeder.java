@@ -0,0 +1,580 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.tile.MetatileDataLevel;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.Tiles;
+import org.slf4j.Logger;
+
+/**
+ * Pre-renders tiles of a {@link TileDataSet} into a {@link TileStore} using its {@link TileStoreTransaction}.
+ * <p>
+ * Tiles are processed in blocks of metatile size by a pool of threads. If the source tile data level is a
+ * {@link MetatileDataLevel}, each block is fetched with a single request and sliced into tiles. If a checkpoint file is
+ * given, the progress is persisted, so an interrupted seeding job with the same parameters continues where it stopped.
+ * A block only counts as completed if all of its tiles have been seeded successfully. The checkpoint records the
+ * number of leading completed blocks, so a resumed job retries the first failed block and everything after it. If
+ * tiles failed, the checkpoint file is kept after the job has finished.
+ * </p>
+ * <p>
+ * Usage: create a {@link TileSeeder}, call {@link #seed()} (blocks until done), possibly from another thread, and use
+ * the getters or {@link #cancel()} to monitor or stop it.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class TileSeeder {
+
+    private static final Logger LOG = getLogger( TileSeeder.class );
+
+    // number of completed blocks after which the checkpoint file is written
+    private static final int CHECKPOINT_INTERVAL = 100;
+
+    private final TileDataSet source;
+
+    private final TileStore target;
+
+    private final String targetId;
+
+    private final Envelope envelope;
+
+    private final int minLevel;
+
+    private final int maxLevel;
+
+    private final int numThreads;
+
+    private final int metatileColumns;
+
+    private final int metatileRows;
+
+    private final boolean reseed;
+
+    private final File checkpointFile;
+
+    private final AtomicLong totalTiles = new AtomicLong();
+
+    private final AtomicLong seededTiles = new AtomicLong();
+
+    private final AtomicLong failedTiles = new AtomicLong();
+
+    private final AtomicLong failedBlocks = new AtomicLong();
+
+    private volatile boolean cancelled;
+
+    private volatile boolean finished;
+
+    // sequence numbers of the completed blocks that are greater than completedBlocks
+    private final TreeSet<Long> completedAbove = new TreeSet<Long>();
+
+    // all blocks with a lower sequence number are completed
+    private long completedBlocks;
+
+    private long blocksSinceCheckpoint;
+
+    /**
+     * Creates a new {@link TileSeeder} instance.
+     * 
+     * @param source
+     *            tile data set that provides the tiles, must not be <code>null</code>
+     * @param target
+     *            tile store to put the tiles into, must not be <code>null</code> and support transactions
+     * @param targetId
+     *            id of the tile data set in the target tile store, must not be <code>null</code> and use the same tile
+     *            matrix set as the source
+     * @param envelope
+     *            area to seed (in the crs of the tile matrix set), can be <code>null</code> (whole extent)
+     * @param minLevel
+     *            index of the first tile data level to seed (counting from zero)
+     * @param maxLevel
+     *            index of the last tile data level to seed (inclusive)
+     * @param numThreads
+     *            number of threads to use, must be positive
+     * @param metatileColumns
+     *            number of tile columns per block, must be positive
+     * @param metatileRows
+     *            number of tile rows per block, must be positive
+     * @param reseed
+     *            if <code>true</code>, the tiles in the envelope are deleted from the target before seeding (unless a
+     *            job is resumed)
+     * @param checkpointFile
+     *            file to persist the progress in, can be <code>null</code> (not resumable)
+     */
+    public TileSeeder( TileDataSet source, TileStore target, String targetId, Envelope envelope, int minLevel,
+                       int maxLevel, int numThreads, int metatileColumns, int metatileRows, boolean reseed,
+                       File checkpointFile ) {
+        this.source = source;
+        this.target = target;
+        this.targetId = targetId;
+        this.envelope = envelope;
+        this.minLevel = Math.max( 0, minLevel );
+        this.maxLevel = Math.min( source.getTileDataLevels().size() - 1, maxLevel );
+        this.numThreads = numThreads;
+        this.metatileColumns = metatileColumns;
+        this.metatileRows = metatileRows;
+        this.reseed = reseed;
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Performs the seeding, returns when all tiles have been processed or the job has been cancelled.
+     * <p>
+     * If the transaction of the target tile store is an {@link AbstractTileStoreTransaction}, it is committed when the
+     * seeding returns normally (even if it has been cancelled or single tiles failed), otherwise it is rolled back.
+     * </p>
+     * 
+     * @throws InterruptedException
+     *             if the calling thread is interrupted (the worker threads are stopped as well)
+     */
+    public void seed()
+                            throws InterruptedException {
+        TileStoreTransaction ta = target.acquireTransaction( targetId );
+        boolean committed = false;
+        try {
+            seed( ta );
+            commit( ta );
+            committed = true;
+        } finally {
+            if ( !committed ) {
+                rollback( ta );
+            }
+            finished = true;
+        }
+    }
+
+    private void seed( TileStoreTransaction ta )
+                            throws InterruptedException {
+        List<TileDataLevel> levels = source.getTileDataLevels();
+        long resumeAt = readCheckpoint();
+        completedBlocks = resumeAt;
+        if ( resumeAt > 0 ) {
+            LOG.info( "Resuming seeding of tile data set '{}' after {} blocks.", targetId, resumeAt );
+        }
+
+        long total = 0;
+        for ( int i = minLevel; i <= maxLevel; ++i ) {
+            long[] range = getTileIndexRange( levels.get( i ) );
+            if ( range != null ) {
+                total += ( range[2] - range[0] + 1 ) * ( range[3] - range[1] + 1 );
+            }
+        }
+        totalTiles.set( total );
+
+        if ( reseed && resumeAt == 0 && envelope != null ) {
+            for ( int i = minLevel; i <= maxLevel; ++i ) {
+                ta.delete( levels.get( i ).getMetadata().getIdentifier(), envelope );
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+        // limits the number of queued blocks
+        Semaphore queued = new Semaphore( numThreads * 2 );
+        long seq = 0;
+        try {
+            for ( int i = minLevel; i <= maxLevel && !cancelled; ++i ) {
+                TileDataLevel level = levels.get( i );
+                long[] range = getTileIndexRange( level );
+                if ( range == null ) {
+                    continue;
+                }
+                for ( long y = range[1]; y <= range[3] && !cancelled; y += metatileRows ) {
+                    for ( long x = range[0]; x <= range[2] && !cancelled; x += metatileColumns ) {
+                        int columns = (int) Math.min( metatileColumns, range[2] - x + 1 );
+                        int rows = (int) Math.min( metatileRows, range[3] - y + 1 );
+                        if ( seq < resumeAt ) {
+                            seededTiles.addAndGet( columns * rows );
+                        } else {
+                            queued.acquire();
+                            executor.execute( new BlockSeeder( ta, level, x, y, columns, rows, seq, queued ) );
+                        }
+                        ++seq;
+                    }
+                }
+            }
+            executor.shutdown();
+            while ( !executor.awaitTermination( 1, TimeUnit.SECONDS ) ) {
+                // wait for the remaining blocks
+            }
+        } catch ( InterruptedException e ) {
+            cancelled = true;
+            executor.shutdownNow();
+            throw e;
+        } finally {
+            if ( !cancelled && failedBlocks.get() == 0 && checkpointFile != null ) {
+                if ( checkpointFile.exists() && !checkpointFile.delete() ) {
+                    LOG.warn( "Could not delete seeding checkpoint file '{}'.", checkpointFile );
+                }
+            } else {
+                writeCheckpoint();
+            }
+        }
+        LOG.info( "Seeding of tile data set '{}' {}: {} tiles seeded, {} failed.",
+                  new Object[] { targetId, cancelled ? "cancelled" : "finished", seededTiles.get(),
+                                failedTiles.get() } );
+    }
+
+    /**
+     * Requests the seeding to stop. Blocks that are already being processed are finished.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return the number of tiles to seed, zero if not determined yet
+     */
+    public long getTotalTiles() {
+        return totalTiles.get();
+    }
+
+    /**
+     * @return the number of tiles that have been seeded (including the tiles seeded before resuming)
+     */
+    public long getSeededTiles() {
+        return seededTiles.get();
+    }
+
+    /**
+     * @return the number of tiles that could not be seeded
+     */
+    public long getFailedTiles() {
+        return failedTiles.get();
+    }
+
+    /**
+     * @return <code>true</code>, if {@link #seed()} has returned
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return <code>true</code>, if the seeding has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private static void commit( TileStoreTransaction ta ) {
+        if ( ta instanceof AbstractTileStoreTransaction ) {
+            ( (AbstractTileStoreTransaction) ta ).commit();
+        }
+    }
+
+    private void rollback( TileStoreTransaction ta ) {
+        if ( !( ta instanceof AbstractTileStoreTransaction ) ) {
+            return;
+        }
+        try {
+            ( (AbstractTileStoreTransaction) ta ).rollback();
+        } catch ( Exception e ) {
+            LOG.warn( "Could not roll back the transaction of tile data set '{}': {}", targetId, e.getMessage() );
+            LOG.trace( "Stack trace:", e );
+        }
+    }
+
+    private long[] getTileIndexRange( TileDataLevel level ) {
+        TileMatrix md = level.getMetadata();
+        if ( envelope == null ) {
+            return new long[] { 0, 0, md.getNumTilesX() - 1, md.getNumTilesY() - 1 };
+        }
+        return Tiles.getTileIndexRange( level, envelope );
+    }
+
+    private synchronized void blockCompleted( long seq ) {
+        completedAbove.add( seq );
+        while ( !completedAbove.isEmpty() && completedAbove.first() == completedBlocks ) {
+            completedAbove.pollFirst();
+            ++completedBlocks;
+        }
+        if ( ++blocksSinceCheckpoint >= CHECKPOINT_INTERVAL ) {
+            writeCheckpoint();
+        }
+    }
+
+    private Properties getJobProperties() {
+        Properties props = new Properties();
+        props.setProperty( "envelope", String.valueOf( envelope ) );
+        props.setProperty( "levels", minLevel + "-" + maxLevel );
+        props.setProperty( "metatile", metatileColumns + "x" + metatileRows );
+        return props;
+    }
+
+    private long readCheckpoint() {
+        if ( checkpointFile == null || !checkpointFile.exists() ) {
+            return 0;
+        }
+        Properties props = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream( checkpointFile );
+            props.load( in );
+        } catch ( IOException e ) {
+            LOG.warn( "Could not read seeding checkpoint file '{}': {}", checkpointFile, e.getMessage() );
+            return 0;
+        } finally {
+            closeQuietly( in );
+        }
+        Properties job = getJobProperties();
+        for ( String name : job.stringPropertyNames() ) {
+            if ( !job.getProperty( name ).equals( props.getProperty( name ) ) ) {
+                LOG.info( "Seeding checkpoint file '{}' belongs to a different job, starting from scratch.",
+                          checkpointFile );
+                return 0;
+            }
+        }
+        try {
+            return Long.parseLong( props.getProperty( "completedBlocks", "0" ) );
+        } catch ( NumberFormatException e ) {
+            return 0;
+        }
+    }
+
+    private synchronized void writeCheckpoint() {
+        blocksSinceCheckpoint = 0;
+        if ( checkpointFile == null ) {
+            return;
+        }
+        Properties props = getJobProperties();
+        props.setProperty( "completedBlocks", "" + completedBlocks );
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream( checkpointFile );
+            props.store( out, "deegree tile seeding checkpoint of tile data set " + targetId );
+        } catch ( IOException e ) {
+            LOG.warn( "Could not write seeding checkpoint file '{}': {}", checkpointFile, e.getMessage() );
+        } finally {
+            closeQuietly( out );
+        }
+    }
+
+    /**
+     * Seeds a block of tiles.
+     */
+    private class BlockSeeder implements Runnable {
+
+        private final TileStoreTransaction ta;
+
+        private final TileDataLevel level;
+
+        private final long x, y;
+
+        private final int columns, rows;
+
+        private final long seq;
+
+        private final Semaphore queued;
+
+        BlockSeeder( TileStoreTransaction ta, TileDataLevel level, long x, long y, int columns, int rows, long seq,
+                     Semaphore queued ) {
+            this.ta = ta;
+            this.level = level;
+            this.x = x;
+            this.y = y;
+            this.columns = columns;
+            this.rows = rows;
+            this.seq = seq;
+            this.queued = queued;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if ( !cancelled ) {
+                    boolean success;
+                    if ( level instanceof MetatileDataLevel && columns * rows > 1 ) {
+                        success = seedMetatile();
+                    } else {
+                        success = seedTiles();
+                    }
+                    if ( success ) {
+                        blockCompleted( seq );
+                    } else {
+                        failedBlocks.incrementAndGet();
+                    }
+                }
+            } finally {
+                queued.release();
+            }
+        }
+
+        /**
+         * @return <code>true</code>, if all tiles of the block have been seeded
+         */
+        private boolean seedTiles() {
+            boolean success = true;
+            String matrixId = level.getMetadata().getIdentifier();
+            for ( long j = y; j < y + rows; ++j ) {
+                for ( long i = x; i < x + columns; ++i ) {
+                    try {
+                        Tile tile = level.getTile( i, j );
+                        if ( tile != null ) {
+                            ta.put( matrixId, tile, i, j );
+                        }
+                        seededTiles.incrementAndGet();
+                    } catch ( Exception e ) {
+                        success = false;
+                        failedTiles.incrementAndGet();
+                        LOG.warn( "Could not seed tile {}/{} of tile matrix '{}': {}",
+                                  new Object[] { i, j, matrixId, e.getMessage() } );
+                        LOG.trace( "Stack trace:", e );
+                    }
+                }
+            }
+            return success;
+        }
+
+        /**
+         * @return <code>true</code>, if all tiles of the block have been seeded
+         */
+        private boolean seedMetatile() {
+            TileMatrix md = level.getMetadata();
+            String matrixId = md.getIdentifier();
+            BufferedImage img;
+            try {
+                Tile metatile = ( (MetatileDataLevel) level ).getMetatile( x, y, columns, rows );
+                img = metatile == null ? null : metatile.getAsImage();
+                if ( img == null ) {
+                    throw new TileIOException( "No image." );
+                }
+            } catch ( Exception e ) {
+                failedTiles.addAndGet( columns * rows );
+                LOG.warn( "Could not seed metatile {}/{} of tile matrix '{}': {}",
+                          new Object[] { x, y, matrixId, e.getMessage() } );
+                LOG.trace( "Stack trace:", e );
+                return false;
+            }
+            boolean success = true;
+            int tileWidth = (int) md.getTilePixelsX();
+            int tileHeight = (int) md.getTilePixelsY();
+            for ( int j = 0; j < rows; ++j ) {
+                for ( int i = 0; i < columns; ++i ) {
+                    try {
+                        BufferedImage tileImg = img.getSubimage( i * tileWidth, j * tileHeight, tileWidth,
+                                                                 tileHeight );
+                        Envelope tileEnv = Tiles.calcTileEnvelope( md, x + i, y + j );
+                        ta.put( matrixId, new ImageTile( tileImg, tileEnv, source.getNativeImageFormat() ), x + i,
+                                y + j );
+                        seededTiles.incrementAndGet();
+                    } catch ( Exception e ) {
+                        success = false;
+                        failedTiles.incrementAndGet();
+                        LOG.warn( "Could not seed tile {}/{} of tile matrix '{}': {}",
+                                  new Object[] { x + i, y + j, matrixId, e.getMessage() } );
+                        LOG.trace( "Stack trace:", e );
+                    }
+                }
+            }
+            return success;
+        }
+    }
+
+    /**
+     * In-memory {@link Tile} sliced from a metatile.
+     */
+    private static class ImageTile implements Tile {
+
+        private final BufferedImage img;
+
+        private final Envelope envelope;
+
+        private final String format;
+
+        ImageTile( BufferedImage img, Envelope envelope, String format ) {
+            this.img = img;
+            this.envelope = envelope;
+            this.format = format;
+        }
+
+        @Override
+        public BufferedImage getAsImage()
+                                throws TileIOException {
+            return img;
+        }
+
+        @Override
+        public InputStream getAsStream()
+                                throws TileIOException {
+            try {
+                return new ByteArrayInputStream( Tiles.encode( img, format ) );
+            } catch ( IOException e ) {
+                throw new TileIOException( "Error encoding tile: " + e.getMessage(), e );
+            }
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return envelope;
+        }
+
+        @Override
+        public FeatureCollection getFeatures( int i, int j, int limit )
+                                throws UnsupportedOperationException {
+            throw new UnsupportedOperationException( "Feature retrieval is not supported for seeded tiles." );
+        }
+    }
+
+}
@@ -0,0 +1,436 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.tile.MetatileDataLevel;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.TileMatrixSet;
+import org.deegree.workspace.ResourceMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the checkpointing, resuming and failure accounting of the {@link TileSeeder} against an in-memory tile store.
+ * <p>
+ * The source tile data level has 4x2 tiles, seeded in blocks of 2x1 tiles. So block 0 contains the tiles 0/0 and
+ * 1/0, block 1 the tiles 2/0 and 3/0, block 2 the tiles 0/1 and 1/1 and block 3 the tiles 2/1 and 3/1.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TileSeederTest {
+
+    private File checkpoint;
+
+    private MemoryTileStore target;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        checkpoint = File.createTempFile( "seed", ".properties" );
+        checkpoint.delete();
+        target = new MemoryTileStore();
+    }
+
+    @After
+    public void tearDown() {
+        checkpoint.delete();
+    }
+
+    @Test
+    public void testSeedAll()
+                            throws InterruptedException {
+        TileSeeder seeder = createSeeder( new SourceLevel(), 2, 1 );
+        seeder.seed();
+
+        assertEquals( 8, seeder.getTotalTiles() );
+        assertEquals( 8, seeder.getSeededTiles() );
+        assertEquals( 0, seeder.getFailedTiles() );
+        assertEquals( 8, target.ta.tiles.size() );
+        assertTrue( seeder.isFinished() );
+        assertEquals( 1, target.ta.commits );
+        assertEquals( 0, target.ta.rollbacks );
+        assertFalse( checkpoint.exists() );
+    }
+
+    @Test
+    public void testFailedTileKeepsBlockIncomplete()
+                            throws Exception {
+        TileSeeder seeder = createSeeder( new SourceLevel( "2/0" ), 2, 1 );
+        seeder.seed();
+
+        assertEquals( 7, seeder.getSeededTiles() );
+        assertEquals( 1, seeder.getFailedTiles() );
+        assertEquals( 7, target.ta.tiles.size() );
+        assertEquals( 1, target.ta.commits );
+        // block 1 failed, so only block 0 counts as completed although blocks 2 and 3 succeeded
+        assertTrue( checkpoint.exists() );
+        assertEquals( "1", readCheckpoint().getProperty( "completedBlocks" ) );
+    }
+
+    @Test
+    public void testResumeRetriesFailedBlock()
+                            throws InterruptedException {
+        createSeeder( new SourceLevel( "2/0" ), 2, 1 ).seed();
+        target = new MemoryTileStore();
+
+        TileSeeder seeder = createSeeder( new SourceLevel(), 2, 1 );
+        seeder.seed();
+
+        assertEquals( 8, seeder.getSeededTiles() );
+        assertEquals( 0, seeder.getFailedTiles() );
+        // block 0 is skipped, the failed block 1 and all following blocks are seeded again
+        assertEquals( set( "2/0", "3/0", "0/1", "1/1", "2/1", "3/1" ), target.ta.tiles );
+        assertFalse( checkpoint.exists() );
+    }
+
+    @Test
+    public void testResumeAfterCancel()
+                            throws InterruptedException {
+        SourceLevel level = new SourceLevel();
+        final TileSeeder seeder = createSeeder( level, 2, 1 );
+        level.onGetTile = new Runnable() {
+            @Override
+            public void run() {
+                // cancel while seeding tile 3/0, so blocks 0 and 1 are completed
+                if ( target.ta.tiles.size() == 3 ) {
+                    seeder.cancel();
+                }
+            }
+        };
+        seeder.seed();
+
+        assertTrue( seeder.isCancelled() );
+        assertEquals( 4, target.ta.tiles.size() );
+        assertEquals( 1, target.ta.commits );
+        assertEquals( "2", readCheckpoint().getProperty( "completedBlocks" ) );
+
+        target = new MemoryTileStore();
+        TileSeeder resumed = createSeeder( new SourceLevel(), 2, 1 );
+        resumed.seed();
+
+        assertEquals( 8, resumed.getSeededTiles() );
+        assertEquals( set( "0/1", "1/1", "2/1", "3/1" ), target.ta.tiles );
+        assertFalse( checkpoint.exists() );
+    }
+
+    @Test
+    public void testCheckpointOfDifferentJobIsIgnored()
+                            throws InterruptedException {
+        createSeeder( new SourceLevel( "2/0" ), 2, 1 ).seed();
+        target = new MemoryTileStore();
+
+        TileSeeder seeder = createSeeder( new SourceLevel(), 1, 1 );
+        seeder.seed();
+
+        assertEquals( 8, target.ta.tiles.size() );
+        assertFalse( checkpoint.exists() );
+    }
+
+    @Test
+    public void testFailedMetatileCountsAllTiles()
+                            throws InterruptedException {
+        TileSeeder seeder = createSeeder( new SourceMetatileLevel(), 2, 1 );
+        seeder.seed();
+
+        assertEquals( 0, seeder.getSeededTiles() );
+        assertEquals( 8, seeder.getFailedTiles() );
+        assertEquals( 0, target.ta.tiles.size() );
+        assertEquals( "0", readCheckpoint().getProperty( "completedBlocks" ) );
+    }
+
+    @Test
+    public void testRollbackOnError()
+                            throws InterruptedException {
+        SourceLevel level = new SourceLevel();
+        level.broken = true;
+        TileSeeder seeder = createSeeder( level, 2, 1 );
+        try {
+            seeder.seed();
+            fail( "Expected exception." );
+        } catch ( IllegalStateException e ) {
+            // expected
+        }
+        assertTrue( seeder.isFinished() );
+        assertEquals( 0, target.ta.commits );
+        assertEquals( 1, target.ta.rollbacks );
+    }
+
+    private TileSeeder createSeeder( TileDataLevel level, int metatileColumns, int metatileRows ) {
+        return new TileSeeder( new SourceDataSet( level ), target, "target", null, 0, 0, 1, metatileColumns,
+                               metatileRows, false, checkpoint );
+    }
+
+    private Properties readCheckpoint() {
+        Properties props = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream( checkpoint );
+            props.load( in );
+        } catch ( IOException e ) {
+            throw new AssertionError( e );
+        } finally {
+            try {
+                if ( in != null ) {
+                    in.close();
+                }
+            } catch ( IOException e ) {
+                // ignore
+            }
+        }
+        return props;
+    }
+
+    private static Set<String> set( String... tiles ) {
+        Set<String> set = new HashSet<String>();
+        Collections.addAll( set, tiles );
+        return set;
+    }
+
+    private static class SourceLevel implements TileDataLevel {
+
+        private final TileMatrix md = new TileMatrix( "level0", null, 1, 1, 1, 4, 2 );
+
+        private final Set<String> failing;
+
+        Runnable onGetTile;
+
+        boolean broken;
+
+        SourceLevel( String... failing ) {
+            this.failing = set( failing );
+        }
+
+        @Override
+        public TileMatrix getMetadata() {
+            if ( broken ) {
+                throw new IllegalStateException( "Broken." );
+            }
+            return md;
+        }
+
+        @Override
+        public Tile getTile( long x, long y ) {
+            if ( onGetTile != null ) {
+                onGetTile.run();
+            }
+            if ( failing.contains( x + "/" + y ) ) {
+                throw new TileIOException( "Failing tile." );
+            }
+            return new SourceTile();
+        }
+
+        @Override
+        public List<String> getStyles() {
+            return null;
+        }
+    }
+
+    private static class SourceMetatileLevel extends SourceLevel implements MetatileDataLevel {
+
+        @Override
+        public Tile getMetatile( long x, long y, int columns, int rows ) {
+            throw new TileIOException( "Failing metatile." );
+        }
+    }
+
+    private static class SourceTile implements Tile {
+
+        @Override
+        public BufferedImage getAsImage() {
+            return null;
+        }
+
+        @Override
+        public InputStream getAsStream() {
+            return null;
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return null;
+        }
+
+        @Override
+        public FeatureCollection getFeatures( int i, int j, int limit ) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class SourceDataSet implements TileDataSet {
+
+        private final List<TileDataLevel> levels;
+
+        SourceDataSet( TileDataLevel level ) {
+            levels = Collections.singletonList( level );
+        }
+
+        @Override
+        public Iterator<Tile> getTiles( Envelope envelope, double resolution ) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<TileDataLevel> getTileDataLevels() {
+            return levels;
+        }
+
+        @Override
+        public TileMatrixSet getTileMatrixSet() {
+            return null;
+        }
+
+        @Override
+        public TileDataLevel getTileDataLevel( String identifier ) {
+            return levels.get( 0 );
+        }
+
+        @Override
+        public String getNativeImageFormat() {
+            return "image/png";
+        }
+    }
+
+    private static class MemoryTileStore implements TileStore {
+
+        final MemoryTransaction ta = new MemoryTransaction();
+
+        @Override
+        public TileDataSet getTileDataSet( String tileDataSet ) {
+            return null;
+        }
+
+        @Override
+        public Collection<String> getTileDataSetIds() {
+            return Collections.singletonList( "target" );
+        }
+
+        @Override
+        public Iterator<Tile> getTiles( String tileDataSet, Envelope envelope, double resolution ) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Tile getTile( String tileDataSet, String tileDataLevel, int x, int y ) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TileStoreTransaction acquireTransaction( String tileDataSet ) {
+            return ta;
+        }
+
+        @Override
+        public ResourceMetadata<TileStore> getMetadata() {
+            return null;
+        }
+
+        @Override
+        public void init() {
+            // nothing to do
+        }
+
+        @Override
+        public void destroy() {
+            // nothing to do
+        }
+    }
+
+    private static class MemoryTransaction extends AbstractTileStoreTransaction {
+
+        final Set<String> tiles = Collections.synchronizedSet( new HashSet<String>() );
+
+        int commits;
+
+        int rollbacks;
+
+        MemoryTransaction() {
+            super( null, "target" );
+        }
+
+        @Override
+        public void put( String tileDataLevel, Tile tile, long x, long y ) {
+            tiles.add( x + "/" + y );
+        }
+
+        @Override
+        public void delete( String tileDataLevel, long x, long y ) {
+            tiles.remove( x + "/" + y );
+        }
+
+        @Override
+        public void delete( String tileDataLevel, Envelope envelope ) {
+            tiles.clear();
+        }
+
+        @Override
+        public void commit() {
+            ++commits;
+        }
+
+        @Override
+        public void rollback() {
+            ++rollbacks;
+        }
+    }
+
+}
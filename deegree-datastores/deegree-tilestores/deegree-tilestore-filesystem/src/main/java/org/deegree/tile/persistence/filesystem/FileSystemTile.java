@@ -48,6 +48,8 @@ import javax.imageio.ImageIO;
 
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
+import org.deegree.tile.AbstractTile;
+import org.deegree.tile.FileBackedTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
 
@@ -59,7 +61,7 @@ import org.deegree.tile.TileIOException;
  * 
  * @version $Revision$, $Date$
  */
-class FileSystemTile implements Tile {
+class FileSystemTile extends AbstractTile implements FileBackedTile {
 
     private final Envelope bbox;
 
@@ -102,6 +104,11 @@ class FileSystemTile implements Tile {
         }
     }
 
+    @Override
+    public File getFile() {
+        return file;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return bbox;
@@ -112,4 +119,19 @@ class FileSystemTile implements Tile {
                             throws UnsupportedOperationException {
         throw new UnsupportedOperationException( "Feature retrieval is not supported by the FileSystemTileStore." );
     }
+
+    @Override
+    public String getVersion() {
+        long lastModified = file.lastModified();
+        if ( lastModified == 0 ) {
+            return null;
+        }
+        return Long.toHexString( lastModified ) + "-" + Long.toHexString( file.length() );
+    }
+
+    @Override
+    public long getLastModified() {
+        long lastModified = file.lastModified();
+        return lastModified == 0 ? -1 : lastModified;
+    }
 }
@@ -39,6 +39,7 @@ import org.deegree.commons.gdal.GdalDataset;
 import org.deegree.commons.gdal.GdalDatasetPool;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
+import org.deegree.tile.AbstractTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
 
@@ -49,7 +50,7 @@ import org.deegree.tile.TileIOException;
  * 
  * @since 3.4
  */
-class GdalTile implements Tile {
+class GdalTile extends AbstractTile {
 
     private final File file;
 
@@ -147,4 +148,18 @@ class GdalTile implements Tile {
         throw new UnsupportedOperationException( "Feature retrieval is not supported by the GDALTileStore." );
     }
 
+    @Override
+    public String getVersion() {
+        long lastModified = file.lastModified();
+        if ( lastModified == 0 ) {
+            return null;
+        }
+        return Long.toHexString( lastModified ) + "-" + Long.toHexString( file.length() );
+    }
+
+    @Override
+    public long getLastModified() {
+        long lastModified = file.lastModified();
+        return lastModified == 0 ? -1 : lastModified;
+    }
 }
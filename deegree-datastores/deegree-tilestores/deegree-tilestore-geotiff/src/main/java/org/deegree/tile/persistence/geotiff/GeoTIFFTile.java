@@ -44,6 +44,7 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Hashtable;
@@ -54,6 +55,7 @@ import javax.imageio.ImageReader;
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
+import org.deegree.tile.AbstractTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
 
@@ -66,7 +68,7 @@ import org.deegree.tile.TileIOException;
  * 
  * @version $Revision: 31882 $, $Date: 2011-09-15 02:05:04 +0200 (Thu, 15 Sep 2011) $
  */
-public class GeoTIFFTile implements Tile {
+public class GeoTIFFTile extends AbstractTile {
 
     // private static final Logger LOG = getLogger( GeoTIFFTile.class );
 
@@ -78,9 +80,12 @@ public class GeoTIFFTile implements Tile {
 
     private final GenericObjectPool readerPool;
 
+    private final File file;
+
     public GeoTIFFTile( GenericObjectPool readerPool, int imageIndex, int x, int y, Envelope envelope, int sizeX,
-                        int sizeY ) {
+                        int sizeY, File file ) {
         this.readerPool = readerPool;
+        this.file = file;
         this.imageIndex = imageIndex;
         this.x = x;
         this.y = y;
@@ -146,4 +151,19 @@ public class GeoTIFFTile implements Tile {
                             throws UnsupportedOperationException {
         throw new UnsupportedOperationException( "Feature retrieval is not supported by the GeoTIFFTileStore." );
     }
+
+    @Override
+    public String getVersion() {
+        long lastModified = file.lastModified();
+        if ( lastModified == 0 ) {
+            return null;
+        }
+        return Long.toHexString( lastModified ) + "-" + Long.toHexString( file.length() );
+    }
+
+    @Override
+    public long getLastModified() {
+        long lastModified = file.lastModified();
+        return lastModified == 0 ? -1 : lastModified;
+    }
 }
@@ -65,6 +65,8 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
 
     private final int imageIndex;
 
+    private final File file;
+
     private final GeometryFactory fac = new GeometryFactory();
 
     private GenericObjectPool readerPool;
@@ -74,6 +76,7 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
     public GeoTIFFTileDataLevel( TileMatrix metadata, File file, int imageIndex, int xoff, int yoff, int numx, int numy ) {
         this.metadata = metadata;
         this.imageIndex = imageIndex;
+        this.file = file;
         ImageReaderFactory fac = new ImageReaderFactory( file );
         this.readerPool = new GenericObjectPool( fac );
         this.xoff = xoff;
@@ -109,7 +112,7 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
         double miny = env.getMax().get1() - height * y;
         Envelope envelope = fac.createEnvelope( minx, miny, minx + width, miny - height, env.getCoordinateSystem() );
         return new GeoTIFFTile( readerPool, imageIndex, (int) x, (int) y, envelope, (int) metadata.getTilePixelsX(),
-                                (int) metadata.getTilePixelsY() );
+                                (int) metadata.getTilePixelsY(), file );
     }
 
     @Override
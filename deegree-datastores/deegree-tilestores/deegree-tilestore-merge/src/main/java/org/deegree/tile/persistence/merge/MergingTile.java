@@ -50,8 +50,10 @@ import javax.imageio.ImageIO;
 
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
+import org.deegree.tile.AbstractTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
+import org.deegree.tile.Tiles;
 
 /**
  * {@link Tile} implementation used by {@link MergingTileStore}.
@@ -61,7 +63,7 @@ import org.deegree.tile.TileIOException;
  * 
  * @since 3.4
  */
-class MergingTile implements Tile {
+class MergingTile extends AbstractTile {
 
     private final List<Tile> tiles;
 
@@ -131,4 +133,33 @@ class MergingTile implements Tile {
                             throws UnsupportedOperationException {
         throw new UnsupportedOperationException( "MergingTile does not support getFeatures" );
     }
+
+    @Override
+    public String getVersion() {
+        StringBuilder sb = new StringBuilder();
+        for ( Tile tile : tiles ) {
+            String version = Tiles.getVersion( tile );
+            if ( version == null ) {
+                return null;
+            }
+            if ( sb.length() > 0 ) {
+                sb.append( '_' );
+            }
+            sb.append( version );
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public long getLastModified() {
+        long lastModified = -1;
+        for ( Tile tile : tiles ) {
+            long tileLastModified = Tiles.getLastModified( tile );
+            if ( tileLastModified == -1 ) {
+                return -1;
+            }
+            lastModified = Math.max( lastModified, tileLastModified );
+        }
+        return lastModified;
+    }
 }
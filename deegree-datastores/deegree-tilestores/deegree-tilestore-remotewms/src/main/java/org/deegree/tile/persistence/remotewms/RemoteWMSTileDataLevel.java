@@ -47,6 +47,7 @@ import org.deegree.geometry.GeometryFactory;
 import org.deegree.protocol.wms.Utils;
 import org.deegree.protocol.wms.client.WMSClient;
 import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.tile.MetatileDataLevel;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileMatrix;
@@ -59,7 +60,7 @@ import org.deegree.tile.TileMatrix;
  * 
  * @version $Revision$, $Date$
  */
-class RemoteWMSTileDataLevel implements TileDataLevel {
+class RemoteWMSTileDataLevel implements MetatileDataLevel {
 
     private static final GeometryFactory fac = new GeometryFactory();
 
@@ -137,15 +138,21 @@ class RemoteWMSTileDataLevel implements TileDataLevel {
 
     @Override
     public Tile getTile( long x, long y ) {
-        if ( metadata.getNumTilesX() <= x || metadata.getNumTilesY() <= y || x < 0 || y < 0 ) {
+        return getMetatile( x, y, 1, 1 );
+    }
+
+    @Override
+    public Tile getMetatile( long x, long y, int columns, int rows ) {
+        if ( metadata.getNumTilesX() < x + columns || metadata.getNumTilesY() < y + rows || x < 0 || y < 0 ) {
             return null;
         }
         double width = metadata.getTileWidth();
         double height = metadata.getTileHeight();
         Envelope env = metadata.getSpatialMetadata().getEnvelope();
         double minx = width * x + env.getMin().get0();
-        double miny = env.getMax().get1() - height * y;
-        Envelope envelope = fac.createEnvelope( minx, miny - height, minx + width, miny, env.getCoordinateSystem() );
+        double maxy = env.getMax().get1() - height * y;
+        Envelope envelope = fac.createEnvelope( minx, maxy - height * rows, minx + width * columns, maxy,
+                                                env.getCoordinateSystem() );
         ICRS crs = this.crs;
         if ( crs == null ) {
             crs = envelope.getCoordinateSystem();
@@ -153,8 +160,8 @@ class RemoteWMSTileDataLevel implements TileDataLevel {
         Map<String, String> overriddenParameters = new HashMap<String, String>();
         RequestUtils.replaceParameters( overriddenParameters, RequestUtils.getCurrentThreadRequestParameters().get(),
                                         defaultGetMap, hardGetMap );
-        GetMap gm = new GetMap( layers, styles, (int) tileSizeX, (int) tileSizeY, envelope, crs, format, true,
-                                overriddenParameters );
+        GetMap gm = new GetMap( layers, styles, (int) tileSizeX * columns, (int) tileSizeY * rows, envelope, crs,
+                                format, true, overriddenParameters );
         return new RemoteWMSTile( client, gm, recodedOutputFormat, defaultGetFeatureInfo, hardGetFeatureInfo );
     }
 
@@ -38,6 +38,7 @@ package org.deegree.layer.persistence.feature;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -119,13 +120,22 @@ public class FeatureLayerData implements LayerData {
         }
     }
 
-    private static FeatureCollection clearDuplicates( FeatureInputStream rs ) {
+    /**
+     * Collects the features from the given stream, skipping features with ids that have already been encountered. Stops
+     * reading (and querying) as soon as the max features limit has been reached.
+     */
+    private FeatureCollection clearDuplicates( FeatureInputStream rs ) {
         FeatureCollection col = null;
         try {
             col = new GenericFeatureCollection();
+            Set<String> ids = new HashSet<String>();
             for ( Feature f : rs ) {
-                if ( !col.contains( f ) ) {
+                if ( f.getId() == null || ids.add( f.getId() ) ) {
                     col.add( f );
+                    if ( maxFeatures > 0 && col.size() >= maxFeatures ) {
+                        LOG.debug( "Reached max features limit of {}, skipping remaining features.", maxFeatures );
+                        break;
+                    }
                 }
             }
         } finally {
@@ -0,0 +1,178 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.layer.persistence.feature;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.junit.Test;
+
+/**
+ * Tests the duplicate removal and the max features limit of {@link FeatureLayerData#info()}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class FeatureLayerDataTest {
+
+    @Test
+    public void testDuplicatesAreRemoved()
+                            throws Exception {
+        CountingFeatureInputStream stream = new CountingFeatureInputStream( "a", "b", "a", "c", "b" );
+        FeatureCollection col = createLayerData( stream, -1 ).info();
+        assertEquals( asList( "a", "b", "c" ), getIds( col ) );
+        assertEquals( 5, stream.read );
+        assertTrue( stream.closed );
+    }
+
+    @Test
+    public void testFeaturesWithoutIdAreKept()
+                            throws Exception {
+        CountingFeatureInputStream stream = new CountingFeatureInputStream( null, "a", null );
+        FeatureCollection col = createLayerData( stream, -1 ).info();
+        assertEquals( asList( null, "a", null ), getIds( col ) );
+    }
+
+    @Test
+    public void testMaxFeaturesStopsReading()
+                            throws Exception {
+        CountingFeatureInputStream stream = new CountingFeatureInputStream( "a", "b", "c", "d" );
+        FeatureCollection col = createLayerData( stream, 2 ).info();
+        assertEquals( asList( "a", "b" ), getIds( col ) );
+        assertEquals( 2, stream.read );
+        assertTrue( stream.closed );
+    }
+
+    @Test
+    public void testMaxFeaturesCountsDistinctFeatures()
+                            throws Exception {
+        CountingFeatureInputStream stream = new CountingFeatureInputStream( "a", "a", "b", "a", "c", "d" );
+        FeatureCollection col = createLayerData( stream, 3 ).info();
+        assertEquals( asList( "a", "b", "c" ), getIds( col ) );
+        assertEquals( 5, stream.read );
+    }
+
+    private FeatureLayerData createLayerData( FeatureInputStream stream, int maxFeatures )
+                            throws Exception {
+        AppSchema schema = mock( AppSchema.class );
+        when( schema.getFeatureTypes() ).thenReturn( new FeatureType[0] );
+        FeatureStore store = mock( FeatureStore.class );
+        when( store.getSchema() ).thenReturn( schema );
+        when( store.query( any( Query[].class ) ) ).thenReturn( stream );
+        List<Query> queries = new ArrayList<Query>();
+        queries.add( mock( Query.class ) );
+        return new FeatureLayerData( queries, store, maxFeatures, null, null );
+    }
+
+    private List<String> getIds( FeatureCollection col ) {
+        List<String> ids = new ArrayList<String>();
+        for ( Feature f : col ) {
+            ids.add( f.getId() );
+        }
+        return ids;
+    }
+
+    private static class CountingFeatureInputStream implements FeatureInputStream {
+
+        private final List<Feature> features = new ArrayList<Feature>();
+
+        private int read;
+
+        private boolean closed;
+
+        private CountingFeatureInputStream( String... ids ) {
+            for ( String id : ids ) {
+                Feature f = mock( Feature.class );
+                when( f.getId() ).thenReturn( id );
+                features.add( f );
+            }
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            final Iterator<Feature> iter = features.iterator();
+            return new Iterator<Feature>() {
+
+                @Override
+                public boolean hasNext() {
+                    return iter.hasNext();
+                }
+
+                @Override
+                public Feature next() {
+                    read++;
+                    return iter.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public FeatureCollection toCollection() {
+            return new GenericFeatureCollection( null, features );
+        }
+
+        @Override
+        public int count() {
+            return features.size();
+        }
+    }
+}
@@ -407,7 +407,7 @@ public abstract class AbstractOWS implements OWS {
      * @param response
      *            to write to.
      * @throws ServletException
-     *             if the exception could not be sent.
+     *             if the exception could not be sent or the response has already been committed (streaming mode)
      */
     public void sendException( Map<String, String> additionalHeaders, ExceptionSerializer serializer,
                                OWSException exception, HttpResponseBuffer response )
@@ -450,6 +450,9 @@ public abstract class AbstractOWS implements OWS {
                 throw new ServletException( e );
             }
             response.setExceptionSent();
+        } else {
+            // response is streamed and has already been partially sent, make the container drop the connection
+            response.abortCommittedResponse( exception.getMessage(), exception );
         }
 
         if ( userAgent != null && userAgent.toLowerCase().contains( "mozilla" ) ) {
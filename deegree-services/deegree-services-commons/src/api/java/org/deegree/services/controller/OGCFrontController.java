@@ -62,6 +62,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Iterator;
@@ -114,11 +115,14 @@ import org.deegree.services.OwsManager;
 import org.deegree.services.authentication.SecurityException;
 import org.deegree.services.controller.exception.serializer.XMLExceptionSerializer;
 import org.deegree.services.controller.security.SecurityConfiguration;
+import org.deegree.services.controller.utils.CompressionPolicy;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.controller.utils.LoggingHttpResponseWrapper;
 import org.deegree.services.controller.watchdog.RequestWatchdog;
 import org.deegree.services.jaxb.controller.DeegreeServiceControllerType;
 import org.deegree.services.jaxb.controller.DeegreeServiceControllerType.RequestTimeoutMilliseconds;
+import org.deegree.services.jaxb.controller.DeegreeServiceControllerType.ResponseCompression;
+import org.deegree.services.jaxb.controller.DeegreeServiceControllerType.StreamResponses;
 import org.deegree.services.ows.OWS110ExceptionReportSerializer;
 import org.deegree.services.resources.ResourcesServlet;
 import org.deegree.workspace.standard.ModuleInfo;
@@ -177,6 +181,10 @@ public class OGCFrontController extends HttpServlet {
     // make fields transient, serialized servlets are a bad idea IMHO
     private transient DeegreeServiceControllerType mainConfig;
 
+    private transient List<StreamResponses> streamedRequests = emptyList();
+
+    private transient CompressionPolicy compressionPolicy;
+
     private transient String hardcodedServicesUrl;
 
     private transient String hardcodedResourcesUrl;
@@ -324,7 +332,7 @@ public class OGCFrontController extends HttpServlet {
 
             logHeaders( request );
             addHeaders( responseBuffer );
-            responseBuffer = handleCompression( responseBuffer );
+            handleCompression( request, responseBuffer );
 
             String queryString = request.getQueryString();
             try {
@@ -391,9 +399,11 @@ public class OGCFrontController extends HttpServlet {
                        + ( System.currentTimeMillis() - entryTime ) + " ms." );
         } finally {
             getInstance().CONTEXT.remove();
-            responseBuffer.flushBuffer();
-            if ( mainConfig.isValidateResponses() != null && mainConfig.isValidateResponses() ) {
-                validateResponse( responseBuffer );
+            if ( !responseBuffer.isAborted() ) {
+                responseBuffer.finish();
+                if ( mainConfig.isValidateResponses() != null && mainConfig.isValidateResponses() ) {
+                    validateResponse( responseBuffer );
+                }
             }
         }
     }
@@ -435,7 +445,7 @@ public class OGCFrontController extends HttpServlet {
         try {
             logHeaders( request );
             addHeaders( responseBuffer );
-            responseBuffer = handleCompression( responseBuffer );
+            handleCompression( request, responseBuffer );
 
             LOG.debug( "doPost(), contentType: '" + request.getContentType() + "'" );
 
@@ -519,9 +529,11 @@ public class OGCFrontController extends HttpServlet {
                        + ( System.currentTimeMillis() - entryTime ) + " ms." );
         } finally {
             instance.CONTEXT.remove();
-            responseBuffer.flushBuffer();
-            if ( mainConfig.isValidateResponses() != null && mainConfig.isValidateResponses() ) {
-                validateResponse( responseBuffer );
+            if ( !responseBuffer.isAborted() ) {
+                responseBuffer.finish();
+                if ( mainConfig.isValidateResponses() != null && mainConfig.isValidateResponses() ) {
+                    validateResponse( responseBuffer );
+                }
             }
         }
     }
@@ -616,15 +628,15 @@ public class OGCFrontController extends HttpServlet {
         return ows;
     }
 
-    private static HttpResponseBuffer handleCompression( HttpResponseBuffer response ) {
-        // TODO check if we should enable this in any case (XML, images, ...)
-        // String encoding = request.getHeader( "Accept-Encoding" );
-        // boolean supportsGzip = encoding != null && encoding.toLowerCase().contains( "gzip" );
-        // if ( supportsGzip ) {
-        // LOG.debug( "Using GZIP-compression" );
-        // response = new GZipHttpServletResponse( response );
-        // }
-        return response;
+    private void handleCompression( HttpServletRequest request, HttpResponseBuffer response ) {
+        if ( compressionPolicy == null ) {
+            return;
+        }
+        response.setVaryAcceptEncoding();
+        String encoding = compressionPolicy.selectEncoding( request.getHeader( "Accept-Encoding" ) );
+        if ( encoding != null ) {
+            response.enableCompression( compressionPolicy, encoding );
+        }
     }
 
     private static String readPostBodyAsString( InputStream is )
@@ -807,6 +819,7 @@ public class OGCFrontController extends HttpServlet {
             long dispatchTime = FrontControllerStats.requestDispatched();
             try {
                 watchTimeout( ows, request );
+                enableStreaming( ows, request, response );
                 ows.doKVP( normalizedKVPParams, requestWrapper, response, multiParts );
             } finally {
                 FrontControllerStats.requestFinished( dispatchTime );
@@ -894,6 +907,7 @@ public class OGCFrontController extends HttpServlet {
                 long dispatchTime = FrontControllerStats.requestDispatched();
                 try {
                     watchTimeout( ows, xmlStream.getLocalName() );
+                    enableStreaming( ows, xmlStream.getLocalName(), response );
                     ows.doXML( xmlStream, requestWrapper, response, multiParts );
                 } finally {
                     FrontControllerStats.requestFinished( dispatchTime );
@@ -1014,6 +1028,7 @@ public class OGCFrontController extends HttpServlet {
             long dispatchTime = FrontControllerStats.requestDispatched();
             try {
                 watchTimeout( ows, env.getSOAPBodyFirstElementLocalName() );
+                enableStreaming( ows, env.getSOAPBodyFirstElementLocalName(), response );
                 ows.doSOAP( env, requestWrapper, response, multiParts, factory );
             } finally {
                 FrontControllerStats.requestFinished( dispatchTime );
@@ -1146,6 +1161,18 @@ public class OGCFrontController extends HttpServlet {
         } else {
             LOG.info( "Not initializing request watchdog. No request time-outs configured." );
         }
+        if ( mainConfig != null ) {
+            initStreamedRequests( mainConfig.getStreamResponses() );
+        } else {
+            streamedRequests = emptyList();
+        }
+        if ( mainConfig != null && mainConfig.getResponseCompression() != null ) {
+            ResponseCompression config = mainConfig.getResponseCompression();
+            LOG.info( "Enabling response compression (level " + config.getLevel() + ")." );
+            compressionPolicy = new CompressionPolicy( config.getLevel(), config.getMinSize(), config.getContentType() );
+        } else {
+            compressionPolicy = null;
+        }
         LOG.info( "" );
     }
 
@@ -1170,6 +1197,14 @@ public class OGCFrontController extends HttpServlet {
         }
     }
 
+    private void initStreamedRequests( final List<StreamResponses> streamingConfigs ) {
+        streamedRequests = new ArrayList<StreamResponses>( streamingConfigs );
+        for ( StreamResponses config : streamedRequests ) {
+            String request = config.getRequest() != null ? config.getRequest() : "all requests";
+            LOG.info( "Streaming responses of service '" + config.getServiceId() + "' (" + request + ")." );
+        }
+    }
+
     private void initRequestWatchdog( final List<RequestTimeoutMilliseconds> timeoutConfigs ) {
         requestWatchdog = new RequestWatchdog( timeoutConfigs );
         requestWatchdog.init();
@@ -1552,6 +1587,8 @@ public class OGCFrontController extends HttpServlet {
                     throw new ServletException( e2 );
                 }
                 res.setExceptionSent();
+            } else {
+                res.abortCommittedResponse( e.getMessage(), e );
             }
         }
 
@@ -1567,6 +1604,44 @@ public class OGCFrontController extends HttpServlet {
         }
     }
 
+    /**
+     * Disables the buffering of the response if streaming has been configured for the service and request type. In
+     * this case, the response is sent to the client while it is being generated (using chunked transfer encoding).
+     */
+    private void enableStreaming( final OWS ows, final String requestName, final HttpResponseBuffer response ) {
+        if ( streamedRequests.isEmpty() || !response.isBuffering() ) {
+            return;
+        }
+        final String serviceId = ows.getMetadata().getIdentifier().getId();
+        if ( isStreamed( streamedRequests, serviceId, requestName ) ) {
+            LOG.debug( "Streaming response for request '" + requestName + "' to service '" + serviceId + "'." );
+            response.disableBuffering();
+        }
+    }
+
+    /**
+     * Returns whether the response to the given request should be streamed.
+     * 
+     * @param streamedRequests
+     *            streaming configurations, must not be <code>null</code>
+     * @param serviceId
+     *            id of the service, must not be <code>null</code>
+     * @param requestName
+     *            name of the request (case is ignored), can be <code>null</code>
+     * @return <code>true</code>, if a configuration matches the service and (unless it applies to all requests) the
+     *         request
+     */
+    static boolean isStreamed( final List<StreamResponses> streamedRequests, final String serviceId,
+                               final String requestName ) {
+        for ( StreamResponses config : streamedRequests ) {
+            if ( serviceId.equals( config.getServiceId() )
+                 && ( config.getRequest() == null || config.getRequest().equalsIgnoreCase( requestName ) ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void unwatchTimeout() {
         if ( requestWatchdog != null ) {
             requestWatchdog.unwatchCurrentThread();
@@ -0,0 +1,295 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Determines if and how responses are compressed (HTTP content encoding).
+ * <p>
+ * Compression is only applied if the client accepts <code>gzip</code> or <code>deflate</code> encoding and the content
+ * type of the response is compressible. If no content types are configured, textual types (<code>text/*</code>, XML and
+ * JSON) are compressed, while already compressed formats (e.g. PNG or JPEG images) are sent as they are.
+ * </p>
+ * 
+ * @see HttpResponseBuffer#enableCompression(CompressionPolicy, String)
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class CompressionPolicy {
+
+    /** Content encoding token for gzip compression. */
+    public static final String GZIP = "gzip";
+
+    /** Content encoding token for deflate (zlib) compression. */
+    public static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int level;
+
+    private final int minSize;
+
+    private final List<String> contentTypes;
+
+    /**
+     * Creates a new {@link CompressionPolicy} instance.
+     * 
+     * @param level
+     *            compression level (1-9), see {@link Deflater}
+     * @param minSize
+     *            minimum size (in bytes) of buffered responses to be compressed
+     * @param contentTypes
+     *            content types (prefixes) to compress, can be <code>null</code> or empty (compress textual types)
+     */
+    public CompressionPolicy( int level, int minSize, List<String> contentTypes ) {
+        if ( level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION ) {
+            throw new IllegalArgumentException( "Compression level must be between 1 and 9, but is " + level );
+        }
+        this.level = level;
+        this.minSize = minSize;
+        this.contentTypes = new ArrayList<String>();
+        if ( contentTypes != null ) {
+            for ( String contentType : contentTypes ) {
+                this.contentTypes.add( contentType.trim().toLowerCase( Locale.ENGLISH ) );
+            }
+        }
+    }
+
+    /**
+     * @return the compression level (1-9)
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the minimum size (in bytes) of buffered responses to be compressed
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Selects the content encoding for the given <code>Accept-Encoding</code> header.
+     * <p>
+     * Explicitly accepted codings are preferred. A wildcard (<code>*</code>) accepts all codings that are not listed
+     * explicitly, so <code>*, gzip;q=0</code> selects {@link #DEFLATE}.
+     * </p>
+     * 
+     * @param acceptEncoding
+     *            value of the <code>Accept-Encoding</code> request header, can be <code>null</code>
+     * @return {@link #GZIP}, {@link #DEFLATE} or <code>null</code> (no compression)
+     */
+    public String selectEncoding( String acceptEncoding ) {
+        if ( acceptEncoding == null ) {
+            return null;
+        }
+        Set<String> accepted = new HashSet<String>();
+        Set<String> refused = new HashSet<String>();
+        for ( String token : acceptEncoding.split( "," ) ) {
+            String[] parts = token.split( ";" );
+            String coding = parts[0].trim().toLowerCase( Locale.ENGLISH );
+            if ( "x-gzip".equals( coding ) ) {
+                coding = GZIP;
+            }
+            if ( isAccepted( parts ) ) {
+                accepted.add( coding );
+            } else {
+                refused.add( coding );
+            }
+        }
+        if ( accepted.contains( GZIP ) ) {
+            return GZIP;
+        }
+        if ( accepted.contains( DEFLATE ) ) {
+            return DEFLATE;
+        }
+        // "*" does not apply to codings that are listed explicitly (and refused)
+        if ( accepted.contains( "*" ) ) {
+            if ( !refused.contains( GZIP ) ) {
+                return GZIP;
+            }
+            if ( !refused.contains( DEFLATE ) ) {
+                return DEFLATE;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAccepted( String[] parts ) {
+        for ( int i = 1; i < parts.length; i++ ) {
+            String param = parts[i].trim().toLowerCase( Locale.ENGLISH );
+            if ( param.startsWith( "q=" ) ) {
+                try {
+                    return Double.parseDouble( param.substring( 2 ).trim() ) > 0.0;
+                } catch ( NumberFormatException e ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether responses with the given content type should be compressed.
+     * 
+     * @param contentType
+     *            content type of the response (parameters are ignored), can be <code>null</code>
+     * @return <code>true</code>, if the response should be compressed, <code>false</code> otherwise
+     */
+    public boolean isCompressible( String contentType ) {
+        if ( contentType == null ) {
+            return false;
+        }
+        String type = contentType.toLowerCase( Locale.ENGLISH );
+        int semicolon = type.indexOf( ';' );
+        if ( semicolon != -1 ) {
+            type = type.substring( 0, semicolon );
+        }
+        type = type.trim();
+        if ( contentTypes.isEmpty() ) {
+            return type.startsWith( "text/" ) || type.contains( "xml" ) || type.contains( "json" )
+                   || type.equals( "application/javascript" );
+        }
+        for ( String prefix : contentTypes ) {
+            if ( type.startsWith( prefix ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a compressing stream for the given content encoding.
+     * 
+     * @param encoding
+     *            {@link #GZIP} or {@link #DEFLATE}
+     * @param os
+     *            stream to write the compressed output to
+     * @param syncFlush
+     *            if <code>true</code>, {@link DeflaterOutputStream#flush()} also flushes the data that is pending in
+     *            the compressor (needed for streaming, slightly reduces the compression ratio)
+     * @return compressing stream (releases its resources on {@link DeflaterOutputStream#finish()}), never
+     *         <code>null</code>
+     * @throws IOException
+     */
+    DeflaterOutputStream createStream( String encoding, OutputStream os, final boolean syncFlush )
+                            throws IOException {
+        if ( GZIP.equals( encoding ) ) {
+            return new GZIPOutputStream( os, BUFFER_SIZE ) {
+                {
+                    def.setLevel( level );
+                }
+
+                @Override
+                public void flush()
+                                        throws IOException {
+                    if ( syncFlush ) {
+                        flushDeflater( def, buf, out );
+                    }
+                    out.flush();
+                }
+
+                @Override
+                public void finish()
+                                        throws IOException {
+                    super.finish();
+                    // the underlying stream is not closed, so release the native resources here
+                    def.end();
+                }
+            };
+        }
+        return new DeflaterOutputStream( os, new Deflater( level ), BUFFER_SIZE ) {
+            @Override
+            public void flush()
+                                    throws IOException {
+                if ( syncFlush ) {
+                    flushDeflater( def, buf, out );
+                }
+                out.flush();
+            }
+
+            @Override
+            public void finish()
+                                    throws IOException {
+                super.finish();
+                def.end();
+            }
+        };
+    }
+
+    /**
+     * Writes all data that is pending in the given compressor to the stream, so it can be decompressed by the
+     * receiver.
+     * <p>
+     * Java 6 doesn't support <code>SYNC_FLUSH</code>, but switching the level makes the compressor emit its pending
+     * data (ending with an empty stored block, which aligns the output to a byte boundary).
+     * </p>
+     */
+    private void flushDeflater( Deflater def, byte[] buf, OutputStream out )
+                            throws IOException {
+        if ( def.finished() ) {
+            return;
+        }
+        def.setInput( new byte[0], 0, 0 );
+        def.setLevel( Deflater.NO_COMPRESSION );
+        deflate( def, buf, out );
+        def.setLevel( level );
+        deflate( def, buf, out );
+    }
+
+    private static void deflate( Deflater def, byte[] buf, OutputStream out )
+                            throws IOException {
+        int len;
+        while ( ( len = def.deflate( buf, 0, buf.length ) ) > 0 ) {
+            out.write( buf, 0, len );
+        }
+    }
+
+}
@@ -46,7 +46,9 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.DeflaterOutputStream;
 
+import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
@@ -118,6 +120,18 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
 
     private final HttpServletResponse wrappee;
 
+    private boolean aborted;
+
+    private CompressionPolicy compression;
+
+    private String compressionEncoding;
+
+    private CompressingServletOutputStream compressedOutput;
+
+    private int contentLength = -1;
+
+    private boolean varyAcceptEncoding;
+
     /**
      * @param response
      */
@@ -151,10 +165,113 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
         this.buffer = null;
     }
 
+    /**
+     * Enables the compression of the output using the given content encoding.
+     * <p>
+     * The decision whether the response is actually compressed is made when the first bytes are sent to the client:
+     * only responses with a compressible content type (and, if buffered, a minimum size) are compressed. This works
+     * for buffered and unbuffered (streamed) responses. As the length of the compressed output is not known in
+     * advance, calls to {@link #setContentLength(int)} are only passed on if the response is not compressed.
+     * </p>
+     * <p>
+     * This method may only be called, if neither {@link #getWriter()}, {@link #getOutputStream()} nor
+     * {@link #getXMLWriter()} has been called before.
+     * </p>
+     * 
+     * @param policy
+     *            compression policy, must not be <code>null</code>
+     * @param encoding
+     *            content encoding, {@link CompressionPolicy#GZIP} or {@link CompressionPolicy#DEFLATE}
+     */
+    public void enableCompression( CompressionPolicy policy, String encoding ) {
+        if ( returnType != ReturnType.NOT_DEFINED_YET ) {
+            throw new IllegalStateException(
+                                             "getOutputStream() / getWriter() has already been called for this response, cannot enable compression" );
+        }
+        LOG.debug( "Enabling " + encoding + " compression." );
+        this.compression = policy;
+        this.compressionEncoding = encoding;
+    }
+
+    /**
+     * Adds a <code>Vary: Accept-Encoding</code> header to the response, as the response depends on the
+     * <code>Accept-Encoding</code> request header if compression is configured (even if it is not compressed).
+     * <p>
+     * The header is kept when the response is {@link #reset()}.
+     * </p>
+     */
+    public void setVaryAcceptEncoding() {
+        varyAcceptEncoding = true;
+        addHeader( "Vary", "Accept-Encoding" );
+    }
+
+    /**
+     * Returns whether the output is buffered.
+     * 
+     * @return <code>true</code>, if the output is buffered, <code>false</code> if it is written directly to the client
+     */
+    public boolean isBuffering() {
+        return buffer != null;
+    }
+
+    /**
+     * Reports an error that occurred after the response has already been committed to the client (which can only
+     * happen if buffering has been disabled).
+     * <p>
+     * If the response is written using {@link #getXMLWriter()}, a trailing comment with the error message is appended
+     * to the (incomplete) document. Afterwards, a {@link ServletException} is thrown, so that the servlet container
+     * closes the connection without sending the terminating chunk. This way, clients are able to detect that the
+     * response has been truncated. An aborted response is neither flushed nor finished anymore, see
+     * {@link #flushBuffer()} and {@link #finish()}.
+     * </p>
+     * 
+     * @param message
+     *            error message, can be <code>null</code>
+     * @param cause
+     *            cause of the error, can be <code>null</code>
+     * @throws ServletException
+     *             always
+     */
+    public void abortCommittedResponse( String message, Throwable cause )
+                            throws ServletException {
+        if ( !aborted ) {
+            aborted = true;
+            LOG.error( "Error after response has been committed, aborting response: " + message );
+            appendAbortComment( message );
+            setExceptionSent();
+        }
+        throw new ServletException( "Response has already been committed: " + message, cause );
+    }
+
+    private void appendAbortComment( String message ) {
+        if ( xmlWriter != null ) {
+            try {
+                String comment = message == null ? "" : message.replace( "--", "- -" );
+                xmlWriter.writeComment( " Response aborted: " + comment + " " );
+                xmlWriter.flush();
+                if ( compressedOutput != null ) {
+                    // compressor holds back data until it is finished
+                    compressedOutput.finish();
+                }
+                super.flushBuffer();
+            } catch ( Exception e ) {
+                LOG.debug( "Unable to append error comment: " + e.getLocalizedMessage(), e );
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code>, if {@link #abortCommittedResponse(String, Throwable)} has been called for this
+     *         response
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
     @Override
     public PrintWriter getWriter()
                             throws IOException {
-        if ( buffer == null ) {
+        if ( buffer == null && compression == null ) {
             return super.getWriter();
         }
 
@@ -163,7 +280,8 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
             if ( encoding == null || "".equals( encoding ) ) {
                 encoding = Charset.defaultCharset().name();
             }
-            OutputStreamWriter writer = new OutputStreamWriter( outputStream, encoding );
+            OutputStream os = buffer != null ? outputStream : getCompressedOutput();
+            OutputStreamWriter writer = new OutputStreamWriter( os, encoding );
             printWriter = new PrintWriter( writer );
             returnType = ReturnType.PRINT_WRITER;
         }
@@ -176,7 +294,7 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
     @Override
     public ServletOutputStream getOutputStream()
                             throws IOException {
-        if ( buffer == null ) {
+        if ( buffer == null && compression == null ) {
             return super.getOutputStream();
         }
         if ( returnType == ReturnType.NOT_DEFINED_YET ) {
@@ -185,7 +303,25 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
         if ( returnType == ReturnType.PRINT_WRITER ) {
             throw new IllegalStateException( "getWriter() has already been called for this response" );
         }
-        return outputStream;
+        return buffer != null ? outputStream : getCompressedOutput();
+    }
+
+    private CompressingServletOutputStream getCompressedOutput()
+                            throws IOException {
+        if ( compressedOutput == null ) {
+            compressedOutput = new CompressingServletOutputStream( super.getOutputStream() );
+        }
+        return compressedOutput;
+    }
+
+    @Override
+    public void setContentLength( int len ) {
+        if ( compression != null ) {
+            // passed on when it's clear that the response is not compressed
+            contentLength = len;
+        } else {
+            super.setContentLength( len );
+        }
     }
 
     /**
@@ -296,6 +432,10 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
     @Override
     public void flushBuffer()
                             throws IOException {
+        if ( aborted ) {
+            LOG.debug( "Response has been aborted, not flushing." );
+            return;
+        }
         if ( wrappee instanceof LoggingHttpResponseWrapper ) {
             ( (LoggingHttpResponseWrapper) wrappee ).finalizeLogging();
         }
@@ -307,21 +447,60 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
                 throw new IOException( e );
             }
         }
+        if ( returnType == ReturnType.PRINT_WRITER ) {
+            printWriter.flush();
+        }
         if ( buffer != null ) {
             buffer.flush();
-            buffer.writeTo( super.getOutputStream() );
+            if ( compression == null ) {
+                buffer.writeTo( super.getOutputStream() );
+            } else if ( buffer.size() > 0 ) {
+                CompressingServletOutputStream os = getCompressedOutput();
+                os.init( buffer.size() < compression.getMinSize() );
+                buffer.writeTo( os );
+                os.flush();
+            }
             buffer.reset();
+        } else if ( compressedOutput != null ) {
+            compressedOutput.flush();
         }
         super.flushBuffer();
     }
 
+    /**
+     * Flushes the buffer and completes the response, i.e. writes the trailer of compressed output.
+     * <p>
+     * Must be called after the request has been handled completely. No output may be written afterwards.
+     * </p>
+     * 
+     * @throws IOException
+     */
+    public void finish()
+                            throws IOException {
+        flushBuffer();
+        if ( compressedOutput != null && !aborted ) {
+            compressedOutput.finish();
+            super.flushBuffer();
+        }
+    }
+
     @Override
     public void reset() {
-        if ( buffer != null && !isCommitted() ) {
-            buffer.reset();
+        if ( !isCommitted() ) {
+            if ( buffer != null ) {
+                buffer.reset();
+            }
+            if ( compressedOutput != null ) {
+                compressedOutput.discard();
+                compressedOutput = null;
+            }
             super.reset();
+            if ( varyAcceptEncoding ) {
+                addHeader( "Vary", "Accept-Encoding" );
+            }
             returnType = ReturnType.NOT_DEFINED_YET;
             xmlWriter = null;
+            contentLength = -1;
         } else {
             super.reset(); // throws IllegalStateException
         }
@@ -354,6 +533,126 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
         }
     }
 
+    /**
+     * {@link ServletOutputStream} that compresses the output, if the response turns out to be compressible when the
+     * first bytes are written.
+     */
+    private class CompressingServletOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream sink;
+
+        // null, if the decision about compression has not been made yet
+        private OutputStream os;
+
+        private DeflaterOutputStream deflater;
+
+        // set, if the compressed output is not sent to the client anymore
+        private boolean discarded;
+
+        CompressingServletOutputStream( ServletOutputStream sink ) {
+            this.sink = sink;
+        }
+
+        void init( boolean forceUncompressed )
+                                throws IOException {
+            if ( os != null ) {
+                return;
+            }
+            if ( !forceUncompressed && !isCommitted() && compression.isCompressible( getContentType() ) ) {
+                LOG.debug( "Compressing response (" + compressionEncoding + ")." );
+                wrappee.setHeader( "Content-Encoding", compressionEncoding );
+                // unbuffered output is flushed to the client as it is written, so sync flush is required
+                deflater = compression.createStream( compressionEncoding, new DiscardableOutputStream(),
+                                                     buffer == null );
+                os = deflater;
+            } else {
+                if ( contentLength >= 0 ) {
+                    wrappee.setContentLength( contentLength );
+                }
+                os = sink;
+            }
+        }
+
+        void finish()
+                                throws IOException {
+            if ( deflater != null ) {
+                deflater.finish();
+                deflater = null;
+            }
+        }
+
+        /**
+         * Releases the compressor without sending any more data to the client.
+         */
+        void discard() {
+            discarded = true;
+            try {
+                finish();
+            } catch ( IOException e ) {
+                LOG.debug( "Unable to release compressor: " + e.getLocalizedMessage(), e );
+            }
+        }
+
+        @Override
+        public void write( byte[] b )
+                                throws IOException {
+            init( false );
+            os.write( b );
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+                                throws IOException {
+            init( false );
+            os.write( b, off, len );
+        }
+
+        @Override
+        public void write( int b )
+                                throws IOException {
+            init( false );
+            os.write( b );
+        }
+
+        @Override
+        public void flush()
+                                throws IOException {
+            if ( os != null ) {
+                os.flush();
+            }
+        }
+
+        /**
+         * Passes the compressed output on to the client, unless it has been discarded.
+         */
+        private class DiscardableOutputStream extends OutputStream {
+
+            @Override
+            public void write( byte[] b, int off, int len )
+                                    throws IOException {
+                if ( !discarded ) {
+                    sink.write( b, off, len );
+                }
+            }
+
+            @Override
+            public void write( int b )
+                                    throws IOException {
+                if ( !discarded ) {
+                    sink.write( b );
+                }
+            }
+
+            @Override
+            public void flush()
+                                    throws IOException {
+                if ( !discarded ) {
+                    sink.flush();
+                }
+            }
+        }
+    }
+
     /**
      * This is a ServletOutputStream that uses our internal ByteArrayOutputStream to buffer all data.
      */
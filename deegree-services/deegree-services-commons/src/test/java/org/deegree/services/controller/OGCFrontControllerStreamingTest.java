@@ -0,0 +1,100 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.deegree.services.jaxb.controller.DeegreeServiceControllerType.StreamResponses;
+import org.junit.Test;
+
+/**
+ * Unit tests for the selection of streamed responses in {@link OGCFrontController}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class OGCFrontControllerStreamingTest {
+
+    @Test
+    public void testNoConfiguration() {
+        List<StreamResponses> configs = Collections.emptyList();
+        assertFalse( OGCFrontController.isStreamed( configs, "wfs", "GetFeature" ) );
+    }
+
+    @Test
+    public void testAllRequestsOfService() {
+        List<StreamResponses> configs = asList( config( "wfs", null ) );
+        assertTrue( OGCFrontController.isStreamed( configs, "wfs", "GetFeature" ) );
+        assertTrue( OGCFrontController.isStreamed( configs, "wfs", "DescribeFeatureType" ) );
+        assertTrue( OGCFrontController.isStreamed( configs, "wfs", null ) );
+        assertFalse( OGCFrontController.isStreamed( configs, "wms", "GetMap" ) );
+    }
+
+    @Test
+    public void testSingleRequestIgnoresCase() {
+        List<StreamResponses> configs = asList( config( "wfs", "GetFeature" ) );
+        assertTrue( OGCFrontController.isStreamed( configs, "wfs", "GetFeature" ) );
+        assertTrue( OGCFrontController.isStreamed( configs, "wfs", "getfeature" ) );
+        assertFalse( OGCFrontController.isStreamed( configs, "wfs", "GetPropertyValue" ) );
+        assertFalse( OGCFrontController.isStreamed( configs, "wfs", null ) );
+    }
+
+    @Test
+    public void testServiceIdIsCaseSensitive() {
+        List<StreamResponses> configs = asList( config( "wfs", null ) );
+        assertFalse( OGCFrontController.isStreamed( configs, "WFS", "GetFeature" ) );
+    }
+
+    @Test
+    public void testMultipleConfigurations() {
+        List<StreamResponses> configs = asList( config( "wfs", "GetFeature" ), config( "wms", null ) );
+        assertTrue( OGCFrontController.isStreamed( configs, "wfs", "GetFeature" ) );
+        assertTrue( OGCFrontController.isStreamed( configs, "wms", "GetMap" ) );
+        assertFalse( OGCFrontController.isStreamed( configs, "wfs", "GetCapabilities" ) );
+    }
+
+    private static StreamResponses config( String serviceId, String request ) {
+        StreamResponses config = new StreamResponses();
+        config.setServiceId( serviceId );
+        config.setRequest( request );
+        return config;
+    }
+}
@@ -0,0 +1,183 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import static java.util.Arrays.asList;
+import static org.deegree.services.controller.utils.CompressionPolicy.DEFLATE;
+import static org.deegree.services.controller.utils.CompressionPolicy.GZIP;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CompressionPolicy}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CompressionPolicyTest {
+
+    private final CompressionPolicy defaultPolicy = new CompressionPolicy( 6, 1024, null );
+
+    @Test
+    public void testSelectEncoding() {
+        assertNull( defaultPolicy.selectEncoding( null ) );
+        assertNull( defaultPolicy.selectEncoding( "identity" ) );
+        assertEquals( GZIP, defaultPolicy.selectEncoding( "gzip, deflate" ) );
+        assertEquals( GZIP, defaultPolicy.selectEncoding( "deflate, GZIP" ) );
+        assertEquals( DEFLATE, defaultPolicy.selectEncoding( "deflate" ) );
+        assertEquals( GZIP, defaultPolicy.selectEncoding( "*" ) );
+    }
+
+    @Test
+    public void testSelectEncodingQualityZero() {
+        assertEquals( DEFLATE, defaultPolicy.selectEncoding( "gzip;q=0, deflate" ) );
+        assertNull( defaultPolicy.selectEncoding( "gzip; q=0.0" ) );
+        assertEquals( GZIP, defaultPolicy.selectEncoding( "gzip;q=0.5" ) );
+        assertEquals( GZIP, defaultPolicy.selectEncoding( "x-gzip" ) );
+    }
+
+    @Test
+    public void testSelectEncodingWildcard() {
+        assertEquals( DEFLATE, defaultPolicy.selectEncoding( "*, gzip;q=0" ) );
+        assertEquals( GZIP, defaultPolicy.selectEncoding( "*, deflate;q=0" ) );
+        assertNull( defaultPolicy.selectEncoding( "*, gzip;q=0, deflate;q=0" ) );
+        assertNull( defaultPolicy.selectEncoding( "*;q=0" ) );
+    }
+
+    @Test
+    public void testDefaultContentTypes() {
+        assertTrue( defaultPolicy.isCompressible( "text/xml; subtype=gml/3.2.1" ) );
+        assertTrue( defaultPolicy.isCompressible( "application/vnd.ogc.wms_xml" ) );
+        assertTrue( defaultPolicy.isCompressible( "application/json" ) );
+        assertFalse( defaultPolicy.isCompressible( "image/png" ) );
+        assertFalse( defaultPolicy.isCompressible( "image/jpeg" ) );
+        assertFalse( defaultPolicy.isCompressible( null ) );
+    }
+
+    @Test
+    public void testConfiguredContentTypes() {
+        CompressionPolicy policy = new CompressionPolicy( 1, 0, asList( "application/gml+xml", "image/tiff" ) );
+        assertTrue( policy.isCompressible( "application/gml+xml; version=3.2" ) );
+        assertTrue( policy.isCompressible( "IMAGE/TIFF" ) );
+        assertFalse( policy.isCompressible( "text/xml" ) );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        new CompressionPolicy( 10, 0, null );
+    }
+
+    @Test
+    public void testGzipRoundTrip()
+                            throws IOException {
+        byte[] data = "<wfs:FeatureCollection></wfs:FeatureCollection>".getBytes( "UTF-8" );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DeflaterOutputStream os = defaultPolicy.createStream( GZIP, bos, false );
+        os.write( data );
+        os.finish();
+        byte[] decompressed = IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( bos.toByteArray() ) ) );
+        assertEquals( new String( data, "UTF-8" ), new String( decompressed, "UTF-8" ) );
+    }
+
+    @Test
+    public void testSyncFlush()
+                            throws Exception {
+        byte[] data = "<wfs:FeatureCollection>".getBytes( "UTF-8" );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DeflaterOutputStream os = defaultPolicy.createStream( DEFLATE, bos, true );
+        os.write( data );
+        os.flush();
+        // all data written so far can be decompressed, although the stream has not been finished
+        Inflater inflater = new Inflater();
+        inflater.setInput( bos.toByteArray() );
+        byte[] decompressed = new byte[data.length];
+        assertEquals( data.length, inflater.inflate( decompressed ) );
+        assertFalse( inflater.finished() );
+        inflater.end();
+        assertEquals( new String( data, "UTF-8" ), new String( decompressed, "UTF-8" ) );
+        os.finish();
+    }
+
+    @Test
+    public void testGzipSyncFlush()
+                            throws Exception {
+        byte[] data = "<wfs:FeatureCollection>".getBytes( "UTF-8" );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DeflaterOutputStream os = defaultPolicy.createStream( GZIP, bos, true );
+        os.write( data );
+        os.flush();
+        // skip the gzip header (10 bytes, no optional fields), the rest is raw deflate data
+        byte[] compressed = bos.toByteArray();
+        Inflater inflater = new Inflater( true );
+        inflater.setInput( compressed, 10, compressed.length - 10 );
+        byte[] decompressed = new byte[data.length];
+        assertEquals( data.length, inflater.inflate( decompressed ) );
+        inflater.end();
+        assertEquals( new String( data, "UTF-8" ), new String( decompressed, "UTF-8" ) );
+        os.finish();
+    }
+
+    @Test
+    public void testSyncFlushKeepsStreamValid()
+                            throws IOException {
+        StringBuilder expected = new StringBuilder();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DeflaterOutputStream os = defaultPolicy.createStream( GZIP, bos, true );
+        for ( int i = 0; i < 100; i++ ) {
+            String s = "<wfs:member id=\"" + i + "\"/>";
+            expected.append( s );
+            os.write( s.getBytes( "UTF-8" ) );
+            os.flush();
+            os.flush();
+        }
+        os.finish();
+        byte[] decompressed = IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( bos.toByteArray() ) ) );
+        assertEquals( expected.toString(), new String( decompressed, "UTF-8" ) );
+    }
+
+}
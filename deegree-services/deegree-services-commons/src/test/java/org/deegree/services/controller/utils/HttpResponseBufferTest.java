@@ -0,0 +1,203 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Inflater;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link HttpResponseBuffer}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class HttpResponseBufferTest {
+
+    private ByteArrayOutputStream sent;
+
+    private HttpServletResponse wrappee;
+
+    private HttpResponseBuffer response;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        sent = new ByteArrayOutputStream();
+        wrappee = mock( HttpServletResponse.class );
+        when( wrappee.getOutputStream() ).thenReturn( new ServletOutputStream() {
+            @Override
+            public void write( int b ) {
+                sent.write( b );
+            }
+        } );
+        response = new HttpResponseBuffer( wrappee );
+    }
+
+    @Test
+    public void testBufferedByDefault()
+                            throws IOException {
+        assertTrue( response.isBuffering() );
+        response.getOutputStream().write( "abc".getBytes() );
+        assertEquals( 0, sent.size() );
+        response.flushBuffer();
+        assertEquals( "abc", sent.toString() );
+    }
+
+    @Test
+    public void testDisableBuffering()
+                            throws IOException {
+        response.disableBuffering();
+        assertFalse( response.isBuffering() );
+        response.getOutputStream().write( "abc".getBytes() );
+        assertEquals( "abc", sent.toString() );
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDisableBufferingAfterGetOutputStream()
+                            throws IOException {
+        response.getOutputStream();
+        response.disableBuffering();
+    }
+
+    @Test
+    public void testStreamedCompression()
+                            throws Exception {
+        when( wrappee.getContentType() ).thenReturn( "text/xml" );
+        response.enableCompression( new CompressionPolicy( 6, 1024, null ), CompressionPolicy.DEFLATE );
+        response.disableBuffering();
+        byte[] data = "<wfs:FeatureCollection>".getBytes( "UTF-8" );
+        response.getOutputStream().write( data );
+        response.flushBuffer();
+        // streamed output must be decompressible before the response is finished
+        Inflater inflater = new Inflater();
+        inflater.setInput( sent.toByteArray() );
+        byte[] decompressed = new byte[data.length];
+        assertEquals( data.length, inflater.inflate( decompressed ) );
+        inflater.end();
+        assertEquals( new String( data, "UTF-8" ), new String( decompressed, "UTF-8" ) );
+        verify( wrappee ).setHeader( "Content-Encoding", CompressionPolicy.DEFLATE );
+    }
+
+    @Test
+    public void testResetKeepsVaryHeader() {
+        response.setVaryAcceptEncoding();
+        response.reset();
+        verify( wrappee ).reset();
+        verify( wrappee, times( 2 ) ).addHeader( "Vary", "Accept-Encoding" );
+    }
+
+    @Test
+    public void testResetDiscardsCompressedOutput()
+                            throws Exception {
+        when( wrappee.getContentType() ).thenReturn( "text/xml" );
+        response.enableCompression( new CompressionPolicy( 6, 0, null ), CompressionPolicy.GZIP );
+        response.getOutputStream().write( "<wfs:FeatureCollection>".getBytes( "UTF-8" ) );
+        response.flushBuffer();
+        int size = sent.size();
+        response.reset();
+        // the released compressor must not write its trailer
+        assertEquals( size, sent.size() );
+        response.getOutputStream().write( "<ows:ExceptionReport/>".getBytes( "UTF-8" ) );
+        response.finish();
+        assertTrue( sent.size() > size );
+    }
+
+    @Test
+    public void testAbortCommittedResponse()
+                            throws Exception {
+        response.disableBuffering();
+        XMLStreamWriter writer = response.getXMLWriter();
+        writer.writeStartElement( "FeatureCollection" );
+        writer.writeStartElement( "member" );
+        writer.flush();
+        IllegalArgumentException cause = new IllegalArgumentException();
+        try {
+            response.abortCommittedResponse( "a -- b", cause );
+            fail( "ServletException expected" );
+        } catch ( ServletException e ) {
+            assertSame( cause, e.getCause() );
+        }
+        assertTrue( response.isAborted() );
+        String output = sent.toString( "UTF-8" );
+        assertTrue( output.startsWith( "<?xml" ) );
+        assertTrue( output.contains( "<member>" ) );
+        assertTrue( output.trim().endsWith( "<!-- Response aborted: a - - b -->" ) );
+    }
+
+    @Test
+    public void testNoOutputAfterAbort()
+                            throws Exception {
+        response.disableBuffering();
+        XMLStreamWriter writer = response.getXMLWriter();
+        writer.writeStartElement( "FeatureCollection" );
+        try {
+            response.abortCommittedResponse( "first", null );
+            fail( "ServletException expected" );
+        } catch ( ServletException e ) {
+            // expected
+        }
+        int size = sent.size();
+        try {
+            response.abortCommittedResponse( "second", null );
+            fail( "ServletException expected" );
+        } catch ( ServletException e ) {
+            // expected
+        }
+        response.flushBuffer();
+        response.finish();
+        assertEquals( size, sent.size() );
+        assertFalse( sent.toString( "UTF-8" ).contains( "second" ) );
+    }
+}
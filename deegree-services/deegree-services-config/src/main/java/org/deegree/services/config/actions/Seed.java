@@ -0,0 +1,239 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.config.actions;
+
+import static org.deegree.commons.ows.exception.OWSException.INVALID_PARAMETER_VALUE;
+import static org.deegree.commons.ows.exception.OWSException.MISSING_PARAMETER_VALUE;
+import static org.deegree.commons.utils.kvp.KVPUtils.getNormalizedKVPMap;
+import static org.deegree.services.config.actions.Utils.getWorkspaceAndPath;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.commons.config.DeegreeWorkspace;
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.commons.utils.ArrayUtils;
+import org.deegree.commons.utils.Pair;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.persistence.TileSeeder;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreProvider;
+import org.deegree.tile.persistence.cache.CachingTileStore;
+import org.deegree.workspace.Workspace;
+import org.slf4j.Logger;
+
+/**
+ * Starts, monitors and cancels tile seeding jobs.
+ * <p>
+ * The jobs are managed by the {@link SeedingJobs} of the workspace, so they are cancelled when the workspace is
+ * destroyed.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class Seed {
+
+    private static final Logger LOG = getLogger( Seed.class );
+
+    public static void seed( String path, String qstring, HttpServletResponse resp )
+                            throws IOException {
+        Pair<DeegreeWorkspace, String> p = getWorkspaceAndPath( path );
+        seed( p.first.getNewWorkspace(), p.first.getLocation(), path, qstring, resp );
+    }
+
+    static void seed( Workspace workspace, File location, String path, String qstring, HttpServletResponse resp )
+                            throws IOException {
+        resp.setContentType( "text/plain" );
+
+        SeedingJobs jobs = workspace.getInitializable( SeedingJobs.class );
+        if ( jobs == null ) {
+            resp.setStatus( 500 );
+            IOUtils.write( "Seeding is not available in this workspace.\n", resp.getOutputStream() );
+            return;
+        }
+
+        String[] parts = path.split( "/" );
+        if ( parts.length < 2 ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "No tile store id and tile matrix set specified.\n", resp.getOutputStream() );
+            return;
+        }
+        String id = parts[0];
+        String tmsid = parts[1];
+        String jobId = id + "/" + tmsid;
+
+        Map<String, String> params = Collections.emptyMap();
+        if ( qstring != null ) {
+            params = getNormalizedKVPMap( qstring, "UTF-8" );
+        }
+
+        synchronized ( jobs ) {
+            TileSeeder running = jobs.get( jobId );
+            if ( running != null && !running.isFinished() ) {
+                if ( "true".equalsIgnoreCase( params.get( "CANCEL" ) ) ) {
+                    running.cancel();
+                }
+                writeStatus( running, resp );
+                return;
+            }
+            if ( qstring == null || params.containsKey( "CANCEL" ) ) {
+                if ( running != null ) {
+                    writeStatus( running, resp );
+                } else {
+                    resp.setStatus( 404 );
+                    IOUtils.write( "No seeding job for this tile data set.\n", resp.getOutputStream() );
+                }
+                return;
+            }
+
+            TileStore ts = workspace.getResource( TileStoreProvider.class, id );
+            if ( ts == null || ts.getTileDataSet( tmsid ) == null ) {
+                resp.setStatus( 404 );
+                IOUtils.write( "No such tile store or tile data set.\n", resp.getOutputStream() );
+                return;
+            }
+
+            TileStore sourceStore;
+            String sourceId = params.get( "SOURCE" );
+            if ( sourceId != null ) {
+                sourceStore = workspace.getResource( TileStoreProvider.class, sourceId );
+            } else if ( ts instanceof CachingTileStore ) {
+                sourceStore = ( (CachingTileStore) ts ).getCachedTileStore();
+            } else {
+                resp.setStatus( 400 );
+                IOUtils.write( MISSING_PARAMETER_VALUE
+                               + ": The tile store is no caching tile store, please specify a source tile store.\n",
+                               resp.getOutputStream() );
+                return;
+            }
+            TileDataSet source = sourceStore == null ? null : sourceStore.getTileDataSet( tmsid );
+            if ( source == null ) {
+                resp.setStatus( 404 );
+                IOUtils.write( "No such source tile store or tile data set.\n", resp.getOutputStream() );
+                return;
+            }
+
+            Envelope bbox = null;
+            int minLevel = 0;
+            int maxLevel = Integer.MAX_VALUE;
+            int threads = 1;
+            int metatileColumns = 1;
+            int metatileRows = 1;
+            try {
+                if ( params.get( "BBOX" ) != null ) {
+                    double[] ds = parseDoubles( "BBOX", params.get( "BBOX" ) );
+                    if ( ds.length != 4 ) {
+                        throw invalidParameter( "BBOX" );
+                    }
+                    bbox = new GeometryFactory().createEnvelope( ds[0], ds[1], ds[2], ds[3],
+                                                                 source.getTileMatrixSet().getSpatialMetadata().getCoordinateSystems().get( 0 ) );
+                }
+                if ( params.get( "LEVELS" ) != null ) {
+                    String[] levels = params.get( "LEVELS" ).split( "," );
+                    minLevel = parseInt( "LEVELS", levels[0] );
+                    maxLevel = parseInt( "LEVELS", levels[levels.length - 1] );
+                }
+                if ( params.get( "THREADS" ) != null ) {
+                    threads = Math.max( 1, parseInt( "THREADS", params.get( "THREADS" ) ) );
+                }
+                if ( params.get( "METATILE" ) != null ) {
+                    String[] metatile = params.get( "METATILE" ).split( "," );
+                    metatileColumns = Math.max( 1, parseInt( "METATILE", metatile[0] ) );
+                    metatileRows = Math.max( 1, parseInt( "METATILE", metatile[metatile.length - 1] ) );
+                }
+            } catch ( OWSException e ) {
+                resp.setStatus( 400 );
+                IOUtils.write( e.getExceptionCode() + ": " + e.getMessage() + "\n", resp.getOutputStream() );
+                return;
+            }
+            boolean reseed = "true".equalsIgnoreCase( params.get( "RESEED" ) );
+
+            File checkpoint = new File( location, ".seed-" + id + "-" + tmsid + ".properties" );
+            TileSeeder seeder = new TileSeeder( source, ts, tmsid, bbox, minLevel, maxLevel, threads, metatileColumns,
+                                                metatileRows, reseed, checkpoint );
+            jobs.start( jobId, seeder );
+            LOG.info( "Started seeding of '{}'.", jobId );
+            IOUtils.write( "Seeding started.\n", resp.getOutputStream() );
+        }
+    }
+
+    private static int parseInt( String name, String value )
+                            throws OWSException {
+        try {
+            return Integer.parseInt( value.trim() );
+        } catch ( NumberFormatException e ) {
+            throw invalidParameter( name );
+        }
+    }
+
+    private static double[] parseDoubles( String name, String value )
+                            throws OWSException {
+        try {
+            return ArrayUtils.splitAsDoubles( value, "," );
+        } catch ( NumberFormatException e ) {
+            throw invalidParameter( name );
+        }
+    }
+
+    private static OWSException invalidParameter( String name ) {
+        return new OWSException( "The value of the " + name.toLowerCase() + " parameter was invalid.",
+                                 INVALID_PARAMETER_VALUE, name.toLowerCase() );
+    }
+
+    private static void writeStatus( TileSeeder seeder, HttpServletResponse resp )
+                            throws IOException {
+        String state = seeder.isFinished() ? ( seeder.isCancelled() ? "cancelled" : "finished" )
+                                          : ( seeder.isCancelled() ? "cancelling" : "running" );
+        StringBuilder sb = new StringBuilder();
+        sb.append( "state: " ).append( state ).append( "\n" );
+        sb.append( "total: " ).append( seeder.getTotalTiles() ).append( "\n" );
+        sb.append( "seeded: " ).append( seeder.getSeededTiles() ).append( "\n" );
+        sb.append( "failed: " ).append( seeder.getFailedTiles() ).append( "\n" );
+        IOUtils.write( sb.toString(), resp.getOutputStream() );
+    }
+
+}
@@ -0,0 +1,152 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.config.actions;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.tile.persistence.TileSeeder;
+import org.deegree.workspace.Destroyable;
+import org.deegree.workspace.Initializable;
+import org.deegree.workspace.Workspace;
+import org.slf4j.Logger;
+
+/**
+ * Keeps track of the tile seeding jobs of a workspace.
+ * <p>
+ * The jobs run on a thread pool that is owned by the workspace: when the workspace is destroyed (e.g. on restart or
+ * shutdown), running jobs are cancelled and their threads are stopped.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+public class SeedingJobs implements Initializable, Destroyable {
+
+    private static final Logger LOG = getLogger( SeedingJobs.class );
+
+    // keys are tile store id + "/" + tile data set id, finished jobs are kept to report their final state
+    private final Map<String, TileSeeder> jobs = new HashMap<String, TileSeeder>();
+
+    private ExecutorService executor;
+
+    @Override
+    public void init( Workspace workspace ) {
+        executor = Executors.newCachedThreadPool( new SeedingThreadFactory() );
+    }
+
+    @Override
+    public void destroy( Workspace workspace ) {
+        // destroyables are separate instances, the jobs belong to the instance that has been initialized
+        SeedingJobs jobs = workspace.getInitializable( SeedingJobs.class );
+        if ( jobs != null ) {
+            jobs.shutdown();
+        }
+    }
+
+    /**
+     * Returns the job for the given tile data set.
+     * 
+     * @param jobId
+     *            tile store id + "/" + tile data set id, must not be <code>null</code>
+     * @return the running or last finished job, or <code>null</code> if there is none
+     */
+    synchronized TileSeeder get( String jobId ) {
+        return jobs.get( jobId );
+    }
+
+    /**
+     * Starts the given job in the background, replacing a finished job for the same tile data set.
+     * 
+     * @param jobId
+     *            tile store id + "/" + tile data set id, must not be <code>null</code>
+     * @param seeder
+     *            the job to start, must not be <code>null</code>
+     * @throws RejectedExecutionException
+     *             if the workspace has already been destroyed
+     */
+    synchronized void start( final String jobId, final TileSeeder seeder ) {
+        executor.execute( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    seeder.seed();
+                } catch ( InterruptedException e ) {
+                    LOG.info( "Seeding of '{}' has been interrupted.", jobId );
+                } catch ( Throwable e ) {
+                    LOG.error( "Seeding of '" + jobId + "' failed: " + e.getMessage(), e );
+                }
+            }
+        } );
+        jobs.put( jobId, seeder );
+    }
+
+    /**
+     * Cancels all running jobs and stops their threads. No more jobs can be started afterwards.
+     */
+    synchronized void shutdown() {
+        for ( TileSeeder seeder : jobs.values() ) {
+            if ( !seeder.isFinished() ) {
+                seeder.cancel();
+            }
+        }
+        if ( executor != null ) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class SeedingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "seeding-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+
+}
@@ -44,6 +44,7 @@ import static org.deegree.services.config.actions.Invalidate.invalidate;
 import static org.deegree.services.config.actions.List.list;
 import static org.deegree.services.config.actions.ListWorkspaces.listWorkspaces;
 import static org.deegree.services.config.actions.Restart.restart;
+import static org.deegree.services.config.actions.Seed.seed;
 import static org.deegree.services.config.actions.Upload.upload;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -91,6 +92,7 @@ public class ConfigServlet extends HttpServlet {
             data.append( "GET /config/list[/path]                                      - list currently running workspace or directory in workspace\n" );
             data.append( "GET /config/list/wsname[/path]                               - list workspace with name <wsname> or directory in workspace\n" );
             data.append( "GET /config/invalidate/datasources/tile/id/matrixset[?bbox=] - invalidate part or all of a tile store cache's tile matrix set\n" );
+            data.append( "GET /config/seed/datasources/tile/id/matrixset[?params]      - start, monitor or cancel seeding of a tile store's tile matrix set\n" );
             data.append( "GET /config/crs/list                                         - list available CRS definitions\n" );
             data.append( "POST /config/crs/getcodes with wkt=<wkt>                     - retrieves a list of CRS codes corresponding to the WKT (POSTed KVP)\n" );
             data.append( "GET /config/crs/<code>                                       - checks if a CRS definition is available, returns true/false\n" );
@@ -101,6 +103,7 @@ public class ConfigServlet extends HttpServlet {
             data.append( "DELETE /config/delete/wsname[/path]                          - delete workspace with name <wsname> or file in workspace\n" );
             data.append( "\nHTTP response codes used:\n" );
             data.append( "200 - ok\n" );
+            data.append( "400 - if a parameter value was invalid\n" );
             data.append( "403 - if you tried something you shouldn't have\n" );
             data.append( "404 - if a file or directory needed to fulfill a request was not found\n" );
             data.append( "500 - if something serious went wrong on the server side\n" );
@@ -139,6 +142,10 @@ public class ConfigServlet extends HttpServlet {
             invalidate( path.substring( 29 ), req.getQueryString(), resp );
         }
 
+        if ( path.toLowerCase().startsWith( "/seed/datasources/tile/" ) ) {
+            seed( path.substring( 23 ), req.getQueryString(), resp );
+        }
+
         if ( path.toLowerCase().startsWith( "/delete" ) ) {
             delete( path.substring( 7 ), resp );
         }
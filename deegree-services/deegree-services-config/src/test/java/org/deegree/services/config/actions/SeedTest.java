@@ -0,0 +1,240 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.config.actions;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.persistence.TileSeeder;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreProvider;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.deegree.workspace.Workspace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests the {@link Seed} config action and the life cycle of the {@link SeedingJobs}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SeedTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Workspace workspace;
+
+    private SeedingJobs jobs;
+
+    private TileStore target;
+
+    private TileStore source;
+
+    private TileDataSet sourceDataSet;
+
+    @Before
+    public void setUp() {
+        jobs = new SeedingJobs();
+        workspace = mock( Workspace.class );
+        jobs.init( workspace );
+        when( workspace.getInitializable( SeedingJobs.class ) ).thenReturn( jobs );
+
+        target = mock( TileStore.class );
+        when( target.getTileDataSet( "grid" ) ).thenReturn( mock( TileDataSet.class ) );
+        when( workspace.getResource( TileStoreProvider.class, "target" ) ).thenReturn( target );
+
+        sourceDataSet = mock( TileDataSet.class );
+        source = mock( TileStore.class );
+        when( source.getTileDataSet( "grid" ) ).thenReturn( sourceDataSet );
+        when( workspace.getResource( TileStoreProvider.class, "source" ) ).thenReturn( source );
+    }
+
+    @After
+    public void tearDown() {
+        jobs.shutdown();
+    }
+
+    @Test
+    public void testUnknownTileStore()
+                            throws IOException {
+        Response resp = new Response();
+        Seed.seed( workspace, folder.getRoot(), "unknown/grid", "threads=1", resp.mock );
+        verify( resp.mock ).setStatus( 404 );
+        assertNull( jobs.get( "unknown/grid" ) );
+    }
+
+    @Test
+    public void testMissingSource()
+                            throws IOException {
+        Response resp = new Response();
+        Seed.seed( workspace, folder.getRoot(), "target/grid", "threads=1", resp.mock );
+        verify( resp.mock ).setStatus( 400 );
+        assertTrue( resp.getBody().startsWith( "MissingParameterValue: " ) );
+        assertNull( jobs.get( "target/grid" ) );
+    }
+
+    @Test
+    public void testInvalidParameter()
+                            throws IOException {
+        Response resp = new Response();
+        Seed.seed( workspace, folder.getRoot(), "target/grid", "source=source&threads=many", resp.mock );
+        verify( resp.mock ).setStatus( 400 );
+        assertTrue( resp.getBody().startsWith( "InvalidParameterValue: " ) );
+        assertNull( jobs.get( "target/grid" ) );
+    }
+
+    @Test
+    public void testNoJob()
+                            throws IOException {
+        Response resp = new Response();
+        Seed.seed( workspace, folder.getRoot(), "target/grid", null, resp.mock );
+        verify( resp.mock ).setStatus( 404 );
+    }
+
+    @Test
+    public void testStartAndMonitor()
+                            throws Exception {
+        TileStoreTransaction ta = mock( TileStoreTransaction.class );
+        when( target.acquireTransaction( "grid" ) ).thenReturn( ta );
+
+        Response resp = new Response();
+        Seed.seed( workspace, folder.getRoot(), "target/grid", "source=source&threads=2", resp.mock );
+        assertEquals( "Seeding started.\n", resp.getBody() );
+        TileSeeder seeder = jobs.get( "target/grid" );
+        assertNotNull( seeder );
+        waitUntilFinished( seeder );
+
+        resp = new Response();
+        Seed.seed( workspace, folder.getRoot(), "target/grid", null, resp.mock );
+        assertTrue( resp.getBody(), resp.getBody().startsWith( "state: finished\n" ) );
+    }
+
+    @Test
+    public void testDestroyCancelsRunningJobs()
+                            throws Exception {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch interrupted = new CountDownLatch( 1 );
+        final TileStoreTransaction ta = mock( TileStoreTransaction.class );
+        when( target.acquireTransaction( "grid" ) ).thenAnswer( new Answer<TileStoreTransaction>() {
+            @Override
+            public TileStoreTransaction answer( InvocationOnMock invocation ) {
+                started.countDown();
+                try {
+                    new CountDownLatch( 1 ).await();
+                } catch ( InterruptedException e ) {
+                    interrupted.countDown();
+                }
+                return ta;
+            }
+        } );
+
+        Response resp = new Response();
+        Seed.seed( workspace, folder.getRoot(), "target/grid", "source=source", resp.mock );
+        TileSeeder seeder = jobs.get( "target/grid" );
+        assertTrue( started.await( 10, SECONDS ) );
+        assertFalse( seeder.isFinished() );
+
+        // the workspace calls destroy on a separate instance
+        new SeedingJobs().destroy( workspace );
+        assertTrue( seeder.isCancelled() );
+        assertTrue( interrupted.await( 10, SECONDS ) );
+        waitUntilFinished( seeder );
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testNoJobsAfterDestroy()
+                            throws IOException {
+        new SeedingJobs().destroy( workspace );
+        Seed.seed( workspace, folder.getRoot(), "target/grid", "source=source", new Response().mock );
+    }
+
+    private static void waitUntilFinished( TileSeeder seeder )
+                            throws InterruptedException {
+        for ( int i = 0; i < 1000 && !seeder.isFinished(); ++i ) {
+            Thread.sleep( 10 );
+        }
+        assertTrue( seeder.isFinished() );
+    }
+
+    private static class Response {
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        final HttpServletResponse mock = mock( HttpServletResponse.class );
+
+        Response() {
+            try {
+                when( mock.getOutputStream() ).thenReturn( new ServletOutputStream() {
+                    @Override
+                    public void write( int b ) {
+                        bos.write( b );
+                    }
+                } );
+            } catch ( IOException e ) {
+                throw new RuntimeException( e );
+            }
+        }
+
+        String getBody()
+                            throws IOException {
+            return bos.toString( "UTF-8" );
+        }
+    }
+
+}
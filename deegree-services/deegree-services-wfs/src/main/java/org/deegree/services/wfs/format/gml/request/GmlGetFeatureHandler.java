@@ -254,6 +254,8 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         if ( request.getPresentationParams().getStartIndex() != null ) {
             startIndex = request.getPresentationParams().getStartIndex().intValue();
         }
+        // only explicit paging requests are passed to the stores (paging requires a stable order of the features)
+        boolean paging = startIndex > 0 || request.getPresentationParams().getCount() != null;
 
         GMLStreamWriter gmlStream = createGMLStreamWriter( gmlVersion, xmlStream );
         gmlStream.setProjections( analyzer.getProjections() );
@@ -275,10 +277,10 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
             writeSingleFeatureMember( gmlStream, analyzer, resolveOptions );
         } else if ( options.isDisableStreaming() ) {
             writeFeatureMembersCached( request.getVersion(), gmlStream, analyzer, gmlVersion, returnMaxFeatures,
-                                       startIndex, memberElementName, lock );
+                                       startIndex, paging, memberElementName, lock );
         } else {
             writeFeatureMembersStream( request.getVersion(), gmlStream, analyzer, gmlVersion, returnMaxFeatures,
-                                       startIndex, memberElementName, lock );
+                                       startIndex, paging, memberElementName, lock );
         }
 
         if ( !isGetFeatureById ) {
@@ -410,7 +412,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
     }
 
     private void writeFeatureMembersStream( Version wfsVersion, GMLStreamWriter gmlStream, QueryAnalyzer analyzer,
-                                            GMLVersion outputFormat, int maxFeatures, int startIndex,
+                                            GMLVersion outputFormat, int maxFeatures, int startIndex, boolean paging,
                                             QName featureMemberEl, Lock lock )
                             throws XMLStreamException, UnknownCRSException, TransformationException,
                             FeatureStoreException, FilterEvaluationException, FactoryConfigurationError {
@@ -439,7 +441,12 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
             FeatureStore fs = fsToQueries.getKey();
             Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+            boolean pagingRequested = paging && requestPaging( analyzer, queries, lock, startIndex, maxFeatures );
             FeatureInputStream rs = fs.query( queries );
+            if ( pagingRequested && queries[0].isPagingApplied() ) {
+                LOG.debug( "Paging has been performed by the feature store." );
+                featuresSkipped = startIndex;
+            }
             try {
                 for ( Feature member : rs ) {
                     if ( lock != null && !lock.isLocked( member.getId() ) ) {
@@ -464,7 +471,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
     }
 
     private void writeFeatureMembersCached( Version wfsVersion, GMLStreamWriter gmlStream, QueryAnalyzer analyzer,
-                                            GMLVersion outputFormat, int maxFeatures, int startIndex,
+                                            GMLVersion outputFormat, int maxFeatures, int startIndex, boolean paging,
                                             QName featureMemberEl, Lock lock )
                             throws XMLStreamException, UnknownCRSException, TransformationException,
                             FeatureStoreException, FilterEvaluationException, FactoryConfigurationError {
@@ -478,7 +485,12 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
             FeatureStore fs = fsToQueries.getKey();
             Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+            boolean pagingRequested = paging && requestPaging( analyzer, queries, lock, startIndex, maxFeatures );
             FeatureInputStream rs = fs.query( queries );
+            if ( pagingRequested && queries[0].isPagingApplied() ) {
+                LOG.debug( "Paging has been performed by the feature store." );
+                featuresSkipped = startIndex;
+            }
             try {
                 for ( Feature feature : rs ) {
                     if ( lock != null && !lock.isLocked( feature.getId() ) ) {
@@ -520,6 +532,23 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         }
     }
 
+    /**
+     * Passes the paging parameters to the feature store query, if this is safe.
+     * <p>
+     * This is only the case if the request results in a single query to a single feature store and no lock is involved
+     * (locked features are filtered after retrieval). Otherwise, skipping and limiting is performed here.
+     * </p>
+     * 
+     * @return <code>true</code>, if the paging parameters have been passed to the query
+     */
+    private boolean requestPaging( QueryAnalyzer analyzer, Query[] queries, Lock lock, int startIndex, int maxFeatures ) {
+        if ( lock != null || queries.length != 1 || analyzer.getQueries().size() != 1 ) {
+            return false;
+        }
+        queries[0].setPaging( startIndex, maxFeatures );
+        return true;
+    }
+
     private void writeBoundedBy( Version wfsVersion, GMLStreamWriter gmlStream, GMLVersion outputFormat, Envelope env )
                             throws XMLStreamException, UnknownCRSException, TransformationException {
 
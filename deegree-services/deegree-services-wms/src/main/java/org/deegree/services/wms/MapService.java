@@ -49,17 +49,19 @@ import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
 
 import org.deegree.commons.annotations.LoggingNotes;
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
-import org.deegree.feature.Features;
 import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.OperatorFilter;
@@ -70,9 +72,12 @@ import org.deegree.layer.LayerRef;
 import org.deegree.protocol.wms.filter.ScaleFunction;
 import org.deegree.protocol.wms.ops.GetFeatureInfoSchema;
 import org.deegree.protocol.wms.ops.GetLegendGraphic;
+import org.deegree.rendering.r2d.context.ImageRenderContext;
+import org.deegree.rendering.r2d.context.LazyImageRenderContext;
 import org.deegree.rendering.r2d.context.MapOptions;
 import org.deegree.rendering.r2d.context.MapOptionsMaps;
 import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.RenderingInfo;
 import org.deegree.services.jaxb.wms.ServiceConfigurationType;
 import org.deegree.style.StyleRef;
 import org.deegree.style.se.unevaluated.Style;
@@ -118,6 +123,9 @@ public class MapService {
 
     private final GetLegendHandler getLegendHandler;
 
+    // renders the layers of a GetMap request in parallel, null if layers are rendered sequentially
+    private final ParallelLayerRenderer parallelRenderer;
+
     /**
      * @param conf
      * @param adapter
@@ -152,6 +160,26 @@ public class MapService {
             }
         }
         getLegendHandler = new GetLegendHandler( this );
+
+        int renderingThreads = 1;
+        if ( conf != null && conf.getRenderingThreads() != null ) {
+            renderingThreads = conf.getRenderingThreads().intValue();
+        }
+        if ( renderingThreads > 1 ) {
+            LOG.debug( "Rendering GetMap layers in parallel using {} threads.", renderingThreads );
+            parallelRenderer = new ParallelLayerRenderer( renderingThreads );
+        } else {
+            parallelRenderer = null;
+        }
+    }
+
+    /**
+     * Releases the resources (rendering threads) of this map service.
+     */
+    public void destroy() {
+        if ( parallelRenderer != null ) {
+            parallelRenderer.destroy();
+        }
     }
 
     /**
@@ -214,13 +242,19 @@ public class MapService {
 
         List<LayerData> layerDataList = checkStyleValidAndBuildLayerDataList( gm, headers, scale, queryIter );
         Iterator<MapOptions> optIter = mapOptions.iterator();
-        for ( LayerData d : layerDataList ) {
-            ctx.applyOptions( optIter.next() );
-            try {
-                d.render( ctx );
-            } catch ( InterruptedException e ) {
-                String msg = "Request time-out.";
-                throw new OWSException( msg, NO_APPLICABLE_CODE );
+        if ( parallelRenderer != null && layerDataList.size() > 1 && isImageRenderContext( ctx ) ) {
+            RenderingInfo info = new RenderingInfo( "image/png", gm.getWidth(), gm.getHeight(), true, null,
+                                                    gm.getBoundingBox(), gm.getPixelSize(), gm.getParameterMap() );
+            parallelRenderer.render( info, layerDataList, mapOptions, scale, ctx );
+        } else {
+            for ( LayerData d : layerDataList ) {
+                ctx.applyOptions( optIter.next() );
+                try {
+                    d.render( ctx );
+                } catch ( InterruptedException e ) {
+                    String msg = "Request time-out.";
+                    throw new OWSException( msg, NO_APPLICABLE_CODE );
+                }
             }
         }
         ctx.optimizeAndDrawLabels();
@@ -228,6 +262,11 @@ public class MapService {
         ScaleFunction.getCurrentScaleValue().remove();
     }
 
+    // only raster output can be composited from off-screen buffers (SVG output is rendered sequentially)
+    private static boolean isImageRenderContext( RenderContext ctx ) {
+        return ctx instanceof ImageRenderContext || ctx instanceof LazyImageRenderContext;
+    }
+
     private List<LayerData> checkStyleValidAndBuildLayerDataList( org.deegree.protocol.wms.ops.GetMap gm,
                                                                   List<String> headers, double scale,
                                                                   ListIterator<LayerQuery> queryIter )
@@ -301,22 +340,42 @@ public class MapService {
             }
         }
 
-        List<Feature> feats = new ArrayList<Feature>( gfi.getFeatureCount() );
-        for ( LayerData d : list ) {
+        GenericFeatureCollection col = new GenericFeatureCollection();
+        col.addAll( collectFeatures( list, gfi.getFeatureCount() ) );
+        return col;
+    }
+
+    /**
+     * Collects the distinct features (by id) of the given layer data, in order. Layer data is queried lazily, so
+     * layers after the one that yields the requested number of features are not queried at all.
+     * 
+     * @param layerData
+     *            layer data to query for features, must not be <code>null</code>
+     * @param featureCount
+     *            maximum number of features to return
+     * @return the distinct features, never <code>null</code>
+     */
+    static List<Feature> collectFeatures( List<LayerData> layerData, int featureCount ) {
+        List<Feature> feats = new ArrayList<Feature>( featureCount );
+        Set<String> ids = new HashSet<String>();
+        for ( LayerData d : layerData ) {
+            if ( feats.size() >= featureCount ) {
+                break;
+            }
             FeatureCollection col = d.info();
             if ( col != null ) {
-                feats.addAll( col );
+                for ( Feature f : col ) {
+                    if ( ids.add( f.getId() ) ) {
+                        feats.add( f );
+                    }
+                }
             }
         }
 
-        feats = Features.clearDuplicates( feats );
-
-        if ( feats.size() > gfi.getFeatureCount() ) {
-            feats = feats.subList( 0, gfi.getFeatureCount() );
+        if ( feats.size() > featureCount ) {
+            feats = feats.subList( 0, featureCount );
         }
-        GenericFeatureCollection col = new GenericFeatureCollection();
-        col.addAll( feats );
-        return col;
+        return feats;
     }
 
     private List<LayerQuery> prepareGetFeatures( org.deegree.protocol.wms.ops.GetFeatureInfo gfi ) {
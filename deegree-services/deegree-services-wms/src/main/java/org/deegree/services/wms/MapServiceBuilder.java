@@ -85,6 +85,7 @@ class MapServiceBuilder {
     MapOptions buildMapOptions() {
         int maxFeatures = 10000;
         int featureInfoRadius = 1;
+        double decimationTolerance = 0;
         if ( conf != null ) {
             LayerOptionsType sf = conf.getDefaultLayerOptions();
             alias = handleDefaultValue( sf == null ? null : sf.getAntiAliasing(), Antialias.class, BOTH );
@@ -104,7 +105,11 @@ class MapServiceBuilder {
             } else {
                 LOG.debug( "Using default feature info radius of {}.", featureInfoRadius );
             }
-            return new MapOptions( quali, interpol, alias, maxFeatures, featureInfoRadius );
+            if ( sf != null && sf.getDecimationTolerance() != null ) {
+                decimationTolerance = Math.max( 0, sf.getDecimationTolerance() );
+                LOG.debug( "Using global decimation tolerance of {} pixels.", decimationTolerance );
+            }
+            return new MapOptions( quali, interpol, alias, maxFeatures, featureInfoRadius, decimationTolerance );
         }
         return null;
     }
@@ -0,0 +1,215 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.commons.utils.RequestUtils;
+import org.deegree.layer.LayerData;
+import org.deegree.protocol.wms.filter.ScaleFunction;
+import org.deegree.rendering.r2d.Label;
+import org.deegree.rendering.r2d.context.ImageRenderContext;
+import org.deegree.rendering.r2d.context.MapOptions;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.deegree.style.utils.ImageUtils;
+
+/**
+ * Renders the layers of a GetMap request in parallel and composites them in request order.
+ * <p>
+ * Each layer is rendered into its own off-screen buffer. At most <code>threads</code> layers are rendered ahead of the
+ * compositing, so the number of buffers held at a time is bounded by the number of threads (and not by the number of
+ * layers). Point labels of all layers are collected in the label renderer of the target context, so placement is still
+ * performed in a single pass by {@link RenderContext#optimizeAndDrawLabels()}.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class ParallelLayerRenderer {
+
+    private final ExecutorService executor;
+
+    private final int threads;
+
+    /**
+     * Creates a new {@link ParallelLayerRenderer} instance.
+     * 
+     * @param threads
+     *            number of rendering threads, must be positive
+     */
+    ParallelLayerRenderer( int threads ) {
+        this.threads = threads;
+        this.executor = Executors.newFixedThreadPool( threads, new RenderingThreadFactory() );
+    }
+
+    /**
+     * Renders the given layers and composites them into the given context.
+     * 
+     * @param info
+     *            rendering parameters (size, envelope) of the map, must not be <code>null</code>
+     * @param layerDataList
+     *            layers to render (in painting order), must not be <code>null</code>
+     * @param layerOptions
+     *            rendering options of the layers (same order), must not be <code>null</code>
+     * @param scale
+     *            scale of the map
+     * @param ctx
+     *            target context, must render into an image
+     * @throws OWSException
+     *             if rendering has been interrupted (request time-out) or a layer failed
+     */
+    void render( final RenderingInfo info, List<LayerData> layerDataList, List<MapOptions> layerOptions,
+                 final double scale, RenderContext ctx )
+                            throws OWSException {
+        final Map<String, String> requestParameters = RequestUtils.getCurrentThreadRequestParameters().get();
+        Iterator<LayerData> dataIter = layerDataList.iterator();
+        Iterator<MapOptions> submitOptionsIter = layerOptions.iterator();
+        Iterator<MapOptions> paintOptionsIter = layerOptions.iterator();
+        LinkedList<Future<LayerImage>> pending = new LinkedList<Future<LayerImage>>();
+        try {
+            while ( pending.size() < threads && dataIter.hasNext() ) {
+                pending.add( submit( info, dataIter.next(), submitOptionsIter.next(), scale, requestParameters ) );
+            }
+            // NOTE: obtaining the label renderer forces lazy render contexts to prepare their (background) image
+            List<Label> labels = ctx.getLabelRenderer().getLabels();
+            while ( !pending.isEmpty() ) {
+                LayerImage layerImage = pending.removeFirst().get();
+                ctx.applyOptions( paintOptionsIter.next() );
+                ctx.paintImage( layerImage.image );
+                labels.addAll( layerImage.labels );
+                // keep the number of buffers bounded: the next layer is only started when one has been composited
+                if ( dataIter.hasNext() ) {
+                    pending.add( submit( info, dataIter.next(), submitOptionsIter.next(), scale, requestParameters ) );
+                }
+            }
+        } catch ( InterruptedException e ) {
+            String msg = "Request time-out.";
+            throw new OWSException( msg, NO_APPLICABLE_CODE );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof InterruptedException ) {
+                String msg = "Request time-out.";
+                throw new OWSException( msg, NO_APPLICABLE_CODE );
+            }
+            if ( cause instanceof OWSException ) {
+                throw (OWSException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException( cause.getMessage(), cause );
+        } finally {
+            for ( Future<LayerImage> future : pending ) {
+                future.cancel( true );
+            }
+        }
+    }
+
+    private Future<LayerImage> submit( final RenderingInfo info, final LayerData d, final MapOptions options,
+                                       final double scale, final Map<String, String> requestParameters ) {
+        return executor.submit( new Callable<LayerImage>() {
+            @Override
+            public LayerImage call()
+                                    throws Exception {
+                ScaleFunction.getCurrentScaleValue().set( scale );
+                RequestUtils.getCurrentThreadRequestParameters().set( requestParameters );
+                BufferedImage img = ImageUtils.prepareImage( info.getFormat(), info.getWidth(), info.getHeight(), true,
+                                                             null );
+                RenderContext layerCtx = ImageRenderContext.createInstance( info, img, null );
+                try {
+                    layerCtx.applyOptions( options );
+                    d.render( layerCtx );
+                    return new LayerImage( img, layerCtx.getLabelRenderer().getLabels() );
+                } finally {
+                    layerCtx.close();
+                    ScaleFunction.getCurrentScaleValue().remove();
+                    RequestUtils.getCurrentThreadRequestParameters().remove();
+                }
+            }
+        } );
+    }
+
+    /**
+     * Stops the rendering threads.
+     */
+    void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static class LayerImage {
+
+        private final BufferedImage image;
+
+        private final List<Label> labels;
+
+        private LayerImage( BufferedImage image, List<Label> labels ) {
+            this.image = image;
+            this.labels = labels;
+        }
+    }
+
+    private static class RenderingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "wms-rendering-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+}
@@ -806,7 +806,9 @@ public class WMSController extends AbstractOWS {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( service != null ) {
+            service.destroy();
+        }
     }
 
 }
@@ -0,0 +1,121 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static java.util.Arrays.asList;
+import static org.deegree.services.wms.MapService.collectFeatures;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.layer.LayerData;
+import org.junit.Test;
+
+/**
+ * Tests the collection of GetFeatureInfo results from several layers ({@link MapService#collectFeatures(List, int)}).
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class MapServiceTest {
+
+    @Test
+    public void testDuplicatesAcrossLayersAreRemoved() {
+        LayerData layer1 = mockLayerData( "a", "b" );
+        LayerData layer2 = mockLayerData( "b", "c", "a" );
+        List<Feature> features = collectFeatures( asList( layer1, layer2 ), 10 );
+        assertEquals( asList( "a", "b", "c" ), getIds( features ) );
+    }
+
+    @Test
+    public void testFeatureCountCutsOffWithinLayer() {
+        LayerData layer1 = mockLayerData( "a", "b", "c" );
+        List<Feature> features = collectFeatures( asList( layer1 ), 2 );
+        assertEquals( asList( "a", "b" ), getIds( features ) );
+    }
+
+    @Test
+    public void testFeatureCountCountsDistinctFeatures() {
+        LayerData layer1 = mockLayerData( "a", "b" );
+        LayerData layer2 = mockLayerData( "a", "b", "c", "d" );
+        List<Feature> features = collectFeatures( asList( layer1, layer2 ), 3 );
+        assertEquals( asList( "a", "b", "c" ), getIds( features ) );
+    }
+
+    @Test
+    public void testLayersAfterFeatureCountAreNotQueried() {
+        LayerData layer1 = mockLayerData( "a", "b" );
+        LayerData layer2 = mockLayerData( "c" );
+        List<Feature> features = collectFeatures( asList( layer1, layer2 ), 2 );
+        assertEquals( asList( "a", "b" ), getIds( features ) );
+        verify( layer2, never() ).info();
+    }
+
+    @Test
+    public void testLayerWithoutResult() {
+        LayerData layer1 = mock( LayerData.class );
+        LayerData layer2 = mockLayerData( "a" );
+        List<Feature> features = collectFeatures( asList( layer1, layer2 ), 2 );
+        assertEquals( asList( "a" ), getIds( features ) );
+    }
+
+    private LayerData mockLayerData( String... ids ) {
+        GenericFeatureCollection col = new GenericFeatureCollection();
+        for ( String id : ids ) {
+            Feature f = mock( Feature.class );
+            when( f.getId() ).thenReturn( id );
+            col.add( f );
+        }
+        LayerData layerData = mock( LayerData.class );
+        when( layerData.info() ).thenReturn( col );
+        return layerData;
+    }
+
+    private List<String> getIds( List<Feature> features ) {
+        List<String> ids = new ArrayList<String>();
+        for ( Feature f : features ) {
+            ids.add( f.getId() );
+        }
+        return ids;
+    }
+}
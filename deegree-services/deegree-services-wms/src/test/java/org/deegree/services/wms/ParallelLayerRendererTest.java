@@ -0,0 +1,224 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.layer.LayerData;
+import org.deegree.rendering.r2d.Label;
+import org.deegree.rendering.r2d.LabelRenderer;
+import org.deegree.rendering.r2d.context.ImageRenderContext;
+import org.deegree.rendering.r2d.context.MapOptions;
+import org.deegree.rendering.r2d.context.MapOptions.Antialias;
+import org.deegree.rendering.r2d.context.MapOptions.Interpolation;
+import org.deegree.rendering.r2d.context.MapOptions.Quality;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.deegree.style.styling.TextStyling;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for {@link ParallelLayerRenderer}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ParallelLayerRendererTest {
+
+    private static final int WIDTH = 100;
+
+    private static final int HEIGHT = 80;
+
+    private static final Color[] COLORS = { Color.RED, Color.GREEN, Color.BLUE, Color.YELLOW, Color.CYAN,
+                                           Color.MAGENTA, Color.ORANGE };
+
+    private final GeometryFactory fac = new GeometryFactory();
+
+    private final RenderingInfo info = new RenderingInfo( "image/png", WIDTH, HEIGHT, true, null,
+                                                          fac.createEnvelope( 0, 0, WIDTH, HEIGHT, null ), 0.28,
+                                                          Collections.<String, String> emptyMap() );
+
+    private final MapOptions options = new MapOptions( Quality.NORMAL, Interpolation.NEARESTNEIGHBOR, Antialias.NONE,
+                                                       -1, -1 );
+
+    private ParallelLayerRenderer renderer;
+
+    @After
+    public void tearDown() {
+        if ( renderer != null ) {
+            renderer.destroy();
+        }
+    }
+
+    @Test
+    public void testParallelOutputMatchesSequential()
+                            throws Exception {
+        List<LayerData> layers = new ArrayList<LayerData>();
+        for ( int i = 0; i < COLORS.length; i++ ) {
+            layers.add( new TestLayerData( i ) );
+        }
+
+        BufferedImage sequential = new BufferedImage( WIDTH, HEIGHT, TYPE_INT_ARGB );
+        RenderContext ctx = ImageRenderContext.createInstance( info, sequential, null );
+        for ( LayerData layer : layers ) {
+            ctx.applyOptions( options );
+            layer.render( ctx );
+        }
+        List<String> sequentialLabels = getLabelTexts( ctx );
+        ctx.optimizeAndDrawLabels();
+        ctx.close();
+
+        renderer = new ParallelLayerRenderer( 3 );
+        BufferedImage parallel = new BufferedImage( WIDTH, HEIGHT, TYPE_INT_ARGB );
+        ctx = ImageRenderContext.createInstance( info, parallel, null );
+        renderer.render( info, layers, getOptions( layers.size() ), 1000, ctx );
+        List<String> parallelLabels = getLabelTexts( ctx );
+        ctx.optimizeAndDrawLabels();
+        ctx.close();
+
+        assertEquals( COLORS.length, parallelLabels.size() );
+        assertEquals( sequentialLabels, parallelLabels );
+        assertArrayEquals( getPixels( sequential ), getPixels( parallel ) );
+    }
+
+    @Test
+    public void testAtMostThreadsLayersAhead()
+                            throws Exception {
+        final int threads = 2;
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger composited = new AtomicInteger();
+        final AtomicInteger maxAhead = new AtomicInteger();
+        List<LayerData> layers = new ArrayList<LayerData>();
+        for ( int i = 0; i < 10; i++ ) {
+            layers.add( new TestLayerData( i % COLORS.length ) {
+                @Override
+                public void render( RenderContext context ) {
+                    int ahead = started.incrementAndGet() - composited.get();
+                    synchronized ( maxAhead ) {
+                        maxAhead.set( Math.max( maxAhead.get(), ahead ) );
+                    }
+                    super.render( context );
+                }
+            } );
+        }
+        RenderContext ctx = mock( RenderContext.class );
+        LabelRenderer labelRenderer = mock( LabelRenderer.class );
+        when( ctx.getLabelRenderer() ).thenReturn( labelRenderer );
+        when( labelRenderer.getLabels() ).thenReturn( new ArrayList<Label>() );
+        doAnswer( new Answer<Void>() {
+            @Override
+            public Void answer( InvocationOnMock invocation ) {
+                composited.incrementAndGet();
+                return null;
+            }
+        } ).when( ctx ).paintImage( any( BufferedImage.class ) );
+
+        renderer = new ParallelLayerRenderer( threads );
+        renderer.render( info, layers, getOptions( layers.size() ), 1000, ctx );
+
+        assertEquals( 10, composited.get() );
+        assertTrue( "Layers rendered ahead: " + maxAhead.get(), maxAhead.get() <= threads );
+    }
+
+    private List<MapOptions> getOptions( int size ) {
+        List<MapOptions> layerOptions = new ArrayList<MapOptions>();
+        for ( int i = 0; i < size; i++ ) {
+            layerOptions.add( options );
+        }
+        return layerOptions;
+    }
+
+    private static List<String> getLabelTexts( RenderContext ctx ) {
+        List<String> texts = new ArrayList<String>();
+        for ( Label label : ctx.getLabelRenderer().getLabels() ) {
+            texts.add( label.getText() );
+        }
+        return texts;
+    }
+
+    private static int[] getPixels( BufferedImage img ) {
+        return img.getRGB( 0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth() );
+    }
+
+    /**
+     * Paints an opaque, overlapping rectangle (so the compositing order matters) and creates a point label.
+     */
+    private class TestLayerData implements LayerData {
+
+        private final int index;
+
+        TestLayerData( int index ) {
+            this.index = index;
+        }
+
+        @Override
+        public void render( RenderContext context ) {
+            BufferedImage img = new BufferedImage( WIDTH, HEIGHT, TYPE_INT_ARGB );
+            Graphics2D g = img.createGraphics();
+            g.setColor( COLORS[index] );
+            g.fillRect( index * 10, index * 5, 40, 30 );
+            g.dispose();
+            context.paintImage( img );
+            context.getLabelRenderer().createLabel( new TextStyling(), "label" + index,
+                                                    fac.createPoint( null, 10 + index * 10, 10 + index * 5, null ) );
+        }
+
+        @Override
+        public FeatureCollection info() {
+            return null;
+        }
+    }
+}
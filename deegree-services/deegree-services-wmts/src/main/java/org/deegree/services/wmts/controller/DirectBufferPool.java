@@ -0,0 +1,106 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wmts.controller;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct {@link ByteBuffer}s for copying files to responses.
+ * <p>
+ * Allocating direct buffers is expensive, so they are reused. At most <code>maxPooled</code> buffers are kept, buffers
+ * released beyond that are left to the garbage collector.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class DirectBufferPool {
+
+    private final int bufferSize;
+
+    private final int maxPooled;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    // ConcurrentLinkedQueue#size() is not a constant time operation
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * @param bufferSize
+     *            capacity of the buffers in bytes, must be positive
+     * @param maxPooled
+     *            maximum number of buffers to keep
+     */
+    DirectBufferPool( int bufferSize, int maxPooled ) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Returns a cleared buffer, either from the pool or newly allocated. It should be given back using
+     * {@link #release(ByteBuffer)}.
+     * 
+     * @return direct buffer, never <code>null</code>
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if ( buffer == null ) {
+            return ByteBuffer.allocateDirect( bufferSize );
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool. It must not be used by the caller afterwards.
+     * 
+     * @param buffer
+     *            buffer obtained by {@link #acquire()}, must not be <code>null</code>
+     */
+    void release( ByteBuffer buffer ) {
+        if ( pooled.incrementAndGet() <= maxPooled ) {
+            buffers.offer( buffer );
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+}
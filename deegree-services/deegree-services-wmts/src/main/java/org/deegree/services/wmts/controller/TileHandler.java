@@ -45,13 +45,25 @@ import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.apache.commons.io.IOUtils.copy;
 import static org.deegree.commons.ows.exception.OWSException.INVALID_PARAMETER_VALUE;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.deegree.tile.Tiles.getLastModified;
+import static org.deegree.tile.Tiles.getVersion;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.layer.Layer;
@@ -60,6 +72,7 @@ import org.deegree.protocol.wmts.ops.GetTile;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.theme.Theme;
 import org.deegree.theme.Themes;
+import org.deegree.tile.FileBackedTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileDataSet;
@@ -75,9 +88,34 @@ import org.deegree.tile.TileDataSet;
 
 class TileHandler {
 
+    // request attributes of the Tomcat sendfile API
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // large enough for most tiles in a single read
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    private final DirectBufferPool buffers = new DirectBufferPool( BUFFER_SIZE, MAX_POOLED_BUFFERS );
+
     private Map<String, TileLayer> layers;
 
-    TileHandler( List<Theme> themes ) {
+    private final String cacheControl;
+
+    /**
+     * @param themes
+     *            themes to serve tiles for, must not be <code>null</code>
+     * @param cacheControl
+     *            value for the Cache-Control header of tile responses, can be <code>null</code> (no header)
+     */
+    TileHandler( List<Theme> themes, String cacheControl ) {
+        this.cacheControl = cacheControl;
         layers = new HashMap<String, TileLayer>();
         for ( Theme theme : themes ) {
             for ( Layer l : Themes.getAllLayers( theme ) ) {
@@ -88,13 +126,13 @@ class TileHandler {
         }
     }
 
-    void getTile( Map<String, String> map, HttpResponseBuffer response )
+    void getTile( Map<String, String> map, HttpServletRequest request, HttpResponseBuffer response )
                             throws OWSException, ServletException {
         GetTile op = new GetTile( map );
-        getTile( op, response );
+        getTile( op, request, response );
     }
 
-    private void getTile( final GetTile op, final HttpResponseBuffer response )
+    private void getTile( final GetTile op, final HttpServletRequest request, final HttpResponseBuffer response )
                             throws OWSException, ServletException {
         final TileLayer layer = layers.get( op.getLayer() );
         if ( layer == null ) {
@@ -134,6 +172,32 @@ class TileHandler {
             throw new OWSException( "No such tile found.", INVALID_PARAMETER_VALUE );
         }
 
+        if ( cacheControl != null ) {
+            response.setHeader( "Cache-Control", cacheControl );
+        }
+        String version = getVersion( t );
+        String etag = version == null ? null : "\"" + version + "\"";
+        long lastModified = getLastModified( t );
+        if ( etag != null ) {
+            response.setHeader( "ETag", etag );
+        }
+        if ( lastModified != -1 ) {
+            response.setDateHeader( "Last-Modified", lastModified );
+        }
+        if ( request != null && isNotModified( request, etag, lastModified ) ) {
+            response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+            return;
+        }
+
+        if ( t instanceof FileBackedTile ) {
+            try {
+                sendFile( ( (FileBackedTile) t ).getFile(), tds.getNativeImageFormat(), request, response );
+            } catch ( Throwable e ) {
+                throw new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE );
+            }
+            return;
+        }
+
         InputStream in = null;
         try {
             in = t.getAsStream();
@@ -149,4 +213,86 @@ class TileHandler {
         }
     }
 
+    /**
+     * Writes the given tile file to the response. If the container supports sendfile, the transfer is delegated to it
+     * (zero-copy). Otherwise, the file is copied to the output stream of the response through a pooled direct buffer
+     * (bypassing the response buffer).
+     */
+    private void sendFile( File file, String format, HttpServletRequest request, HttpResponseBuffer response )
+                            throws Exception {
+        FileInputStream in = new FileInputStream( file );
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            // tile is already encoded, buffering it again would only add another copy
+            response.disableBuffering();
+            response.setContentType( format );
+            if ( size <= Integer.MAX_VALUE ) {
+                response.setContentLength( (int) size );
+            }
+            if ( request != null && Boolean.TRUE.equals( request.getAttribute( SENDFILE_SUPPORT ) ) ) {
+                request.setAttribute( SENDFILE_FILENAME, file.getCanonicalPath() );
+                request.setAttribute( SENDFILE_START, Long.valueOf( 0 ) );
+                request.setAttribute( SENDFILE_END, Long.valueOf( size ) );
+                return;
+            }
+            OutputStream out = response.getOutputStream();
+            transfer( channel, Channels.newChannel( out ) );
+            out.flush();
+        } finally {
+            closeQuietly( in );
+        }
+    }
+
+    private void transfer( FileChannel in, WritableByteChannel out )
+                            throws IOException {
+        ByteBuffer buffer = buffers.acquire();
+        try {
+            while ( in.read( buffer ) != -1 ) {
+                buffer.flip();
+                while ( buffer.hasRemaining() ) {
+                    out.write( buffer );
+                }
+                buffer.clear();
+            }
+        } finally {
+            buffers.release( buffer );
+        }
+    }
+
+    /**
+     * Evaluates the conditional request headers (If-None-Match takes precedence over If-Modified-Since, see RFC 2616,
+     * section 14.26).
+     */
+    static boolean isNotModified( HttpServletRequest request, String etag, long lastModified ) {
+        String ifNoneMatch = request.getHeader( "If-None-Match" );
+        if ( ifNoneMatch != null ) {
+            if ( etag == null ) {
+                return false;
+            }
+            for ( String candidate : ifNoneMatch.split( "," ) ) {
+                candidate = candidate.trim();
+                if ( candidate.startsWith( "W/" ) ) {
+                    candidate = candidate.substring( 2 );
+                }
+                if ( candidate.equals( "*" ) || candidate.equals( etag ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if ( lastModified == -1 ) {
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader( "If-Modified-Since" );
+        } catch ( IllegalArgumentException e ) {
+            // unparseable date
+            return false;
+        }
+        // HTTP dates have a resolution of one second
+        return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
 }
@@ -72,6 +72,8 @@ class WmtsBuilder {
 
     private FeatureInfoFormatsType featureInfoConf;
 
+    private String cacheControl;
+
     WmtsBuilder( Workspace workspace, DeegreeWMTS conf ) {
         this.metadataUrlTemplate = conf.getMetadataURLTemplate();
 
@@ -88,6 +90,7 @@ class WmtsBuilder {
         }
 
         featureInfoConf = conf.getFeatureInfoFormats();
+        cacheControl = conf.getServiceConfiguration().getCacheControl();
     }
 
     String getMetadataUrlTemplate() {
@@ -102,4 +105,8 @@ class WmtsBuilder {
         return featureInfoConf;
     }
 
+    String getCacheControl() {
+        return cacheControl;
+    }
+
 }
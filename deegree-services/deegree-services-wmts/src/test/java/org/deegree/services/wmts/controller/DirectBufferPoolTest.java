@@ -0,0 +1,88 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wmts.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link DirectBufferPool}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class DirectBufferPoolTest {
+
+    @Test
+    public void testAcquire() {
+        ByteBuffer buffer = new DirectBufferPool( 1024, 2 ).acquire();
+        assertTrue( buffer.isDirect() );
+        assertEquals( 1024, buffer.capacity() );
+        assertEquals( 1024, buffer.remaining() );
+    }
+
+    @Test
+    public void testReuse() {
+        DirectBufferPool pool = new DirectBufferPool( 1024, 2 );
+        ByteBuffer buffer = pool.acquire();
+        buffer.put( new byte[10] ).flip();
+        pool.release( buffer );
+        ByteBuffer reused = pool.acquire();
+        assertSame( buffer, reused );
+        assertEquals( 0, reused.position() );
+        assertEquals( 1024, reused.limit() );
+    }
+
+    @Test
+    public void testMaxPooled() {
+        DirectBufferPool pool = new DirectBufferPool( 16, 1 );
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        pool.release( first );
+        pool.release( second );
+        assertSame( first, pool.acquire() );
+        ByteBuffer third = pool.acquire();
+        assertNotSame( first, third );
+        assertNotSame( second, third );
+    }
+
+}
@@ -0,0 +1,265 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wmts.controller;
+
+import static java.util.Collections.singletonList;
+import static org.deegree.services.wmts.controller.TileHandler.isNotModified;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.deegree.layer.Layer;
+import org.deegree.layer.metadata.LayerMetadata;
+import org.deegree.layer.persistence.tile.TileLayer;
+import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.deegree.theme.Theme;
+import org.deegree.tile.AbstractTile;
+import org.deegree.tile.FileBackedTile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the conditional GET handling (<code>304 Not Modified</code>) and the serving of file backed tiles of
+ * {@link TileHandler}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TileHandlerTest {
+
+    private static final String ETAG = "\"abc\"";
+
+    // Sun, 06 Nov 1994 08:49:37 GMT
+    private static final long LAST_MODIFIED = 784111777000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AbstractTile tile;
+
+    private TileDataLevel level;
+
+    private TileHandler handler;
+
+    private HttpResponseBuffer response;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        tile = mock( AbstractTile.class );
+        when( tile.getVersion() ).thenReturn( "abc" );
+        when( tile.getLastModified() ).thenReturn( LAST_MODIFIED );
+        when( tile.getAsStream() ).thenReturn( new ByteArrayInputStream( new byte[] { 1, 2, 3 } ) );
+
+        level = mock( TileDataLevel.class );
+        when( level.getTile( 1, 2 ) ).thenReturn( tile );
+        TileDataSet tds = mock( TileDataSet.class );
+        when( tds.getNativeImageFormat() ).thenReturn( "image/png" );
+        when( tds.getTileDataLevel( "0" ) ).thenReturn( level );
+        LayerMetadata md = mock( LayerMetadata.class );
+        when( md.getName() ).thenReturn( "tiles" );
+        TileLayer layer = mock( TileLayer.class );
+        when( layer.getMetadata() ).thenReturn( md );
+        when( layer.getTileDataSet( "grid" ) ).thenReturn( tds );
+        Theme theme = mock( Theme.class );
+        when( theme.getLayers() ).thenReturn( singletonList( (Layer) layer ) );
+        when( theme.getThemes() ).thenReturn( Collections.<Theme> emptyList() );
+        handler = new TileHandler( Collections.singletonList( theme ), null );
+
+        response = mock( HttpResponseBuffer.class );
+        when( response.getOutputStream() ).thenReturn( mock( ServletOutputStream.class ) );
+    }
+
+    @Test
+    public void testIfNoneMatch() {
+        assertTrue( isNotModified( request( ETAG, -1 ), ETAG, -1 ) );
+        assertTrue( isNotModified( request( "\"xyz\", " + ETAG, -1 ), ETAG, -1 ) );
+        assertTrue( isNotModified( request( "W/" + ETAG, -1 ), ETAG, -1 ) );
+        assertTrue( isNotModified( request( "*", -1 ), ETAG, -1 ) );
+        assertFalse( isNotModified( request( "\"xyz\"", -1 ), ETAG, -1 ) );
+        assertFalse( isNotModified( request( ETAG, -1 ), null, -1 ) );
+    }
+
+    @Test
+    public void testIfNoneMatchTakesPrecedence() {
+        assertFalse( isNotModified( request( "\"xyz\"", LAST_MODIFIED ), ETAG, LAST_MODIFIED ) );
+    }
+
+    @Test
+    public void testIfModifiedSince() {
+        assertTrue( isNotModified( request( null, LAST_MODIFIED ), ETAG, LAST_MODIFIED ) );
+        // HTTP dates have a resolution of one second
+        assertTrue( isNotModified( request( null, LAST_MODIFIED ), ETAG, LAST_MODIFIED + 999 ) );
+        assertFalse( isNotModified( request( null, LAST_MODIFIED ), ETAG, LAST_MODIFIED + 1000 ) );
+        assertFalse( isNotModified( request( null, LAST_MODIFIED ), ETAG, -1 ) );
+        assertFalse( isNotModified( request( null, -1 ), ETAG, LAST_MODIFIED ) );
+    }
+
+    @Test
+    public void testInvalidIfModifiedSince() {
+        HttpServletRequest request = mock( HttpServletRequest.class );
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenThrow( new IllegalArgumentException() );
+        assertFalse( isNotModified( request, ETAG, LAST_MODIFIED ) );
+    }
+
+    @Test
+    public void testGetTileNotModified()
+                            throws Exception {
+        handler.getTile( getTileRequest(), request( ETAG, -1 ), response );
+        verify( response ).setHeader( "ETag", ETAG );
+        verify( response ).setDateHeader( "Last-Modified", LAST_MODIFIED );
+        verify( response ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+        verify( tile, never() ).getAsStream();
+        verify( response, never() ).getOutputStream();
+    }
+
+    @Test
+    public void testGetTileModified()
+                            throws Exception {
+        handler.getTile( getTileRequest(), request( "\"xyz\"", -1 ), response );
+        verify( response ).setHeader( "ETag", ETAG );
+        verify( response, never() ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+        verify( tile ).getAsStream();
+        verify( response ).setContentType( "image/png" );
+    }
+
+    @Test
+    public void testSendfile()
+                            throws Exception {
+        File file = useFileTile( 1000 );
+        HttpServletRequest request = request( null, -1 );
+        when( request.getAttribute( "org.apache.tomcat.sendfile.support" ) ).thenReturn( Boolean.TRUE );
+        handler.getTile( getTileRequest(), request, response );
+        verify( response ).disableBuffering();
+        verify( response ).setContentType( "image/png" );
+        verify( response ).setContentLength( 1000 );
+        verify( request ).setAttribute( "org.apache.tomcat.sendfile.filename", file.getCanonicalPath() );
+        verify( request ).setAttribute( "org.apache.tomcat.sendfile.start", 0L );
+        verify( request ).setAttribute( "org.apache.tomcat.sendfile.end", 1000L );
+        verify( response, never() ).getOutputStream();
+    }
+
+    @Test
+    public void testFallbackCopy()
+                            throws Exception {
+        // larger than the copy buffer, so it takes several reads
+        File file = useFileTile( 200000 );
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        when( response.getOutputStream() ).thenReturn( new ServletOutputStream() {
+            @Override
+            public void write( int b ) {
+                out.write( b );
+            }
+        } );
+        HttpServletRequest request = request( null, -1 );
+        handler.getTile( getTileRequest(), request, response );
+        verify( response ).disableBuffering();
+        verify( response ).setContentLength( 200000 );
+        verify( request, never() ).setAttribute( anyString(), any() );
+        assertArrayEquals( content( 200000 ), out.toByteArray() );
+
+        // pooled buffer is reused and must not leak data of the previous tile
+        useFileTile( 10 );
+        out.reset();
+        handler.getTile( getTileRequest(), request( null, -1 ), response );
+        assertArrayEquals( content( 10 ), out.toByteArray() );
+    }
+
+    private File useFileTile( int size )
+                            throws IOException {
+        File file = folder.newFile();
+        FileOutputStream os = new FileOutputStream( file );
+        try {
+            os.write( content( size ) );
+        } finally {
+            os.close();
+        }
+        FileBackedTile fileTile = mock( FileBackedTile.class );
+        when( fileTile.getFile() ).thenReturn( file );
+        when( level.getTile( 1, 2 ) ).thenReturn( fileTile );
+        return file;
+    }
+
+    private static byte[] content( int size ) {
+        byte[] content = new byte[size];
+        new Random( size ).nextBytes( content );
+        return content;
+    }
+
+    private HttpServletRequest request( String ifNoneMatch, long ifModifiedSince ) {
+        HttpServletRequest request = mock( HttpServletRequest.class );
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( ifNoneMatch );
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( ifModifiedSince );
+        return request;
+    }
+
+    private Map<String, String> getTileRequest() {
+        Map<String, String> map = new HashMap<String, String>();
+        map.put( "VERSION", "1.0.0" );
+        map.put( "LAYER", "tiles" );
+        map.put( "STYLE", "default" );
+        map.put( "FORMAT", "image/png" );
+        map.put( "TILEMATRIXSET", "grid" );
+        map.put( "TILEMATRIX", "0" );
+        map.put( "TILEROW", "2" );
+        map.put( "TILECOL", "1" );
+        return map;
+    }
+}
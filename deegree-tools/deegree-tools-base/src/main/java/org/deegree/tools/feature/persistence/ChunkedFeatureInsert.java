@@ -0,0 +1,478 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.deegree.commons.tom.ElementNode;
+import org.deegree.commons.tom.Reference;
+import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.array.TypedObjectNodeArray;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.sql.SQLFeatureStoreTransaction;
+import org.deegree.feature.persistence.sql.insert.StoredFeatureIds;
+import org.deegree.gml.feature.StreamFeatureCollection;
+import org.deegree.gml.reference.FeatureReference;
+import org.deegree.gml.reference.GmlDocumentIdContext;
+import org.deegree.protocol.wfs.transaction.action.IDGenMode;
+
+/**
+ * Inserts the members of a {@link StreamFeatureCollection} into a {@link FeatureStore} in chunks, each chunk in a
+ * transaction of its own.
+ * <p>
+ * Features are read incrementally, so only the current chunk (and the features that are still waiting for forward
+ * references) are held in memory. Chunks are inserted by a pool of worker threads, each using its own transaction.
+ * Local feature references to features of previous chunks are resolved using the ids recorded in a
+ * {@link DiskFeatureIdMap} (requires an SQL feature store). Features that reference features that have not been read
+ * yet are carried over into the next chunk.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class ChunkedFeatureInsert {
+
+    private final FeatureStore fs;
+
+    private final IDGenMode mode;
+
+    private final int chunkSize;
+
+    private final int threads;
+
+    private final long offset;
+
+    private final boolean bulkLoad;
+
+    private final DiskFeatureIdMap storedIds;
+
+    private final GmlDocumentIdContext idContext;
+
+    private final ExecutorService executor;
+
+    // features of the current chunk (including carried over features)
+    private List<Member> chunk = new ArrayList<Member>();
+
+    // indexes of all features that have been read, but are not committed yet
+    private final TreeSet<Long> pending = new TreeSet<Long>();
+
+    // original ids of all features in chunks that are not committed yet
+    private final Set<String> runningIds = new HashSet<String>();
+
+    private final LinkedList<RunningChunk> running = new LinkedList<RunningChunk>();
+
+    private long read;
+
+    private long skipped;
+
+    private long inserted;
+
+    private long start;
+
+    /**
+     * Creates a new {@link ChunkedFeatureInsert} instance.
+     * 
+     * @param fs
+     *            feature store to insert into, must not be <code>null</code>
+     * @param mode
+     *            id generation mode, must not be <code>null</code>
+     * @param chunkSize
+     *            number of features to insert per transaction, must be positive
+     * @param threads
+     *            number of worker threads (and transactions in progress), must be positive
+     * @param offset
+     *            number of features to skip (e.g. already inserted by an interrupted run)
+     * @param bulkLoad
+     *            if <code>true</code>, the bulk loading mechanism of the database is used (SQL feature store only)
+     * @param storedIds
+     *            ids of stored features, must not be <code>null</code>
+     * @param idContext
+     *            id context of the GML reader, must not be <code>null</code>
+     */
+    ChunkedFeatureInsert( FeatureStore fs, IDGenMode mode, int chunkSize, int threads, long offset, boolean bulkLoad,
+                          DiskFeatureIdMap storedIds, GmlDocumentIdContext idContext ) {
+        this.fs = fs;
+        this.mode = mode;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.offset = offset;
+        this.bulkLoad = bulkLoad;
+        this.storedIds = storedIds;
+        this.idContext = idContext;
+        this.executor = Executors.newFixedThreadPool( threads );
+    }
+
+    /**
+     * Inserts all members of the given feature collection.
+     * 
+     * @param fc
+     *            feature collection, must not be <code>null</code>
+     * @return number of inserted features
+     * @throws Exception
+     *             if reading or inserting fails (chunks that have been committed before stay in the feature store)
+     */
+    long insert( StreamFeatureCollection fc )
+                            throws Exception {
+        boolean resume = storedIds.size() > 0;
+        start = System.currentTimeMillis();
+        try {
+            Feature feature = null;
+            while ( ( feature = fc.read() ) != null ) {
+                long index = read++;
+                if ( feature instanceof FeatureReference ) {
+                    // member by reference, referenced feature is inserted where it is defined
+                    forget( feature );
+                    continue;
+                }
+                if ( index < offset
+                     || ( resume && feature.getId() != null && storedIds.getStoredId( feature.getId() ) != null ) ) {
+                    skipped++;
+                    forget( feature );
+                    continue;
+                }
+                chunk.add( new Member( feature, index ) );
+                pending.add( index );
+                if ( chunk.size() >= chunkSize ) {
+                    dispatch( false );
+                }
+            }
+            dispatch( true );
+            while ( !running.isEmpty() ) {
+                complete( running.removeFirst() );
+            }
+        } finally {
+            // let chunks in progress finish, so the resume offset is accurate
+            executor.shutdown();
+            while ( !running.isEmpty() ) {
+                try {
+                    complete( running.removeFirst() );
+                } catch ( Exception e ) {
+                    System.err.println( "Error inserting chunk: " + e.getMessage() );
+                }
+            }
+        }
+        long millis = System.currentTimeMillis() - start;
+        System.out.println( "- Inserted " + inserted + " features in " + ( millis / 1000 ) + " s ("
+                            + throughput( inserted, millis ) + " features/s), skipped " + skipped + " features." );
+        return inserted;
+    }
+
+    /**
+     * Returns the offset from which an interrupted insert can be resumed.
+     * 
+     * @return index of the first feature that has not been committed yet
+     */
+    long getResumeOffset() {
+        return pending.isEmpty() ? read : pending.first();
+    }
+
+    private void dispatch( boolean last )
+                            throws Exception {
+
+        // find features with references to features that have not been read yet
+        Set<Member> carried = new HashSet<Member>();
+        Set<String> carriedIds = new HashSet<String>();
+        boolean dependsOnRunning = false;
+        for ( Member member : chunk ) {
+            for ( Reference<?> ref : member.refs ) {
+                String id = ref.getURI().substring( 1 );
+                if ( ref.isResolved() || idContext.getObject( id ) != null ) {
+                    continue;
+                }
+                if ( runningIds.contains( id ) ) {
+                    dependsOnRunning = true;
+                } else if ( !( ref instanceof FeatureReference ) || storedIds.getStoredId( id ) == null ) {
+                    carry( member, carried, carriedIds );
+                }
+            }
+        }
+        // features that reference carried over features must be carried over as well
+        boolean changed = !carried.isEmpty();
+        while ( changed ) {
+            changed = false;
+            for ( Member member : chunk ) {
+                if ( !carried.contains( member ) ) {
+                    for ( Reference<?> ref : member.refs ) {
+                        if ( carriedIds.contains( ref.getURI().substring( 1 ) ) ) {
+                            carry( member, carried, carriedIds );
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        if ( last && !carried.isEmpty() ) {
+            throw new FeatureStoreException( carried.size() + " feature(s) contain unresolvable references." );
+        }
+
+        List<Member> insert = new ArrayList<Member>();
+        List<Member> carry = new ArrayList<Member>();
+        for ( Member member : chunk ) {
+            if ( carried.contains( member ) ) {
+                carry.add( member );
+            } else {
+                insert.add( member );
+            }
+        }
+
+        if ( !insert.isEmpty() ) {
+            if ( dependsOnRunning ) {
+                // referenced features must be committed and their ids known
+                while ( !running.isEmpty() ) {
+                    complete( running.removeFirst() );
+                }
+            }
+            // resolve references here, so the worker threads don't access the id context
+            for ( Member member : insert ) {
+                for ( Reference<?> ref : member.refs ) {
+                    try {
+                        ref.getReferencedObject();
+                    } catch ( ReferenceResolvingException e ) {
+                        // refers to stored feature
+                    }
+                }
+            }
+            submit( insert );
+        }
+
+        // release everything but the carried over features
+        idContext.clear();
+        for ( Member member : carry ) {
+            for ( GMLObject object : member.objects ) {
+                idContext.addObject( object );
+            }
+        }
+        chunk = carry;
+    }
+
+    private void carry( Member member, Set<Member> carried, Set<String> carriedIds ) {
+        carried.add( member );
+        for ( GMLObject object : member.objects ) {
+            if ( object.getId() != null ) {
+                carriedIds.add( object.getId() );
+            }
+        }
+    }
+
+    private void submit( List<Member> members )
+                            throws Exception {
+        while ( running.size() >= threads ) {
+            complete( running.removeFirst() );
+        }
+        // collect chunks that are already finished to report progress
+        while ( !running.isEmpty() && running.getFirst().future.isDone() ) {
+            complete( running.removeFirst() );
+        }
+
+        List<Feature> features = new ArrayList<Feature>( members.size() );
+        List<Long> indexes = new ArrayList<Long>( members.size() );
+        Set<String> ids = new HashSet<String>();
+        for ( Member member : members ) {
+            features.add( member.feature );
+            indexes.add( member.index );
+            for ( GMLObject object : member.objects ) {
+                if ( object instanceof Feature && object.getId() != null ) {
+                    ids.add( object.getId() );
+                }
+            }
+        }
+        runningIds.addAll( ids );
+        Future<Integer> future = executor.submit( new ChunkTask( features ) );
+        running.add( new RunningChunk( future, indexes, ids ) );
+    }
+
+    private void complete( RunningChunk rc )
+                            throws Exception {
+        int count = 0;
+        try {
+            count = rc.future.get();
+        } catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof Exception ) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        } finally {
+            runningIds.removeAll( rc.ids );
+        }
+        pending.removeAll( rc.indexes );
+        inserted += count;
+        long millis = System.currentTimeMillis() - start;
+        System.out.println( "- Committed " + count + " features, total: " + inserted + " ("
+                            + throughput( inserted, millis ) + " features/s), resume offset: " + getResumeOffset() );
+    }
+
+    private void forget( Feature feature ) {
+        if ( chunk.isEmpty() ) {
+            idContext.clear();
+        } else {
+            List<GMLObject> objects = new ArrayList<GMLObject>();
+            findObjectsAndReferences( feature, objects, new ArrayList<Reference<?>>() );
+            for ( GMLObject object : objects ) {
+                if ( object.getId() != null ) {
+                    idContext.getObjects().remove( object.getId() );
+                }
+            }
+        }
+    }
+
+    private static long throughput( long features, long millis ) {
+        return millis == 0 ? features : features * 1000 / millis;
+    }
+
+    private static void findObjectsAndReferences( TypedObjectNode node, List<GMLObject> objects,
+                                                  List<Reference<?>> refs ) {
+        if ( node instanceof Reference<?> ) {
+            if ( ( (Reference<?>) node ).isLocal() ) {
+                refs.add( (Reference<?>) node );
+            }
+        } else if ( node instanceof Feature ) {
+            objects.add( (Feature) node );
+            for ( Property property : ( (Feature) node ).getProperties() ) {
+                findObjectsAndReferences( property, objects, refs );
+            }
+        } else if ( node instanceof GMLObject ) {
+            objects.add( (GMLObject) node );
+        } else if ( node instanceof ElementNode ) {
+            for ( TypedObjectNode child : ( (ElementNode) node ).getChildren() ) {
+                findObjectsAndReferences( child, objects, refs );
+            }
+        } else if ( node instanceof TypedObjectNodeArray<?> ) {
+            for ( TypedObjectNode child : ( (TypedObjectNodeArray<?>) node ).getElements() ) {
+                findObjectsAndReferences( child, objects, refs );
+            }
+        }
+    }
+
+    private static class Member {
+
+        private final Feature feature;
+
+        private final long index;
+
+        // contained features and geometries (including the feature itself)
+        private final List<GMLObject> objects = new ArrayList<GMLObject>();
+
+        // contained local references
+        private final List<Reference<?>> refs = new ArrayList<Reference<?>>();
+
+        private Member( Feature feature, long index ) {
+            this.feature = feature;
+            this.index = index;
+            findObjectsAndReferences( feature, objects, refs );
+        }
+    }
+
+    private static class RunningChunk {
+
+        private final Future<Integer> future;
+
+        private final List<Long> indexes;
+
+        private final Set<String> ids;
+
+        private RunningChunk( Future<Integer> future, List<Long> indexes, Set<String> ids ) {
+            this.future = future;
+            this.indexes = indexes;
+            this.ids = ids;
+        }
+    }
+
+    private class ChunkTask implements Callable<Integer> {
+
+        private final List<Feature> features;
+
+        // ids of the features inserted by this chunk, only published after commit
+        private final Map<String, String> ids = new HashMap<String, String>();
+
+        private ChunkTask( List<Feature> features ) {
+            this.features = features;
+        }
+
+        @Override
+        public Integer call()
+                                throws Exception {
+            FeatureStoreTransaction ta = fs.acquireTransaction();
+            List<String> fids = null;
+            try {
+                if ( ta instanceof SQLFeatureStoreTransaction ) {
+                    ( (SQLFeatureStoreTransaction) ta ).setBulkLoad( bulkLoad );
+                    ( (SQLFeatureStoreTransaction) ta ).setStoredFeatureIds( new StoredFeatureIds() {
+                        @Override
+                        public String getStoredId( String originalId )
+                                                throws FeatureStoreException {
+                            String storedId = ids.get( originalId );
+                            return storedId != null ? storedId : storedIds.getStoredId( originalId );
+                        }
+
+                        @Override
+                        public void addStoredId( String originalId, String storedId ) {
+                            ids.put( originalId, storedId );
+                        }
+                    } );
+                }
+                fids = ta.performInsert( new GenericFeatureCollection( null, features ), mode );
+                ta.commit();
+            } catch ( Exception e ) {
+                ta.rollback();
+                throw e;
+            }
+            storedIds.addStoredIds( ids );
+            return fids.size();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.sql.insert.StoredFeatureIds;
+
+/**
+ * {@link StoredFeatureIds} that keeps recently added ids in memory and spills them to sorted run files on disk.
+ * <p>
+ * Each run file stores (original id, stored id) pairs sorted by original id. Only every {@value #INDEX_INTERVAL}th key
+ * of a run is held in memory, so a lookup reads a single block of the run file. Run files are kept in the given
+ * directory and are picked up again when a new instance is created for the same directory, which allows to resume an
+ * interrupted import.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * 
+ * @since 3.4
+ */
+class DiskFeatureIdMap implements StoredFeatureIds {
+
+    private static final String RUN_PREFIX = "ids-";
+
+    private static final String RUN_SUFFIX = ".run";
+
+    private static final int INDEX_INTERVAL = 64;
+
+    private final File dir;
+
+    private final int maxBufferSize;
+
+    private final Map<String, String> buffer = new HashMap<String, String>();
+
+    private final List<Run> runs = new ArrayList<Run>();
+
+    private long size;
+
+    /**
+     * Creates a new {@link DiskFeatureIdMap} instance, reusing the run files that already exist in the given directory.
+     * 
+     * @param dir
+     *            directory for the run files, must not be <code>null</code> and must exist
+     * @param maxBufferSize
+     *            number of ids to keep in memory before they are spilled to disk, must be positive
+     * @throws IOException
+     *             if an existing run file cannot be read
+     */
+    DiskFeatureIdMap( File dir, int maxBufferSize ) throws IOException {
+        this.dir = dir;
+        this.maxBufferSize = maxBufferSize;
+        int i = 0;
+        File file = getRunFile( i );
+        while ( file.exists() ) {
+            Run run = openRun( file );
+            runs.add( run );
+            size += run.size;
+            file = getRunFile( ++i );
+        }
+    }
+
+    /**
+     * Returns the number of ids that have been added (including the ones read from existing run files).
+     * 
+     * @return number of added ids
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized String getStoredId( String originalId )
+                            throws FeatureStoreException {
+        String storedId = buffer.get( originalId );
+        try {
+            for ( int i = runs.size() - 1; storedId == null && i >= 0; i-- ) {
+                storedId = runs.get( i ).lookup( originalId );
+            }
+        } catch ( IOException e ) {
+            throw new FeatureStoreException( "Unable to read feature id map: " + e.getMessage(), e );
+        }
+        return storedId;
+    }
+
+    @Override
+    public synchronized void addStoredId( String originalId, String storedId )
+                            throws FeatureStoreException {
+        if ( buffer.put( originalId, storedId ) == null ) {
+            size++;
+        }
+        if ( buffer.size() >= maxBufferSize ) {
+            try {
+                spill();
+            } catch ( IOException e ) {
+                throw new FeatureStoreException( "Unable to write feature id map: " + e.getMessage(), e );
+            }
+        }
+    }
+
+    /**
+     * Adds all entries of the given map.
+     * 
+     * @param ids
+     *            original ids (keys) and stored ids (values), must not be <code>null</code>
+     * @throws FeatureStoreException
+     */
+    synchronized void addStoredIds( Map<String, String> ids )
+                            throws FeatureStoreException {
+        for ( Map.Entry<String, String> entry : ids.entrySet() ) {
+            addStoredId( entry.getKey(), entry.getValue() );
+        }
+    }
+
+    /**
+     * Writes the ids held in memory to disk and releases all file handles.
+     * 
+     * @throws IOException
+     */
+    synchronized void close()
+                            throws IOException {
+        try {
+            if ( !buffer.isEmpty() ) {
+                spill();
+            }
+        } finally {
+            for ( Run run : runs ) {
+                run.raf.close();
+            }
+            runs.clear();
+        }
+    }
+
+    private File getRunFile( int i ) {
+        return new File( dir, RUN_PREFIX + i + RUN_SUFFIX );
+    }
+
+    private void spill()
+                            throws IOException {
+        String[] keys = buffer.keySet().toArray( new String[buffer.size()] );
+        Arrays.sort( keys );
+        File file = getRunFile( runs.size() );
+        File tmpFile = new File( dir, file.getName() + ".tmp" );
+        DataOutputStream os = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmpFile ) ) );
+        try {
+            for ( String key : keys ) {
+                os.writeUTF( key );
+                os.writeUTF( buffer.get( key ) );
+            }
+        } finally {
+            os.close();
+        }
+        // only complete run files are picked up when resuming
+        if ( !tmpFile.renameTo( file ) ) {
+            throw new IOException( "Unable to rename '" + tmpFile + "' to '" + file + "'." );
+        }
+        runs.add( openRun( file ) );
+        buffer.clear();
+    }
+
+    private Run openRun( File file )
+                            throws IOException {
+        List<String> indexKeys = new ArrayList<String>();
+        List<Long> indexOffsets = new ArrayList<Long>();
+        int entries = 0;
+        long offset = 0;
+        DataInputStream is = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+        try {
+            while ( true ) {
+                String key;
+                try {
+                    key = is.readUTF();
+                } catch ( EOFException e ) {
+                    break;
+                }
+                String value = is.readUTF();
+                if ( entries % INDEX_INTERVAL == 0 ) {
+                    indexKeys.add( key );
+                    indexOffsets.add( offset );
+                }
+                offset += utfLength( key ) + utfLength( value );
+                entries++;
+            }
+        } finally {
+            is.close();
+        }
+        long[] offsets = new long[indexOffsets.size() + 1];
+        for ( int i = 0; i < indexOffsets.size(); i++ ) {
+            offsets[i] = indexOffsets.get( i );
+        }
+        offsets[offsets.length - 1] = offset;
+        return new Run( new RandomAccessFile( file, "r" ), indexKeys.toArray( new String[indexKeys.size()] ),
+                        offsets, entries );
+    }
+
+    // number of bytes written by DataOutput#writeUTF
+    private static int utfLength( String s ) {
+        int len = 2;
+        for ( int i = 0; i < s.length(); i++ ) {
+            char c = s.charAt( i );
+            if ( c >= 0x0001 && c <= 0x007F ) {
+                len++;
+            } else if ( c > 0x07FF ) {
+                len += 3;
+            } else {
+                len += 2;
+            }
+        }
+        return len;
+    }
+
+    private static class Run {
+
+        private final RandomAccessFile raf;
+
+        // first key of every block
+        private final String[] keys;
+
+        // start offset of every block, plus end of file
+        private final long[] offsets;
+
+        private final int size;
+
+        private Run( RandomAccessFile raf, String[] keys, long[] offsets, int size ) {
+            this.raf = raf;
+            this.keys = keys;
+            this.offsets = offsets;
+            this.size = size;
+        }
+
+        private String lookup( String key )
+                                throws IOException {
+            int block = Arrays.binarySearch( keys, key );
+            if ( block < 0 ) {
+                // block that would contain the key
+                block = -block - 2;
+                if ( block < 0 ) {
+                    return null;
+                }
+            }
+            byte[] bytes = new byte[(int) ( offsets[block + 1] - offsets[block] )];
+            raf.seek( offsets[block] );
+            raf.readFully( bytes );
+            DataInputStream is = new DataInputStream( new ByteArrayInputStream( bytes ) );
+            while ( is.available() > 0 ) {
+                String candidate = is.readUTF();
+                String value = is.readUTF();
+                int cmp = candidate.compareTo( key );
+                if ( cmp == 0 ) {
+                    return value;
+                }
+                if ( cmp > 0 ) {
+                    break;
+                }
+            }
+            return null;
+        }
+    }
+}
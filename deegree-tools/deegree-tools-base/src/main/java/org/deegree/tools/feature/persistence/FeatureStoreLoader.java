@@ -38,7 +38,6 @@ package org.deegree.tools.feature.persistence;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.util.List;
 
 import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLStreamException;
@@ -53,14 +52,13 @@ import org.deegree.commons.config.ResourceInitException;
 import org.deegree.commons.tools.CommandUtils;
 import org.deegree.commons.xml.XMLParsingException;
 import org.deegree.cs.exceptions.UnknownCRSException;
-import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreProvider;
-import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.GMLVersion;
+import org.deegree.gml.feature.StreamFeatureCollection;
 import org.deegree.protocol.wfs.transaction.action.IDGenMode;
 import org.deegree.tools.i18n.Messages;
 import org.deegree.workspace.Workspace;
@@ -68,6 +66,11 @@ import org.deegree.workspace.standard.DefaultWorkspace;
 
 /**
  * Imports feature datasets into a feature store.
+ * <p>
+ * The dataset is read in streaming mode and inserted in chunks (one transaction per chunk), optionally using several
+ * worker threads. An interrupted import can be resumed by specifying the offset printed for the last committed chunk
+ * and the directory of the feature id map.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider </a>
  * @author last edited by: $Author$
@@ -90,38 +93,72 @@ public class FeatureStoreLoader {
 
     private static final String OPT_IDGEN_MODE = "idgen";
 
+    private static final String OPT_CHUNK_SIZE = "chunksize";
+
+    private static final String OPT_THREADS = "threads";
+
+    private static final String OPT_OFFSET = "offset";
+
+    private static final String OPT_ID_MAP_DIR = "idmap";
+
+    private static final String OPT_BULK_LOAD = "bulkload";
+
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    // number of feature ids held in memory before they are written to disk
+    private static final int ID_MAP_BUFFER_SIZE = 100000;
+
     private enum Action {
         insert, stats
     }
 
-    private static void insert( FeatureStore fs, String datasetFile, GMLVersion gmlVersion, IDGenMode mode )
+    private static void insert( FeatureStore fs, String datasetFile, GMLVersion gmlVersion, IDGenMode mode,
+                                int chunkSize, int threads, long offset, boolean bulkLoad, String idMapDir )
                             throws XMLStreamException, FactoryConfigurationError, IOException, XMLParsingException,
                             UnknownCRSException, FeatureStoreException {
 
         File f = new File( datasetFile );
         URL url = f.toURI().toURL();
-        System.out.print( "- Reading dataset: '" + datasetFile + "'..." );
+        System.out.println( "- Reading dataset: '" + datasetFile + "'" );
         GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( gmlVersion, url );
         gmlReader.setApplicationSchema( fs.getSchema() );
-        FeatureCollection fc = gmlReader.readFeatureCollection();
-        System.out.println( "done." );
+        StreamFeatureCollection fc = gmlReader.readFeatureCollectionStream();
 
-        FeatureStoreTransaction ta = null;
-        try {
-            ta = fs.acquireTransaction();
-            System.out.print( "- Inserting features..." );
-            List<String> fids = ta.performInsert( fc, mode );
-            System.out.println( "done." );
-            for ( String fid : fids ) {
-                System.out.println( "- Inserted: " + fid );
+        File dir = null;
+        if ( idMapDir != null ) {
+            dir = new File( idMapDir );
+            if ( !dir.isDirectory() && !dir.mkdirs() ) {
+                throw new IOException( "Unable to create feature id map directory '" + idMapDir + "'." );
             }
-            System.out.println( "\n- Insert succeeded (" + fids.size() + " features). Committing transaction." );
-            ta.commit();
+        } else {
+            dir = File.createTempFile( "featureids", "" );
+            dir.delete();
+            dir.mkdir();
+        }
+        DiskFeatureIdMap storedIds = new DiskFeatureIdMap( dir, ID_MAP_BUFFER_SIZE );
+        System.out.println( "- Feature id map: '" + dir + "' (" + storedIds.size() + " stored features)" );
+
+        ChunkedFeatureInsert insert = new ChunkedFeatureInsert( fs, mode, chunkSize, threads, offset, bulkLoad,
+                                                                storedIds, gmlReader.getIdContext() );
+        boolean succeeded = false;
+        try {
+            insert.insert( fc );
+            succeeded = true;
+            System.out.println( "- Insert succeeded." );
         } catch ( Exception e ) {
             e.printStackTrace();
             System.err.println( "Error performing insert: " + e.getMessage() );
-            if ( ta != null ) {
-                ta.rollback();
+            System.err.println( "Resume with '-" + OPT_OFFSET + " " + insert.getResumeOffset() + " -" + OPT_ID_MAP_DIR
+                                + " " + dir + "'." );
+        } finally {
+            storedIds.close();
+            gmlReader.close();
+            // the temporary id map is needed for resuming a failed insert
+            if ( idMapDir == null && succeeded ) {
+                for ( File file : dir.listFiles() ) {
+                    file.delete();
+                }
+                dir.delete();
             }
         }
     }
@@ -184,6 +221,30 @@ public class FeatureStoreLoader {
 
             String inputFileName = cmdline.getOptionValue( OPT_DATASET_FILE );
 
+            int chunkSize = DEFAULT_CHUNK_SIZE;
+            int threads = 1;
+            long offset = 0;
+            try {
+                if ( cmdline.hasOption( OPT_CHUNK_SIZE ) ) {
+                    chunkSize = Integer.parseInt( cmdline.getOptionValue( OPT_CHUNK_SIZE ) );
+                }
+                if ( cmdline.hasOption( OPT_THREADS ) ) {
+                    threads = Integer.parseInt( cmdline.getOptionValue( OPT_THREADS ) );
+                }
+                if ( cmdline.hasOption( OPT_OFFSET ) ) {
+                    offset = Long.parseLong( cmdline.getOptionValue( OPT_OFFSET ) );
+                }
+                if ( chunkSize < 1 || threads < 1 || offset < 0 ) {
+                    throw new NumberFormatException();
+                }
+            } catch ( NumberFormatException e ) {
+                System.out.println( "Invalid chunk size, number of threads or offset. "
+                                    + "Call with '-help' for displaying valid values." );
+                System.exit( 0 );
+            }
+            String idMapDir = cmdline.getOptionValue( OPT_ID_MAP_DIR );
+            boolean bulkLoad = cmdline.hasOption( OPT_BULK_LOAD );
+
             Workspace ws = new DefaultWorkspace( new File( workspace ) );
             ws.initAll();
 
@@ -191,7 +252,7 @@ public class FeatureStoreLoader {
 
             switch ( action ) {
             case insert:
-                insert( fs, inputFileName, format, idGenMode );
+                insert( fs, inputFileName, format, idGenMode, chunkSize, threads, offset, bulkLoad, idMapDir );
                 break;
             case stats:
                 System.out.println( "TODO: Stats..." );
@@ -245,6 +306,22 @@ public class FeatureStoreLoader {
         opt.setRequired( true );
         opts.addOption( opt );
 
+        opt = new Option( OPT_CHUNK_SIZE, true, "number of features per transaction, default: " + DEFAULT_CHUNK_SIZE );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_THREADS, true, "number of concurrent transactions, default: 1" );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_OFFSET, true, "number of dataset features to skip (for resuming an import), default: 0" );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_ID_MAP_DIR, true,
+                          "directory for stored feature ids (keep for resuming an import), default: temporary" );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_BULK_LOAD, false, "use the bulk loading mechanism of the database (PostgreSQL: COPY)" );
+        opts.addOption( opt );
+
         CommandUtils.addDefaultOptions( opts );
         return opts;
     }
@@ -0,0 +1,331 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.deegree.gml.GMLVersion.GML_32;
+import static org.deegree.protocol.wfs.transaction.action.IDGenMode.USE_EXISTING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.sql.SQLFeatureStoreTransaction;
+import org.deegree.feature.persistence.sql.insert.StoredFeatureIds;
+import org.deegree.gml.feature.StreamFeatureCollection;
+import org.deegree.gml.reference.FeatureReference;
+import org.deegree.gml.reference.GmlDocumentIdContext;
+import org.deegree.protocol.wfs.transaction.action.IDGenMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for {@link ChunkedFeatureInsert}, using a fake feature store that records the inserted chunks.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ChunkedFeatureInsertTest {
+
+    private File dir;
+
+    private DiskFeatureIdMap storedIds;
+
+    private GmlDocumentIdContext idContext;
+
+    // feature id -> ids of the features it references
+    private final Map<String, List<String>> refTargets = new HashMap<String, List<String>>();
+
+    private FakeStore store;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        dir = File.createTempFile( "featureids", "" );
+        dir.delete();
+        dir.mkdir();
+        storedIds = new DiskFeatureIdMap( dir, 1000 );
+        idContext = new GmlDocumentIdContext( GML_32 );
+        store = new FakeStore();
+    }
+
+    @After
+    public void tearDown()
+                            throws IOException {
+        storedIds.close();
+        for ( File file : dir.listFiles() ) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testChunks()
+                            throws Exception {
+        ChunkedFeatureInsert insert = newInsert( 2, 1, 0 );
+        long inserted = insert.insert( stream( feature( "a" ), feature( "b" ), feature( "c" ), feature( "d" ),
+                                               feature( "e" ) ) );
+        assertEquals( 5, inserted );
+        assertEquals( asList( asList( "a", "b" ), asList( "c", "d" ), singletonList( "e" ) ), store.chunks );
+        assertEquals( 5, insert.getResumeOffset() );
+        assertEquals( "FT_c", storedIds.getStoredId( "c" ) );
+    }
+
+    @Test
+    public void testOffset()
+                            throws Exception {
+        ChunkedFeatureInsert insert = newInsert( 2, 1, 3 );
+        long inserted = insert.insert( stream( feature( "a" ), feature( "b" ), feature( "c" ), feature( "d" ),
+                                               feature( "e" ) ) );
+        assertEquals( 2, inserted );
+        assertEquals( singletonList( asList( "d", "e" ) ), store.chunks );
+        assertEquals( 5, insert.getResumeOffset() );
+    }
+
+    @Test
+    public void testReferencesToPreviousChunk()
+                            throws Exception {
+        // the first chunk is still running when the second one is dispatched
+        store.delayFirstChunk = 300;
+        ChunkedFeatureInsert insert = newInsert( 2, 2, 0 );
+        long inserted = insert.insert( stream( feature( "a" ), feature( "b" ), feature( "c", "a" ),
+                                               feature( "d", "b" ) ) );
+        assertEquals( 4, inserted );
+        assertEquals( asList( asList( "a", "b" ), asList( "c", "d" ) ), store.chunks );
+        // second chunk must only be inserted after the first has been committed and its ids are known
+        assertEquals( "FT_a", store.storedIdsAtInsert.get( "a" ) );
+        assertEquals( "FT_b", store.storedIdsAtInsert.get( "b" ) );
+    }
+
+    @Test
+    public void testForwardReferenceCarriedOver()
+                            throws Exception {
+        ChunkedFeatureInsert insert = newInsert( 2, 1, 0 );
+        Feature a = feature( "a", "c" );
+        long inserted = insert.insert( stream( a, feature( "b" ), feature( "c" ), feature( "d" ) ) );
+        assertEquals( 4, inserted );
+        assertEquals( asList( singletonList( "b" ), asList( "a", "c" ), singletonList( "d" ) ), store.chunks );
+        assertTrue( getReference( a ).isResolved() );
+        assertEquals( 4, insert.getResumeOffset() );
+    }
+
+    @Test
+    public void testReferenceToCarriedOverFeatureIsCarriedOver()
+                            throws Exception {
+        ChunkedFeatureInsert insert = newInsert( 2, 1, 0 );
+        long inserted = insert.insert( stream( feature( "a", "c" ), feature( "b", "a" ), feature( "c" ),
+                                               feature( "d" ) ) );
+        assertEquals( 4, inserted );
+        assertEquals( asList( asList( "a", "b", "c" ), singletonList( "d" ) ), store.chunks );
+    }
+
+    @Test
+    public void testUnresolvableReference()
+                            throws Exception {
+        ChunkedFeatureInsert insert = newInsert( 10, 1, 0 );
+        try {
+            insert.insert( stream( feature( "a", "x" ), feature( "b" ) ) );
+            fail( "Expected FeatureStoreException." );
+        } catch ( FeatureStoreException e ) {
+            // expected
+        }
+        assertTrue( store.chunks.isEmpty() );
+        assertEquals( 0, insert.getResumeOffset() );
+    }
+
+    @Test
+    public void testResumeOffsetAfterFailedChunk()
+                            throws Exception {
+        store.failingChunk = 1;
+        ChunkedFeatureInsert insert = newInsert( 2, 1, 0 );
+        try {
+            insert.insert( stream( feature( "a" ), feature( "b" ), feature( "c" ), feature( "d" ), feature( "e" ),
+                                   feature( "f" ) ) );
+            fail( "Expected FeatureStoreException." );
+        } catch ( FeatureStoreException e ) {
+            // expected
+        }
+        assertEquals( 2, insert.getResumeOffset() );
+        assertEquals( 1, store.rollbacks.get() );
+        assertEquals( "FT_b", storedIds.getStoredId( "b" ) );
+        assertEquals( null, storedIds.getStoredId( "c" ) );
+    }
+
+    private ChunkedFeatureInsert newInsert( int chunkSize, int threads, long offset ) {
+        return new ChunkedFeatureInsert( store.fs, USE_EXISTING, chunkSize, threads, offset, false, storedIds,
+                                         idContext );
+    }
+
+    private Feature feature( String id, String... refs ) {
+        List<TypedObjectNode> children = new ArrayList<TypedObjectNode>();
+        for ( String ref : refs ) {
+            children.add( new FeatureReference( idContext, "#" + ref, null ) );
+        }
+        Property prop = mock( Property.class );
+        when( prop.getChildren() ).thenReturn( children );
+        Feature feature = mock( Feature.class );
+        when( feature.getId() ).thenReturn( id );
+        when( feature.getProperties() ).thenReturn( singletonList( prop ) );
+        refTargets.put( id, asList( refs ) );
+        return feature;
+    }
+
+    private static FeatureReference getReference( Feature feature ) {
+        return (FeatureReference) feature.getProperties().get( 0 ).getChildren().get( 0 );
+    }
+
+    private StreamFeatureCollection stream( final Feature... features )
+                            throws IOException {
+        StreamFeatureCollection fc = mock( StreamFeatureCollection.class );
+        when( fc.read() ).thenAnswer( new Answer<Feature>() {
+
+            private int i;
+
+            @Override
+            public Feature answer( InvocationOnMock invocation ) {
+                if ( i == features.length ) {
+                    return null;
+                }
+                // the GML reader registers each object it has read
+                idContext.addObject( features[i] );
+                return features[i++];
+            }
+        } );
+        return fc;
+    }
+
+    private class FakeStore {
+
+        final FeatureStore fs = mock( FeatureStore.class );
+
+        // ids of the features of each chunk, in the order of insertion
+        final List<List<String>> chunks = Collections.synchronizedList( new ArrayList<List<String>>() );
+
+        // stored ids of referenced features, as seen by the transaction when inserting the referencing feature
+        final Map<String, String> storedIdsAtInsert = Collections.synchronizedMap( new HashMap<String, String>() );
+
+        final AtomicInteger rollbacks = new AtomicInteger();
+
+        private final AtomicInteger inserts = new AtomicInteger();
+
+        long delayFirstChunk;
+
+        int failingChunk = -1;
+
+        FakeStore() throws FeatureStoreException {
+            when( fs.acquireTransaction() ).thenAnswer( new Answer<FeatureStoreTransaction>() {
+                @Override
+                public FeatureStoreTransaction answer( InvocationOnMock invocation )
+                                        throws FeatureStoreException {
+                    return newTransaction();
+                }
+            } );
+        }
+
+        private FeatureStoreTransaction newTransaction()
+                                throws FeatureStoreException {
+            SQLFeatureStoreTransaction ta = mock( SQLFeatureStoreTransaction.class );
+            final StoredFeatureIds[] ids = new StoredFeatureIds[1];
+            doAnswer( new Answer<Void>() {
+                @Override
+                public Void answer( InvocationOnMock invocation ) {
+                    ids[0] = (StoredFeatureIds) invocation.getArguments()[0];
+                    return null;
+                }
+            } ).when( ta ).setStoredFeatureIds( any( StoredFeatureIds.class ) );
+            doAnswer( new Answer<Void>() {
+                @Override
+                public Void answer( InvocationOnMock invocation ) {
+                    rollbacks.incrementAndGet();
+                    return null;
+                }
+            } ).when( ta ).rollback();
+            when( ta.performInsert( any( FeatureCollection.class ), any( IDGenMode.class ) ) ).thenAnswer( new Answer<List<String>>() {
+                @Override
+                public List<String> answer( InvocationOnMock invocation )
+                                        throws Exception {
+                    FeatureCollection fc = (FeatureCollection) invocation.getArguments()[0];
+                    List<String> chunk = new ArrayList<String>();
+                    for ( Feature feature : fc ) {
+                        chunk.add( feature.getId() );
+                    }
+                    int index = inserts.getAndIncrement();
+                    if ( index == 0 && delayFirstChunk > 0 ) {
+                        Thread.sleep( delayFirstChunk );
+                    }
+                    if ( index == failingChunk ) {
+                        throw new FeatureStoreException( "Chunk " + index + " failed." );
+                    }
+                    chunks.add( chunk );
+                    List<String> fids = new ArrayList<String>();
+                    for ( String id : chunk ) {
+                        for ( String ref : refTargets.get( id ) ) {
+                            storedIdsAtInsert.put( ref, ids[0].getStoredId( ref ) );
+                        }
+                        ids[0].addStoredId( id, "FT_" + id );
+                        fids.add( "FT_" + id );
+                    }
+                    return fids;
+                }
+            } );
+            return ta;
+        }
+    }
+
+}
@@ -0,0 +1,192 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DiskFeatureIdMap}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class DiskFeatureIdMapTest {
+
+    private File dir;
+
+    private DiskFeatureIdMap map;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        dir = File.createTempFile( "featureids", "" );
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @After
+    public void tearDown()
+                            throws IOException {
+        if ( map != null ) {
+            map.close();
+        }
+        for ( File file : dir.listFiles() ) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testLookupInMemory()
+                            throws Exception {
+        map = new DiskFeatureIdMap( dir, 10 );
+        map.addStoredId( "a", "FT_1" );
+        map.addStoredId( "b", "FT_2" );
+        assertEquals( "FT_1", map.getStoredId( "a" ) );
+        assertEquals( "FT_2", map.getStoredId( "b" ) );
+        assertNull( map.getStoredId( "c" ) );
+        assertEquals( 2, map.size() );
+        assertEquals( 0, dir.listFiles().length );
+    }
+
+    @Test
+    public void testSpillToDisk()
+                            throws Exception {
+        map = new DiskFeatureIdMap( dir, 3 );
+        for ( int i = 0; i < 10; i++ ) {
+            map.addStoredId( "id" + i, "FT_" + i );
+        }
+        assertTrue( new File( dir, "ids-0.run" ).exists() );
+        assertTrue( new File( dir, "ids-2.run" ).exists() );
+        assertFalse( new File( dir, "ids-3.run" ).exists() );
+        for ( int i = 0; i < 10; i++ ) {
+            assertEquals( "FT_" + i, map.getStoredId( "id" + i ) );
+        }
+        assertEquals( 10, map.size() );
+    }
+
+    @Test
+    public void testLookupAcrossIndexBlocks()
+                            throws Exception {
+        map = new DiskFeatureIdMap( dir, 1000 );
+        Map<String, String> ids = new HashMap<String, String>();
+        for ( int i = 0; i < 500; i++ ) {
+            // even numbers only, so there are unknown ids between the known ones
+            ids.put( String.format( "id%05d", 2 * i ), "FT_" + i );
+        }
+        map.addStoredIds( ids );
+        map.close();
+        map = new DiskFeatureIdMap( dir, 1000 );
+        for ( Map.Entry<String, String> entry : ids.entrySet() ) {
+            assertEquals( entry.getValue(), map.getStoredId( entry.getKey() ) );
+        }
+        assertNull( map.getStoredId( "a" ) );
+        assertNull( map.getStoredId( "id00001" ) );
+        assertNull( map.getStoredId( "id00129" ) );
+        assertNull( map.getStoredId( "id99999" ) );
+    }
+
+    @Test
+    public void testNonAsciiIds()
+                            throws Exception {
+        // index offsets depend on the encoded length of the ids
+        map = new DiskFeatureIdMap( dir, 1000 );
+        Map<String, String> ids = new HashMap<String, String>();
+        for ( int i = 0; i < 300; i++ ) {
+            ids.put( "\u00e4\u0000\u4e2d" + i, "FT_\u00f6" + i );
+        }
+        map.addStoredIds( ids );
+        map.close();
+        map = new DiskFeatureIdMap( dir, 1000 );
+        for ( Map.Entry<String, String> entry : ids.entrySet() ) {
+            assertEquals( entry.getValue(), map.getStoredId( entry.getKey() ) );
+        }
+    }
+
+    @Test
+    public void testLaterRunWins()
+                            throws Exception {
+        map = new DiskFeatureIdMap( dir, 1 );
+        map.addStoredId( "a", "FT_1" );
+        map.addStoredId( "a", "FT_2" );
+        assertEquals( "FT_2", map.getStoredId( "a" ) );
+    }
+
+    @Test
+    public void testResume()
+                            throws Exception {
+        map = new DiskFeatureIdMap( dir, 2 );
+        map.addStoredId( "a", "FT_1" );
+        map.addStoredId( "b", "FT_2" );
+        map.addStoredId( "c", "FT_3" );
+        // "c" is still in memory, close() writes it
+        map.close();
+
+        map = new DiskFeatureIdMap( dir, 2 );
+        assertEquals( 3, map.size() );
+        assertEquals( "FT_1", map.getStoredId( "a" ) );
+        assertEquals( "FT_3", map.getStoredId( "c" ) );
+        map.addStoredId( "d", "FT_4" );
+        map.addStoredId( "e", "FT_5" );
+        assertTrue( new File( dir, "ids-2.run" ).exists() );
+        assertEquals( "FT_5", map.getStoredId( "e" ) );
+        assertEquals( 5, map.size() );
+    }
+
+    @Test
+    public void testIncompleteRunIgnored()
+                            throws Exception {
+        new File( dir, "ids-0.run.tmp" ).createNewFile();
+        map = new DiskFeatureIdMap( dir, 10 );
+        assertEquals( 0, map.size() );
+        map.addStoredId( "a", "FT_1" );
+        map.close();
+        map = new DiskFeatureIdMap( dir, 10 );
+        assertEquals( "FT_1", map.getStoredId( "a" ) );
+    }
+}